@@ -19,6 +19,8 @@
  */
 package org.xwiki.component.internal.multi;
 
+import java.util.Collection;
+
 import org.xwiki.component.annotation.Role;
 import org.xwiki.component.manager.ComponentManager;
 
@@ -41,4 +43,10 @@
      *         <code>create</code> is false
      */
     ComponentManager getComponentManager(String id, boolean create);
+
+    /**
+     * @return the usage of each existing Component Manager (the root Component Manager is not included)
+     * @since 4.2M2
+     */
+    Collection<ComponentManagerUsage> getComponentManagerUsages();
 }
@@ -0,0 +1,136 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.multi;
+
+import java.util.Date;
+
+/**
+ * The usage of a namespace Component Manager handled by {@link ComponentManagerManager}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentManagerUsage
+{
+    /**
+     * @see #getId()
+     */
+    private final String id;
+
+    /**
+     * @see #getCreationDate()
+     */
+    private final Date creationDate;
+
+    /**
+     * @see #getLastAccessDate()
+     */
+    private final Date lastAccessDate;
+
+    /**
+     * @see #getAccessCount()
+     */
+    private final long accessCount;
+
+    /**
+     * @see #getComponentCount()
+     */
+    private final int componentCount;
+
+    /**
+     * @see #getInstanceCount()
+     */
+    private final int instanceCount;
+
+    /**
+     * @param id the identifier of the Component Manager
+     * @param creationDate the date when the Component Manager has been created
+     * @param lastAccessDate the date when the Component Manager has been accessed for the last time
+     * @param accessCount the number of times the Component Manager has been accessed
+     * @param componentCount the number of components registered in the Component Manager or -1 if unknown
+     * @param instanceCount the number of component instances held by the Component Manager or -1 if unknown
+     */
+    public ComponentManagerUsage(String id, Date creationDate, Date lastAccessDate, long accessCount,
+        int componentCount, int instanceCount)
+    {
+        this.id = id;
+        this.creationDate = creationDate;
+        this.lastAccessDate = lastAccessDate;
+        this.accessCount = accessCount;
+        this.componentCount = componentCount;
+        this.instanceCount = instanceCount;
+    }
+
+    /**
+     * @return the identifier of the Component Manager
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the date when the Component Manager has been created
+     */
+    public Date getCreationDate()
+    {
+        return this.creationDate;
+    }
+
+    /**
+     * @return the date when the Component Manager has been accessed for the last time
+     */
+    public Date getLastAccessDate()
+    {
+        return this.lastAccessDate;
+    }
+
+    /**
+     * @return the number of times the Component Manager has been accessed
+     */
+    public long getAccessCount()
+    {
+        return this.accessCount;
+    }
+
+    /**
+     * @return the number of components registered in the Component Manager (not in its parents) or -1 if unknown
+     */
+    public int getComponentCount()
+    {
+        return this.componentCount;
+    }
+
+    /**
+     * @return the number of component instances held by the Component Manager or -1 if unknown, the main source of
+     *         memory usage of a Component Manager
+     */
+    public int getInstanceCount()
+    {
+        return this.instanceCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return this.id + " (components: " + this.componentCount + ", instances: " + this.instanceCount
+            + ", accesses: " + this.accessCount + ", last access: " + this.lastAccessDate + ')';
+    }
+}
@@ -19,26 +19,50 @@
  */
 package org.xwiki.component.internal.multi;
 
+import java.lang.ref.Reference;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
 
+import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 
 /**
  * Default implementation of {@link ComponentManagerManager}.
+ * <p>
+ * Namespace Component Managers which have not been accessed for more than {@link #getMaxIdleTime()} milliseconds are
+ * evicted (when they support it, see {@link ReleasableComponentManager}): the ones without any registered component
+ * are only weakly referenced (so that they are garbage collected unless someone still uses them, in which case they
+ * are reused) and the other ones release their component instances. The maximum idle time is configured with the
+ * {@value #MAXIDLETIME_PROPERTY} system property (in milliseconds) and eviction is disabled by default.
  * 
  * @version $Id$
  * @since 3.3M2
  */
 @Component
 @Singleton
-public class DefaultComponentManagerManager implements ComponentManagerManager
+public class DefaultComponentManagerManager implements ComponentManagerManager, Disposable
 {
+    /**
+     * The system property used to configure the maximum idle time of namespace Component Managers.
+     * 
+     * @since 4.2M2
+     */
+    public static final String MAXIDLETIME_PROPERTY = "xwiki.component.namespace.maxIdleTime";
+
     /**
      * The Factory to use to create Component Managers whenever a component is registered for a key that doesn't already
      * exist.
@@ -52,10 +76,165 @@ public class DefaultComponentManagerManager implements ComponentManagerManager
     @Inject
     private ComponentManager rootComponentManager;
 
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
     /**
      * Holds Component Managers based on identifiers.
      */
-    private Map<String, ComponentManager> componentManagers = new ConcurrentHashMap<String, ComponentManager>();
+    private ConcurrentMap<String, ComponentManagerEntry> componentManagers =
+        new ConcurrentHashMap<String, ComponentManagerEntry>();
+
+    /**
+     * @see #getMaxIdleTime()
+     */
+    private volatile long maxIdleTime = Long.getLong(MAXIDLETIME_PROPERTY, 0);
+
+    /**
+     * The date of the next eviction of idle Component Managers.
+     */
+    private volatile long nextEvictionDate;
+
+    /**
+     * Make sure only one thread evicts idle Component Managers at a given time.
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * A Component Manager associated to an identifier and its usage.
+     */
+    private final class ComponentManagerEntry
+    {
+        /**
+         * The identifier of the Component Manager.
+         */
+        private final String id;
+
+        /**
+         * The date when the entry has been created.
+         */
+        private final long creationDate = System.currentTimeMillis();
+
+        /**
+         * The number of times the Component Manager has been accessed.
+         */
+        private final AtomicLong accessCount = new AtomicLong();
+
+        /**
+         * The date when the Component Manager has been accessed for the last time.
+         */
+        private volatile long lastAccessDate = this.creationDate;
+
+        /**
+         * The Component Manager, lazily created so that only one is created even when several threads ask for it at
+         * the same time. Null when the entry is idle, see {@link #idleComponentManager}.
+         */
+        private ComponentManager componentManager;
+
+        /**
+         * The evicted Component Manager, weakly referenced so that it's reused if it's still referenced by someone
+         * when the entry is accessed again (instead of creating a second Component Manager for the same identifier).
+         */
+        private Reference<ComponentManager> idleComponentManager;
+
+        /**
+         * True if the entry has been evicted and should not be used anymore.
+         */
+        private boolean evicted;
+
+        /**
+         * @param id the identifier of the Component Manager
+         */
+        ComponentManagerEntry(String id)
+        {
+            this.id = id;
+        }
+
+        /**
+         * @return the Component Manager or null if the entry has been evicted
+         */
+        synchronized ComponentManager access()
+        {
+            if (this.evicted) {
+                return null;
+            }
+
+            if (this.componentManager == null) {
+                this.componentManager = getIdleComponentManager();
+                this.idleComponentManager = null;
+                if (this.componentManager == null) {
+                    this.componentManager = createComponentManager(this.id);
+                }
+            }
+
+            this.accessCount.incrementAndGet();
+            this.lastAccessDate = System.currentTimeMillis();
+
+            return this.componentManager;
+        }
+
+        /**
+         * Evict the entry if it has not been accessed since the passed date.
+         * 
+         * @param date the date before which the entry is considered idle
+         * @return true if the entry should be removed
+         * @throws ComponentLifecycleException if an error happens while releasing the component instances
+         */
+        synchronized boolean evict(long date) throws ComponentLifecycleException
+        {
+            if (this.lastAccessDate >= date) {
+                return false;
+            }
+
+            if (this.componentManager instanceof ReleasableComponentManager) {
+                ReleasableComponentManager releasable = (ReleasableComponentManager) this.componentManager;
+                if (releasable.getComponentCount() == 0) {
+                    // Nothing to lose: stop holding the Component Manager. It's not detached from its parent since
+                    // it might still be used by someone.
+                    this.idleComponentManager = new WeakReference<ComponentManager>(this.componentManager);
+                    this.componentManager = null;
+                } else if (releasable.getInstanceCount() > 0) {
+                    // The registered components can't be recreated so only release their instances
+                    releasable.releaseInstances();
+                }
+            }
+
+            // Forget the entry when nobody uses its Component Manager anymore
+            this.evicted = this.componentManager == null && getIdleComponentManager() == null;
+
+            return this.evicted;
+        }
+
+        /**
+         * @return the evicted Component Manager if it has not been garbage collected yet, null otherwise
+         */
+        private ComponentManager getIdleComponentManager()
+        {
+            return this.idleComponentManager != null ? this.idleComponentManager.get() : null;
+        }
+
+        /**
+         * @return the usage of the Component Manager
+         */
+        synchronized ComponentManagerUsage getUsage()
+        {
+            int componentCount = -1;
+            int instanceCount = -1;
+            ComponentManager currentComponentManager =
+                this.componentManager != null ? this.componentManager : getIdleComponentManager();
+            if (currentComponentManager instanceof ReleasableComponentManager) {
+                ReleasableComponentManager releasable = (ReleasableComponentManager) currentComponentManager;
+                componentCount = releasable.getComponentCount();
+                instanceCount = releasable.getInstanceCount();
+            }
+
+            return new ComponentManagerUsage(this.id, new Date(this.creationDate), new Date(this.lastAccessDate),
+                this.accessCount.get(), componentCount, instanceCount);
+        }
+    }
 
     @Override
     public ComponentManager getComponentManager(String path, boolean create)
@@ -64,16 +243,119 @@ public ComponentManager getComponentManager(String path, boolean create)
         if (path == null) {
             componentManager = this.rootComponentManager;
         } else {
-            componentManager = this.componentManagers.get(path);
-            if (componentManager == null) {
-                componentManager = createComponentManager(path);
-                this.componentManagers.put(path, componentManager);
-            }
+            evictIdleComponentManagersIfNeeded();
+
+            do {
+                ComponentManagerEntry entry = this.componentManagers.get(path);
+                if (entry == null) {
+                    if (!create) {
+                        return null;
+                    }
+
+                    entry = new ComponentManagerEntry(path);
+                    ComponentManagerEntry existingEntry = this.componentManagers.putIfAbsent(path, entry);
+                    if (existingEntry != null) {
+                        entry = existingEntry;
+                    }
+                }
+
+                // Null if the entry has been evicted in the meantime
+                componentManager = entry.access();
+            } while (componentManager == null);
         }
 
         return componentManager;
     }
 
+    @Override
+    public Collection<ComponentManagerUsage> getComponentManagerUsages()
+    {
+        Collection<ComponentManagerUsage> usages = new ArrayList<ComponentManagerUsage>(this.componentManagers.size());
+        for (ComponentManagerEntry entry : this.componentManagers.values()) {
+            usages.add(entry.getUsage());
+        }
+
+        return usages;
+    }
+
+    /**
+     * @return the time in milliseconds after which a namespace Component Manager which has not been accessed is
+     *         evicted, 0 or less if namespace Component Managers are never evicted
+     * @since 4.2M2
+     */
+    public long getMaxIdleTime()
+    {
+        return this.maxIdleTime;
+    }
+
+    /**
+     * @param maxIdleTime the time in milliseconds after which a namespace Component Manager which has not been
+     *            accessed is evicted, 0 or less to never evict namespace Component Managers
+     * @since 4.2M2
+     */
+    public void setMaxIdleTime(long maxIdleTime)
+    {
+        this.maxIdleTime = maxIdleTime;
+        this.nextEvictionDate = 0;
+    }
+
+    /**
+     * Evict the namespace Component Managers which have not been accessed for more than {@link #getMaxIdleTime()}.
+     * 
+     * @since 4.2M2
+     */
+    public void evictIdleComponentManagers()
+    {
+        long currentMaxIdleTime = this.maxIdleTime;
+        if (currentMaxIdleTime > 0) {
+            long now = System.currentTimeMillis();
+            evict(now - currentMaxIdleTime);
+            this.nextEvictionDate = now + currentMaxIdleTime;
+        }
+    }
+
+    /**
+     * Check idle Component Managers at most once every {@link #getMaxIdleTime()} and without blocking lookups.
+     */
+    private void evictIdleComponentManagersIfNeeded()
+    {
+        if (this.maxIdleTime > 0 && System.currentTimeMillis() >= this.nextEvictionDate
+            && this.evicting.compareAndSet(false, true)) {
+            try {
+                evictIdleComponentManagers();
+            } finally {
+                this.evicting.set(false);
+            }
+        }
+    }
+
+    /**
+     * @param date the date before which a Component Manager is considered idle
+     */
+    private void evict(long date)
+    {
+        for (Map.Entry<String, ComponentManagerEntry> entry : this.componentManagers.entrySet()) {
+            try {
+                if (entry.getValue().evict(date)) {
+                    this.componentManagers.remove(entry.getKey(), entry.getValue());
+                    this.logger.debug("Evicted idle Component Manager [{}]", entry.getKey());
+                }
+            } catch (ComponentLifecycleException e) {
+                this.logger.warn("Failed to release the components of the idle Component Manager [{}]",
+                    new Object[] {entry.getKey(), e});
+            }
+        }
+    }
+
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        for (ComponentManagerEntry entry : this.componentManagers.values()) {
+            entry.evict(Long.MAX_VALUE);
+        }
+        this.componentManagers.clear();
+    }
+
     /**
      * Create a new {@link ComponentManager} for the provided id.
      * 
@@ -20,10 +20,12 @@
 package org.xwiki.component.internal.multi;
 
 import java.lang.reflect.Type;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.manager.BatchComponentManager;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -36,7 +38,7 @@
  * @version $Id$
  * @since 3.3M2
  */
-public class DelegateComponentManager implements ComponentManager
+public class DelegateComponentManager implements BatchComponentManager
 {
     /**
      * @see #getComponentManager()
@@ -132,12 +134,55 @@ public void unregisterComponent(ComponentDescriptor< ? > classComponentDescripto
         getComponentManager().unregisterComponent(classComponentDescriptor);
     }
 
+    @Override
+    public void registerComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors)
+        throws ComponentRepositoryException
+    {
+        ComponentManager manager = getComponentManager();
+
+        if (manager instanceof BatchComponentManager) {
+            ((BatchComponentManager) manager).registerComponents(componentDescriptors);
+        } else {
+            for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+                manager.registerComponent(componentDescriptor);
+            }
+        }
+    }
+
+    @Override
+    public void unregisterComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors)
+    {
+        ComponentManager manager = getComponentManager();
+
+        if (manager instanceof BatchComponentManager) {
+            ((BatchComponentManager) manager).unregisterComponents(componentDescriptors);
+        } else {
+            for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+                manager.unregisterComponent(componentDescriptor);
+            }
+        }
+    }
+
     @Override
     public void release(Object component) throws ComponentLifecycleException
     {
         getComponentManager().release(component);
     }
 
+    @Override
+    public void releaseAll(Collection< ? > components) throws ComponentLifecycleException
+    {
+        ComponentManager manager = getComponentManager();
+
+        if (manager instanceof BatchComponentManager) {
+            ((BatchComponentManager) manager).releaseAll(components);
+        } else {
+            for (Object component : components) {
+                manager.release(component);
+            }
+        }
+    }
+
     @Override
     public ComponentEventManager getComponentEventManager()
     {
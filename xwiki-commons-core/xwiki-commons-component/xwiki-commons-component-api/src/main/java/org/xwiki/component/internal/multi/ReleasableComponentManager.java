@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.multi;
+
+import org.xwiki.component.manager.ComponentLifecycleException;
+
+/**
+ * A Component Manager able to tell what it contains and to release the component instances it holds, used by
+ * {@link ComponentManagerManager} to report about and reduce the memory used by namespace Component Managers.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface ReleasableComponentManager
+{
+    /**
+     * @return the number of components registered in this Component Manager (the ones registered in its parents are
+     *         not taken into account), not counting the Component Manager itself
+     */
+    int getComponentCount();
+
+    /**
+     * @return the number of component instances held by this Component Manager (i.e. created singletons), not counting
+     *         the Component Manager itself
+     */
+    int getInstanceCount();
+
+    /**
+     * Release all the component instances which can be created again when needed. The components stay registered.
+     * Released components implementing {@link org.xwiki.component.phase.Disposable} are disposed and the unregistration
+     * and registration events are sent for them, like when they are released individually.
+     * 
+     * @throws ComponentLifecycleException if an error happens during a component's destruction
+     */
+    void releaseInstances() throws ComponentLifecycleException;
+}
@@ -0,0 +1,53 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.manager;
+
+import java.util.Collection;
+
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * A {@link ComponentEventManager} able to send a single notification for several components registered or
+ * unregistered at once (see {@link BatchComponentManager}). Component Managers fallback on one notification per
+ * component when their {@link ComponentEventManager} does not implement this interface.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface BatchComponentEventManager extends ComponentEventManager
+{
+    /**
+     * Notify all listeners that several components have been registered at once.
+     * 
+     * @param descriptors the descriptors of the registered components
+     * @param componentManager the ComponentManager where the components have been registered
+     */
+    void notifyComponentsRegistered(Collection< ? extends ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager);
+
+    /**
+     * Notify all listeners that several components have been unregistered at once.
+     * 
+     * @param descriptors the descriptors of the unregistered components
+     * @param componentManager the ComponentManager from where the components have been unregistered
+     */
+    void notifyComponentsUnregistered(Collection< ? extends ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager);
+}
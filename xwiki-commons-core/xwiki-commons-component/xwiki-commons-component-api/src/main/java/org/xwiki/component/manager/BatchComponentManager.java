@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.manager;
+
+import java.util.Collection;
+
+import org.xwiki.component.descriptor.ComponentDescriptor;
+
+/**
+ * A {@link ComponentManager} able to register, unregister and release several components at once. Callers should
+ * check if the Component Manager they have implements this interface and fallback on
+ * {@link ComponentManager#registerComponent(ComponentDescriptor)},
+ * {@link ComponentManager#unregisterComponent(ComponentDescriptor)} and {@link ComponentManager#release(Object)}
+ * otherwise.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface BatchComponentManager extends ComponentManager
+{
+    /**
+     * Add several components in the component repository dynamically. The whole batch is made visible to lookups at
+     * once and the listeners are notified once for the whole batch when the {@link ComponentEventManager} supports it
+     * (see {@link BatchComponentEventManager}).
+     * <p>
+     * If a component with the same role and role hint already exists it will be replaced by the provided one when
+     * lookup. If the passed collection contains several components with the same role and role hint the last one wins.
+     * 
+     * @param componentDescriptors the descriptors of the components to register
+     * @throws ComponentRepositoryException error when registering component descriptors
+     */
+    void registerComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors)
+        throws ComponentRepositoryException;
+
+    /**
+     * Remove several components from the component repository dynamically. As with
+     * {@link #unregisterComponent(ComponentDescriptor)} a component is only removed if the registered descriptor is
+     * equal to the passed one.
+     * 
+     * @param componentDescriptors the descriptors of the components to unregister
+     */
+    void unregisterComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors);
+
+    /**
+     * Release the provided singleton instances but don't unregister their component descriptors, same as calling
+     * {@link #release(Object)} for each of them.
+     * 
+     * @param componentInstances the components to release passed as component instances
+     * @throws ComponentLifecycleException if the ending lifecycle of one of the components raises an error (the other
+     *             components are released anyway)
+     */
+    void releaseAll(Collection< ? > componentInstances) throws ComponentLifecycleException;
+}
@@ -35,6 +35,11 @@
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.inject.Provider;
 
@@ -43,6 +48,7 @@
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.internal.RoleHint;
+import org.xwiki.component.manager.BatchComponentManager;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.component.util.DefaultParameterizedType;
 import org.xwiki.component.util.ReflectionUtils;
@@ -61,6 +67,14 @@
      */
     public static final String COMPONENT_LIST = "META-INF/components.txt";
 
+    /**
+     * Location in the classloader of the file containing the precomputed Component Descriptors of the components
+     * declared in {@link #COMPONENT_LIST} (see {@link ComponentDescriptorIndex}).
+     * 
+     * @since 4.2M2
+     */
+    public static final String COMPONENT_INDEX = "META-INF/components-index.txt";
+
     /**
      * Location in the classloader of the file specifying which component implementation to use when several components
      * with the same role/hint are found.
@@ -70,21 +84,51 @@
     @Deprecated
     public static final String COMPONENT_OVERRIDE_LIST = "META-INF/component-overrides.txt";
 
+    /**
+     * Name of the system property which can be used to set the default number of threads used to create Component
+     * Descriptors (see {@link #setRegistrationThreads(int)}).
+     * 
+     * @since 4.2M2
+     */
+    public static final String REGISTRATION_THREADS_PROPERTY = "xwiki.component.registrationThreads";
+
     /**
      * The encoding used to parse component list files.
      */
     private static final String COMPONENT_LIST_ENCODING = "UTF-8";
 
+    /**
+     * The component descriptor indexes already read.
+     */
+    private static final ComponentDescriptorIndexCache INDEXES = new ComponentDescriptorIndexCache();
+
     /**
      * Factory to create a Component Descriptor from an annotated class.
      */
     private ComponentDescriptorFactory factory = new ComponentDescriptorFactory();
 
+    /**
+     * @see #setRegistrationThreads(int)
+     */
+    private int registrationThreads = Integer.getInteger(REGISTRATION_THREADS_PROPERTY, 1);
+
     /**
      * Logger to use for logging...
      */
     private static final Logger LOGGER = LoggerFactory.getLogger(ComponentAnnotationLoader.class);
 
+    /**
+     * @param registrationThreads the number of threads to use to load component classes and create their Component
+     *            Descriptors; 1 (the default) means everything is done in the calling thread. Descriptors are always
+     *            registered in the calling thread and in declaration order so the priorities are handled exactly the
+     *            same way whatever the number of threads.
+     * @since 4.2M2
+     */
+    public void setRegistrationThreads(int registrationThreads)
+    {
+        this.registrationThreads = registrationThreads;
+    }
+
     /**
      * Loads all components defined using annotations.
      * 
@@ -151,27 +195,31 @@ public void register(ComponentManager manager, ClassLoader classLoader,
                 new HashMap<RoleHint< ? >, ComponentDescriptor< ? >>();
             Map<RoleHint< ? >, Integer> priorityMap = new HashMap<RoleHint< ? >, Integer>();
 
-            for (ComponentDeclaration componentDeclaration : componentDeclarations) {
-                Class< ? > componentClass = classLoader.loadClass(componentDeclaration.getImplementationClassName());
-
-                // Look for ComponentRole annotations and register one component per ComponentRole found
-                for (Type componentRoleType : findComponentRoleTypes(componentClass)) {
-                    for (ComponentDescriptor< ? > componentDescriptor : this.factory.createComponentDescriptors(
-                        componentClass, componentRoleType)) {
-                        // If there's already a existing role/hint in the list of descriptors then decide which one
-                        // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
-                        RoleHint< ? > roleHint =
-                            new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
-
-                        addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration,
-                            true);
-                    }
+            // Precomputed descriptors, if any
+            ComponentDescriptorIndex index = getComponentDescriptorIndex(classLoader);
+
+            List<List<ComponentDescriptor>> declarationsDescriptors =
+                getComponentsDescriptors(classLoader, componentDeclarations, index);
+
+            for (int i = 0; i < componentDeclarations.size(); ++i) {
+                ComponentDeclaration componentDeclaration = componentDeclarations.get(i);
+                for (ComponentDescriptor< ? > componentDescriptor : declarationsDescriptors.get(i)) {
+                    // If there's already a existing role/hint in the list of descriptors then decide which one
+                    // to keep by looking at their priorities. Highest priority wins (i.e. lowest integer value).
+                    RoleHint< ? > roleHint =
+                        new RoleHint(componentDescriptor.getRoleType(), componentDescriptor.getRoleHint());
+
+                    addComponent(descriptorMap, priorityMap, roleHint, componentDescriptor, componentDeclaration, true);
                 }
             }
 
-            // 3) Activate all component descriptors
-            for (ComponentDescriptor< ? > descriptor : descriptorMap.values()) {
-                manager.registerComponent(descriptor);
+            // 3) Activate all component descriptors, at once when the Component Manager supports it
+            if (manager instanceof BatchComponentManager) {
+                ((BatchComponentManager) manager).registerComponents(descriptorMap.values());
+            } else {
+                for (ComponentDescriptor< ? > descriptor : descriptorMap.values()) {
+                    manager.registerComponent(descriptor);
+                }
             }
         } catch (Exception e) {
             // Make sure we make the calling code fail in order to fail fast and prevent the application to start
@@ -180,6 +228,126 @@ public void register(ComponentManager manager, ClassLoader classLoader,
         }
     }
 
+    /**
+     * Get the descriptors of each passed component declaration, possibly using several threads.
+     * 
+     * @return the descriptors of each component declaration, in the same order as the passed declarations
+     */
+    private List<List<ComponentDescriptor>> getComponentsDescriptors(final ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations, final ComponentDescriptorIndex index) throws Exception
+    {
+        List<List<ComponentDescriptor>> declarationsDescriptors =
+            new ArrayList<List<ComponentDescriptor>>(componentDeclarations.size());
+
+        if (this.registrationThreads > 1 && componentDeclarations.size() > 1) {
+            ExecutorService executor =
+                Executors.newFixedThreadPool(Math.min(this.registrationThreads, componentDeclarations.size()));
+            try {
+                List<Future<List<ComponentDescriptor>>> futures =
+                    new ArrayList<Future<List<ComponentDescriptor>>>(componentDeclarations.size());
+                for (final ComponentDeclaration componentDeclaration : componentDeclarations) {
+                    futures.add(executor.submit(new Callable<List<ComponentDescriptor>>()
+                    {
+                        @Override
+                        public List<ComponentDescriptor> call() throws Exception
+                        {
+                            return getComponentsDescriptors(classLoader, componentDeclaration, index);
+                        }
+                    }));
+                }
+
+                for (Future<List<ComponentDescriptor>> future : futures) {
+                    try {
+                        declarationsDescriptors.add(future.get());
+                    } catch (ExecutionException e) {
+                        throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } else {
+            for (ComponentDeclaration componentDeclaration : componentDeclarations) {
+                declarationsDescriptors.add(getComponentsDescriptors(classLoader, componentDeclaration, index));
+            }
+        }
+
+        return declarationsDescriptors;
+    }
+
+    /**
+     * Get the descriptors of the declared component from the index when available and by introspecting the component
+     * implementation class otherwise.
+     */
+    private List<ComponentDescriptor> getComponentsDescriptors(ClassLoader classLoader,
+        ComponentDeclaration componentDeclaration, ComponentDescriptorIndex index) throws ClassNotFoundException
+    {
+        String implementationClassName = componentDeclaration.getImplementationClassName();
+
+        if (index.contains(implementationClassName)) {
+            try {
+                return index.getComponentDescriptors(implementationClassName, classLoader);
+            } catch (Exception e) {
+                getLogger().debug("Failed to read indexed descriptors of component [{}]. Introspecting it instead.",
+                    implementationClassName, e);
+            }
+        }
+
+        return getComponentsDescriptors(classLoader.loadClass(implementationClassName));
+    }
+
+    /**
+     * Get all the component descriptor indexes ({@link #COMPONENT_INDEX}) available in the passed classloader.
+     * 
+     * @param classLoader the classloader to use to find the indexes
+     * @return the aggregated index (empty if no index could be found)
+     */
+    private ComponentDescriptorIndex getComponentDescriptorIndex(ClassLoader classLoader)
+    {
+        ComponentDescriptorIndex index;
+
+        try {
+            index = INDEXES.get(classLoader);
+        } catch (IOException e) {
+            getLogger().warn("Failed to read component descriptor indexes. Introspecting all components instead.", e);
+
+            index = new ComponentDescriptorIndex();
+        }
+
+        return index;
+    }
+
+    /**
+     * Create an index of the Component Descriptors of the passed component declarations. Components which cannot be
+     * loaded or represented in the index are skipped and will be introspected when registered.
+     * <p>
+     * This is meant to be called at build time, see {@link ComponentDescriptorIndexMain}.
+     * 
+     * @param classLoader the classloader to use to load component implementation classes
+     * @param componentDeclarations the declarations of the components to index
+     * @return the index
+     * @since 4.2M2
+     */
+    public ComponentDescriptorIndex createComponentDescriptorIndex(ClassLoader classLoader,
+        List<ComponentDeclaration> componentDeclarations)
+    {
+        ComponentDescriptorIndex index = new ComponentDescriptorIndex();
+
+        for (ComponentDeclaration componentDeclaration : componentDeclarations) {
+            String implementationClassName = componentDeclaration.getImplementationClassName();
+            try {
+                if (!index.add(implementationClassName,
+                    getComponentsDescriptors(classLoader.loadClass(implementationClassName)))) {
+                    getLogger().debug("Component [{}] can't be indexed", implementationClassName);
+                }
+            } catch (Throwable e) {
+                getLogger().warn("Failed to index component [{}]: {}", implementationClassName, e.getMessage());
+            }
+        }
+
+        return index;
+    }
+
     private void addComponent(Map<RoleHint< ? >, ComponentDescriptor< ? >> descriptorMap,
         Map<RoleHint< ? >, Integer> priorityMap, RoleHint< ? > roleHint, ComponentDescriptor< ? > componentDescriptor,
         ComponentDeclaration componentDeclaration, boolean warn)
@@ -224,11 +392,13 @@ private void addComponent(Map<RoleHint< ? >, ComponentDescriptor< ? >> descripto
     public void unregister(ComponentManager manager, ClassLoader classLoader,
         List<ComponentDeclaration> componentDeclarations)
     {
+        List<ComponentDescriptor< ? >> descriptors = new ArrayList<ComponentDescriptor< ? >>();
+
         for (ComponentDeclaration componentDeclaration : componentDeclarations) {
             try {
                 for (ComponentDescriptor< ? > componentDescriptor : getComponentsDescriptors(classLoader
                     .loadClass(componentDeclaration.getImplementationClassName()))) {
-                    manager.unregisterComponent(componentDescriptor);
+                    descriptors.add(componentDescriptor);
 
                     if (componentDescriptor.getRoleType() instanceof ParameterizedType) {
                         Class roleClass = ReflectionUtils.getTypeClass(componentDescriptor.getRoleType());
@@ -237,7 +407,7 @@ public void unregister(ComponentManager manager, ClassLoader classLoader,
                             new DefaultComponentDescriptor(componentDescriptor);
                         classComponentDescriptor.setRoleType(roleClass);
 
-                        manager.unregisterComponent(classComponentDescriptor);
+                        descriptors.add(classComponentDescriptor);
                     }
 
                 }
@@ -246,6 +416,15 @@ public void unregister(ComponentManager manager, ClassLoader classLoader,
                     componentDeclaration.getImplementationClassName());
             }
         }
+
+        // Unregister all the component descriptors, at once when the Component Manager supports it
+        if (manager instanceof BatchComponentManager) {
+            ((BatchComponentManager) manager).unregisterComponents(descriptors);
+        } else {
+            for (ComponentDescriptor< ? > descriptor : descriptors) {
+                manager.unregisterComponent(descriptor);
+            }
+        }
     }
 
     public List<ComponentDescriptor> getComponentsDescriptors(Class< ? > componentClass)
@@ -0,0 +1,426 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.lang3.StringUtils;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Precomputed Component Descriptors of the components declared in a {@code META-INF/components.txt} file. Registering
+ * components from the index avoids introspecting each component implementation class (role types resolution,
+ * annotations and injected fields lookup) when the application starts.
+ * <p>
+ * The index is stored in {@code META-INF/components-index.txt} (see {@link ComponentAnnotationLoader#COMPONENT_INDEX})
+ * and contains one line per Component Descriptor:
+ * {@code implementation<TAB>role type<TAB>role hint<TAB>instantiation strategy} followed by one
+ * {@code <TAB>name|role type|role hint|hints} group per component dependency. Types are written using binary class
+ * names and {@code <...>} for generic arguments, hints are escaped and {@code !} stands for {@code null}.
+ * <p>
+ * Components which cannot be represented in the index (for example because they use type variables) are simply not
+ * indexed and {@link ComponentAnnotationLoader} falls back on introspection for them.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentDescriptorIndex
+{
+    /**
+     * The first line of an index file, used to make sure we don't read an index using an unknown format.
+     */
+    public static final String HEADER = "#xwiki-components-index:1";
+
+    /**
+     * The encoding used to read and write index files.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Separate the fields of a Component Descriptor.
+     */
+    private static final char FIELD_SEPARATOR = '\t';
+
+    /**
+     * Separate the fields of a component dependency.
+     */
+    private static final char DEPENDENCY_FIELD_SEPARATOR = '|';
+
+    /**
+     * Separate the hints of a component dependency.
+     */
+    private static final char HINT_SEPARATOR = ',';
+
+    /**
+     * Stands for {@code null} values. Can't be mistaken for an encoded value since this character is always escaped.
+     */
+    private static final String NULL = "!";
+
+    /**
+     * The characters to escape in hints.
+     */
+    private static final String[] DECODED = new String[] {"%", "\t", "\n", "\r", "|", ",", NULL};
+
+    /**
+     * The escaped version of {@link #DECODED}.
+     */
+    private static final String[] ENCODED = new String[] {"%25", "%09", "%0A", "%0D", "%7C", "%2C", "%21"};
+
+    /**
+     * The serialized Component Descriptors indexed by component implementation class name.
+     */
+    private final Map<String, List<String>> entries = new LinkedHashMap<String, List<String>>();
+
+    /**
+     * Create an empty index.
+     */
+    public ComponentDescriptorIndex()
+    {
+    }
+
+    /**
+     * Create a copy of the passed index.
+     *
+     * @param index the index to copy
+     */
+    public ComponentDescriptorIndex(ComponentDescriptorIndex index)
+    {
+        for (String className : index.entries.keySet()) {
+            this.entries.put(className, new ArrayList<String>(index.entries.get(className)));
+        }
+    }
+
+    /**
+     * @param implementationClassName the name of a component implementation class
+     * @return true if the Component Descriptors of the passed component implementation are indexed
+     */
+    public boolean contains(String implementationClassName)
+    {
+        return this.entries.containsKey(implementationClassName);
+    }
+
+    /**
+     * @return true if no component is indexed
+     */
+    public boolean isEmpty()
+    {
+        return this.entries.isEmpty();
+    }
+
+    /**
+     * Index the Component Descriptors of a component implementation.
+     *
+     * @param implementationClassName the name of the component implementation class
+     * @param descriptors the Component Descriptors created for the component implementation
+     * @return true if the descriptors have been indexed, false if one of them can't be represented in the index
+     */
+    public boolean add(String implementationClassName, List<ComponentDescriptor> descriptors)
+    {
+        List<String> lines = new ArrayList<String>(descriptors.size());
+
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            String line = serializeDescriptor(descriptor);
+            if (line == null) {
+                return false;
+            }
+            lines.add(line);
+        }
+
+        this.entries.put(implementationClassName, lines);
+
+        return true;
+    }
+
+    /**
+     * Create the indexed Component Descriptors of a component implementation.
+     *
+     * @param implementationClassName the name of the component implementation class
+     * @param classLoader the class loader to use to resolve implementation and role classes
+     * @return the Component Descriptors or null if the component implementation is not indexed
+     * @throws ClassNotFoundException when one of the indexed classes cannot be found
+     */
+    public List<ComponentDescriptor> getComponentDescriptors(String implementationClassName, ClassLoader classLoader)
+        throws ClassNotFoundException
+    {
+        List<String> lines = this.entries.get(implementationClassName);
+
+        if (lines == null) {
+            return null;
+        }
+
+        List<ComponentDescriptor> descriptors = new ArrayList<ComponentDescriptor>(lines.size());
+        for (String line : lines) {
+            descriptors.add(parseDescriptor(line, classLoader));
+        }
+
+        return descriptors;
+    }
+
+    /**
+     * Add to this index the entries contained in the passed stream. Streams which don't start with the expected
+     * {@link #HEADER} are ignored.
+     *
+     * @param stream the stream to read
+     * @throws IOException when failing to read the stream
+     */
+    public void read(InputStream stream) throws IOException
+    {
+        BufferedReader in = new BufferedReader(new InputStreamReader(stream, ENCODING));
+
+        if (HEADER.equals(in.readLine())) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.length() > 0) {
+                    String implementationClassName = StringUtils.substringBefore(line, String.valueOf(FIELD_SEPARATOR));
+
+                    List<String> lines = this.entries.get(implementationClassName);
+                    if (lines == null) {
+                        lines = new ArrayList<String>();
+                        this.entries.put(implementationClassName, lines);
+                    }
+                    lines.add(line);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write this index.
+     *
+     * @param writer the writer where to write the index
+     * @throws IOException when failing to write the index
+     */
+    public void write(Writer writer) throws IOException
+    {
+        writer.write(HEADER);
+        writer.write('\n');
+
+        for (List<String> lines : this.entries.values()) {
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+        }
+    }
+
+    // Serialization
+
+    /**
+     * @param descriptor the Component Descriptor to serialize
+     * @return the index line representing the passed descriptor or null if it can't be represented in the index
+     */
+    private String serializeDescriptor(ComponentDescriptor< ? > descriptor)
+    {
+        StringBuilder builder = new StringBuilder();
+
+        builder.append(descriptor.getImplementation().getName());
+        builder.append(FIELD_SEPARATOR);
+        boolean supported = serializeType(descriptor.getRoleType(), builder);
+        builder.append(FIELD_SEPARATOR);
+        builder.append(encode(descriptor.getRoleHint()));
+        builder.append(FIELD_SEPARATOR);
+        builder.append(descriptor.getInstantiationStrategy().name());
+
+        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+            builder.append(FIELD_SEPARATOR);
+            builder.append(dependency.getName());
+            builder.append(DEPENDENCY_FIELD_SEPARATOR);
+            supported &= serializeType(dependency.getRoleType(), builder);
+            builder.append(DEPENDENCY_FIELD_SEPARATOR);
+            builder.append(encode(dependency.getRoleHint()));
+            builder.append(DEPENDENCY_FIELD_SEPARATOR);
+            serializeHints(dependency.getHints(), builder);
+        }
+
+        return supported ? builder.toString() : null;
+    }
+
+    /**
+     * @param type the type to serialize
+     * @param builder the builder where to append the serialized type
+     * @return false if the type can't be represented in the index
+     */
+    private boolean serializeType(Type type, StringBuilder builder)
+    {
+        boolean supported;
+
+        if (type instanceof Class) {
+            builder.append(((Class< ? >) type).getName());
+            supported = true;
+        } else if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+            Class< ? > rawType = (Class< ? >) parameterizedType.getRawType();
+
+            // The owner is deduced from the raw type when parsing
+            supported = parameterizedType.getOwnerType() == rawType.getDeclaringClass();
+
+            builder.append(rawType.getName());
+            builder.append('<');
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            for (int i = 0; i < arguments.length; ++i) {
+                if (i > 0) {
+                    builder.append(HINT_SEPARATOR);
+                }
+                supported &= serializeType(arguments[i], builder);
+            }
+            builder.append('>');
+        } else {
+            supported = false;
+        }
+
+        return supported;
+    }
+
+    /**
+     * @param hints the dependency hints to serialize
+     * @param builder the builder where to append the serialized hints
+     */
+    private void serializeHints(String[] hints, StringBuilder builder)
+    {
+        if (hints != null) {
+            for (int i = 0; i < hints.length; ++i) {
+                if (i > 0) {
+                    builder.append(HINT_SEPARATOR);
+                }
+                builder.append(encode(hints[i]));
+            }
+        } else {
+            builder.append(NULL);
+        }
+    }
+
+    /**
+     * @param value the value to encode
+     * @return the encoded value
+     */
+    private String encode(String value)
+    {
+        return value != null ? StringUtils.replaceEach(value, DECODED, ENCODED) : NULL;
+    }
+
+    // Parsing
+
+    /**
+     * @param line the index line to parse
+     * @param classLoader the class loader to use to resolve classes
+     * @return the Component Descriptor
+     * @throws ClassNotFoundException when one of the indexed classes cannot be found
+     */
+    @SuppressWarnings("unchecked")
+    private ComponentDescriptor parseDescriptor(String line, ClassLoader classLoader) throws ClassNotFoundException
+    {
+        String[] fields = StringUtils.splitPreserveAllTokens(line, FIELD_SEPARATOR);
+
+        DefaultComponentDescriptor descriptor = new DefaultComponentDescriptor();
+        descriptor.setImplementation(Class.forName(fields[0], false, classLoader));
+        descriptor.setRoleType(parseType(fields[1], classLoader));
+        descriptor.setRoleHint(decode(fields[2]));
+        descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.valueOf(fields[3]));
+
+        for (int i = 4; i < fields.length; ++i) {
+            String[] dependencyFields = StringUtils.splitPreserveAllTokens(fields[i], DEPENDENCY_FIELD_SEPARATOR);
+
+            DefaultComponentDependency dependency = new DefaultComponentDependency();
+            dependency.setName(dependencyFields[0]);
+            dependency.setRoleType(parseType(dependencyFields[1], classLoader));
+            dependency.setRoleHint(decode(dependencyFields[2]));
+            if (!NULL.equals(dependencyFields[3])) {
+                String[] hints = StringUtils.splitPreserveAllTokens(dependencyFields[3], HINT_SEPARATOR);
+                for (int j = 0; j < hints.length; ++j) {
+                    hints[j] = decode(hints[j]);
+                }
+                dependency.setHints(hints);
+            }
+
+            descriptor.addComponentDependency(dependency);
+        }
+
+        return descriptor;
+    }
+
+    /**
+     * @param value the serialized type
+     * @param classLoader the class loader to use to resolve classes
+     * @return the type
+     * @throws ClassNotFoundException when one of the classes cannot be found
+     */
+    private Type parseType(String value, ClassLoader classLoader) throws ClassNotFoundException
+    {
+        return parseType(value, new int[1], classLoader);
+    }
+
+    /**
+     * @param value the serialized type
+     * @param position the current parsing position, updated to the position following the parsed type
+     * @param classLoader the class loader to use to resolve classes
+     * @return the type
+     * @throws ClassNotFoundException when one of the classes cannot be found
+     */
+    private Type parseType(String value, int[] position, ClassLoader classLoader) throws ClassNotFoundException
+    {
+        int start = position[0];
+        int end = StringUtils.indexOfAny(value.substring(start), "<>,");
+        end = end < 0 ? value.length() : start + end;
+
+        Class< ? > rawType = Class.forName(value.substring(start, end), false, classLoader);
+        position[0] = end;
+
+        if (end == value.length() || value.charAt(end) != '<') {
+            return rawType;
+        }
+
+        List<Type> arguments = new ArrayList<Type>();
+        do {
+            // Skip '<' or ','
+            ++position[0];
+            arguments.add(parseType(value, position, classLoader));
+        } while (position[0] < value.length() && value.charAt(position[0]) == HINT_SEPARATOR);
+
+        // Skip '>'
+        ++position[0];
+
+        return new DefaultParameterizedType(rawType.getDeclaringClass(), rawType,
+            arguments.toArray(new Type[arguments.size()]));
+    }
+
+    /**
+     * @param value the value to decode
+     * @return the decoded value
+     */
+    private String decode(String value)
+    {
+        return NULL.equals(value) ? null : StringUtils.replaceEach(value, ENCODED, DECODED);
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+/**
+ * The component descriptor indexes ({@link ComponentAnnotationLoader#COMPONENT_INDEX}) already read, per classloader,
+ * so that they are not parsed again each time components are registered.
+ * <p>
+ * The index files are still listed each time since URLs can be added to a classloader (extension classloaders for
+ * example) but only the new ones are read. The classloaders are weakly referenced so that they can be garbage
+ * collected.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+final class ComponentDescriptorIndexCache
+{
+    /**
+     * The indexes read from a classloader.
+     * 
+     * @version $Id$
+     */
+    private static class ClassLoaderIndex
+    {
+        /**
+         * The index files already read.
+         */
+        private final Set<String> urls = new HashSet<String>();
+
+        /**
+         * The aggregated index. Never modified once published since it may be used by several threads: a copy is
+         * created when new index files are found.
+         */
+        private ComponentDescriptorIndex index = new ComponentDescriptorIndex();
+    }
+
+    /**
+     * The indexes read from each classloader. Only accessed while synchronized.
+     */
+    private final Map<ClassLoader, ClassLoaderIndex> indexes = new WeakHashMap<ClassLoader, ClassLoaderIndex>();
+
+    /**
+     * @param classLoader the classloader to use to find the indexes
+     * @return the aggregated index of all the index files available in the passed classloader
+     * @throws IOException when failing to read an index file
+     */
+    synchronized ComponentDescriptorIndex get(ClassLoader classLoader) throws IOException
+    {
+        ClassLoaderIndex classLoaderIndex = this.indexes.get(classLoader);
+        if (classLoaderIndex == null) {
+            classLoaderIndex = new ClassLoaderIndex();
+            this.indexes.put(classLoader, classLoaderIndex);
+        }
+
+        ComponentDescriptorIndex index = classLoaderIndex.index;
+        List<String> newURLs = new ArrayList<String>();
+
+        Enumeration<URL> urls = classLoader.getResources(ComponentAnnotationLoader.COMPONENT_INDEX);
+        while (urls.hasMoreElements()) {
+            URL url = urls.nextElement();
+
+            if (!classLoaderIndex.urls.contains(url.toExternalForm())) {
+                if (index == classLoaderIndex.index) {
+                    index = new ComponentDescriptorIndex(classLoaderIndex.index);
+                }
+
+                InputStream indexStream = url.openStream();
+                try {
+                    index.read(indexStream);
+                } finally {
+                    indexStream.close();
+                }
+
+                newURLs.add(url.toExternalForm());
+            }
+        }
+
+        classLoaderIndex.urls.addAll(newURLs);
+        classLoaderIndex.index = index;
+
+        return index;
+    }
+}
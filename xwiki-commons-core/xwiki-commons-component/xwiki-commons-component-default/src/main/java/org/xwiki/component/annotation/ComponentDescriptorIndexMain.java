@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Generate the {@link ComponentAnnotationLoader#COMPONENT_INDEX} file of a build output directory from its
+ * {@link ComponentAnnotationLoader#COMPONENT_LIST} file. Executed after the classes have been compiled, with the module
+ * classes and dependencies in the context classloader (the {@code component-index} profile of the XWiki Commons Core
+ * parent POM runs it with the Exec Maven Plugin in the {@code process-classes} phase).
+ * <p>
+ * Usage: {@code ComponentDescriptorIndexMain <classes directory>}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public final class ComponentDescriptorIndexMain
+{
+    /**
+     * Utility class.
+     */
+    private ComponentDescriptorIndexMain()
+    {
+    }
+
+    /**
+     * @param args the build output directory containing the {@code META-INF/components.txt} file to index
+     * @throws IOException when failing to read the component list or to write the index
+     */
+    public static void main(String[] args) throws IOException
+    {
+        File classesDirectory = new File(args[0]);
+        File componentList = new File(classesDirectory, ComponentAnnotationLoader.COMPONENT_LIST);
+
+        if (!componentList.exists()) {
+            return;
+        }
+
+        ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+
+        List<ComponentDeclaration> componentDeclarations;
+        InputStream componentListStream = new FileInputStream(componentList);
+        try {
+            componentDeclarations = loader.getDeclaredComponents(componentListStream);
+        } finally {
+            componentListStream.close();
+        }
+
+        ComponentDescriptorIndex index =
+            loader.createComponentDescriptorIndex(Thread.currentThread().getContextClassLoader(),
+                componentDeclarations);
+
+        Writer writer =
+            new OutputStreamWriter(new FileOutputStream(new File(classesDirectory,
+                ComponentAnnotationLoader.COMPONENT_INDEX)), "UTF-8");
+        try {
+            index.write(writer);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.xwiki.component.internal.RoleHint;
+
+/**
+ * Usage statistics of the components of an {@link EmbeddableComponentManager}: lookups, misses, delegations to the
+ * parent Component Manager, instance creations and initializations. All times are in nanoseconds.
+ * <p>
+ * Collecting statistics has a cost so it's disabled by default. It can be enabled by setting the
+ * {@value #ENABLED_PROPERTY} system property to {@code true} (to get statistics from the very beginning of the
+ * Component Manager life) or with {@link EmbeddableComponentManager#setStatistics(ComponentManagerStatistics)}.
+ * <p>
+ * Lookups of missing components are recorded too and their role hints can come from user input (script services for
+ * example) so the number of tracked components is limited (see {@link #DEFAULT_MAX_COMPONENTS}). The usage of
+ * components beyond that limit is not recorded.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentManagerStatistics
+{
+    /**
+     * The system property used to enable statistics on newly created {@link EmbeddableComponentManager}s.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.component.statistics";
+
+    /**
+     * The default maximum number of components for which statistics are kept.
+     */
+    public static final int DEFAULT_MAX_COMPONENTS = 10000;
+
+    /**
+     * The statistics of each component.
+     */
+    private final ConcurrentMap<RoleHint< ? >, ComponentStatistics> components =
+        new ConcurrentHashMap<RoleHint< ? >, ComponentStatistics>();
+
+    /**
+     * Collects the usage of the components beyond the limit, never exposed.
+     */
+    private final ComponentStatistics untracked = new ComponentStatistics(Object.class, "untracked");
+
+    /**
+     * The maximum number of components for which statistics are kept.
+     */
+    private final int maxComponents;
+
+    /**
+     * @see #getInitializationTime()
+     */
+    private volatile long initializationTime;
+
+    /**
+     * Keep the statistics of at most {@link #DEFAULT_MAX_COMPONENTS} components.
+     */
+    public ComponentManagerStatistics()
+    {
+        this(DEFAULT_MAX_COMPONENTS);
+    }
+
+    /**
+     * @param maxComponents the maximum number of components for which statistics are kept
+     */
+    public ComponentManagerStatistics(int maxComponents)
+    {
+        this.maxComponents = maxComponents;
+    }
+
+    /**
+     * @return the statistics of all the components which have been used
+     */
+    public Collection<ComponentStatistics> getComponentStatistics()
+    {
+        return new ArrayList<ComponentStatistics>(this.components.values());
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @return the statistics of the component or null if it has never been used
+     */
+    public ComponentStatistics getComponentStatistics(Type roleType, String roleHint)
+    {
+        return this.components.get(new RoleHint<Object>(roleType, roleHint));
+    }
+
+    /**
+     * @return the time spent in {@link EmbeddableComponentManager#initialize(ClassLoader)}
+     */
+    public long getInitializationTime()
+    {
+        return this.initializationTime;
+    }
+
+    /**
+     * @param initializationTime the time spent in {@link EmbeddableComponentManager#initialize(ClassLoader)}
+     */
+    void setInitializationTime(long initializationTime)
+    {
+        this.initializationTime = initializationTime;
+    }
+
+    /**
+     * Forget all the components statistics.
+     */
+    public void reset()
+    {
+        this.components.clear();
+    }
+
+    /**
+     * @param roleHint the component identifier
+     * @return the statistics of the component, created if needed, or a throwaway instance when the maximum number of
+     *         tracked components has been reached
+     */
+    ComponentStatistics get(RoleHint< ? > roleHint)
+    {
+        ComponentStatistics statistics = this.components.get(roleHint);
+        if (statistics == null) {
+            if (this.components.size() >= this.maxComponents) {
+                return this.untracked;
+            }
+
+            statistics = new ComponentStatistics(roleHint.getRoleType(), roleHint.getHint());
+            ComponentStatistics existingStatistics = this.components.putIfAbsent(roleHint, statistics);
+            if (existingStatistics != null) {
+                statistics = existingStatistics;
+            }
+        }
+
+        return statistics;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Usage statistics of a component (identified by its role type and role hint) in a Component Manager. All times are
+ * in nanoseconds.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ * @see ComponentManagerStatistics
+ */
+public class ComponentStatistics
+{
+    /**
+     * @see #getRoleType()
+     */
+    private final Type roleType;
+
+    /**
+     * @see #getRoleHint()
+     */
+    private final String roleHint;
+
+    /**
+     * @see #getLookupCount()
+     */
+    private final AtomicLong lookupCount = new AtomicLong();
+
+    /**
+     * @see #getMissCount()
+     */
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @see #getDelegationCount()
+     */
+    private final AtomicLong delegationCount = new AtomicLong();
+
+    /**
+     * @see #getMaxDelegationDepth()
+     */
+    private final AtomicInteger maxDelegationDepth = new AtomicInteger();
+
+    /**
+     * @see #getCreationCount()
+     */
+    private final AtomicLong creationCount = new AtomicLong();
+
+    /**
+     * @see #getCreationTime()
+     */
+    private final AtomicLong creationTime = new AtomicLong();
+
+    /**
+     * @see #getMaxCreationTime()
+     */
+    private final AtomicLong maxCreationTime = new AtomicLong();
+
+    /**
+     * @see #getInitializationTime()
+     */
+    private final AtomicLong initializationTime = new AtomicLong();
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     */
+    ComponentStatistics(Type roleType, String roleHint)
+    {
+        this.roleType = roleType;
+        this.roleHint = roleHint;
+    }
+
+    /**
+     * @return the role type of the component
+     */
+    public Type getRoleType()
+    {
+        return this.roleType;
+    }
+
+    /**
+     * @return the role hint of the component
+     */
+    public String getRoleHint()
+    {
+        return this.roleHint;
+    }
+
+    /**
+     * @return the number of times the component has been looked up and found in the Component Manager
+     */
+    public long getLookupCount()
+    {
+        return this.lookupCount.get();
+    }
+
+    /**
+     * @return the number of times the component has been looked up (or its existence checked with
+     *         {@code hasComponent}) but could not be found in the Component Manager and its parents
+     */
+    public long getMissCount()
+    {
+        return this.missCount.get();
+    }
+
+    /**
+     * @return the number of times the component has been looked up and found in a parent Component Manager
+     */
+    public long getDelegationCount()
+    {
+        return this.delegationCount.get();
+    }
+
+    /**
+     * @return the maximum number of parent Component Managers which had to be traversed to find the component (1 when
+     *         found in the direct parent)
+     */
+    public int getMaxDelegationDepth()
+    {
+        return this.maxDelegationDepth.get();
+    }
+
+    /**
+     * @return the number of instances of the component which have been created
+     */
+    public long getCreationCount()
+    {
+        return this.creationCount.get();
+    }
+
+    /**
+     * @return the total time spent creating instances of the component, including the creation of its dependencies
+     *         and its initialization
+     */
+    public long getCreationTime()
+    {
+        return this.creationTime.get();
+    }
+
+    /**
+     * @return the maximum time spent creating an instance of the component
+     */
+    public long getMaxCreationTime()
+    {
+        return this.maxCreationTime.get();
+    }
+
+    /**
+     * @return the total time spent in the lifecycle handlers (e.g.
+     *         {@link org.xwiki.component.phase.Initializable#initialize()}) of the component instances
+     */
+    public long getInitializationTime()
+    {
+        return this.initializationTime.get();
+    }
+
+    /**
+     * The component has been found in the Component Manager.
+     */
+    void lookup()
+    {
+        this.lookupCount.incrementAndGet();
+    }
+
+    /**
+     * The component could not be found.
+     */
+    void miss()
+    {
+        this.missCount.incrementAndGet();
+    }
+
+    /**
+     * The component has been found in a parent Component Manager.
+     *
+     * @param depth the number of parent Component Managers traversed to find the component
+     */
+    void delegate(int depth)
+    {
+        this.delegationCount.incrementAndGet();
+
+        int currentDepth = this.maxDelegationDepth.get();
+        while (depth > currentDepth && !this.maxDelegationDepth.compareAndSet(currentDepth, depth)) {
+            currentDepth = this.maxDelegationDepth.get();
+        }
+    }
+
+    /**
+     * A new instance of the component has been created.
+     *
+     * @param creation the time spent creating the instance
+     * @param initialization the time spent in the lifecycle handlers
+     */
+    void create(long creation, long initialization)
+    {
+        this.creationCount.incrementAndGet();
+        this.creationTime.addAndGet(creation);
+        this.initializationTime.addAndGet(initialization);
+
+        long currentMax = this.maxCreationTime.get();
+        while (creation > currentMax && !this.maxCreationTime.compareAndSet(currentMax, creation)) {
+            currentMax = this.maxCreationTime.get();
+        }
+    }
+}
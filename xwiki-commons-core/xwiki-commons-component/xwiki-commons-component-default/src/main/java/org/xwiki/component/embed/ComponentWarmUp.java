@@ -0,0 +1,295 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Eagerly create the singleton components registered in an {@link EmbeddableComponentManager} so that the cost of
+ * their creation and initialization is paid at startup instead of on the first request using them.
+ * <p>
+ * The singletons are created in dependency order: components are grouped by their depth in the dependency graph and
+ * each group is created on several threads once all the components it depends on have been created.
+ * <p>
+ * The warm up is started by {@link EmbeddableComponentManager#initialize(ClassLoader)} when enabled with
+ * {@link #THREADS_PROPERTY} and can be accessed with {@link EmbeddableComponentManager#getWarmUp()}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentWarmUp
+{
+    /**
+     * Name of the system property indicating the number of threads to use to create the singleton components in the
+     * background when an {@link EmbeddableComponentManager} is initialized (see
+     * {@link EmbeddableComponentManager#initialize(ClassLoader)}). The singletons are created lazily when it's not set
+     * or 0.
+     */
+    public static final String THREADS_PROPERTY = "xwiki.component.warmUpThreads";
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(ComponentWarmUp.class);
+
+    /**
+     * The Component Manager containing the components to create.
+     */
+    private final EmbeddableComponentManager componentManager;
+
+    /**
+     * The number of threads to use to create the components.
+     */
+    private final int threads;
+
+    /**
+     * Released when the warm up is finished.
+     */
+    private final CountDownLatch ready = new CountDownLatch(1);
+
+    /**
+     * @see #getInitializationTimes()
+     */
+    private final Map<ComponentDescriptor< ? >, Long> initializationTimes =
+        new ConcurrentHashMap<ComponentDescriptor< ? >, Long>();
+
+    /**
+     * @param componentManager the Component Manager containing the components to create
+     * @param threads the number of threads to use to create the components
+     */
+    public ComponentWarmUp(EmbeddableComponentManager componentManager, int threads)
+    {
+        this.componentManager = componentManager;
+        this.threads = threads;
+    }
+
+    /**
+     * Start creating the singletons in a background thread and return immediately.
+     *
+     * @see #isReady()
+     */
+    public void start()
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                warmUp();
+            }
+        }, "XWiki Component Warm Up");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Create the singletons and return when they have all been created.
+     */
+    public void warmUp()
+    {
+        try {
+            ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+            try {
+                for (List<ComponentDescriptor< ? >> level : getLevels()) {
+                    List<Future< ? >> futures = new ArrayList<Future< ? >>(level.size());
+                    for (final ComponentDescriptor< ? > descriptor : level) {
+                        futures.add(executor.submit(new Runnable()
+                        {
+                            @Override
+                            public void run()
+                            {
+                                createInstance(descriptor);
+                            }
+                        }));
+                    }
+
+                    for (Future< ? > future : futures) {
+                        future.get();
+                    }
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            LOGGER.error("Unexpected error while creating singleton components", e);
+        } finally {
+            this.ready.countDown();
+        }
+    }
+
+    /**
+     * @return true if the warm up is finished
+     */
+    public boolean isReady()
+    {
+        return this.ready.getCount() == 0;
+    }
+
+    /**
+     * Wait for the warm up to be finished.
+     *
+     * @param timeout the maximum time to wait
+     * @param unit the unit of the timeout argument
+     * @return true if the warm up is finished and false if the waiting time elapsed before
+     * @throws InterruptedException if the current thread is interrupted while waiting
+     */
+    public boolean waitReady(long timeout, TimeUnit unit) throws InterruptedException
+    {
+        return this.ready.await(timeout, unit);
+    }
+
+    /**
+     * @return the time in nanoseconds it took to create (including injection and initialization) each singleton
+     *         component created by the warm up
+     */
+    public Map<ComponentDescriptor< ? >, Long> getInitializationTimes()
+    {
+        return Collections.unmodifiableMap(this.initializationTimes);
+    }
+
+    /**
+     * @param descriptor the descriptor of the component to create
+     */
+    private void createInstance(ComponentDescriptor< ? > descriptor)
+    {
+        long start = System.nanoTime();
+        try {
+            this.componentManager.getInstance(descriptor.getRoleType(), descriptor.getRoleHint());
+
+            this.initializationTimes.put(descriptor, System.nanoTime() - start);
+        } catch (Exception e) {
+            // The lookup will fail again when the component is actually needed
+            LOGGER.warn("Failed to create component [{}]", descriptor, e);
+        }
+    }
+
+    /**
+     * @return the singleton components to create grouped by their depth in the dependency graph
+     */
+    List<List<ComponentDescriptor< ? >>> getLevels()
+    {
+        Set<ComponentDescriptor< ? >> singletons = new HashSet<ComponentDescriptor< ? >>();
+        for (ComponentDescriptor< ? > descriptor : this.componentManager.getComponentDescriptors()) {
+            if (descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON
+                && descriptor.getImplementation() != null) {
+                singletons.add(descriptor);
+            }
+        }
+
+        Map<ComponentDescriptor< ? >, Integer> depths = new HashMap<ComponentDescriptor< ? >, Integer>();
+        List<List<ComponentDescriptor< ? >>> levels = new ArrayList<List<ComponentDescriptor< ? >>>();
+        for (ComponentDescriptor< ? > descriptor : singletons) {
+            int depth = getDepth(descriptor, singletons, depths, new HashSet<ComponentDescriptor< ? >>());
+
+            while (levels.size() <= depth) {
+                levels.add(new ArrayList<ComponentDescriptor< ? >>());
+            }
+            levels.get(depth).add(descriptor);
+        }
+
+        return levels;
+    }
+
+    /**
+     * @param descriptor the component descriptor
+     * @param singletons the singleton components to create
+     * @param depths the already computed depths
+     * @param visiting the components currently being visited, used to break dependency cycles
+     * @return the depth of the component in the dependency graph (0 for components not depending on any other
+     *         singleton to create)
+     */
+    private int getDepth(ComponentDescriptor< ? > descriptor, Set<ComponentDescriptor< ? >> singletons,
+        Map<ComponentDescriptor< ? >, Integer> depths, Set<ComponentDescriptor< ? >> visiting)
+    {
+        Integer depth = depths.get(descriptor);
+
+        if (depth == null) {
+            depth = 0;
+
+            if (visiting.add(descriptor)) {
+                for (ComponentDescriptor< ? > dependency : getDependencies(descriptor)) {
+                    if (singletons.contains(dependency)) {
+                        depth = Math.max(depth, getDepth(dependency, singletons, depths, visiting) + 1);
+                    }
+                }
+                visiting.remove(descriptor);
+
+                depths.put(descriptor, depth);
+            }
+        }
+
+        return depth;
+    }
+
+    /**
+     * @param descriptor the component descriptor
+     * @return the descriptors of the components which will be injected in the passed component (lazily provided and
+     *         logger dependencies are excluded)
+     */
+    private List<ComponentDescriptor< ? >> getDependencies(ComponentDescriptor< ? > descriptor)
+    {
+        List<ComponentDescriptor< ? >> dependencies = new ArrayList<ComponentDescriptor< ? >>();
+
+        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+            if (dependencyRoleClass.isAssignableFrom(Logger.class)
+                || dependencyRoleClass.isAssignableFrom(Provider.class)) {
+                // The logger is not a component and the provided components are only looked up when asked
+            } else if (dependencyRoleClass.isAssignableFrom(List.class)
+                || dependencyRoleClass.isAssignableFrom(Map.class)) {
+                dependencies.addAll(this.componentManager.getComponentDescriptorList(ReflectionUtils
+                    .getLastTypeGenericArgument(dependency.getRoleType())));
+            } else {
+                ComponentDescriptor< ? > dependencyDescriptor =
+                    this.componentManager.getComponentDescriptor(dependency.getRoleType(), dependency.getRoleHint());
+                if (dependencyDescriptor != null) {
+                    dependencies.add(dependencyDescriptor);
+                }
+            }
+        }
+
+        return dependencies;
+    }
+}
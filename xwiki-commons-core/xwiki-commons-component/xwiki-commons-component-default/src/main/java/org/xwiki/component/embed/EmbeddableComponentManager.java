@@ -21,14 +21,20 @@
 
 import java.lang.reflect.Type;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
+import java.util.WeakHashMap;
 import java.util.concurrent.ConcurrentHashMap;
-
-import javax.inject.Provider;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang3.ObjectUtils;
 import org.slf4j.Logger;
@@ -39,6 +45,9 @@
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
 import org.xwiki.component.internal.RoleHint;
+import org.xwiki.component.internal.multi.ReleasableComponentManager;
+import org.xwiki.component.manager.BatchComponentEventManager;
+import org.xwiki.component.manager.BatchComponentManager;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -47,6 +56,7 @@
 import org.xwiki.component.manager.ComponentRepositoryException;
 import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.EventListener;
 
 /**
  * Simple implementation of {@link ComponentManager} to be used when using some XWiki modules standalone.
@@ -54,7 +64,7 @@
  * @version $Id$
  * @since 2.0M1
  */
-public class EmbeddableComponentManager implements ComponentManager
+public class EmbeddableComponentManager implements BatchComponentManager, ReleasableComponentManager
 {
     private ComponentEventManager eventManager;
 
@@ -78,28 +88,117 @@ public class EmbeddableComponentManager implements ComponentManager
          */
         public volatile R instance;
 
+        /**
+         * True if the instance has been provided when registering the component, in which case it can't be created
+         * again.
+         */
+        public final boolean provided;
+
+        /**
+         * What's needed to create new instances of the component. Lazily initialized when needed.
+         */
+        private volatile InjectionPlan<R> injectionPlan;
+
         public ComponentEntry(ComponentDescriptor<R> descriptor, R instance)
         {
             this.descriptor = descriptor;
             this.instance = instance;
+            this.provided = instance != null;
+        }
+
+        public InjectionPlan<R> getInjectionPlan()
+        {
+            // Computing the plan twice in case of concurrent access is harmless
+            InjectionPlan<R> plan = this.injectionPlan;
+            if (plan == null) {
+                plan = new InjectionPlan<R>(this.descriptor);
+                this.injectionPlan = plan;
+            }
+
+            return plan;
         }
     }
 
-    private Map<RoleHint< ? >, ComponentEntry< ? >> componentEntries =
-        new ConcurrentHashMap<RoleHint< ? >, ComponentEntry< ? >>();
+    /**
+     * The hint of the component used when no hint is provided.
+     */
+    private static final String DEFAULT_HINT = "default";
+
+    /**
+     * The registered components indexed by role type and then by role hint.
+     * <p>
+     * Indexing by role type first makes role based lookups (see {@link #getInstanceMap(Type)},
+     * {@link #getComponentDescriptorList(Type)}) proportional to the number of components implementing the role instead
+     * of the total number of registered components.
+     * <p>
+     * Modified in place when registering or unregistering a single component but replaced by a modified copy when
+     * registering or unregistering a batch of components so that lookups never see a partially applied batch.
+     */
+    private volatile ConcurrentMap<Type, Map<String, ComponentEntry< ? >>> componentEntries =
+        new ConcurrentHashMap<Type, Map<String, ComponentEntry< ? >>>();
+
+    /**
+     * Held while modifying {@link #componentEntries}.
+     */
+    private final Object registrationLock = new Object();
+
+    /**
+     * The entries holding each singleton instance (created or provided at registration), indexed by instance identity
+     * so that {@link #release(Object)} doesn't have to look at all the registered components.
+     */
+    private final Map<Object, ComponentEntry< ? >> instanceEntries =
+        Collections.synchronizedMap(new IdentityHashMap<Object, ComponentEntry< ? >>());
+
+    /**
+     * Where the components which are not registered in this Component Manager have been found in the parent chain.
+     */
+    private final ParentResolutionCache parentResolutionCache = new ParentResolutionCache();
+
+    /**
+     * The Component Managers having this Component Manager as parent, notified when a component is registered or
+     * unregistered so that they can update their {@link #parentResolutionCache}. Weak references are used to not
+     * prevent forgotten Component Managers from being garbage collected.
+     */
+    private final Set<EmbeddableComponentManager> children = Collections.synchronizedSet(Collections
+        .newSetFromMap(new WeakHashMap<EmbeddableComponentManager, Boolean>()));
+
+    /**
+     * The usage statistics of the components or null if they are not collected.
+     */
+    private volatile ComponentManagerStatistics statistics =
+        Boolean.getBoolean(ComponentManagerStatistics.ENABLED_PROPERTY) ? new ComponentManagerStatistics() : null;
 
     private Logger logger = LoggerFactory.getLogger(EmbeddableComponentManager.class);
 
     /**
-     * Finds all lifecycle handlers to use when instantiating a Component.
+     * @see #getWarmUp()
+     */
+    private volatile ComponentWarmUp warmUp;
+
+    /**
+     * All lifecycle handlers to use when instantiating a Component. Resolved once from the {@link ServiceLoader} to not
+     * iterate it each time a Component is instantiated.
      */
-    private ServiceLoader<LifecycleHandler> lifecycleHandlers = ServiceLoader.load(LifecycleHandler.class);
+    private List<LifecycleHandler> lifecycleHandlers = loadLifecycleHandlers();
 
     public EmbeddableComponentManager()
     {
         registerThis();
     }
 
+    /**
+     * @return all lifecycle handlers to use when instantiating a Component
+     */
+    private static List<LifecycleHandler> loadLifecycleHandlers()
+    {
+        List<LifecycleHandler> handlers = new ArrayList<LifecycleHandler>();
+        for (LifecycleHandler lifecycleHandler : ServiceLoader.load(LifecycleHandler.class)) {
+            handlers.add(lifecycleHandler);
+        }
+
+        return handlers;
+    }
+
     /**
      * Allow to lookup the this as default {@link ComponentManager} implementation.
      */
@@ -118,6 +217,8 @@ private void registerThis()
      */
     public void initialize(ClassLoader classLoader)
     {
+        long start = System.nanoTime();
+
         ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
         loader.initialize(this, classLoader);
 
@@ -131,22 +232,85 @@ public void initialize(ClassLoader classLoader)
             // Should never happen
             this.logger.error("Failed to lookup ComponentManagerInitializer components", e);
         }
+
+        // Create the singletons in the background instead of when they are first needed
+        int warmUpThreads = Integer.getInteger(ComponentWarmUp.THREADS_PROPERTY, 0);
+        if (warmUpThreads > 0) {
+            ComponentWarmUp componentWarmUp = new ComponentWarmUp(this, warmUpThreads);
+            this.warmUp = componentWarmUp;
+            componentWarmUp.start();
+        }
+
+        ComponentManagerStatistics currentStatistics = this.statistics;
+        if (currentStatistics != null) {
+            currentStatistics.setInitializationTime(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @return the warm up creating the singleton components, started when this Component Manager has been initialized,
+     *         null if it's not enabled (see {@link ComponentWarmUp#THREADS_PROPERTY})
+     * @since 4.2M2
+     */
+    public ComponentWarmUp getWarmUp()
+    {
+        return this.warmUp;
+    }
+
+    /**
+     * @return the usage statistics of the components or null if they are not collected
+     * @since 4.2M2
+     */
+    public ComponentManagerStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @param statistics the object in which to collect the usage statistics of the components, null to stop
+     *            collecting them
+     * @since 4.2M2
+     */
+    public void setStatistics(ComponentManagerStatistics statistics)
+    {
+        this.statistics = statistics;
     }
 
     @Override
     public boolean hasComponent(Type role)
     {
-        return hasComponent(role, "default");
+        return hasComponent(role, null);
     }
 
     @Override
     public boolean hasComponent(Type role, String hint)
     {
-        if (this.componentEntries.containsKey(new RoleHint<Object>(role, hint))) {
+        // Same rule as RoleHint: a null hint designates the default component
+        String roleHint = hint != null ? hint : DEFAULT_HINT;
+
+        if (getComponentEntry(role, roleHint) != null) {
             return true;
         }
 
-        return getParent() != null ? getParent().hasComponent(role, hint) : false;
+        ComponentManager componentManager = getParent();
+        if (componentManager != null && isParentResolutionCacheable()) {
+            componentManager = resolveInParents(role, roleHint);
+            if (componentManager != null) {
+                return true;
+            }
+        }
+
+        if (componentManager == null) {
+            // Same rule as getComponentInstance: the miss is counted where the lookup ends
+            ComponentManagerStatistics currentStatistics = this.statistics;
+            if (currentStatistics != null) {
+                currentStatistics.get(new RoleHint<Object>(role, roleHint)).miss();
+            }
+
+            return false;
+        }
+
+        return componentManager.hasComponent(role, roleHint);
     }
 
     @Override
@@ -177,14 +341,14 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     {
         Map<String, T> objects = new HashMap<String, T>();
 
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            RoleHint< ? > roleHint = entry.getKey();
-
-            if (role.equals(roleHint.getRoleType())) {
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(role);
+        if (entries != null) {
+            for (Map.Entry<String, ComponentEntry< ? >> entry : entries.entrySet()) {
                 try {
-                    objects.put(roleHint.getHint(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
+                    objects.put(entry.getKey(), getComponentInstance((ComponentEntry<T>) entry.getValue()));
                 } catch (Exception e) {
-                    throw new ComponentLookupException("Failed to lookup component [" + roleHint + "]", e);
+                    throw new ComponentLookupException("Failed to lookup component [" + new RoleHint<T>(role,
+                        entry.getKey()) + "]", e);
                 }
             }
         }
@@ -206,7 +370,7 @@ public <T> Map<String, T> getInstanceMap(Type role) throws ComponentLookupExcept
     @SuppressWarnings("unchecked")
     public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
     {
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(new RoleHint<T>(role, hint));
+        ComponentEntry<T> componentEntry = getComponentEntry(new RoleHint<T>(role, hint));
         return componentEntry != null ? componentEntry.descriptor : null;
     }
 
@@ -215,11 +379,27 @@ public <T> ComponentDescriptor<T> getComponentDescriptor(Type role, String hint)
     public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Type role)
     {
         List<ComponentDescriptor<T>> results = new ArrayList<ComponentDescriptor<T>>();
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            // It's possible Class reference are not the same when it coming for different ClassLoader so we
-            // compare class names
-            if (entry.getKey().getRoleType().equals(role)) {
-                results.add((ComponentDescriptor<T>) entry.getValue().descriptor);
+
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(role);
+        if (entries != null) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                results.add((ComponentDescriptor<T>) entry.descriptor);
+            }
+        }
+
+        return results;
+    }
+
+    /**
+     * @return the descriptors of all the components registered in this Component Manager (the parent Component Manager
+     *         components are not included)
+     */
+    List<ComponentDescriptor< ? >> getComponentDescriptors()
+    {
+        List<ComponentDescriptor< ? >> results = new ArrayList<ComponentDescriptor< ? >>();
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                results.add(entry.descriptor);
             }
         }
 
@@ -247,15 +427,105 @@ public ComponentManager getParent()
     @Override
     public void setParent(ComponentManager parentComponentManager)
     {
+        if (this.parent instanceof EmbeddableComponentManager) {
+            ((EmbeddableComponentManager) this.parent).children.remove(this);
+        }
+
         this.parent = parentComponentManager;
+
+        if (parentComponentManager instanceof EmbeddableComponentManager) {
+            ((EmbeddableComponentManager) parentComponentManager).children.add(this);
+        }
+
+        invalidateParentResolutions(null, null);
+    }
+
+    /**
+     * @return true if the parent resolutions can be cached, i.e. if all the Component Managers in the parent chain are
+     *         {@link EmbeddableComponentManager}s which will notify this Component Manager when their components change
+     */
+    private boolean isParentResolutionCacheable()
+    {
+        ComponentManager componentManager = getParent();
+        while (componentManager != null) {
+            if (!(componentManager instanceof EmbeddableComponentManager)) {
+                return false;
+            }
+            componentManager = componentManager.getParent();
+        }
+
+        return true;
+    }
+
+    /**
+     * Find the parent Component Manager where the passed component is registered. Should only be called when
+     * {@link #isParentResolutionCacheable()} is true.
+     *
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @return the Component Manager where the component is registered or null if it can't be found in any parent
+     */
+    private ComponentManager resolveInParents(Type roleType, String roleHint)
+    {
+        ComponentManager componentManager = this.parentResolutionCache.get(roleType, roleHint);
+
+        if (componentManager == null && !this.parentResolutionCache.contains(roleType, roleHint)) {
+            long generation = this.parentResolutionCache.getGeneration();
+
+            EmbeddableComponentManager parentComponentManager = (EmbeddableComponentManager) getParent();
+            if (parentComponentManager.getComponentEntry(roleType, roleHint) != null) {
+                componentManager = parentComponentManager;
+            } else if (parentComponentManager.getParent() != null) {
+                componentManager = parentComponentManager.resolveInParents(roleType, roleHint);
+            }
+
+            this.parentResolutionCache.put(roleType, roleHint, componentManager, generation);
+        }
+
+        return componentManager;
+    }
+
+    /**
+     * Forget where the passed component has been found in the parent chain, in this Component Manager and all its
+     * children.
+     *
+     * @param roleType the role type of the component or null to invalidate all the components
+     * @param roleHint the role hint of the component
+     */
+    private void invalidateParentResolutions(Type roleType, String roleHint)
+    {
+        if (roleType != null) {
+            this.parentResolutionCache.invalidate(roleType, roleHint);
+        } else {
+            this.parentResolutionCache.invalidateAll();
+        }
+
+        for (EmbeddableComponentManager child : getChildren()) {
+            child.invalidateParentResolutions(roleType, roleHint);
+        }
+    }
+
+    /**
+     * @return a copy of the Component Managers having this Component Manager as parent
+     */
+    private List<EmbeddableComponentManager> getChildren()
+    {
+        synchronized (this.children) {
+            return this.children.isEmpty() ? Collections.<EmbeddableComponentManager> emptyList()
+                : new ArrayList<EmbeddableComponentManager>(this.children);
+        }
     }
 
-    private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
+    private <T> T createInstance(ComponentEntry<T> componentEntry) throws Exception
     {
-        T instance = descriptor.getImplementation().newInstance();
+        long start = System.nanoTime();
+
+        InjectionPlan<T> plan = componentEntry.getInjectionPlan();
+
+        T instance = plan.newInstance();
 
         // Set each dependency
-        for (ComponentDependency< ? > dependency : descriptor.getComponentDependencies()) {
+        for (InjectionPlan.InjectionPoint injectionPoint : plan.getInjectionPoints()) {
 
             // TODO: Handle dependency cycles
 
@@ -271,36 +541,49 @@ private <T> T createInstance(ComponentDescriptor<T> descriptor) throws Exception
             // Step 3: No producer found, handle scalar and collection types by looking up standard component
             // implementations.
 
-            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
-
-            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
-                fieldValue = createLogger(instance.getClass());
-            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
-                fieldValue = getInstanceList(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
-                fieldValue = getInstanceMap(ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()));
-            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
-                try {
+            ComponentDependency< ? > dependency = injectionPoint.getDependency();
+
+            switch (injectionPoint.getKind()) {
+                case LOGGER:
+                    fieldValue = createLogger(instance.getClass());
+                    break;
+                case LIST:
+                    fieldValue = getInstanceList(injectionPoint.getElementRoleType());
+                    break;
+                case MAP:
+                    fieldValue = getInstanceMap(injectionPoint.getElementRoleType());
+                    break;
+                case PROVIDER:
+                    try {
+                        fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    } catch (ComponentLookupException e) {
+                        fieldValue =
+                            new GenericProvider<Object>(this, new RoleHint<Object>(
+                                injectionPoint.getElementRoleType(), dependency.getRoleHint()));
+                    }
+                    break;
+                default:
                     fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
-                } catch (ComponentLookupException e) {
-                    fieldValue =
-                        new GenericProvider<Object>(this, new RoleHint<Object>(
-                            ReflectionUtils.getLastTypeGenericArgument(dependency.getRoleType()),
-                            dependency.getRoleHint()));
-                }
-            } else {
-                fieldValue = getInstance(dependency.getRoleType(), dependency.getRoleHint());
+                    break;
             }
 
-            // Set the field by introspection
+            // Set the field
             if (fieldValue != null) {
-                ReflectionUtils.setFieldValue(instance, dependency.getName(), fieldValue);
+                injectionPoint.inject(instance, fieldValue);
             }
         }
 
         // Call Lifecycle Handlers
+        long initializationStart = System.nanoTime();
         for (LifecycleHandler lifecycleHandler : this.lifecycleHandlers) {
-            lifecycleHandler.handle(instance, descriptor, this);
+            lifecycleHandler.handle(instance, componentEntry.descriptor, this);
+        }
+
+        ComponentManagerStatistics currentStatistics = this.statistics;
+        if (currentStatistics != null) {
+            long end = System.nanoTime();
+            currentStatistics.get(getRoleHint(componentEntry.descriptor)).create(end - start,
+                end - initializationStart);
         }
 
         return instance;
@@ -319,9 +602,15 @@ protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLooku
     {
         T instance;
 
-        ComponentEntry<T> componentEntry = (ComponentEntry<T>) this.componentEntries.get(roleHint);
+        ComponentEntry<T> componentEntry = getComponentEntry(roleHint);
+
+        ComponentManagerStatistics currentStatistics = this.statistics;
 
         if (componentEntry != null) {
+            if (currentStatistics != null) {
+                currentStatistics.get(roleHint).lookup();
+            }
+
             try {
                 instance = getComponentInstance(componentEntry);
             } catch (Throwable e) {
@@ -329,9 +618,23 @@ protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLooku
                     componentEntry.descriptor.getImplementation().getName(), roleHint.toString()), e);
             }
         } else {
-            if (getParent() != null) {
-                instance = getParent().getInstance(roleHint.getRoleClass(), roleHint.getHint());
+            ComponentManager componentManager = getParent();
+            if (componentManager != null && isParentResolutionCacheable()) {
+                // Go directly to the Component Manager where the component is registered
+                componentManager = resolveInParents(roleHint.getRoleClass(), roleHint.getHint());
+            }
+
+            if (componentManager != null) {
+                if (currentStatistics != null) {
+                    currentStatistics.get(roleHint).delegate(getDelegationDepth(componentManager));
+                }
+
+                instance = componentManager.getInstance(roleHint.getRoleClass(), roleHint.getHint());
             } else {
+                if (currentStatistics != null) {
+                    currentStatistics.get(roleHint).miss();
+                }
+
                 throw new ComponentLookupException("Can't find descriptor for the component [" + roleHint + "]");
             }
         }
@@ -339,6 +642,23 @@ protected <T> T getComponentInstance(RoleHint<T> roleHint) throws ComponentLooku
         return instance;
     }
 
+    /**
+     * @param componentManager the Component Manager to which a lookup is delegated
+     * @return the number of parent Component Managers between this Component Manager and the passed one (1 for the
+     *         direct parent)
+     */
+    private int getDelegationDepth(ComponentManager componentManager)
+    {
+        int depth = 1;
+        ComponentManager current = getParent();
+        while (current != null && current != componentManager) {
+            current = current.getParent();
+            ++depth;
+        }
+
+        return depth;
+    }
+
     private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exception
     {
         T instance;
@@ -355,18 +675,43 @@ private <T> T getComponentInstance(ComponentEntry<T> componentEntry) throws Exce
                     if (componentEntry.instance != null) {
                         instance = componentEntry.instance;
                     } else {
-                        componentEntry.instance = createInstance(descriptor);
+                        componentEntry.instance = createInstance(componentEntry);
                         instance = componentEntry.instance;
+                        this.instanceEntries.put(instance, componentEntry);
                     }
                 }
             }
         } else {
-            instance = createInstance(descriptor);
+            instance = createInstance(componentEntry);
         }
 
         return instance;
     }
 
+    /**
+     * @param roleHint the component identifier
+     * @return the registered entry matching the passed identifier or null if none can be found in this Component
+     *         Manager
+     */
+    private <T> ComponentEntry<T> getComponentEntry(RoleHint<T> roleHint)
+    {
+        return getComponentEntry(roleHint.getRoleType(), roleHint.getHint());
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @return the registered entry matching the passed identifier or null if none can be found in this Component
+     *         Manager
+     */
+    @SuppressWarnings("unchecked")
+    private <T> ComponentEntry<T> getComponentEntry(Type roleType, String roleHint)
+    {
+        Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleType);
+
+        return entries != null ? (ComponentEntry<T>) entries.get(roleHint) : null;
+    }
+
     // Add
 
     private <T> RoleHint<T> getRoleHint(ComponentDescriptor<T> componentDescriptor)
@@ -392,12 +737,172 @@ public <T> void registerComponent(ComponentDescriptor<T> componentDescriptor, T
         addComponent(roleHint, new DefaultComponentDescriptor<T>(componentDescriptor), componentInstance);
     }
 
-    private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
+    @Override
+    @SuppressWarnings("unchecked")
+    public void registerComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors)
     {
-        ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance);
+        // Prepare the new entries (the last one wins when several components have the same role and hint)
+        Map<RoleHint< ? >, ComponentEntry< ? >> addedEntries = new LinkedHashMap<RoleHint< ? >, ComponentEntry< ? >>();
+        for (ComponentDescriptor< ? > componentDescriptor : componentDescriptors) {
+            addedEntries.put(getRoleHint(componentDescriptor), new ComponentEntry<Object>(
+                new DefaultComponentDescriptor<Object>((ComponentDescriptor<Object>) componentDescriptor), null));
+        }
 
-        // Register new component
-        this.componentEntries.put(roleHint, componentEntry);
+        // Make all of them visible at once
+        List<ComponentEntry< ? >> removedEntries =
+            publishComponents(addedEntries, Collections.<ComponentDescriptor< ? >> emptyList());
+
+        List<ComponentDescriptor< ? >> addedDescriptors = new ArrayList<ComponentDescriptor< ? >>(addedEntries.size());
+        for (ComponentEntry< ? > addedEntry : addedEntries.values()) {
+            addedDescriptors.add(addedEntry.descriptor);
+        }
+
+        // Send events about the whole batch
+        notifyComponentsUnregistered(releaseComponentEntries(removedEntries));
+        notifyComponentsRegistered(addedDescriptors);
+    }
+
+    /**
+     * Register and unregister several components with a single modification of {@link #componentEntries} visible to
+     * lookups.
+     * 
+     * @param addedEntries the entries to register, indexed by component identifier
+     * @param removedDescriptors the descriptors of the components to unregister, only if they are still registered
+     * @return the entries which are not registered anymore (unregistered or replaced)
+     */
+    private List<ComponentEntry< ? >> publishComponents(Map<RoleHint< ? >, ComponentEntry< ? >> addedEntries,
+        Collection< ? extends ComponentDescriptor< ? >> removedDescriptors)
+    {
+        List<ComponentEntry< ? >> removedEntries = new ArrayList<ComponentEntry< ? >>();
+        Set<RoleHint< ? >> modified = new LinkedHashSet<RoleHint< ? >>(addedEntries.keySet());
+
+        synchronized (this.registrationLock) {
+            ConcurrentMap<Type, Map<String, ComponentEntry< ? >>> newComponentEntries =
+                new ConcurrentHashMap<Type, Map<String, ComponentEntry< ? >>>(this.componentEntries);
+            Set<Type> copiedRoles = new HashSet<Type>();
+
+            for (ComponentDescriptor< ? > descriptor : removedDescriptors) {
+                Map<String, ComponentEntry< ? >> entries =
+                    copyEntries(newComponentEntries, descriptor.getRoleType(), copiedRoles);
+                ComponentEntry< ? > entry = entries.get(descriptor.getRoleHint());
+                if (entry != null && ObjectUtils.equals(entry.descriptor, descriptor)) {
+                    entries.remove(descriptor.getRoleHint());
+                    removedEntries.add(entry);
+                    modified.add(getRoleHint(descriptor));
+                }
+            }
+
+            for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> addedEntry : addedEntries.entrySet()) {
+                RoleHint< ? > roleHint = addedEntry.getKey();
+                ComponentEntry< ? > replacedEntry = copyEntries(newComponentEntries, roleHint.getRoleType(), copiedRoles)
+                    .put(roleHint.getHint(), addedEntry.getValue());
+                if (replacedEntry != null) {
+                    removedEntries.add(replacedEntry);
+                }
+            }
+
+            this.componentEntries = newComponentEntries;
+        }
+
+        for (RoleHint< ? > roleHint : modified) {
+            invalidateChildrenParentResolutions(roleHint);
+        }
+
+        return removedEntries;
+    }
+
+    /**
+     * Replace the entries of the passed role by a copy, unless it's already been done.
+     * 
+     * @param componentEntries the registered components being modified
+     * @param roleType the role of the entries to copy
+     * @param copiedRoles the roles for which the entries have already been copied
+     * @return the modifiable copy of the entries of the passed role
+     */
+    private Map<String, ComponentEntry< ? >> copyEntries(Map<Type, Map<String, ComponentEntry< ? >>> componentEntries,
+        Type roleType, Set<Type> copiedRoles)
+    {
+        Map<String, ComponentEntry< ? >> entries = componentEntries.get(roleType);
+
+        if (copiedRoles.add(roleType)) {
+            entries =
+                entries != null ? new ConcurrentHashMap<String, ComponentEntry< ? >>(entries)
+                    : new ConcurrentHashMap<String, ComponentEntry< ? >>();
+            componentEntries.put(roleType, entries);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Clean the resources associated to the passed entries which are not registered anymore.
+     * 
+     * @param removedEntries the entries which are not registered anymore
+     * @return the descriptors of the passed entries
+     */
+    private List<ComponentDescriptor< ? >> releaseComponentEntries(List<ComponentEntry< ? >> removedEntries)
+    {
+        List<ComponentDescriptor< ? >> removedDescriptors =
+            new ArrayList<ComponentDescriptor< ? >>(removedEntries.size());
+
+        for (ComponentEntry< ? > removedEntry : removedEntries) {
+            try {
+                releaseComponentEntry(removedEntry);
+            } catch (Exception e) {
+                this.logger.warn("Instance released but disposal failed. Some resources may not have been released.",
+                    e);
+            }
+            removedDescriptors.add(removedEntry.descriptor);
+        }
+
+        return removedDescriptors;
+    }
+
+    /**
+     * Notify the {@link ComponentEventManager} that several components have been registered, with a single
+     * notification if it supports it.
+     * 
+     * @param descriptors the descriptors of the registered components
+     */
+    private void notifyComponentsRegistered(List<ComponentDescriptor< ? >> descriptors)
+    {
+        ComponentEventManager currentEventManager = this.eventManager;
+
+        if (currentEventManager != null && !descriptors.isEmpty()) {
+            if (currentEventManager instanceof BatchComponentEventManager) {
+                ((BatchComponentEventManager) currentEventManager).notifyComponentsRegistered(descriptors, this);
+            } else {
+                for (ComponentDescriptor< ? > descriptor : descriptors) {
+                    currentEventManager.notifyComponentRegistered(descriptor, this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Notify the {@link ComponentEventManager} that several components have been unregistered, with a single
+     * notification if it supports it.
+     * 
+     * @param descriptors the descriptors of the unregistered components
+     */
+    private void notifyComponentsUnregistered(List<ComponentDescriptor< ? >> descriptors)
+    {
+        ComponentEventManager currentEventManager = this.eventManager;
+
+        if (currentEventManager != null && !descriptors.isEmpty()) {
+            if (currentEventManager instanceof BatchComponentEventManager) {
+                ((BatchComponentEventManager) currentEventManager).notifyComponentsUnregistered(descriptors, this);
+            } else {
+                for (ComponentDescriptor< ? > descriptor : descriptors) {
+                    currentEventManager.notifyComponentUnregistered(descriptor, this);
+                }
+            }
+        }
+    }
+
+    private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
+    {
+        putComponent(roleHint, descriptor, instance);
 
         // Send event about component registration
         if (this.eventManager != null) {
@@ -405,6 +910,45 @@ private <T> void addComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descr
         }
     }
 
+    /**
+     * Register the component without sending any event.
+     */
+    private <T> void putComponent(RoleHint<T> roleHint, ComponentDescriptor<T> descriptor, T instance)
+    {
+        ComponentEntry<T> componentEntry = new ComponentEntry<T>(descriptor, instance);
+        if (instance != null) {
+            this.instanceEntries.put(instance, componentEntry);
+        }
+
+        // Register new component
+        synchronized (this.registrationLock) {
+            Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleHint.getRoleType());
+            if (entries == null) {
+                entries = new ConcurrentHashMap<String, ComponentEntry< ? >>();
+                this.componentEntries.put(roleHint.getRoleType(), entries);
+            }
+            entries.put(roleHint.getHint(), componentEntry);
+        }
+
+        invalidateChildrenParentResolutions(roleHint);
+    }
+
+    /**
+     * Make sure children Component Managers don't use outdated resolutions of the passed component.
+     *
+     * @param roleHint the component which has been registered or unregistered
+     */
+    private void invalidateChildrenParentResolutions(RoleHint< ? > roleHint)
+    {
+        for (EmbeddableComponentManager child : getChildren()) {
+            // Instances are resolved in the parents with the role class and the existence with the role type
+            child.invalidateParentResolutions(roleHint.getRoleType(), roleHint.getHint());
+            if (roleHint.getRoleClass() != roleHint.getRoleType()) {
+                child.invalidateParentResolutions(roleHint.getRoleClass(), roleHint.getHint());
+            }
+        }
+    }
+
     // Remove
 
     @Override
@@ -423,24 +967,27 @@ public void unregisterComponent(ComponentDescriptor< ? > componentDescriptor)
         }
     }
 
+    @Override
+    public void unregisterComponents(Collection< ? extends ComponentDescriptor< ? >> componentDescriptors)
+    {
+        // Make all of them invisible at once
+        List<ComponentEntry< ? >> removedEntries =
+            publishComponents(Collections.<RoleHint< ? >, ComponentEntry< ? >> emptyMap(), componentDescriptors);
+
+        // Send event about the whole batch
+        notifyComponentsUnregistered(releaseComponentEntries(removedEntries));
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public void release(Object component) throws ComponentLifecycleException
     {
-        // First find the descriptor matching the passed component
-        RoleHint< ? > key = null;
-        ComponentDescriptor< ? > oldDescriptor = null;
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
-            if (entry.getValue().instance == component) {
-                key = entry.getKey();
-                oldDescriptor = entry.getValue().descriptor;
-                break;
-            }
-        }
+        // First find the entry holding the passed component
+        ComponentEntry< ? > componentEntry = this.instanceEntries.get(component);
+        RoleHint< ? > key = componentEntry != null ? getRoleHint(componentEntry.descriptor) : null;
 
-        // Note that we're not removing inside the for loop above since it would cause a Concurrent
-        // exception since we'd modify the map accessed by the iterator.
-        if (key != null) {
+        // Make sure the entry is still the registered one
+        if (key != null && getComponentEntry(key) == componentEntry) {
             // We do the following:
             // - fire an unregistration event, to tell the world that this reference is now dead
             // - fire a registration event, to tell the world that it could get a new reference for this component
@@ -450,8 +997,88 @@ public void release(Object component) throws ComponentLifecycleException
             // Another solution would be to introduce a new event for Component creation/destruction (right now
             // we only send events for Component registration/unregistration).
             removeComponent(key);
-            addComponent((RoleHint<Object>) key, (ComponentDescriptor<Object>) oldDescriptor, null);
+            addComponent((RoleHint<Object>) key, (ComponentDescriptor<Object>) componentEntry.descriptor, null);
+        }
+    }
+
+    @Override
+    public void releaseAll(Collection< ? > components) throws ComponentLifecycleException
+    {
+        ComponentLifecycleException exception = null;
+
+        for (Object component : components) {
+            try {
+                release(component);
+            } catch (ComponentLifecycleException e) {
+                // Make sure the other components are released
+                if (exception == null) {
+                    exception = e;
+                } else {
+                    this.logger.warn("Failed to release component [{}]", component, e);
+                }
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    @Override
+    public int getComponentCount()
+    {
+        int count = 0;
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                if (entry.instance != this) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public int getInstanceCount()
+    {
+        int count = 0;
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                Object instance = entry.instance;
+                if (instance != null && instance != this) {
+                    ++count;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     * <p>
+     * Event listeners are not released: the Observation Manager would look them up again as soon as it's notified
+     * about their registration, which would make the release pointless.
+     */
+    @Override
+    public void releaseInstances() throws ComponentLifecycleException
+    {
+        List<ComponentDescriptor< ? >> releasedDescriptors = new ArrayList<ComponentDescriptor< ? >>();
+        for (Map<String, ComponentEntry< ? >> entries : this.componentEntries.values()) {
+            for (ComponentEntry< ? > entry : entries.values()) {
+                if (entry.instance != null && !entry.provided
+                    && ReflectionUtils.getTypeClass(entry.descriptor.getRoleType()) != EventListener.class) {
+                    releaseInstance(entry);
+                    releasedDescriptors.add(entry.descriptor);
+                }
+            }
         }
+
+        // Tell the world that the released references are now dead and that new ones can be looked up (see
+        // #release(Object))
+        notifyComponentsUnregistered(releasedDescriptors);
+        notifyComponentsRegistered(releasedDescriptors);
     }
 
     private void releaseInstance(ComponentEntry< ? > componentEntry) throws ComponentLifecycleException
@@ -461,6 +1088,10 @@ private void releaseInstance(ComponentEntry< ? > componentEntry) throws Componen
         synchronized (componentEntry) {
             Object instance = componentEntry.instance;
 
+            if (instance != null) {
+                forgetInstance(instance, componentEntry);
+            }
+
             // Give a chance to the component to clean up
             if (instance instanceof Disposable) {
                 ((Disposable) instance).dispose();
@@ -470,6 +1101,19 @@ private void releaseInstance(ComponentEntry< ? > componentEntry) throws Componen
         }
     }
 
+    /**
+     * Remove the passed instance from the instances index if it's associated to the passed entry (the same instance
+     * can be registered for several components).
+     */
+    private void forgetInstance(Object instance, ComponentEntry< ? > componentEntry)
+    {
+        synchronized (this.instanceEntries) {
+            if (this.instanceEntries.get(instance) == componentEntry) {
+                this.instanceEntries.remove(instance);
+            }
+        }
+    }
+
     private void releaseComponentEntry(ComponentEntry< ? > componentEntry) throws ComponentLifecycleException
     {
         // clean existing instance
@@ -477,22 +1121,42 @@ private void releaseComponentEntry(ComponentEntry< ? > componentEntry) throws Co
     }
 
     private void removeComponent(RoleHint< ? > roleHint) throws ComponentLifecycleException
+    {
+        ComponentDescriptor< ? > oldDescriptor = takeComponent(roleHint);
+
+        // Send event about component unregistration
+        if (this.eventManager != null && oldDescriptor != null) {
+            this.eventManager.notifyComponentUnregistered(oldDescriptor, this);
+        }
+    }
+
+    /**
+     * Unregister the component without sending any event.
+     * 
+     * @return the descriptor of the removed component or null if no component was registered with the passed role
+     *         and hint
+     */
+    private ComponentDescriptor< ? > takeComponent(RoleHint< ? > roleHint) throws ComponentLifecycleException
     {
         // Make sure to remove the entry from the map before destroying it to reduce at the minimum the risk of
         // lookupping something invalid
-        ComponentEntry< ? > componentEntry = this.componentEntries.remove(roleHint);
+        // Note that the (possibly empty) hint map is kept for the role to not race with a concurrent registration.
+        ComponentEntry< ? > componentEntry;
+        synchronized (this.registrationLock) {
+            Map<String, ComponentEntry< ? >> entries = this.componentEntries.get(roleHint.getRoleType());
+            componentEntry = entries != null ? entries.remove(roleHint.getHint()) : null;
+        }
 
         if (componentEntry != null) {
-            ComponentDescriptor< ? > oldDescriptor = componentEntry.descriptor;
+            invalidateChildrenParentResolutions(roleHint);
 
             // clean any resource associated to the component instance and descriptor
             releaseComponentEntry(componentEntry);
 
-            // Send event about component unregistration
-            if (this.eventManager != null && oldDescriptor != null) {
-                this.eventManager.notifyComponentUnregistered(oldDescriptor, this);
-            }
+            return componentEntry.descriptor;
         }
+
+        return null;
     }
 
     /**
@@ -516,11 +1180,13 @@ private <T> void removeComponentWithoutException(RoleHint<T> roleHint)
     public <T> List<ComponentDescriptor<T>> getComponentDescriptorList(Class<T> role)
     {
         List<ComponentDescriptor<T>> results = new ArrayList<ComponentDescriptor<T>>();
-        for (Map.Entry<RoleHint< ? >, ComponentEntry< ? >> entry : this.componentEntries.entrySet()) {
+        for (Map.Entry<Type, Map<String, ComponentEntry< ? >>> roleEntry : this.componentEntries.entrySet()) {
             // It's possible Class reference are not the same when it coming for different ClassLoader so we
             // compare class names
-            if (entry.getKey().getRoleClass() == role) {
-                results.add((ComponentDescriptor<T>) entry.getValue().descriptor);
+            if (ReflectionUtils.getTypeClass(roleEntry.getKey()) == role) {
+                for (ComponentEntry< ? > entry : roleEntry.getValue().values()) {
+                    results.add((ComponentDescriptor<T>) entry.descriptor);
+                }
             }
         }
         return results;
@@ -0,0 +1,250 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import javax.inject.Provider;
+
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDependency;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.util.ReflectionUtils;
+
+/**
+ * Everything needed to create and inject a component instance which can be computed once from its
+ * {@link ComponentDescriptor}: the kind of each dependency and the (already accessible) fields to inject. This avoids
+ * looking for the fields and analyzing the dependency types each time a new instance is created, which matters for
+ * components with a {@link org.xwiki.component.descriptor.ComponentInstantiationStrategy#PER_LOOKUP} strategy.
+ *
+ * @param <T> the type of the component role
+ * @version $Id$
+ * @since 4.2M2
+ */
+class InjectionPlan<T>
+{
+    /**
+     * The various ways a dependency is resolved.
+     *
+     * @version $Id$
+     */
+    enum DependencyKind
+    {
+        /**
+         * A {@link Logger} created for the component implementation.
+         */
+        LOGGER,
+
+        /**
+         * All the components implementing the role of the {@link List} elements.
+         */
+        LIST,
+
+        /**
+         * All the components implementing the role of the {@link Map} values.
+         */
+        MAP,
+
+        /**
+         * A registered {@link Provider} or a generic one.
+         */
+        PROVIDER,
+
+        /**
+         * A standard component.
+         */
+        COMPONENT
+    }
+
+    /**
+     * A dependency to inject.
+     *
+     * @version $Id$
+     */
+    static class InjectionPoint
+    {
+        /**
+         * The dependency descriptor.
+         */
+        private final ComponentDependency< ? > dependency;
+
+        /**
+         * The way to resolve the dependency.
+         */
+        private final DependencyKind kind;
+
+        /**
+         * The role of the components to inject for {@link DependencyKind#LIST}, {@link DependencyKind#MAP} and
+         * {@link DependencyKind#PROVIDER} kinds.
+         */
+        private final Type elementRoleType;
+
+        /**
+         * The field to inject or null if the component implementation does not have any field with the dependency
+         * name.
+         */
+        private final Field field;
+
+        /**
+         * @param dependency the dependency descriptor
+         * @param implementation the component implementation class
+         */
+        InjectionPoint(ComponentDependency< ? > dependency, Class< ? > implementation)
+        {
+            this.dependency = dependency;
+
+            Class< ? > dependencyRoleClass = ReflectionUtils.getTypeClass(dependency.getRoleType());
+
+            if (dependencyRoleClass.isAssignableFrom(Logger.class)) {
+                this.kind = DependencyKind.LOGGER;
+            } else if (dependencyRoleClass.isAssignableFrom(List.class)) {
+                this.kind = DependencyKind.LIST;
+            } else if (dependencyRoleClass.isAssignableFrom(Map.class)) {
+                this.kind = DependencyKind.MAP;
+            } else if (dependencyRoleClass.isAssignableFrom(Provider.class)) {
+                this.kind = DependencyKind.PROVIDER;
+            } else {
+                this.kind = DependencyKind.COMPONENT;
+            }
+
+            this.elementRoleType =
+                this.kind != DependencyKind.COMPONENT && this.kind != DependencyKind.LOGGER ? ReflectionUtils
+                    .getLastTypeGenericArgument(dependency.getRoleType()) : null;
+
+            this.field = getField(implementation, dependency.getName());
+        }
+
+        /**
+         * @return the dependency descriptor
+         */
+        public ComponentDependency< ? > getDependency()
+        {
+            return this.dependency;
+        }
+
+        /**
+         * @return the way to resolve the dependency
+         */
+        public DependencyKind getKind()
+        {
+            return this.kind;
+        }
+
+        /**
+         * @return the role of the components to inject for {@link DependencyKind#LIST}, {@link DependencyKind#MAP}
+         *         and {@link DependencyKind#PROVIDER} kinds
+         */
+        public Type getElementRoleType()
+        {
+            return this.elementRoleType;
+        }
+
+        /**
+         * @param instance the component instance
+         * @param value the value to inject
+         */
+        public void inject(Object instance, Object value)
+        {
+            if (this.field != null) {
+                try {
+                    this.field.set(instance, value);
+                } catch (Exception e) {
+                    // This shouldn't happen but if it does then the Component manager will not function properly
+                    // and we need to abort.
+                    throw new RuntimeException("Failed to set field [" + this.field.getName() + "] in instance of ["
+                        + instance.getClass().getName() + "]", e);
+                }
+            }
+        }
+
+        /**
+         * Same lookup as {@link ReflectionUtils#setFieldValue(Object, String, Object)}: the first field matching the
+         * passed name (ignoring case) starting from the passed class and going up in the hierarchy.
+         *
+         * @param implementation the class where to look for the field
+         * @param fieldName the name of the field
+         * @return the accessible field or null if none could be found
+         */
+        private static Field getField(Class< ? > implementation, String fieldName)
+        {
+            Class< ? > targetClass = implementation;
+            while (targetClass != null) {
+                for (Field declaredField : targetClass.getDeclaredFields()) {
+                    if (declaredField.getName().equalsIgnoreCase(fieldName)) {
+                        // The Field instance is our own copy so we can keep it accessible
+                        declaredField.setAccessible(true);
+
+                        return declaredField;
+                    }
+                }
+                targetClass = targetClass.getSuperclass();
+            }
+
+            return null;
+        }
+    }
+
+    /**
+     * The component implementation class.
+     */
+    private final Class< ? extends T> implementation;
+
+    /**
+     * The dependencies to inject.
+     */
+    private final Collection<InjectionPoint> injectionPoints;
+
+    /**
+     * @param descriptor the descriptor of the component
+     */
+    InjectionPlan(ComponentDescriptor<T> descriptor)
+    {
+        this.implementation = descriptor.getImplementation();
+
+        Collection<ComponentDependency< ? >> dependencies = descriptor.getComponentDependencies();
+        List<InjectionPoint> points = new ArrayList<InjectionPoint>(dependencies.size());
+        for (ComponentDependency< ? > dependency : dependencies) {
+            points.add(new InjectionPoint(dependency, this.implementation));
+        }
+        this.injectionPoints = points;
+    }
+
+    /**
+     * @return a new instance of the component implementation, without any dependency injected
+     * @throws Exception when failing to create the instance
+     */
+    public T newInstance() throws Exception
+    {
+        return this.implementation.newInstance();
+    }
+
+    /**
+     * @return the dependencies to inject
+     */
+    public Collection<InjectionPoint> getInjectionPoints()
+    {
+        return this.injectionPoints;
+    }
+}
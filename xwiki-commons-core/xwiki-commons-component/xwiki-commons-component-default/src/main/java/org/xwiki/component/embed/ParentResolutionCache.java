@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.component.manager.ComponentManager;
+
+/**
+ * Remember in which parent Component Manager a component which is not registered in the current Component Manager has
+ * been found, including the fact that it could not be found anywhere. This avoids walking the whole parent chain (and
+ * throwing exceptions) each time such a component is looked up.
+ * <p>
+ * The cached resolutions are invalidated for a given role and hint each time a component with this role and hint is
+ * registered or unregistered in a Component Manager of the chain. A generation counter is used to make sure a
+ * resolution computed concurrently with an invalidation is not kept.
+ * <p>
+ * The number of cached misses is limited since the looked up role hints can come from user input (script service
+ * names for example): once the limit is reached the new misses are not cached anymore until some are invalidated.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+class ParentResolutionCache
+{
+    /**
+     * Cached value indicating that the component is not registered in any parent Component Manager.
+     */
+    private static final Object ABSENT = new Object();
+
+    /**
+     * The default maximum number of cached misses.
+     */
+    private static final int DEFAULT_MAX_MISSES = 10000;
+
+    /**
+     * The cached resolutions indexed by role type and role hint.
+     */
+    private final ConcurrentMap<Type, ConcurrentMap<String, Object>> resolutions =
+        new ConcurrentHashMap<Type, ConcurrentMap<String, Object>>();
+
+    /**
+     * Incremented each time a resolution is invalidated.
+     */
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * The maximum number of cached misses.
+     */
+    private final int maxMisses;
+
+    /**
+     * The number of cached misses. Approximate when modified concurrently with {@link #invalidateAll()}.
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Create a cache with the default maximum number of cached misses.
+     */
+    ParentResolutionCache()
+    {
+        this(DEFAULT_MAX_MISSES);
+    }
+
+    /**
+     * @param maxMisses the maximum number of cached misses
+     */
+    ParentResolutionCache(int maxMisses)
+    {
+        this.maxMisses = maxMisses;
+    }
+
+    /**
+     * @return the current generation, to pass to {@link #put(Type, String, ComponentManager, long)}
+     */
+    public long getGeneration()
+    {
+        return this.generation.get();
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @return true if a resolution is cached for the passed component
+     */
+    public boolean contains(Type roleType, String roleHint)
+    {
+        ConcurrentMap<String, Object> hints = this.resolutions.get(roleType);
+
+        return hints != null && hints.containsKey(roleHint);
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @return the Component Manager where the component is registered or null if the component could not be found
+     *         (or no resolution is cached, see {@link #contains(Type, String)})
+     */
+    public ComponentManager get(Type roleType, String roleHint)
+    {
+        ConcurrentMap<String, Object> hints = this.resolutions.get(roleType);
+
+        Object resolution = hints != null ? hints.get(roleHint) : null;
+
+        return resolution != ABSENT ? (ComponentManager) resolution : null;
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     * @param componentManager the Component Manager where the component is registered or null if it could not be found
+     * @param resolutionGeneration the generation returned by {@link #getGeneration()} before starting to resolve the
+     *            component
+     */
+    public void put(Type roleType, String roleHint, ComponentManager componentManager, long resolutionGeneration)
+    {
+        if (componentManager == null && this.misses.get() >= this.maxMisses) {
+            // Too many misses already cached
+            return;
+        }
+
+        ConcurrentMap<String, Object> hints = this.resolutions.get(roleType);
+        if (hints == null) {
+            hints = new ConcurrentHashMap<String, Object>();
+            ConcurrentMap<String, Object> existingHints = this.resolutions.putIfAbsent(roleType, hints);
+            if (existingHints != null) {
+                hints = existingHints;
+            }
+        }
+
+        Object resolution = componentManager != null ? componentManager : ABSENT;
+        replaced(hints.put(roleHint, resolution), resolution);
+
+        // Something changed while the component was resolved so the resolution might already be outdated
+        if (this.generation.get() != resolutionGeneration && hints.remove(roleHint, resolution)) {
+            replaced(resolution, null);
+        }
+    }
+
+    /**
+     * Update the number of cached misses.
+     * 
+     * @param oldResolution the removed resolution, null if none
+     * @param newResolution the added resolution, null if none
+     */
+    private void replaced(Object oldResolution, Object newResolution)
+    {
+        if (oldResolution == ABSENT && newResolution != ABSENT) {
+            this.misses.decrementAndGet();
+        } else if (oldResolution != ABSENT && newResolution == ABSENT) {
+            this.misses.incrementAndGet();
+        }
+    }
+
+    /**
+     * @param roleType the role type of the component
+     * @param roleHint the role hint of the component
+     */
+    public void invalidate(Type roleType, String roleHint)
+    {
+        this.generation.incrementAndGet();
+
+        ConcurrentMap<String, Object> hints = this.resolutions.get(roleType);
+        if (hints != null) {
+            replaced(hints.remove(roleHint), null);
+        }
+    }
+
+    /**
+     * Forget all the cached resolutions.
+     */
+    public void invalidateAll()
+    {
+        this.generation.incrementAndGet();
+
+        this.resolutions.clear();
+        this.misses.set(0);
+    }
+}
@@ -19,12 +19,17 @@
  */
 package org.xwiki.component.internal;
 
-import java.util.Stack;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 
 import org.xwiki.component.descriptor.ComponentDescriptor;
 import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
-import org.xwiki.component.manager.ComponentEventManager;
+import org.xwiki.component.event.ComponentDescriptorsAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorsRemovedEvent;
+import org.xwiki.component.manager.BatchComponentEventManager;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
@@ -37,7 +42,7 @@
  * @version $Id$
  * @since 2.0M1
  */
-public class StackingComponentEventManager implements ComponentEventManager
+public class StackingComponentEventManager implements BatchComponentEventManager
 {
     /**
      * The wrapped observation manager.
@@ -45,9 +50,9 @@ public class StackingComponentEventManager implements ComponentEventManager
     private ObservationManager observationManager;
 
     /**
-     * The event stacked before been given the order to send them.
+     * The event stacked before been given the order to send them, in the order they have been received.
      */
-    private Stack<ComponentEventEntry> events = new Stack<ComponentEventEntry>();
+    private List<ComponentEventEntry> events = new ArrayList<ComponentEventEntry>();
 
     /**
      * Indicate if event should be retained to directly sent.
@@ -82,14 +87,34 @@ public void notifyComponentUnregistered(ComponentDescriptor< ? > descriptor, Com
             descriptor, componentManager);
     }
 
+    @Override
+    public void notifyComponentsRegistered(Collection< ? extends ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager)
+    {
+        notifyComponentEvent(new ComponentDescriptorsAddedEvent(),
+            Collections.unmodifiableList(new ArrayList<ComponentDescriptor< ? >>(descriptors)), componentManager);
+    }
+
+    @Override
+    public void notifyComponentsUnregistered(Collection< ? extends ComponentDescriptor< ? >> descriptors,
+        ComponentManager componentManager)
+    {
+        notifyComponentEvent(new ComponentDescriptorsRemovedEvent(),
+            Collections.unmodifiableList(new ArrayList<ComponentDescriptor< ? >>(descriptors)), componentManager);
+    }
+
     /**
-     * Force to send all stored events.
+     * Force to send all stored events, in the order they have been received.
      */
     public synchronized void flushEvents()
     {
-        while (!this.events.isEmpty()) {
-            ComponentEventEntry entry = this.events.pop();
-            sendEvent(entry.event, entry.descriptor, entry.componentManager);
+        // Events sent by listeners while flushing are stacked or sent directly depending on the configuration so make
+        // sure to not send them twice
+        List<ComponentEventEntry> entries = this.events;
+        this.events = new ArrayList<ComponentEventEntry>();
+
+        for (ComponentEventEntry entry : entries) {
+            sendEvent(entry.event, entry.data, entry.componentManager);
         }
     }
 
@@ -113,19 +138,18 @@ public void setObservationManager(ObservationManager observationManager)
      * Send or stack the provided event dependening on the configuration.
      * 
      * @param event the event send by the component manager
-     * @param descriptor the event related component descriptor.
+     * @param data the event related component descriptor(s).
      * @param componentManager the event related component manager instance.
      * @see #shouldStack(boolean)
      */
-    private void notifyComponentEvent(Event event, ComponentDescriptor< ? > descriptor,
-        ComponentManager componentManager)
+    private void notifyComponentEvent(Event event, Object data, ComponentManager componentManager)
     {
         if (this.shouldStack) {
             synchronized (this) {
-                this.events.push(new ComponentEventEntry(event, descriptor, componentManager));
+                this.events.add(new ComponentEventEntry(event, data, componentManager));
             }
         } else {
-            sendEvent(event, descriptor, componentManager);
+            sendEvent(event, data, componentManager);
         }
     }
 
@@ -133,13 +157,13 @@ private void notifyComponentEvent(Event event, ComponentDescriptor< ? > descript
      * Send the event.
      * 
      * @param event the event to send
-     * @param descriptor the event related component descriptor.
+     * @param data the event related component descriptor(s).
      * @param componentManager the event related component manager instance.
      */
-    private void sendEvent(Event event, ComponentDescriptor< ? > descriptor, ComponentManager componentManager)
+    private void sendEvent(Event event, Object data, ComponentManager componentManager)
     {
         if (this.observationManager != null) {
-            this.observationManager.notify(event, componentManager, descriptor);
+            this.observationManager.notify(event, componentManager, data);
         }
     }
 
@@ -156,9 +180,9 @@ private void sendEvent(Event event, ComponentDescriptor< ? > descriptor, Compone
         public Event event;
 
         /**
-         * The event related component descriptor.
+         * The event related component descriptor, or collection of descriptors for batch events.
          */
-        public ComponentDescriptor< ? > descriptor;
+        public Object data;
 
         /**
          * The event related component manager instance.
@@ -167,13 +191,13 @@ private void sendEvent(Event event, ComponentDescriptor< ? > descriptor, Compone
 
         /**
          * @param event the stacked event.
-         * @param descriptor the event related component descriptor.
+         * @param data the event related component descriptor, or collection of descriptors for batch events.
          * @param componentManager the event related component manager instance.
          */
-        public ComponentEventEntry(Event event, ComponentDescriptor< ? > descriptor, ComponentManager componentManager)
+        public ComponentEventEntry(Event event, Object data, ComponentManager componentManager)
         {
             this.event = event;
-            this.descriptor = descriptor;
+            this.data = data;
             this.componentManager = componentManager;
         }
     }
@@ -178,8 +178,24 @@ public void tearDown() throws Exception
      * priority wins (ie the smallest integer value).
      */
     @Test
-    @SuppressWarnings({"rawtypes", "unchecked"})
     public void testPriorities() throws Exception
+    {
+        assertPriorities();
+    }
+
+    /**
+     * Verify that registering the components from several threads does not change the registration order.
+     */
+    @Test
+    public void testPrioritiesWithParallelRegistration() throws Exception
+    {
+        this.loader.setRegistrationThreads(4);
+
+        assertPriorities();
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private void assertPriorities() throws Exception
     {
         final ComponentManager mockManager = this.context.mock(ComponentManager.class);
 
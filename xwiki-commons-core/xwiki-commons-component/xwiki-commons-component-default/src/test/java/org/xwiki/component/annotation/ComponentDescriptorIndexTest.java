@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.annotation;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.component.ProviderTest;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.internal.RootComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+
+/**
+ * Unit tests for {@link ComponentDescriptorIndex}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentDescriptorIndexTest
+{
+    private ComponentAnnotationLoader loader = new ComponentAnnotationLoader();
+
+    private List<ComponentDeclaration> declarations = Arrays.asList(
+        new ComponentDeclaration(ProviderTest.TestComponentWithProviders.class.getName()),
+        new ComponentDeclaration(ComponentAnnotationLoaderTest.ProviderImpl.class.getName()),
+        new ComponentDeclaration(ComponentAnnotationLoaderTest.GenericComponent.class.getName()),
+        new ComponentDeclaration(RootComponentManager.class.getName()));
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        ComponentDescriptorIndex index =
+            this.loader.createComponentDescriptorIndex(getClass().getClassLoader(), this.declarations);
+
+        StringWriter writer = new StringWriter();
+        index.write(writer);
+
+        ComponentDescriptorIndex readIndex = new ComponentDescriptorIndex();
+        readIndex.read(new ByteArrayInputStream(writer.toString().getBytes("UTF-8")));
+
+        for (ComponentDeclaration declaration : this.declarations) {
+            Assert.assertTrue(readIndex.contains(declaration.getImplementationClassName()));
+            Assert.assertEquals(
+                this.loader.getComponentsDescriptors(Class.forName(declaration.getImplementationClassName())),
+                readIndex.getComponentDescriptors(declaration.getImplementationClassName(), getClass()
+                    .getClassLoader()));
+        }
+    }
+
+    @Test
+    public void testReadWithUnknownVersion() throws Exception
+    {
+        ComponentDescriptorIndex index = new ComponentDescriptorIndex();
+        index.read(new ByteArrayInputStream(("#xwiki-components-index:0\n" + RootComponentManager.class.getName()
+            + "\tjavax.inject.Provider\tdefault\tSINGLETON\n").getBytes("UTF-8")));
+
+        Assert.assertTrue(index.isEmpty());
+    }
+
+    /**
+     * A classloader to which URLs can be added.
+     */
+    private static class ExtensibleClassLoader extends URLClassLoader
+    {
+        public ExtensibleClassLoader(ClassLoader parent)
+        {
+            super(new URL[0], parent);
+        }
+
+        @Override
+        public void addURL(URL url)
+        {
+            super.addURL(url);
+        }
+    }
+
+    /**
+     * Write the index of the tested declarations in the passed directory.
+     */
+    private File writeIndex(File directory) throws Exception
+    {
+        File indexFile = new File(directory, ComponentAnnotationLoader.COMPONENT_INDEX);
+        indexFile.getParentFile().mkdirs();
+
+        Writer writer = new OutputStreamWriter(new FileOutputStream(indexFile), "UTF-8");
+        try {
+            this.loader.createComponentDescriptorIndex(getClass().getClassLoader(), this.declarations).write(writer);
+        } finally {
+            writer.close();
+        }
+
+        return indexFile;
+    }
+
+    private void delete(File file)
+    {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+
+        file.delete();
+    }
+
+    @Test
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    public void testRegisterFromIndex() throws Exception
+    {
+        File directory = new File("target/test-index");
+
+        try {
+            writeIndex(directory);
+
+            URLClassLoader classLoader =
+                new URLClassLoader(new URL[] {directory.toURI().toURL()}, getClass().getClassLoader());
+
+            Mockery context = new Mockery();
+            final ComponentManager mockManager = context.mock(ComponentManager.class);
+
+            final List<ComponentDescriptor> descriptors =
+                this.loader.getComponentsDescriptors(ProviderTest.TestComponentWithProviders.class);
+
+            context.checking(new Expectations()
+            {
+                {
+                    for (ComponentDescriptor descriptor : descriptors) {
+                        oneOf(mockManager).registerComponent(descriptor);
+                    }
+                }
+            });
+
+            this.loader.register(mockManager, classLoader,
+                Arrays.asList(new ComponentDeclaration(ProviderTest.TestComponentWithProviders.class.getName())));
+
+            context.assertIsSatisfied();
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testIndexesAreCachedPerClassLoader() throws Exception
+    {
+        File directory = new File("target/test-index-cache");
+
+        try {
+            ComponentDescriptorIndexCache cache = new ComponentDescriptorIndexCache();
+            ExtensibleClassLoader classLoader = new ExtensibleClassLoader(getClass().getClassLoader());
+
+            ComponentDescriptorIndex index = cache.get(classLoader);
+
+            Assert.assertSame(index, cache.get(classLoader));
+            Assert.assertFalse(index.contains(ProviderTest.TestComponentWithProviders.class.getName()));
+
+            // New index files are read when the classloader gets new URLs
+            writeIndex(directory);
+            classLoader.addURL(directory.toURI().toURL());
+
+            ComponentDescriptorIndex newIndex = cache.get(classLoader);
+
+            Assert.assertNotSame(index, newIndex);
+            Assert.assertTrue(newIndex.contains(ProviderTest.TestComponentWithProviders.class.getName()));
+            Assert.assertFalse(index.contains(ProviderTest.TestComponentWithProviders.class.getName()));
+            Assert.assertSame(newIndex, cache.get(classLoader));
+        } finally {
+            delete(directory);
+        }
+    }
+}
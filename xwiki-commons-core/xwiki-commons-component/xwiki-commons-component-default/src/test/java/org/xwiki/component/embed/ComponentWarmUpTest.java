@@ -0,0 +1,231 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDependency;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.phase.Initializable;
+import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Unit tests for {@link ComponentWarmUp}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ComponentWarmUpTest
+{
+    private static final List<String> INITIALIZED = new CopyOnWriteArrayList<String>();
+
+    public static interface Role
+    {
+    }
+
+    public static class LeafImpl implements Role, Initializable
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            INITIALIZED.add("leaf");
+        }
+    }
+
+    public static class NodeImpl implements Role, Initializable
+    {
+        public Role leaf;
+
+        @Override
+        public void initialize() throws InitializationException
+        {
+            INITIALIZED.add("node");
+        }
+    }
+
+    public static class FailingImpl implements Role, Initializable
+    {
+        @Override
+        public void initialize() throws InitializationException
+        {
+            throw new InitializationException("error");
+        }
+    }
+
+    public static class LazyImpl implements Role
+    {
+        public Provider<Role> provider;
+
+        public Logger logger;
+    }
+
+    public static class RoleProvider implements Provider<Role>
+    {
+        @Override
+        public Role get()
+        {
+            return new LeafImpl();
+        }
+    }
+
+    private EmbeddableComponentManager createComponentManager() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> node = new DefaultComponentDescriptor<Role>();
+        node.setRoleType(Role.class);
+        node.setRoleHint("node");
+        node.setImplementation(NodeImpl.class);
+        DefaultComponentDependency<Role> dependency = new DefaultComponentDependency<Role>();
+        dependency.setRoleType(Role.class);
+        dependency.setRoleHint("leaf");
+        dependency.setName("leaf");
+        node.addComponentDependency(dependency);
+        ecm.registerComponent(node);
+
+        DefaultComponentDescriptor<Role> leaf = new DefaultComponentDescriptor<Role>();
+        leaf.setRoleType(Role.class);
+        leaf.setRoleHint("leaf");
+        leaf.setImplementation(LeafImpl.class);
+        ecm.registerComponent(leaf);
+
+        DefaultComponentDescriptor<Role> perLookup = new DefaultComponentDescriptor<Role>();
+        perLookup.setRoleType(Role.class);
+        perLookup.setRoleHint("perlookup");
+        perLookup.setImplementation(LeafImpl.class);
+        perLookup.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(perLookup);
+
+        DefaultComponentDescriptor<Role> failing = new DefaultComponentDescriptor<Role>();
+        failing.setRoleType(Role.class);
+        failing.setRoleHint("failing");
+        failing.setImplementation(FailingImpl.class);
+        ecm.registerComponent(failing);
+
+        return ecm;
+    }
+
+    @Test
+    public void testWarmUp() throws Exception
+    {
+        INITIALIZED.clear();
+
+        EmbeddableComponentManager ecm = createComponentManager();
+
+        ComponentWarmUp warmUp = new ComponentWarmUp(ecm, 4);
+        Assert.assertFalse(warmUp.isReady());
+
+        warmUp.warmUp();
+
+        Assert.assertTrue(warmUp.isReady());
+        // Dependencies first and per lookup components are not created
+        Assert.assertEquals(2, INITIALIZED.size());
+        Assert.assertEquals("leaf", INITIALIZED.get(0));
+        Assert.assertEquals("node", INITIALIZED.get(1));
+
+        // The failing component is skipped
+        Assert.assertEquals(2, warmUp.getInitializationTimes().size());
+        Assert.assertTrue(warmUp.getInitializationTimes().containsKey(ecm.getComponentDescriptor(Role.class, "leaf")));
+        Assert.assertTrue(warmUp.getInitializationTimes().containsKey(ecm.getComponentDescriptor(Role.class, "node")));
+
+        // The singletons are already created
+        Assert.assertSame(((NodeImpl) ecm.getInstance(Role.class, "node")).leaf, ecm.getInstance(Role.class, "leaf"));
+        Assert.assertEquals(2, INITIALIZED.size());
+    }
+
+    @Test
+    public void testProviderAndLoggerAreNotDependencies() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultParameterizedType providerType = new DefaultParameterizedType(null, Provider.class, Role.class);
+
+        DefaultComponentDescriptor<Provider<Role>> provider = new DefaultComponentDescriptor<Provider<Role>>();
+        provider.setRoleType(providerType);
+        provider.setImplementation(RoleProvider.class);
+        ecm.registerComponent(provider);
+
+        DefaultComponentDescriptor<Role> lazy = new DefaultComponentDescriptor<Role>();
+        lazy.setRoleType(Role.class);
+        lazy.setRoleHint("lazy");
+        lazy.setImplementation(LazyImpl.class);
+        DefaultComponentDependency<Provider<Role>> providerDependency =
+            new DefaultComponentDependency<Provider<Role>>();
+        providerDependency.setRoleType(providerType);
+        providerDependency.setName("provider");
+        lazy.addComponentDependency(providerDependency);
+        DefaultComponentDependency<Logger> loggerDependency = new DefaultComponentDependency<Logger>();
+        loggerDependency.setRoleType(Logger.class);
+        loggerDependency.setName("logger");
+        lazy.addComponentDependency(loggerDependency);
+        ecm.registerComponent(lazy);
+
+        List<List<ComponentDescriptor< ? >>> levels = new ComponentWarmUp(ecm, 1).getLevels();
+
+        // The provided component is only looked up when asked so it doesn't have to be created first
+        Assert.assertEquals(1, levels.size());
+        Assert.assertTrue(levels.get(0).contains(ecm.getComponentDescriptor(Role.class, "lazy")));
+        Assert.assertTrue(levels.get(0).contains(ecm.getComponentDescriptor(providerType, "default")));
+    }
+
+    @Test
+    public void testStart() throws Exception
+    {
+        ComponentWarmUp warmUp = new ComponentWarmUp(createComponentManager(), 2);
+
+        warmUp.start();
+
+        Assert.assertTrue(warmUp.waitReady(10, TimeUnit.SECONDS));
+        Assert.assertTrue(warmUp.isReady());
+    }
+
+    @Test
+    public void testWarmUpOnInitialization() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        System.setProperty(ComponentWarmUp.THREADS_PROPERTY, "2");
+        try {
+            ecm.initialize(getClass().getClassLoader());
+        } finally {
+            System.clearProperty(ComponentWarmUp.THREADS_PROPERTY);
+        }
+
+        Assert.assertNotNull(ecm.getWarmUp());
+        Assert.assertTrue(ecm.getWarmUp().waitReady(10, TimeUnit.SECONDS));
+        Assert.assertFalse(ecm.getWarmUp().getInitializationTimes().isEmpty());
+
+        // Disabled by default
+        ecm = new EmbeddableComponentManager();
+        ecm.initialize(getClass().getClassLoader());
+
+        Assert.assertNull(ecm.getWarmUp());
+    }
+}
@@ -19,6 +19,8 @@
  */
 package org.xwiki.component.embed;
 
+import java.lang.reflect.Type;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 
@@ -34,6 +36,7 @@
 import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.descriptor.DefaultComponentDependency;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.BatchComponentEventManager;
 import org.xwiki.component.manager.ComponentEventManager;
 import org.xwiki.component.manager.ComponentLifecycleException;
 import org.xwiki.component.manager.ComponentLookupException;
@@ -141,6 +144,40 @@ public void testGetComponentDescriptorList() throws Exception
         Assert.assertTrue(cds.contains(d2));
     }
 
+    @Test
+    public void testGetComponentDescriptorListAfterUnregister() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> d1 = new DefaultComponentDescriptor<Role>();
+        d1.setRole(Role.class);
+        d1.setRoleHint("hint1");
+        d1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(d1);
+
+        DefaultComponentDescriptor<Role> d2 = new DefaultComponentDescriptor<Role>();
+        d2.setRole(Role.class);
+        d2.setRoleHint("hint2");
+        d2.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(d2);
+
+        ecm.unregisterComponent(Role.class, "hint1");
+
+        List<ComponentDescriptor<Role>> cds = ecm.getComponentDescriptorList((Type) Role.class);
+        Assert.assertEquals(1, cds.size());
+        Assert.assertSame(d2.getImplementation(), cds.get(0).getImplementation());
+
+        Map<String, Role> instances = ecm.getInstanceMap(Role.class);
+        Assert.assertEquals(1, instances.size());
+        Assert.assertSame(OtherRoleImpl.class, instances.get("hint2").getClass());
+
+        ecm.unregisterComponent(Role.class, "hint2");
+
+        Assert.assertTrue(ecm.getComponentDescriptorList((Type) Role.class).isEmpty());
+        Assert.assertTrue(ecm.getInstanceList(Role.class).isEmpty());
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint2"));
+    }
+
     @Test
     public void testRegisterComponentOverExistingOne() throws Exception
     {
@@ -268,6 +305,139 @@ public void testHasComponentWhenComponentInParent() throws Exception
         Assert.assertTrue(ecm.hasComponent(Role.class, "default"));
     }
 
+    @Test
+    public void testHasComponentWithNullHint() throws Exception
+    {
+        EmbeddableComponentManager parent = (EmbeddableComponentManager) createParentComponentManager();
+
+        Assert.assertTrue(parent.hasComponent(Role.class, null));
+        Assert.assertFalse(parent.hasComponent(OtherRoleImpl.class, null));
+
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        Assert.assertTrue(ecm.hasComponent(Role.class, null));
+        Assert.assertFalse(ecm.hasComponent(OtherRoleImpl.class, null));
+    }
+
+    @Test
+    public void testLookupWhenComponentRegisteredAndUnregisteredInGrandParent() throws Exception
+    {
+        EmbeddableComponentManager grandParent = new EmbeddableComponentManager();
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        parent.setParent(grandParent);
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+
+        // Make sure the absence is remembered
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+        try {
+            ecm.getInstance(Role.class, "hint");
+            Assert.fail("Should have thrown a ComponentLookupException");
+        } catch (ComponentLookupException expected) {
+            // The component doesn't exist
+        }
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setRoleHint("hint");
+        cd.setImplementation(RoleImpl.class);
+        grandParent.registerComponent(cd);
+
+        Assert.assertTrue(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertSame(grandParent.getInstance(Role.class, "hint"), ecm.getInstance(Role.class, "hint"));
+
+        // Override the component in the parent
+        cd.setImplementation(OtherRoleImpl.class);
+        parent.registerComponent(cd);
+
+        Assert.assertTrue(ecm.getInstance(Role.class, "hint") instanceof OtherRoleImpl);
+
+        parent.unregisterComponent(Role.class, "hint");
+
+        Assert.assertTrue(ecm.getInstance(Role.class, "hint") instanceof RoleImpl);
+
+        grandParent.unregisterComponent(Role.class, "hint");
+
+        Assert.assertFalse(ecm.hasComponent(Role.class, "hint"));
+        Assert.assertFalse(parent.hasComponent(Role.class, "hint"));
+
+        // Changing the parent forget everything
+        ecm.setParent(createParentComponentManager());
+
+        Assert.assertTrue(ecm.hasComponent(Role.class));
+    }
+
+    @Test
+    public void testStatistics() throws Exception
+    {
+        EmbeddableComponentManager parent = new EmbeddableComponentManager();
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.setParent(parent);
+        ComponentManagerStatistics statistics = new ComponentManagerStatistics();
+        ecm.setStatistics(statistics);
+
+        DefaultComponentDescriptor<Role> cd = new DefaultComponentDescriptor<Role>();
+        cd.setRoleType(Role.class);
+        cd.setImplementation(InitializableRoleImpl.class);
+        cd.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        ecm.registerComponent(cd);
+
+        cd.setRoleHint("parent");
+        parent.registerComponent(cd);
+
+        ecm.getInstance(Role.class);
+        ecm.getInstance(Role.class);
+        ecm.getInstance(Role.class, "parent");
+        try {
+            ecm.getInstance(Role.class, "missing");
+        } catch (ComponentLookupException expected) {
+            // The component doesn't exist
+        }
+        Assert.assertFalse(ecm.hasComponent(Role.class, "missing"));
+        Assert.assertTrue(ecm.hasComponent(Role.class, "parent"));
+
+        ComponentStatistics componentStatistics = statistics.getComponentStatistics(Role.class, "default");
+        Assert.assertEquals(2, componentStatistics.getLookupCount());
+        Assert.assertEquals(2, componentStatistics.getCreationCount());
+        Assert.assertTrue(componentStatistics.getCreationTime() >= componentStatistics.getMaxCreationTime());
+        Assert.assertTrue(componentStatistics.getCreationTime() >= componentStatistics.getInitializationTime());
+
+        componentStatistics = statistics.getComponentStatistics(Role.class, "parent");
+        Assert.assertEquals(0, componentStatistics.getLookupCount());
+        Assert.assertEquals(1, componentStatistics.getDelegationCount());
+        Assert.assertEquals(1, componentStatistics.getMaxDelegationDepth());
+        // Created by the parent
+        Assert.assertEquals(0, componentStatistics.getCreationCount());
+
+        Assert.assertEquals(2, statistics.getComponentStatistics(Role.class, "missing").getMissCount());
+
+        statistics.reset();
+
+        Assert.assertTrue(statistics.getComponentStatistics().isEmpty());
+    }
+
+    @Test
+    public void testStatisticsAreLimited() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ComponentManagerStatistics statistics = new ComponentManagerStatistics(2);
+        ecm.setStatistics(statistics);
+
+        for (int i = 0; i < 5; ++i) {
+            Assert.assertFalse(ecm.hasComponent(Role.class, "missing" + i));
+            try {
+                ecm.getInstance(Role.class, "missing" + i);
+            } catch (ComponentLookupException expected) {
+                // The component doesn't exist
+            }
+        }
+
+        Assert.assertEquals(2, statistics.getComponentStatistics().size());
+        Assert.assertEquals(2, statistics.getComponentStatistics(Role.class, "missing1").getMissCount());
+        Assert.assertNull(statistics.getComponentStatistics(Role.class, "missing2"));
+    }
+
     @Test
     public void testLoggingInjection() throws Exception
     {
@@ -288,6 +458,31 @@ public void testLoggingInjection() throws Exception
         Assert.assertNotNull(impl.getLogger());
     }
 
+    @Test
+    public void testPerLookupComponentInjection() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        DefaultComponentDescriptor<Role> d = new DefaultComponentDescriptor<Role>();
+        d.setRole(Role.class);
+        d.setImplementation(LoggingRoleImpl.class);
+        d.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+
+        DefaultComponentDependency dependencyDescriptor = new DefaultComponentDependency();
+        dependencyDescriptor.setMappingType(Logger.class);
+        dependencyDescriptor.setName("logger");
+
+        d.addComponentDependency(dependencyDescriptor);
+        ecm.registerComponent(d);
+
+        LoggingRoleImpl impl1 = (LoggingRoleImpl) ecm.getInstance(Role.class);
+        LoggingRoleImpl impl2 = (LoggingRoleImpl) ecm.getInstance(Role.class);
+
+        Assert.assertNotSame(impl1, impl2);
+        Assert.assertNotNull(impl1.getLogger());
+        Assert.assertNotNull(impl2.getLogger());
+    }
+
     private ComponentManager createParentComponentManager() throws Exception
     {
         EmbeddableComponentManager parent = new EmbeddableComponentManager();
@@ -393,6 +588,47 @@ public void testReleaseDisposableComponent() throws Exception
         Assert.assertTrue(instance.isFinalized());
     }
 
+    @Test
+    public void testReleaseAll() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(DisposableRoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(DisposableRoleImpl.class);
+        ecm.registerComponent(cd2);
+
+        DisposableRoleImpl instance1 = ecm.getInstance(Role.class);
+        DisposableRoleImpl instance2 = ecm.getInstance(Role.class, "other");
+
+        final ComponentEventManager cem = getMockery().mock(ComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentUnregistered(cd1, ecm);
+                oneOf(cem).notifyComponentRegistered(cd1, ecm);
+                oneOf(cem).notifyComponentUnregistered(cd2, ecm);
+                oneOf(cem).notifyComponentRegistered(cd2, ecm);
+            }
+        });
+
+        // Unknown and already released instances are ignored
+        ecm.releaseAll(Arrays.asList(instance1, instance2, new RoleImpl(), instance1));
+
+        Assert.assertTrue(instance1.isFinalized());
+        Assert.assertTrue(instance2.isFinalized());
+        Assert.assertNotSame(instance1, ecm.getInstance(Role.class));
+        Assert.assertNotSame(instance2, ecm.getInstance(Role.class, "other"));
+    }
+
     @Test
     public void testRegisterComponentNotification() throws Exception
     {
@@ -465,4 +701,109 @@ public void testRegisterComponentNotificationOnSecondRegistration() throws Excep
 
         ecm.registerComponent(cd2);
     }
+
+    @Test
+    public void testRegisterComponentsNotification() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setImplementation(OtherRoleImpl.class);
+
+        final DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<Role>();
+        cd3.setRole(Role.class);
+        cd3.setRoleHint("other");
+        cd3.setImplementation(RoleImpl.class);
+
+        final BatchComponentEventManager cem = getMockery().mock(BatchComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentsUnregistered(Arrays.asList(cd1), ecm);
+                oneOf(cem).notifyComponentsRegistered(Arrays.asList(cd2, cd3), ecm);
+            }
+        });
+
+        ecm.registerComponents(Arrays.asList(cd2, cd3));
+
+        Assert.assertEquals(OtherRoleImpl.class, ecm.getInstance(Role.class).getClass());
+        Assert.assertEquals(RoleImpl.class, ecm.getInstance(Role.class, "other").getClass());
+    }
+
+    @Test
+    public void testRegisterComponentsNotificationWithoutBatchSupport() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(OtherRoleImpl.class);
+
+        final ComponentEventManager cem = getMockery().mock(ComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentRegistered(cd1, ecm);
+                oneOf(cem).notifyComponentRegistered(cd2, ecm);
+                oneOf(cem).notifyComponentUnregistered(cd1, ecm);
+                oneOf(cem).notifyComponentUnregistered(cd2, ecm);
+            }
+        });
+
+        ecm.registerComponents(Arrays.asList(cd1, cd2));
+        ecm.unregisterComponents(Arrays.asList(cd1, cd2));
+    }
+
+    @Test
+    public void testUnregisterComponentsNotification() throws Exception
+    {
+        final EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+
+        final DefaultComponentDescriptor<Role> cd1 = new DefaultComponentDescriptor<Role>();
+        cd1.setRole(Role.class);
+        cd1.setImplementation(RoleImpl.class);
+        ecm.registerComponent(cd1);
+
+        final DefaultComponentDescriptor<Role> cd2 = new DefaultComponentDescriptor<Role>();
+        cd2.setRole(Role.class);
+        cd2.setRoleHint("other");
+        cd2.setImplementation(OtherRoleImpl.class);
+        ecm.registerComponent(cd2);
+
+        // Not registered so should be ignored
+        final DefaultComponentDescriptor<Role> cd3 = new DefaultComponentDescriptor<Role>();
+        cd3.setRole(Role.class);
+        cd3.setRoleHint("unknown");
+        cd3.setImplementation(RoleImpl.class);
+
+        final BatchComponentEventManager cem = getMockery().mock(BatchComponentEventManager.class);
+        ecm.setComponentEventManager(cem);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                oneOf(cem).notifyComponentsUnregistered(Arrays.asList(cd1, cd2), ecm);
+            }
+        });
+
+        ecm.unregisterComponents(Arrays.asList(cd1, cd2, cd3));
+
+        Assert.assertFalse(ecm.hasComponent(Role.class));
+        Assert.assertFalse(ecm.hasComponent(Role.class, "other"));
+    }
 }
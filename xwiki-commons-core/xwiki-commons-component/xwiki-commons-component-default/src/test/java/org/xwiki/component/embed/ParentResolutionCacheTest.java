@@ -0,0 +1,63 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.embed;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for {@link ParentResolutionCache}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ParentResolutionCacheTest
+{
+    @Test
+    public void testMissesAreLimited()
+    {
+        ParentResolutionCache cache = new ParentResolutionCache(2);
+        EmbeddableComponentManager componentManager = new EmbeddableComponentManager();
+
+        cache.put(String.class, "miss1", null, cache.getGeneration());
+        cache.put(String.class, "miss2", null, cache.getGeneration());
+        cache.put(String.class, "miss3", null, cache.getGeneration());
+
+        Assert.assertTrue(cache.contains(String.class, "miss1"));
+        Assert.assertTrue(cache.contains(String.class, "miss2"));
+        Assert.assertFalse(cache.contains(String.class, "miss3"));
+
+        // Components found in a parent are still cached
+        cache.put(String.class, "found", componentManager, cache.getGeneration());
+        Assert.assertSame(componentManager, cache.get(String.class, "found"));
+
+        // Invalidated misses free some room
+        cache.invalidate(String.class, "miss1");
+        cache.put(String.class, "miss3", null, cache.getGeneration());
+
+        Assert.assertTrue(cache.contains(String.class, "miss3"));
+
+        // A miss replaced by a found component frees some room too
+        cache.put(String.class, "miss2", componentManager, cache.getGeneration());
+        cache.put(String.class, "miss4", null, cache.getGeneration());
+
+        Assert.assertTrue(cache.contains(String.class, "miss4"));
+    }
+}
@@ -0,0 +1,220 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.multi;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Unit tests for {@link DefaultComponentManagerManager}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class DefaultComponentManagerManagerTest
+{
+    public static interface Role
+    {
+    }
+
+    public static class DisposableRoleImpl implements Role, Disposable
+    {
+        private boolean disposed;
+
+        @Override
+        public void dispose() throws ComponentLifecycleException
+        {
+            this.disposed = true;
+        }
+
+        public boolean isDisposed()
+        {
+            return this.disposed;
+        }
+    }
+
+    public static class TestEventListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return "test";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            // Nothing to do
+        }
+    }
+
+    private DefaultComponentManagerManager manager;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ecm.initialize(getClass().getClassLoader());
+
+        this.manager = (DefaultComponentManagerManager) ecm.getInstance(ComponentManagerManager.class);
+    }
+
+    @Test
+    public void testGetComponentManager()
+    {
+        Assert.assertNull(this.manager.getComponentManager("wiki:wiki1", false));
+
+        ComponentManager componentManager = this.manager.getComponentManager("wiki:wiki1", true);
+
+        Assert.assertNotNull(componentManager);
+        Assert.assertSame(componentManager, this.manager.getComponentManager("wiki:wiki1", false));
+        Assert.assertSame(componentManager, this.manager.getComponentManager("wiki:wiki1", true));
+        Assert.assertNotSame(componentManager, this.manager.getComponentManager("wiki:wiki2", true));
+    }
+
+    @Test
+    public void testConcurrentCreation() throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<ComponentManager>> futures = new ArrayList<Future<ComponentManager>>();
+            for (int i = 0; i < 32; ++i) {
+                futures.add(executor.submit(new Callable<ComponentManager>()
+                {
+                    @Override
+                    public ComponentManager call() throws Exception
+                    {
+                        return manager.getComponentManager("wiki:concurrent", true);
+                    }
+                }));
+            }
+
+            ComponentManager componentManager = this.manager.getComponentManager("wiki:concurrent", false);
+            for (Future<ComponentManager> future : futures) {
+                Assert.assertSame(componentManager, future.get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testEvictIdleComponentManagers() throws Exception
+    {
+        ComponentManager emptyComponentManager = this.manager.getComponentManager("wiki:empty", true);
+        ComponentManager componentManager = this.manager.getComponentManager("wiki:wiki", true);
+
+        DefaultComponentDescriptor<Role> descriptor = new DefaultComponentDescriptor<Role>();
+        descriptor.setRoleType(Role.class);
+        descriptor.setImplementation(DisposableRoleImpl.class);
+        componentManager.registerComponent(descriptor);
+
+        DisposableRoleImpl component = componentManager.getInstance(Role.class);
+
+        // Not idle yet
+        this.manager.setMaxIdleTime(60000);
+        this.manager.evictIdleComponentManagers();
+
+        Assert.assertSame(emptyComponentManager, this.manager.getComponentManager("wiki:empty", false));
+        Assert.assertSame(component, componentManager.getInstance(Role.class));
+
+        this.manager.setMaxIdleTime(1);
+        Thread.sleep(10);
+        this.manager.evictIdleComponentManagers();
+
+        // The empty Component Manager is still referenced so it's reused and keeps its parent
+        Assert.assertSame(emptyComponentManager, this.manager.getComponentManager("wiki:empty", false));
+        Assert.assertTrue(emptyComponentManager.hasComponent(ComponentManagerManager.class));
+
+        // The other one is kept but its instances are released
+        Assert.assertSame(componentManager, this.manager.getComponentManager("wiki:wiki", false));
+        Assert.assertTrue(component.isDisposed());
+        Assert.assertNotSame(component, componentManager.getInstance(Role.class));
+    }
+
+    @Test
+    public void testEvictionKeepsEventListeners() throws Exception
+    {
+        ComponentManager componentManager = this.manager.getComponentManager("wiki:wiki", true);
+
+        DefaultComponentDescriptor<EventListener> descriptor = new DefaultComponentDescriptor<EventListener>();
+        descriptor.setRoleType(EventListener.class);
+        descriptor.setImplementation(TestEventListener.class);
+        componentManager.registerComponent(descriptor);
+
+        EventListener listener = componentManager.getInstance(EventListener.class);
+
+        this.manager.setMaxIdleTime(1);
+        Thread.sleep(10);
+        this.manager.evictIdleComponentManagers();
+
+        // The Observation Manager would look it up again right away
+        Assert.assertSame(listener, componentManager.getInstance(EventListener.class));
+    }
+
+    @Test
+    public void testGetComponentManagerUsages() throws Exception
+    {
+        ComponentManager componentManager = this.manager.getComponentManager("wiki:wiki", true);
+        this.manager.getComponentManager("wiki:wiki", false);
+
+        DefaultComponentDescriptor<Role> descriptor = new DefaultComponentDescriptor<Role>();
+        descriptor.setRoleType(Role.class);
+        descriptor.setImplementation(DisposableRoleImpl.class);
+        componentManager.registerComponent(descriptor);
+
+        Collection<ComponentManagerUsage> usages = this.manager.getComponentManagerUsages();
+
+        Assert.assertEquals(1, usages.size());
+        ComponentManagerUsage usage = usages.iterator().next();
+        Assert.assertEquals("wiki:wiki", usage.getId());
+        Assert.assertEquals(2, usage.getAccessCount());
+        Assert.assertEquals(1, usage.getComponentCount());
+        Assert.assertEquals(0, usage.getInstanceCount());
+
+        componentManager.getInstance(Role.class);
+
+        usage = this.manager.getComponentManagerUsages().iterator().next();
+        Assert.assertEquals(1, usage.getInstanceCount());
+    }
+}
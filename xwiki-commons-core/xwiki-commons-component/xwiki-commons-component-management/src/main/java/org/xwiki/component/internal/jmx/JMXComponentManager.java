@@ -0,0 +1,287 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.jmx;
+
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.component.embed.ComponentManagerStatistics;
+import org.xwiki.component.embed.ComponentStatistics;
+
+/**
+ * Expose the {@link ComponentManagerStatistics} of a Component Manager as JMX management data.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXComponentManager implements JMXComponentManagerMBean
+{
+    /**
+     * The name of the column containing the component role type.
+     */
+    private static final String ROLE = "role";
+
+    /**
+     * The name of the column containing the component role hint.
+     */
+    private static final String HINT = "hint";
+
+    /**
+     * The names of the columns of the components table.
+     */
+    private static final String[] COLUMN_NAMES = new String[] {ROLE, HINT, "lookups", "misses", "delegations",
+        "maxDelegationDepth", "creations", "creationTime", "maxCreationTime", "initializationTime"};
+
+    /**
+     * The descriptions of the columns of the components table.
+     */
+    private static final String[] COLUMN_DESCRIPTIONS = new String[] {"The component role type",
+        "The component role hint", "The number of lookups resolved in this Component Manager",
+        "The number of lookups which could not be resolved",
+        "The number of lookups resolved in a parent Component Manager",
+        "The maximum number of parent Component Managers traversed to resolve a lookup",
+        "The number of created instances", "The total time spent creating instances (in microseconds)",
+        "The maximum time spent creating an instance (in microseconds)",
+        "The total time spent initializing instances (in microseconds)"};
+
+    /**
+     * The statistics to expose.
+     */
+    private ComponentManagerStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXComponentManager(ComponentManagerStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public TabularData getComponents()
+    {
+        TabularData data;
+
+        try {
+            OpenType< ? >[] columnTypes =
+                new OpenType< ? >[] {SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG, SimpleType.INTEGER, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG};
+
+            // Represents one row (component statistics) in the returned table data
+            CompositeType rowType =
+                new CompositeType("component", "Component usage statistics for a row", COLUMN_NAMES,
+                    COLUMN_DESCRIPTIONS, columnTypes);
+
+            TabularType type =
+                new TabularType("components", "Component usage statistics", rowType, new String[] {ROLE, HINT});
+            data = new TabularDataSupport(type);
+
+            for (ComponentRow row : getRows().values()) {
+                data.put(new CompositeDataSupport(rowType, COLUMN_NAMES, row.getValues()));
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to gather information on components usage", e);
+        }
+
+        return data;
+    }
+
+    /**
+     * Index the component statistics by role type name and role hint. Distinct role types can share the same name
+     * (e.g. the same generic type represented by two different {@link ParameterizedType} implementations) in which
+     * case their statistics are merged in a single row.
+     *
+     * @return the rows of the components table, indexed by their key
+     */
+    private Map<List<String>, ComponentRow> getRows()
+    {
+        Map<List<String>, ComponentRow> rows = new LinkedHashMap<List<String>, ComponentRow>();
+
+        for (ComponentStatistics component : this.statistics.getComponentStatistics()) {
+            String roleType = getTypeName(component.getRoleType());
+            List<String> key = Arrays.asList(roleType, component.getRoleHint());
+
+            ComponentRow row = rows.get(key);
+            if (row == null) {
+                row = new ComponentRow(roleType, component.getRoleHint());
+                rows.put(key, row);
+            }
+            row.add(component);
+        }
+
+        return rows;
+    }
+
+    /**
+     * @param type a component role type
+     * @return the name of the type, including the names of its type arguments
+     */
+    private String getTypeName(Type type)
+    {
+        if (type instanceof Class) {
+            return ((Class< ? >) type).getName();
+        }
+
+        if (type instanceof ParameterizedType) {
+            ParameterizedType parameterizedType = (ParameterizedType) type;
+
+            StringBuilder name = new StringBuilder(getTypeName(parameterizedType.getRawType()));
+            name.append('<');
+            Type[] arguments = parameterizedType.getActualTypeArguments();
+            for (int i = 0; i < arguments.length; ++i) {
+                if (i > 0) {
+                    name.append(", ");
+                }
+                name.append(getTypeName(arguments[i]));
+            }
+            name.append('>');
+
+            return name.toString();
+        }
+
+        return type.toString();
+    }
+
+    @Override
+    public long getInitializationTime()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.statistics.getInitializationTime());
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        this.statistics.reset();
+    }
+
+    /**
+     * @param nanoseconds a duration in nanoseconds
+     * @return the same duration in microseconds
+     */
+    private static long toMicroseconds(long nanoseconds)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanoseconds);
+    }
+
+    /**
+     * The statistics of the components sharing the same role type name and role hint.
+     */
+    private static final class ComponentRow
+    {
+        /**
+         * @see ComponentStatistics#getRoleType()
+         */
+        private final String roleType;
+
+        /**
+         * @see ComponentStatistics#getRoleHint()
+         */
+        private final String roleHint;
+
+        /**
+         * @see ComponentStatistics#getLookupCount()
+         */
+        private long lookupCount;
+
+        /**
+         * @see ComponentStatistics#getMissCount()
+         */
+        private long missCount;
+
+        /**
+         * @see ComponentStatistics#getDelegationCount()
+         */
+        private long delegationCount;
+
+        /**
+         * @see ComponentStatistics#getMaxDelegationDepth()
+         */
+        private int maxDelegationDepth;
+
+        /**
+         * @see ComponentStatistics#getCreationCount()
+         */
+        private long creationCount;
+
+        /**
+         * @see ComponentStatistics#getCreationTime()
+         */
+        private long creationTime;
+
+        /**
+         * @see ComponentStatistics#getMaxCreationTime()
+         */
+        private long maxCreationTime;
+
+        /**
+         * @see ComponentStatistics#getInitializationTime()
+         */
+        private long initializationTime;
+
+        /**
+         * @param roleType the name of the component role type
+         * @param roleHint the component role hint
+         */
+        ComponentRow(String roleType, String roleHint)
+        {
+            this.roleType = roleType;
+            this.roleHint = roleHint;
+        }
+
+        /**
+         * @param component the statistics to add to this row
+         */
+        void add(ComponentStatistics component)
+        {
+            this.lookupCount += component.getLookupCount();
+            this.missCount += component.getMissCount();
+            this.delegationCount += component.getDelegationCount();
+            this.maxDelegationDepth = Math.max(this.maxDelegationDepth, component.getMaxDelegationDepth());
+            this.creationCount += component.getCreationCount();
+            this.creationTime += component.getCreationTime();
+            this.maxCreationTime = Math.max(this.maxCreationTime, component.getMaxCreationTime());
+            this.initializationTime += component.getInitializationTime();
+        }
+
+        /**
+         * @return the values of the row, in the order of {@link JMXComponentManager#COLUMN_NAMES}
+         */
+        Object[] getValues()
+        {
+            return new Object[] {this.roleType, this.roleHint, this.lookupCount, this.missCount,
+                this.delegationCount, this.maxDelegationDepth, this.creationCount, toMicroseconds(this.creationTime),
+                toMicroseconds(this.maxCreationTime), toMicroseconds(this.initializationTime)};
+        }
+    }
+}
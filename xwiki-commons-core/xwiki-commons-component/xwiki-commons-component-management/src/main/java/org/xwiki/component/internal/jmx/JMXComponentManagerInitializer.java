@@ -0,0 +1,83 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.jmx;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.embed.ComponentManagerStatistics;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Register a JMX MBean exposing the components usage statistics of the initialized Component Manager when they are
+ * collected (see {@link ComponentManagerStatistics#ENABLED_PROPERTY}).
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("jmx")
+@Singleton
+public class JMXComponentManagerInitializer implements ComponentManagerInitializer
+{
+    /**
+     * Used to give a distinct MBean name to each Component Manager. Shared by all the instances of this initializer
+     * since child Component Managers don't necessarily resolve the same instance as their parent.
+     */
+    private static final AtomicInteger COUNTER = new AtomicInteger();
+
+    /**
+     * In order to register the Component Manager MBean for management. Lazily resolved to not require it when the
+     * statistics are not collected.
+     */
+    @Inject
+    private Provider<JMXBeanRegistration> jmxRegistrationProvider;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        if (componentManager instanceof EmbeddableComponentManager) {
+            ComponentManagerStatistics statistics = ((EmbeddableComponentManager) componentManager).getStatistics();
+
+            if (statistics != null) {
+                JMXComponentManagerMBean mbean = new JMXComponentManager(statistics);
+                this.jmxRegistrationProvider.get().registerMBean(mbean, getName(componentManager));
+            }
+        }
+    }
+
+    /**
+     * @param componentManager the Component Manager to register
+     * @return the MBean name of the Component Manager, unique among all the registered Component Managers
+     */
+    private String getName(ComponentManager componentManager)
+    {
+        return String.format("type=ComponentManager,name=%s,id=%d",
+            componentManager.getParent() == null ? "root" : "child", COUNTER.incrementAndGet());
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to Component Managers. Supports the following features:
+ * <ul>
+ * <li>Retrieve the usage statistics of each component (lookups, misses, creations, initialization time, etc.)</li>
+ * <li>Retrieve the time spent initializing the Component Manager</li>
+ * <li>Reset the statistics</li>
+ * </ul>
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface JMXComponentManagerMBean
+{
+    /**
+     * @return the usage statistics of each component which has been used
+     */
+    TabularData getComponents();
+
+    /**
+     * @return the time spent initializing the Component Manager in milliseconds
+     */
+    long getInitializationTime();
+
+    /**
+     * Forget all the components statistics.
+     */
+    void resetStatistics();
+}
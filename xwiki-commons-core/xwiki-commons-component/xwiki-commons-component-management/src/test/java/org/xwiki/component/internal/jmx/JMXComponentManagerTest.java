@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.component.internal.jmx;
+
+import javax.inject.Provider;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.component.embed.ComponentManagerStatistics;
+import org.xwiki.component.embed.EmbeddableComponentManager;
+import org.xwiki.component.manager.ComponentLookupException;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.util.DefaultParameterizedType;
+
+/**
+ * Unit tests for {@link JMXComponentManager}.
+ *
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXComponentManagerTest
+{
+    @Test
+    public void testGetComponents() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ComponentManagerStatistics statistics = new ComponentManagerStatistics();
+        ecm.setStatistics(statistics);
+
+        JMXComponentManager jmxBean = new JMXComponentManager(statistics);
+
+        Assert.assertTrue(jmxBean.getComponents().isEmpty());
+
+        ecm.getInstance(ComponentManager.class);
+        try {
+            ecm.getInstance(ComponentManager.class, "missing");
+        } catch (ComponentLookupException expected) {
+            // The component doesn't exist
+        }
+
+        TabularData data = jmxBean.getComponents();
+
+        Assert.assertEquals(2, data.size());
+        CompositeData cd = data.get(new Object[] {ComponentManager.class.getName(), "default"});
+        Assert.assertEquals(1L, cd.get("lookups"));
+        Assert.assertEquals(0L, cd.get("misses"));
+        cd = data.get(new Object[] {ComponentManager.class.getName(), "missing"});
+        Assert.assertEquals(0L, cd.get("lookups"));
+        Assert.assertEquals(1L, cd.get("misses"));
+
+        jmxBean.resetStatistics();
+
+        Assert.assertTrue(jmxBean.getComponents().isEmpty());
+    }
+
+    @Test
+    public void testGetComponentsWithGenericRoles() throws Exception
+    {
+        EmbeddableComponentManager ecm = new EmbeddableComponentManager();
+        ComponentManagerStatistics statistics = new ComponentManagerStatistics();
+        ecm.setStatistics(statistics);
+
+        Assert.assertFalse(ecm.hasComponent(new DefaultParameterizedType(null, Provider.class, String.class)));
+        Assert.assertFalse(ecm.hasComponent(new DefaultParameterizedType(null, Provider.class, Integer.class)));
+
+        TabularData data = new JMXComponentManager(statistics).getComponents();
+
+        Assert.assertEquals(2, data.size());
+        CompositeData cd = data.get(new Object[] {"javax.inject.Provider<java.lang.String>", "default"});
+        Assert.assertEquals(1L, cd.get("misses"));
+        cd = data.get(new Object[] {"javax.inject.Provider<java.lang.Integer>", "default"});
+        Assert.assertEquals(1L, cd.get("misses"));
+    }
+}
@@ -206,8 +206,14 @@ private void unloadComponents(LocalExtensionFile jarFile, NamespaceURLClassLoade
                 return;
             }
 
-            this.jarLoader.unregister(this.componentManagerManager.getComponentManager(namespace, false), classLoader,
-                componentDeclarations);
+            ComponentManager componentManager = this.componentManagerManager.getComponentManager(namespace, false);
+
+            if (componentManager == null) {
+                this.logger.debug("No Component Manager exists for namespace [{}]", namespace);
+                return;
+            }
+
+            this.jarLoader.unregister(componentManager, classLoader, componentDeclarations);
         } catch (Exception e) {
             throw new UninstallException("Failed to unload jar file components", e);
         }
@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenDataException;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.job.JobManager;
+import org.xwiki.job.internal.DefaultJobManager;
+import org.xwiki.job.internal.JobGroupExecutor;
+import org.xwiki.job.internal.JobTypeStatistics;
+
+/**
+ * Expose the {@link org.xwiki.job.internal.JobStatistics} and the job groups of a Job Manager as JMX management data.
+ * <p>
+ * The Job Manager is only resolved when the data is requested so that it's not created (with all its dependencies)
+ * just to register the MBean.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXJobManager implements JMXJobManagerMBean
+{
+    /**
+     * The name of the column containing the job type.
+     */
+    private static final String TYPE = "type";
+
+    /**
+     * The name of the column containing the group name.
+     */
+    private static final String GROUP = "group";
+
+    /**
+     * The names of the columns of the job types table.
+     */
+    private static final String[] JOBTYPE_COLUMN_NAMES = new String[] {TYPE, "count", "queueTime", "maxQueueTime",
+        "runTime", "maxRunTime"};
+
+    /**
+     * The descriptions of the columns of the job types table.
+     */
+    private static final String[] JOBTYPE_COLUMN_DESCRIPTIONS = new String[] {"The job type",
+        "The number of executed jobs", "The total time the jobs waited in queue (in milliseconds)",
+        "The maximum time a job waited in queue (in milliseconds)", "The total time the jobs ran (in milliseconds)",
+        "The maximum time a job ran (in milliseconds)"};
+
+    /**
+     * The names of the columns of the groups table.
+     */
+    private static final String[] GROUP_COLUMN_NAMES = new String[] {GROUP, "queued", "running"};
+
+    /**
+     * The descriptions of the columns of the groups table.
+     */
+    private static final String[] GROUP_COLUMN_DESCRIPTIONS = new String[] {"The group name",
+        "The number of jobs waiting to be started", "The number of running jobs"};
+
+    /**
+     * Used to get the Job Manager of which to expose the statistics and the job groups.
+     */
+    private final Provider<JobManager> jobManagerProvider;
+
+    /**
+     * @param jobManagerProvider used to get the Job Manager of which to expose the statistics and the job groups
+     */
+    public JMXJobManager(Provider<JobManager> jobManagerProvider)
+    {
+        this.jobManagerProvider = jobManagerProvider;
+    }
+
+    /**
+     * @return the Job Manager, null if it does not collect statistics
+     */
+    private DefaultJobManager getJobManager()
+    {
+        JobManager jobManager = this.jobManagerProvider.get();
+
+        return jobManager instanceof DefaultJobManager ? (DefaultJobManager) jobManager : null;
+    }
+
+    /**
+     * @return the statistics to expose
+     */
+    private Collection<JobTypeStatistics> getJobTypeStatistics()
+    {
+        DefaultJobManager jobManager = getJobManager();
+
+        return jobManager != null ? jobManager.getStatistics().getJobTypeStatistics() : Collections
+            .<JobTypeStatistics> emptyList();
+    }
+
+    @Override
+    public TabularData getJobTypes()
+    {
+        TabularData data;
+
+        try {
+            OpenType< ? >[] columnTypes =
+                new OpenType< ? >[] {SimpleType.STRING, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG, SimpleType.LONG};
+
+            // Represents one row (job type statistics) in the returned table data
+            CompositeType rowType =
+                new CompositeType("jobType", "Job type statistics for a row", JOBTYPE_COLUMN_NAMES,
+                    JOBTYPE_COLUMN_DESCRIPTIONS, columnTypes);
+
+            data = new TabularDataSupport(new TabularType("jobTypes", "Job types statistics", rowType,
+                new String[] {TYPE}));
+
+            for (JobTypeStatistics jobType : getJobTypeStatistics()) {
+                Object[] values =
+                    new Object[] {jobType.getJobType(), jobType.getCount(), toMilliseconds(jobType.getQueueTime()),
+                        toMilliseconds(jobType.getMaxQueueTime()), toMilliseconds(jobType.getRunTime()),
+                        toMilliseconds(jobType.getMaxRunTime())};
+
+                data.put(new CompositeDataSupport(rowType, JOBTYPE_COLUMN_NAMES, values));
+            }
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on job types", e);
+        }
+
+        return data;
+    }
+
+    @Override
+    public TabularData getGroups()
+    {
+        TabularData data;
+
+        try {
+            OpenType< ? >[] columnTypes = new OpenType< ? >[] {SimpleType.STRING, SimpleType.INTEGER,
+                SimpleType.INTEGER};
+
+            // Represents one row (job group) in the returned table data
+            CompositeType rowType =
+                new CompositeType(GROUP, "Job group for a row", GROUP_COLUMN_NAMES, GROUP_COLUMN_DESCRIPTIONS,
+                    columnTypes);
+
+            data = new TabularDataSupport(new TabularType("groups", "Job groups", rowType, new String[] {GROUP}));
+
+            DefaultJobManager jobManager = getJobManager();
+            Collection<JobGroupExecutor> groups =
+                jobManager != null ? jobManager.getGroups() : Collections.<JobGroupExecutor> emptyList();
+
+            for (JobGroupExecutor group : groups) {
+                Object[] values =
+                    new Object[] {group.getName(), group.getQueueSize(), group.getRunningJobs().size()};
+
+                data.put(new CompositeDataSupport(rowType, GROUP_COLUMN_NAMES, values));
+            }
+        } catch (OpenDataException e) {
+            throw new RuntimeException("Failed to gather information on job groups", e);
+        }
+
+        return data;
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        DefaultJobManager jobManager = getJobManager();
+
+        if (jobManager != null) {
+            jobManager.getStatistics().reset();
+        }
+    }
+
+    /**
+     * @param nanoseconds a duration in nanoseconds
+     * @return the same duration in milliseconds
+     */
+    private long toMilliseconds(long nanoseconds)
+    {
+        return TimeUnit.NANOSECONDS.toMillis(nanoseconds);
+    }
+}
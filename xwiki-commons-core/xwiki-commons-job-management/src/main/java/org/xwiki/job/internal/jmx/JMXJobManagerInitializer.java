@@ -0,0 +1,66 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.job.JobManager;
+import org.xwiki.management.JMXBeanRegistration;
+
+/**
+ * Register a JMX MBean exposing the job groups of the Job Manager and the time spent waiting in queue and running by
+ * its jobs.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("job.jmx")
+@Singleton
+public class JMXJobManagerInitializer implements ComponentManagerInitializer
+{
+    /**
+     * The Job Manager collecting the statistics. Lazily resolved to not create it before it's used.
+     */
+    @Inject
+    private Provider<JobManager> jobManagerProvider;
+
+    /**
+     * In order to register the Job Manager MBean for management. Lazily resolved to not require it.
+     */
+    @Inject
+    private Provider<JMXBeanRegistration> jmxRegistrationProvider;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        // The Job Manager should work even if JMX is not available
+        if (componentManager.hasComponent(JMXBeanRegistration.class)) {
+            JMXJobManagerMBean mbean = new JMXJobManager(this.jobManagerProvider);
+            this.jmxRegistrationProvider.get().registerMBean(mbean, "type=JobManager");
+        }
+    }
+}
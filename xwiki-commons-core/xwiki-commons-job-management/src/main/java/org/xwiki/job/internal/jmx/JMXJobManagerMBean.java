@@ -0,0 +1,51 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the Job Manager. Supports the following features:
+ * <ul>
+ * <li>Retrieve the time spent waiting in queue and running by the jobs of each type</li>
+ * <li>Retrieve the number of queued and running jobs of each group</li>
+ * <li>Reset the statistics</li>
+ * </ul>
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface JMXJobManagerMBean
+{
+    /**
+     * @return the statistics of each job type which has been executed
+     */
+    TabularData getJobTypes();
+
+    /**
+     * @return the number of queued and running jobs of each group
+     */
+    TabularData getGroups();
+
+    /**
+     * Forget all the job types statistics.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,77 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal.jmx;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Provider;
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.job.JobManager;
+import org.xwiki.job.internal.DefaultJobManager;
+
+/**
+ * Unit tests for {@link JMXJobManager}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXJobManagerTest
+{
+    @Test
+    public void testGetJobTypes() throws Exception
+    {
+        final DefaultJobManager manager = new DefaultJobManager();
+
+        JMXJobManager jmxBean = new JMXJobManager(new Provider<JobManager>()
+        {
+            @Override
+            public JobManager get()
+            {
+                return manager;
+            }
+        });
+
+        Assert.assertTrue(jmxBean.getJobTypes().isEmpty());
+        Assert.assertTrue(jmxBean.getGroups().isEmpty());
+
+        manager.getStatistics().jobExecuted("install", TimeUnit.MILLISECONDS.toNanos(10),
+            TimeUnit.MILLISECONDS.toNanos(100));
+        manager.getStatistics().jobExecuted("install", TimeUnit.MILLISECONDS.toNanos(20),
+            TimeUnit.MILLISECONDS.toNanos(50));
+
+        TabularData data = jmxBean.getJobTypes();
+
+        Assert.assertEquals(1, data.size());
+        CompositeData cd = data.get(new Object[] {"install"});
+        Assert.assertEquals(2L, cd.get("count"));
+        Assert.assertEquals(30L, cd.get("queueTime"));
+        Assert.assertEquals(20L, cd.get("maxQueueTime"));
+        Assert.assertEquals(150L, cd.get("runTime"));
+        Assert.assertEquals(100L, cd.get("maxRunTime"));
+
+        jmxBean.resetStatistics();
+
+        Assert.assertTrue(jmxBean.getJobTypes().isEmpty());
+    }
+}
@@ -77,6 +77,12 @@
     @Inject
     protected JobStatusStorage storage;
 
+    /**
+     * Used to limit the size of the log of the job status.
+     */
+    @Inject
+    protected JobManagerConfiguration configuration;
+
     /**
      * The logger to log.
      */
@@ -126,6 +132,8 @@ public void start(Request request)
     {
         this.request = castRequest(request);
         this.status = createNewStatus(this.request);
+        this.status.getLog().setCapacity(this.configuration.getLogCapacity(),
+            this.configuration.getLogOverflowPolicy());
 
         jobStarting();
 
@@ -153,6 +161,10 @@ protected void jobStarting()
         this.status.setState(JobStatus.State.RUNNING);
 
         this.status.startListening();
+
+        if (this.request.getId() != null) {
+            this.storage.startCheckpoints(this.status);
+        }
     }
 
     /**
@@ -188,6 +200,39 @@ protected void jobFinished(Throwable exception)
         }
     }
 
+    /**
+     * Finish the job without executing it, for example because the environment needed to execute it could not be
+     * initialized. The job gets a finished status containing the error so that the threads waiting for the job (see
+     * {@link #join()}) are released.
+     * 
+     * @param request the request of the job
+     * @param error the reason why the job could not be executed
+     * @since 4.2M2
+     */
+    public void fail(Request request, Throwable error)
+    {
+        this.request = castRequest(request);
+
+        AbstractJobStatus<R> failedStatus = createNewStatus(this.request);
+        failedStatus.getLog().error("Failed to execute the job", error);
+        failedStatus.setState(JobStatus.State.FINISHED);
+        failedStatus.setEndDate(new Date());
+
+        this.lock.lock();
+
+        try {
+            this.status = failedStatus;
+
+            this.finishedCondition.signalAll();
+
+            if (this.request.getId() != null) {
+                this.storage.store(this.status);
+            }
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
     /**
      * Should be overridden if R is not Request.
      * 
@@ -262,7 +307,7 @@ public boolean join(long time, TimeUnit unit) throws InterruptedException
         this.lock.lockInterruptibly();
 
         try {
-            if (getStatus().getState() != State.FINISHED) {
+            if (getStatus() == null || getStatus().getState() != State.FINISHED) {
                 return this.finishedCondition.await(time, unit);
             }
         } finally {
@@ -119,6 +119,21 @@ public void setInteractive(boolean interactive)
         setProperty(PROPERTY_INTERACTIVE, interactive);
     }
 
+    @Override
+    public int getPriority()
+    {
+        return this.<Integer> getProperty(PROPERTY_PRIORITY, 0);
+    }
+
+    /**
+     * @param priority the priority of the job in its group queue, jobs with a higher priority are started first
+     * @since 4.2M2
+     */
+    public void setPriority(int priority)
+    {
+        setProperty(PROPERTY_PRIORITY, priority);
+    }
+
     /**
      * @param key the name of the property
      * @param value the value of the property
@@ -34,10 +34,20 @@
 public interface JobManager
 {
     /**
-     * @return the job currently running or the latest job, null if there is no job
+     * @return the job currently running or the latest job (whatever its group), null if there is no job
      */
     Job getCurrentJob();
 
+    /**
+     * Jobs are executed in named groups, each group having its own workers and its own limit of jobs executed at the
+     * same time (see {@link JobManagerConfiguration#getJobGroup(String)}).
+     * 
+     * @param group the name of the job group
+     * @return the job of the passed group which started last, null if no job of that group has been started
+     * @since 4.2M2
+     */
+    Job getCurrentJob(String group);
+
     /**
      * Return job status corresponding to the provided id from the current executed job or stored history.
      * 
@@ -22,6 +22,7 @@
 import java.io.File;
 
 import org.xwiki.component.annotation.Role;
+import org.xwiki.logging.LogQueue;
 
 /**
  * Some job manager related configuration.
@@ -36,4 +37,81 @@
      * @return the folder containing job executing status
      */
     File getStorage();
+
+    /**
+     * @return the maximum number of stored job statuses kept in memory
+     * @since 4.2M2
+     */
+    int getStatusCacheSize();
+
+    /**
+     * @return true if the stored job statuses should be compressed
+     * @since 4.2M2
+     */
+    boolean isStatusCompressed();
+
+    /**
+     * @return the maximum number of log events kept in the status of a job, 0 (the default) for no limit
+     * @since 4.2M2
+     */
+    int getLogCapacity();
+
+    /**
+     * @return what to do when a job produces more log events than {@link #getLogCapacity()}
+     * @since 4.2M2
+     */
+    LogQueue.OverflowPolicy getLogOverflowPolicy();
+
+    /**
+     * The status of a running job is saved regularly (and the new log events appended to its stored log) so that it's
+     * not lost if the job is interrupted and its log don't have to be kept in memory (see
+     * {@link #getCheckpointLogTail()}). The status is serialized while the job is modifying it so a checkpoint is only a
+     * best effort view of the running job.
+     * 
+     * @return the time (in milliseconds) between two checkpoints of a running job status, 0 to only store job
+     *         statuses when the job is finished
+     * @since 4.2M2
+     */
+    long getCheckpointInterval();
+
+    /**
+     * @return the number of new log events after which a running job status is saved without waiting for the next
+     *         checkpoint (see {@link #getCheckpointInterval()})
+     * @since 4.2M2
+     */
+    int getCheckpointLogThreshold();
+
+    /**
+     * The saved log events of a checkpointed job are removed from the log of its status, except for the most recent
+     * ones, so that the memory used by a running job doesn't grow with its log. The whole log of the job can still be
+     * read page by page from the job status storage.
+     * 
+     * @return the maximum number of already saved log events a checkpointed job status keeps in memory, -1 to keep
+     *         them all
+     * @since 4.2M2
+     */
+    int getCheckpointLogTail();
+
+    /**
+     * @param jobType the role hint of the job component
+     * @return the name of the group in which the jobs of the passed type are executed
+     * @since 4.2M2
+     */
+    String getJobGroup(String jobType);
+
+    /**
+     * @param group the name of the job group
+     * @return the maximum number of jobs of the passed group executed at the same time
+     * @since 4.2M2
+     */
+    int getGroupThreads(String group);
+
+    /**
+     * Queued jobs gain one priority level each time they waited for the returned time so that jobs with a low
+     * priority are not delayed forever by jobs with a higher priority (see {@link Request#getPriority()}).
+     * 
+     * @return the time (in milliseconds) a queued job has to wait to gain one priority level
+     * @since 4.2M2
+     */
+    long getPriorityAgingTime();
 }
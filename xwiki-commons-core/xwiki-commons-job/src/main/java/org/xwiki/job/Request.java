@@ -41,6 +41,12 @@ public interface Request extends Serializable
      */
     String PROPERTY_INTERACTIVE = "interactive";
 
+    /**
+     * @see #getPriority()
+     * @since 4.2M2
+     */
+    String PROPERTY_PRIORITY = "priority";
+
     /**
      * @return list based identifier used to access the job. If none is provided the job will not be accessible by id
      *         and the status of the job will not be stored.
@@ -59,6 +65,13 @@ public interface Request extends Serializable
      */
     boolean isInteractive();
 
+    /**
+     * @return the priority of the job in its group queue, jobs with a higher priority are started first (0 by
+     *         default)
+     * @since 4.2M2
+     */
+    int getPriority();
+
     /**
      * @param key the name of the property
      * @param <T> the type of the value
@@ -20,9 +20,10 @@
 package org.xwiki.job.internal;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -31,56 +32,35 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
-import org.xwiki.component.phase.Initializable;
-import org.xwiki.component.phase.InitializationException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.context.Execution;
-import org.xwiki.context.ExecutionContext;
-import org.xwiki.context.ExecutionContextException;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.job.Job;
 import org.xwiki.job.JobException;
 import org.xwiki.job.JobManager;
+import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.Request;
 import org.xwiki.job.event.status.JobStatus;
 
 /**
  * Default implementation of {@link JobManager}.
+ * <p>
+ * Jobs are executed in named groups (see {@link JobManagerConfiguration#getJobGroup(String)}), each group having its
+ * own queue and its own workers so that a long job (like an extension install) does not block the jobs of other
+ * groups. The jobs of a group are executed one at a time unless configured otherwise (see
+ * {@link JobManagerConfiguration#getGroupThreads(String)}) and are started by decreasing priority (see
+ * {@link Request#getPriority()}).
+ * <p>
+ * The time spent waiting in queue and running by the jobs of each type is collected (see {@link #getStatistics()})
+ * so that it can be exposed through JMX by the xwiki-commons-job-management module.
  * 
  * @version $Id$
  * @since 4.0M1
  */
 @Component
 @Singleton
-public class DefaultJobManager implements JobManager, Runnable, Initializable
+public class DefaultJobManager implements JobManager, Disposable
 {
-    /**
-     * A job to execute.
-     * 
-     * @version $Id$
-     */
-    private static class JobElement
-    {
-        /**
-         * The job to execute.
-         */
-        public Job job;
-
-        /**
-         * The request to use to control the job.
-         */
-        public Request request;
-
-        /**
-         * @param job the job to execute
-         * @param request the request to use to control the job
-         */
-        public JobElement(Job job, Request request)
-        {
-            this.job = job;
-            this.request = request;
-        }
-    }
-
     /**
      * Used to lookup {@link Job} implementations.
      */
@@ -105,63 +85,83 @@ public JobElement(Job job, Request request)
     @Inject
     private ExecutionContextManager executionContextManager;
 
+    /**
+     * Used to find the group of the jobs and the number of workers of the groups.
+     */
+    @Inject
+    private JobManagerConfiguration configuration;
+
     /**
      * @see #getCurrentJob()
      */
-    private volatile Job currentJob;
+    private final AtomicReference<Job> currentJob = new AtomicReference<Job>();
 
     /**
-     * The queue of jobs to execute.
+     * The executors of the job groups, created the first time a job of the group is added.
      */
-    private BlockingQueue<JobElement> jobQueue = new LinkedBlockingQueue<JobElement>();
+    private final ConcurrentHashMap<String, JobGroupExecutor> groups =
+        new ConcurrentHashMap<String, JobGroupExecutor>();
 
     /**
-     * The thread on which the job manager is running.
+     * @see #getStatistics()
      */
-    private Thread thread;
+    private final JobStatistics statistics = new JobStatistics();
 
-    @Override
-    public void initialize() throws InitializationException
+    /**
+     * @return the time spent waiting in queue and running by the executed jobs
+     */
+    public JobStatistics getStatistics()
     {
-        this.thread = new Thread(this);
-        this.thread.setDaemon(true);
-        this.thread.start();
+        return this.statistics;
     }
 
-    // Runnable
+    /**
+     * @return the executors of the job groups (updated when a new group is created)
+     */
+    public Collection<JobGroupExecutor> getGroups()
+    {
+        return this.groups.values();
+    }
 
     @Override
-    public void run()
+    public void dispose()
     {
-        // Create a clean Execution Context
-        ExecutionContext context = new ExecutionContext();
+        for (JobGroupExecutor group : this.groups.values()) {
+            group.shutdown();
+        }
+    }
 
-        try {
-            this.executionContextManager.initialize(context);
-        } catch (ExecutionContextException e) {
-            throw new RuntimeException("Failed to initialize IRC Bot's execution context", e);
+    /**
+     * @param group the name of the group
+     * @return the executor of the group
+     */
+    private JobGroupExecutor getGroupExecutor(String group)
+    {
+        JobGroupExecutor groupExecutor = this.groups.get(group);
+
+        if (groupExecutor == null) {
+            groupExecutor = createGroupExecutor(group);
         }
 
-        this.execution.pushContext(context);
+        return groupExecutor;
+    }
 
-        try {
-            while (!this.thread.isInterrupted()) {
-                try {
-                    JobElement element = this.jobQueue.take();
-
-                    this.currentJob = element.job;
-
-                    // Wait in case synchronous job is running
-                    synchronized (this) {
-                        this.currentJob.start(element.request);
-                    }
-                } catch (InterruptedException e) {
-                    // Thread has been stopped
-                }
-            }
-        } finally {
-            this.execution.removeContext();
+    /**
+     * @param group the name of the group
+     * @return the executor of the group
+     */
+    private synchronized JobGroupExecutor createGroupExecutor(String group)
+    {
+        JobGroupExecutor groupExecutor = this.groups.get(group);
+
+        if (groupExecutor == null) {
+            groupExecutor =
+                new JobGroupExecutor(group, this.configuration, new JobWorkerContext(this.execution,
+                    this.executionContextManager), this.storage, this.currentJob, this.statistics);
+            this.groups.put(group, groupExecutor);
         }
+
+        return groupExecutor;
     }
 
     // JobManager
@@ -169,7 +169,15 @@ public void run()
     @Override
     public Job getCurrentJob()
     {
-        return this.currentJob;
+        return this.currentJob.get();
+    }
+
+    @Override
+    public Job getCurrentJob(String group)
+    {
+        JobGroupExecutor groupExecutor = this.groups.get(group);
+
+        return groupExecutor != null ? groupExecutor.getCurrentJob() : null;
     }
 
     /**
@@ -208,7 +216,7 @@ public Job addJob(String jobType, Request request) throws JobException
     {
         Job job = createJob(jobType);
 
-        this.jobQueue.add(new JobElement(job, request));
+        getGroupExecutor(this.configuration.getJobGroup(jobType)).execute(job, request);
 
         return job;
     }
@@ -222,10 +230,43 @@ public JobStatus getJobStatus(String id)
     @Override
     public JobStatus getJobStatus(List<String> id)
     {
-        if (this.currentJob != null && ObjectUtils.equals(id, this.currentJob.getRequest().getId())) {
-            return this.currentJob.getStatus();
+        Job job = getRunningJob(id);
+
+        if (job == null) {
+            // The latest job is still returned once finished
+            Job latestJob = this.currentJob.get();
+            if (isJob(latestJob, id)) {
+                job = latestJob;
+            }
         }
 
-        return this.storage.getJobStatus(id);
+        return job != null ? job.getStatus() : this.storage.getJobStatus(id);
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the running job with the passed id, null if there is none
+     */
+    private Job getRunningJob(List<String> id)
+    {
+        for (JobGroupExecutor groupExecutor : this.groups.values()) {
+            for (Job job : groupExecutor.getRunningJobs()) {
+                if (isJob(job, id)) {
+                    return job;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param job the job
+     * @param id the id of the job
+     * @return true if the passed job has been started with the passed id
+     */
+    private boolean isJob(Job job, List<String> id)
+    {
+        return job != null && job.getRequest() != null && ObjectUtils.equals(id, job.getRequest().getId());
     }
 }
@@ -29,6 +29,7 @@
 import org.xwiki.configuration.ConfigurationSource;
 import org.xwiki.environment.Environment;
 import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.logging.LogQueue;
 
 /**
  * Default implementation of {@link JobManagerConfiguration}.
@@ -40,6 +41,58 @@
 @Singleton
 public class DefaultJobManagerConfiguration implements JobManagerConfiguration
 {
+    /**
+     * The group of the jobs for which no group is configured.
+     */
+    public static final String DEFAULT_GROUP = "default";
+
+    /**
+     * The prefix of the properties indicating the group of a job type (for example
+     * {@code job.group.install=extension}).
+     */
+    private static final String PREFIX_GROUP = "job.group.";
+
+    /**
+     * The prefix of the properties indicating the number of jobs of a group executed at the same time (for example
+     * {@code job.groupThreads.plan=4}). Groups are serialized (one job at a time) by default.
+     */
+    private static final String PREFIX_GROUPTHREADS = "job.groupThreads.";
+
+    /**
+     * The default time (in milliseconds) a queued job has to wait to gain one priority level.
+     */
+    private static final long DEFAULT_PRIORITYAGINGTIME = 10000L;
+
+    /**
+     * The default maximum number of stored job statuses kept in memory.
+     */
+    private static final int DEFAULT_STATUSCACHESIZE = 50;
+
+    /**
+     * By default the status of a job keeps all its log events.
+     */
+    private static final int DEFAULT_LOGCAPACITY = 0;
+
+    /**
+     * The default policy applied when a job produces more log events than the capacity of its status log.
+     */
+    private static final LogQueue.OverflowPolicy DEFAULT_LOGOVERFLOWPOLICY = LogQueue.OverflowPolicy.DROP_OLDEST;
+
+    /**
+     * The default time (in milliseconds) between two checkpoints of a running job status.
+     */
+    private static final long DEFAULT_CHECKPOINTINTERVAL = 10000L;
+
+    /**
+     * The default number of new log events after which a running job status is saved.
+     */
+    private static final int DEFAULT_CHECKPOINTLOGTHRESHOLD = 1000;
+
+    /**
+     * The default maximum number of saved log events a checkpointed job status keeps in memory.
+     */
+    private static final int DEFAULT_CHECKPOINTLOGTAIL = 10000;
+
     /**
      * Used to get permanent directory.
      */
@@ -82,4 +135,89 @@ public File getStorage()
 
         return this.store;
     }
+
+    @Override
+    public int getStatusCacheSize()
+    {
+        int size = this.configuration.get().getProperty("job.statusCacheSize", DEFAULT_STATUSCACHESIZE);
+
+        return size >= 0 ? size : DEFAULT_STATUSCACHESIZE;
+    }
+
+    @Override
+    public boolean isStatusCompressed()
+    {
+        return this.configuration.get().getProperty("job.statusCompression", true);
+    }
+
+    @Override
+    public int getLogCapacity()
+    {
+        int capacity = this.configuration.get().getProperty("job.logCapacity", DEFAULT_LOGCAPACITY);
+
+        return capacity >= 0 ? capacity : DEFAULT_LOGCAPACITY;
+    }
+
+    @Override
+    public LogQueue.OverflowPolicy getLogOverflowPolicy()
+    {
+        String policy = this.configuration.get().getProperty("job.logOverflowPolicy");
+
+        if (policy != null) {
+            try {
+                return LogQueue.OverflowPolicy.valueOf(policy.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                // Unknown policy, use the default one
+            }
+        }
+
+        return DEFAULT_LOGOVERFLOWPOLICY;
+    }
+
+    @Override
+    public long getCheckpointInterval()
+    {
+        long interval = this.configuration.get().getProperty("job.checkpointInterval", DEFAULT_CHECKPOINTINTERVAL);
+
+        return interval >= 0 ? interval : DEFAULT_CHECKPOINTINTERVAL;
+    }
+
+    @Override
+    public int getCheckpointLogThreshold()
+    {
+        int threshold =
+            this.configuration.get().getProperty("job.checkpointLogThreshold", DEFAULT_CHECKPOINTLOGTHRESHOLD);
+
+        return threshold > 0 ? threshold : DEFAULT_CHECKPOINTLOGTHRESHOLD;
+    }
+
+    @Override
+    public int getCheckpointLogTail()
+    {
+        int tail = this.configuration.get().getProperty("job.checkpointLogTail", DEFAULT_CHECKPOINTLOGTAIL);
+
+        return tail >= -1 ? tail : DEFAULT_CHECKPOINTLOGTAIL;
+    }
+
+    @Override
+    public String getJobGroup(String jobType)
+    {
+        return this.configuration.get().getProperty(PREFIX_GROUP + jobType, DEFAULT_GROUP);
+    }
+
+    @Override
+    public int getGroupThreads(String group)
+    {
+        int threads = this.configuration.get().getProperty(PREFIX_GROUPTHREADS + group, 1);
+
+        return threads > 0 ? threads : 1;
+    }
+
+    @Override
+    public long getPriorityAgingTime()
+    {
+        long agingTime = this.configuration.get().getProperty("job.priorityAgingTime", DEFAULT_PRIORITYAGINGTIME);
+
+        return agingTime > 0 ? agingTime : DEFAULT_PRIORITYAGINGTIME;
+    }
 }
@@ -20,14 +20,14 @@
 package org.xwiki.job.internal;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
 import java.io.Serializable;
 import java.io.UnsupportedEncodingException;
 import java.net.URLEncoder;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -36,30 +36,75 @@
 import javax.inject.Singleton;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentLifecycleException;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus;
-
-import com.thoughtworks.xstream.XStream;
+import org.xwiki.logging.event.LogEvent;
 
 /**
  * Default implementation of {@link JobStatusStorage}.
+ * <p>
+ * The stored statuses are not loaded when starting: a {@link JobStatusIndex} gives the location and the main
+ * informations of each stored status and the statuses are loaded when asked, the most recently used ones being kept in
+ * memory (see {@link JobManagerConfiguration#getStatusCacheSize()}). The index is built from the existing storage
+ * folder the first time it's missing.
+ * <p>
+ * The statuses are written with {@link JobStatusSerializer} which stores the log separately so that it can be read
+ * page by page (see {@link #getLog(List, long, int)}).
+ * <p>
+ * The stored statuses are not kept in memory once saved: the statuses loaded from the file system are compact (see
+ * {@link org.xwiki.logging.LogQueue#compact()}) so that they can be cached for a long time without retaining the objects
+ * passed to the loggers, while the status passed to {@link #store(JobStatus)} is left untouched for whoever executed
+ * the job.
+ * <p>
+ * The statuses of the running jobs are saved regularly by a {@link JobStatusCheckpointer} (see
+ * {@link JobManagerConfiguration#getCheckpointInterval()}).
  * 
  * @version $Id$
  * @since 4.0M1
  */
 @Component
 @Singleton
-public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
+public class DefaultJobStatusStorage implements JobStatusStorage, Initializable, Disposable
 {
     /**
-     * The name of the file where the job status is stored.
+     * The stored job statuses most recently used.
+     * 
+     * @version $Id$
      */
-    private static final String FILENAME_STATUS = "status.xml";
+    private static class JobStatusCache extends LinkedHashMap<List<String>, JobStatus>
+    {
+        /**
+         * Serialization identifier.
+         */
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * The maximum number of statuses to keep.
+         */
+        private final int capacity;
+
+        /**
+         * @param capacity the maximum number of statuses to keep
+         */
+        public JobStatusCache(int capacity)
+        {
+            super(16, 0.75f, true);
+
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<String>, JobStatus> eldest)
+        {
+            return size() > this.capacity;
+        }
+    }
 
     /**
      * Encoding used for file content and names.
@@ -76,6 +121,16 @@ public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
      */
     private static final String FOLDER_STATUS = "&status";
 
+    /**
+     * The message logged when failing to load a job status.
+     */
+    private static final String ERROR_LOAD = "Failed to load job status from folder [{}]";
+
+    /**
+     * The message logged when failing to save a job status.
+     */
+    private static final String ERROR_SAVE = "Failed to save job status [{}]";
+
     /**
      * Used to get the storage directory.
      */
@@ -89,19 +144,49 @@ public class DefaultJobStatusStorage implements JobStatusStorage, Initializable
     private Logger logger;
 
     /**
-     * Used to serialize and unserialize status.
+     * Used to read and write the job statuses.
      */
-    private XStream xstream;
+    private JobStatusSerializer serializer;
 
     /**
-     * A cache of stored job statuses.
+     * The summaries and locations of the stored job statuses.
      */
-    private Map<List<String>, JobStatus> jobs = new ConcurrentHashMap<List<String>, JobStatus>();
+    private JobStatusIndex index;
+
+    /**
+     * Save the index when it's modified.
+     */
+    private JobStatusIndexWriter indexWriter;
+
+    /**
+     * A cache of the most recently used stored job statuses. Only accessed while synchronized.
+     */
+    private JobStatusCache cache;
+
+    /**
+     * The stored job statuses which can't be saved on the file system (and thus can't be loaded again).
+     */
+    private Map<List<String>, JobStatus> transientJobs = new ConcurrentHashMap<List<String>, JobStatus>();
+
+    /**
+     * Regularly save the statuses of the running jobs, null if they are only stored when the job is finished.
+     */
+    private JobStatusCheckpointer checkpointer;
 
     @Override
     public void initialize() throws InitializationException
     {
-        this.xstream = new XStream();
+        this.serializer = new JobStatusSerializer(this.configuration.isStatusCompressed());
+        this.cache = new JobStatusCache(this.configuration.getStatusCacheSize());
+        this.index = new JobStatusIndex(this.configuration.getStorage());
+        this.indexWriter = new JobStatusIndexWriter(this.index, this.logger);
+
+        long checkpointInterval = this.configuration.getCheckpointInterval();
+        if (checkpointInterval > 0) {
+            this.checkpointer =
+                new JobStatusCheckpointer(checkpointInterval, this.configuration.getCheckpointLogThreshold(),
+                    this.logger);
+        }
 
         try {
             load();
@@ -110,6 +195,16 @@ public void initialize() throws InitializationException
         }
     }
 
+    @Override
+    public void dispose() throws ComponentLifecycleException
+    {
+        if (this.checkpointer != null) {
+            this.checkpointer.dispose();
+        }
+
+        this.indexWriter.dispose();
+    }
+
     /**
      * @param name the file or directory name to encode
      * @return the encoding name
@@ -134,61 +229,136 @@ private String encode(String name)
     }
 
     /**
-     * Load jobs from directory.
+     * Load the index of the stored jobs, build it from the storage directory if it does not exist yet.
      */
     private void load()
     {
+        boolean loaded = false;
+
+        if (this.index.exists()) {
+            try {
+                this.index.load();
+                loaded = true;
+            } catch (IOException e) {
+                this.logger.warn("Failed to load the job status index, rebuilding it", e);
+            }
+        }
+
         File folder = this.configuration.getStorage();
 
-        if (folder.exists()) {
-            loadFolder(folder);
+        if (!loaded && folder.exists()) {
+            indexFolder(folder);
+
+            try {
+                this.index.save();
+            } catch (IOException e) {
+                this.logger.warn("Failed to save the job status index", e);
+            }
         }
     }
 
     /**
-     * @param folder the folder from where to load the jobs
+     * @param folder the folder from where to index the jobs
      */
-    private void loadFolder(File folder)
+    private void indexFolder(File folder)
     {
         for (File file : folder.listFiles()) {
             if (file.isDirectory()) {
                 if (file.getName().equals(FOLDER_STATUS)) {
-                    loadStatus(file);
+                    indexStatus(file);
                 } else {
-                    loadFolder(file);
+                    indexFolder(file);
                 }
-            } else if (file.getName().equals(FILENAME_STATUS)) {
-                loadStatus(folder);
+            } else if (file.getName().equals(JobStatusSerializer.FILENAME_XML)
+                || file.getName().equals(JobStatusSerializer.FILENAME_HEADER)) {
+                indexStatus(folder);
             }
         }
     }
 
     /**
-     * @param folder the folder from where to load the job status
+     * @param folder the folder from where to index the job status
      */
-    private void loadStatus(File folder)
+    private void indexStatus(File folder)
     {
-        File statusFile = new File(folder, FILENAME_STATUS);
-        if (statusFile.exists()) {
-            try {
-                JobStatus status = loadJobStatus(statusFile);
+        try {
+            JobStatus status = this.serializer.read(folder);
 
-                List<String> id = status.getRequest().getId();
-                this.jobs.put(id != null ? id : Collections.<String> emptyList(), status);
+            this.index.put(new JobStatusSummary(status, getRelativePath(folder)));
+        } catch (Exception e) {
+            this.logger.error(ERROR_LOAD, folder, e);
+        }
+    }
+
+    /**
+     * Index a job status which is stored on the file system but not indexed.
+     * 
+     * @param key the id of the job
+     * @return the summary of the job status, null if it's not stored on the file system
+     */
+    private JobStatusSummary indexJobStatus(List<String> key)
+    {
+        File folder = getJobFolder(key);
+
+        if (this.serializer.exists(folder)) {
+            indexStatus(folder);
+            saveIndex();
+        }
+
+        return this.index.get(key);
+    }
+
+    /**
+     * @param folder a folder of the storage
+     * @return the path of the folder relative to the storage folder
+     */
+    private String getRelativePath(File folder)
+    {
+        return this.configuration.getStorage().toURI().relativize(folder.toURI()).getPath();
+    }
+
+    /**
+     * Save the index of the stored job statuses (a bit later, see {@link JobStatusIndexWriter}).
+     */
+    private void saveIndex()
+    {
+        this.indexWriter.save();
+    }
+
+    /**
+     * @param summary the summary of the stored job status
+     * @return the job status, null if it could not be loaded
+     */
+    private JobStatus loadJobStatus(JobStatusSummary summary)
+    {
+        JobStatus status = null;
+
+        File folder = new File(this.configuration.getStorage(), summary.getFolder());
+        if (this.serializer.exists(folder)) {
+            try {
+                status = this.serializer.read(folder);
+                compactLog(status);
             } catch (Exception e) {
-                this.logger.error("Failed to load job status from file [{}]", statusFile, e);
+                this.logger.error(ERROR_LOAD, folder, e);
             }
+        } else {
+            // The status has been removed from the file system
+            this.index.remove(summary.getId());
+            saveIndex();
         }
+
+        return status;
     }
 
     /**
-     * @param statusFile the file containing job status to load
-     * @return the job status
-     * @throws Exception when failing to load the job status from the file
+     * @param status the job status of which to compact the log
+     * @see org.xwiki.logging.LogQueue#compact()
      */
-    private JobStatus loadJobStatus(File statusFile) throws Exception
+    private void compactLog(JobStatus status)
     {
-        return (JobStatus) this.xstream.fromXML(statusFile);
+        if (status.getLog() != null) {
+            status.getLog().compact();
+        }
     }
 
     // JobStatusStorage
@@ -210,23 +380,16 @@ private File getJobFolder(List<String> id)
 
     /**
      * @param status the job status to save
+     * @return the folder where the job status has been saved
      * @throws IOException when falling to store the provided status
      */
-    private void saveJobStatus(JobStatus status) throws IOException
+    private File saveJobStatus(JobStatus status) throws IOException
     {
-        File statusFile = getJobFolder(status.getRequest().getId());
-        statusFile = new File(statusFile, FILENAME_STATUS);
+        File folder = getJobFolder(JobStatusIndex.toKey(status.getRequest().getId()));
 
-        FileOutputStream stream = FileUtils.openOutputStream(statusFile);
+        this.serializer.write(status, folder);
 
-        try {
-            OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
-            writer.write("<?xml version=\"1.0\" encoding=\"" + DEFAULT_ENCODING + "\"?>\n");
-            this.xstream.toXML(status, writer);
-            writer.flush();
-        } finally {
-            IOUtils.closeQuietly(stream);
-        }
+        return folder;
     }
 
     @Override
@@ -238,21 +401,207 @@ public JobStatus getJobStatus(String id)
     @Override
     public JobStatus getJobStatus(List<String> id)
     {
-        return this.jobs.get(id != null ? id : Collections.EMPTY_LIST);
+        List<String> key = JobStatusIndex.toKey(id);
+
+        JobStatus status = this.transientJobs.get(key);
+
+        if (status == null) {
+            synchronized (this) {
+                status = this.cache.get(key);
+            }
+
+            if (status == null) {
+                status = loadJobStatus(key);
+            }
+        }
+
+        return status;
+    }
+
+    /**
+     * Load a stored job status and keep it in the cache.
+     * 
+     * @param key the id of the job
+     * @return the job status, null if it's not stored on the file system or it could not be loaded
+     */
+    private JobStatus loadJobStatus(List<String> key)
+    {
+        JobStatus status = null;
+
+        JobStatusSummary summary = this.index.get(key);
+        if (summary == null) {
+            // The index might not have been saved before the last shutdown
+            summary = indexJobStatus(key);
+        }
+
+        if (summary != null && summary.getFolder() != null) {
+            status = loadJobStatus(summary);
+
+            if (status != null) {
+                synchronized (this) {
+                    this.cache.put(key, status);
+                }
+            }
+        }
+
+        return status;
+    }
+
+    @Override
+    public JobStatusSummary getJobStatusSummary(List<String> id)
+    {
+        return this.index.get(id);
+    }
+
+    @Override
+    public Collection<JobStatusSummary> getJobStatusSummaries()
+    {
+        return this.index.getSummaries();
+    }
+
+    @Override
+    public List<LogEvent> getLog(List<String> id, long offset, int limit)
+    {
+        List<LogEvent> events = Collections.emptyList();
+
+        List<String> key = JobStatusIndex.toKey(id);
+
+        JobStatusCheckpoint checkpoint = this.checkpointer != null ? this.checkpointer.get(key) : null;
+
+        if (checkpoint != null) {
+            // Running job: the saved log events are not all kept in memory
+            try {
+                events = checkpoint.getLog(offset, limit);
+            } catch (IOException e) {
+                this.logger.error(ERROR_LOAD, checkpoint.getFolder(), e);
+            }
+        } else {
+            JobStatus status = this.transientJobs.get(key);
+            if (status == null) {
+                synchronized (this) {
+                    status = this.cache.get(key);
+                }
+            }
+
+            if (status != null) {
+                events = status.getLog().getLogs(offset, limit);
+            } else {
+                events = readLog(key, offset, limit);
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * @param key the id of the job
+     * @param offset the index of the first log event to return
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @return the log events read from the stored job status, empty if no status is stored with the passed id
+     */
+    private List<LogEvent> readLog(List<String> key, long offset, int limit)
+    {
+        List<LogEvent> events = Collections.emptyList();
+
+        JobStatusSummary summary = this.index.get(key);
+        if (summary != null && summary.getFolder() != null) {
+            File folder = new File(this.configuration.getStorage(), summary.getFolder());
+            try {
+                events = this.serializer.readLog(folder, offset, limit);
+            } catch (IOException e) {
+                this.logger.error(ERROR_LOAD, folder, e);
+            }
+        }
+
+        return events;
+    }
+
+    @Override
+    public void startCheckpoints(JobStatus status)
+    {
+        if (this.checkpointer != null && status instanceof Serializable) {
+            List<String> key = JobStatusIndex.toKey(status.getRequest().getId());
+            File folder = getJobFolder(key);
+
+            JobStatusCheckpoint checkpoint =
+                new JobStatusCheckpoint(status, folder, this.serializer, this.configuration.getCheckpointLogTail(),
+                    this.logger);
+
+            try {
+                // Save it right away so that the job status can be found even if the job is interrupted
+                checkpoint.save();
+
+                this.transientJobs.remove(key);
+                synchronized (this) {
+                    // The previously stored job status has been replaced
+                    this.cache.remove(key);
+                }
+                this.index.put(checkpoint.getSummary(getRelativePath(folder)));
+                saveIndex();
+
+                this.checkpointer.start(key, checkpoint);
+            } catch (Exception e) {
+                this.logger.warn(ERROR_SAVE, status, e);
+            }
+        }
+    }
+
+    /**
+     * @param status the job status to save
+     * @param checkpoint the checkpoint of the job status, null if it was not checkpointed
+     * @return the location of the folder where the job status has been saved, relative to the storage folder, null if
+     *         it could not be saved
+     */
+    private String saveJobStatus(JobStatus status, JobStatusCheckpoint checkpoint)
+    {
+        String folder = null;
+
+        try {
+            if (checkpoint != null) {
+                // Only the log events logged since the last checkpoint have to be written
+                checkpoint.close();
+                folder = getRelativePath(checkpoint.getFolder());
+            } else {
+                folder = getRelativePath(saveJobStatus(status));
+            }
+        } catch (Exception e) {
+            this.logger.warn(ERROR_SAVE, status, e);
+        }
+
+        return folder;
     }
 
     @Override
     public void store(JobStatus status)
     {
-        this.jobs.put(status.getRequest().getId(), status);
+        List<String> key = JobStatusIndex.toKey(status.getRequest().getId());
+
+        JobStatusCheckpoint checkpoint = this.checkpointer != null ? this.checkpointer.stop(key, status) : null;
+
+        String folder = null;
 
         // On store Serializable job status on file system
         if (status instanceof Serializable) {
-            try {
-                saveJobStatus(status);
-            } catch (Exception e) {
-                this.logger.warn("Failed to save job status [{}]", status, e);
+            folder = saveJobStatus(status, checkpoint);
+        }
+
+        if (folder != null) {
+            this.transientJobs.remove(key);
+            synchronized (this) {
+                // The saved status is loaded (with a compact log) from the file system when asked
+                this.cache.remove(key);
             }
+        } else {
+            this.transientJobs.put(key, status);
+        }
+
+        if (checkpoint != null && folder != null) {
+            this.index.put(checkpoint.getSummary(folder));
+        } else {
+            this.index.put(new JobStatusSummary(status, folder));
+        }
+        if (folder != null) {
+            saveIndex();
         }
     }
 
@@ -265,12 +614,29 @@ public JobStatus remove(String id)
     @Override
     public JobStatus remove(List<String> id)
     {
-        JobStatus status = this.jobs.remove(id);
+        List<String> key = JobStatusIndex.toKey(id);
+
+        JobStatus status = getJobStatus(key);
 
-        File jobFolder = getJobFolder(id);
+        this.transientJobs.remove(key);
+        synchronized (this) {
+            this.cache.remove(key);
+        }
+        if (this.index.remove(key) != null) {
+            saveIndex();
+        }
+
+        File jobFolder = getJobFolder(key);
         if (jobFolder.exists()) {
             try {
-                FileUtils.deleteDirectory(jobFolder);
+                if (key.isEmpty()) {
+                    // Don't remove the whole storage
+                    FileUtils.deleteQuietly(new File(jobFolder, JobStatusSerializer.FILENAME_XML));
+                    FileUtils.deleteQuietly(new File(jobFolder, JobStatusSerializer.FILENAME_HEADER));
+                    FileUtils.deleteQuietly(new File(jobFolder, JobStatusSerializer.FILENAME_LOG));
+                } else {
+                    FileUtils.deleteDirectory(jobFolder);
+                }
             } catch (IOException e) {
                 this.logger.warn("Failed to delete job folder [{}]", jobFolder, e);
             }
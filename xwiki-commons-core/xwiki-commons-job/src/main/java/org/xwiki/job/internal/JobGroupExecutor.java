@@ -0,0 +1,374 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Execute the jobs of a group with a fixed number of workers, each worker having its own Execution Context.
+ * <p>
+ * Queued jobs are started by decreasing priority (see {@link Request#getPriority()}) and in the order they were added
+ * for a same priority. To make sure low priority jobs are not delayed forever, a queued job gains one priority level
+ * each time it waits for the configured aging time: comparing {@code priority + waitTime / agingTime} of two jobs is
+ * the same as comparing {@code priority * agingTime - queueDate} which does not change while they wait.
+ * <p>
+ * If the Execution Context of a worker can't be initialized, it's initialized again before starting each job and the
+ * jobs which can't be started are stored with a failed status.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobGroupExecutor implements ThreadFactory
+{
+    /**
+     * A job to execute.
+     * 
+     * @version $Id$
+     */
+    private class JobElement implements Runnable, Comparable<JobElement>
+    {
+        /**
+         * The job to execute.
+         */
+        private final Job job;
+
+        /**
+         * The request to use to control the job.
+         */
+        private final Request request;
+
+        /**
+         * The date (in nanoseconds) when the job has been added to the queue.
+         */
+        private final long queueDate;
+
+        /**
+         * The position of the job in the queue, jobs with a lower value are started first.
+         */
+        private final long rank;
+
+        /**
+         * Used to keep the adding order between jobs with the same rank.
+         */
+        private final long sequence;
+
+        /**
+         * @param job the job to execute
+         * @param request the request to use to control the job
+         */
+        public JobElement(Job job, Request request)
+        {
+            this.job = job;
+            this.request = request;
+            this.queueDate = System.nanoTime();
+            this.sequence = sequenceCounter.incrementAndGet();
+
+            int priority = request != null ? request.getPriority() : 0;
+            this.rank = TimeUnit.NANOSECONDS.toMillis(this.queueDate) - priority * priorityAgingTime;
+        }
+
+        @Override
+        public void run()
+        {
+            runJob(this.job, this.request, this.queueDate);
+        }
+
+        @Override
+        public int compareTo(JobElement other)
+        {
+            int result = compare(this.rank, other.rank);
+
+            return result != 0 ? result : compare(this.sequence, other.sequence);
+        }
+
+        /**
+         * @param value1 the first value
+         * @param value2 the second value
+         * @return a negative integer, zero, or a positive integer as the first value is less than, equal to, or
+         *         greater than the second
+         */
+        private int compare(long value1, long value2)
+        {
+            return value1 < value2 ? -1 : (value1 == value2 ? 0 : 1);
+        }
+    }
+
+    /**
+     * A worker thread of the group, initializing its own Execution Context once for all the jobs it executes.
+     * 
+     * @version $Id$
+     */
+    private class Worker implements Runnable
+    {
+        /**
+         * The loop of the thread pool.
+         */
+        private final Runnable runnable;
+
+        /**
+         * @param runnable the loop of the thread pool
+         */
+        public Worker(Runnable runnable)
+        {
+            this.runnable = runnable;
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                context.initialize();
+            } catch (ExecutionContextException e) {
+                LOGGER.error("Failed to initialize job group [{}] execution context", name, e);
+            }
+
+            try {
+                this.runnable.run();
+            } finally {
+                context.dispose();
+            }
+        }
+    }
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(JobGroupExecutor.class);
+
+    /**
+     * The name of the group.
+     */
+    private final String name;
+
+    /**
+     * Used to manage the Execution Context of the workers.
+     */
+    private final JobWorkerContext context;
+
+    /**
+     * Used to store the status of the jobs which could not be started.
+     */
+    private final JobStatusStorage storage;
+
+    /**
+     * The job which started last in any group.
+     */
+    private final AtomicReference<Job> latestJob;
+
+    /**
+     * The time (in milliseconds) a queued job has to wait to gain one priority level.
+     */
+    private final long priorityAgingTime;
+
+    /**
+     * Updated with the time spent in queue and running by the jobs of the group.
+     */
+    private final JobStatistics statistics;
+
+    /**
+     * Used to keep the adding order of the jobs.
+     */
+    private final AtomicLong sequenceCounter = new AtomicLong();
+
+    /**
+     * The workers of the group.
+     */
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * The number of workers created so far, used to name them.
+     */
+    private final AtomicLong workerCount = new AtomicLong();
+
+    /**
+     * The jobs of the group currently running.
+     */
+    private final Set<Job> runningJobs = Collections.newSetFromMap(new ConcurrentHashMap<Job, Boolean>());
+
+    /**
+     * @see #getCurrentJob()
+     */
+    private volatile Job currentJob;
+
+    /**
+     * @param name the name of the group
+     * @param configuration used to get the number of workers of the group and the priority aging time
+     * @param context used to manage the Execution Context of the workers
+     * @param storage used to store the status of the jobs which could not be started
+     * @param latestJob updated with the jobs of the group when they start
+     * @param statistics updated with the time spent in queue and running by the jobs of the group
+     */
+    public JobGroupExecutor(String name, JobManagerConfiguration configuration, JobWorkerContext context,
+        JobStatusStorage storage, AtomicReference<Job> latestJob, JobStatistics statistics)
+    {
+        this.name = name;
+        this.context = context;
+        this.storage = storage;
+        this.latestJob = latestJob;
+        this.priorityAgingTime = configuration.getPriorityAgingTime();
+        this.statistics = statistics;
+
+        int threads = configuration.getGroupThreads(name);
+
+        // Only JobElements are added to the queue
+        this.executor =
+            new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), this);
+    }
+
+    /**
+     * @return the name of the group
+     */
+    public String getName()
+    {
+        return this.name;
+    }
+
+    /**
+     * @return the job of the group which started last, null if no job has been started
+     */
+    public Job getCurrentJob()
+    {
+        return this.currentJob;
+    }
+
+    /**
+     * @return the jobs of the group currently running
+     */
+    public Set<Job> getRunningJobs()
+    {
+        return Collections.unmodifiableSet(this.runningJobs);
+    }
+
+    /**
+     * Add a job to the queue of the group.
+     * 
+     * @param job the job to execute
+     * @param request the request to use to control the job
+     */
+    public void execute(Job job, Request request)
+    {
+        this.executor.execute(new JobElement(job, request));
+    }
+
+    /**
+     * @return the number of jobs waiting to be started
+     */
+    public int getQueueSize()
+    {
+        return this.executor.getQueue().size();
+    }
+
+    /**
+     * @param job the job to execute
+     * @param request the request to use to control the job
+     * @param queueDate the date (in nanoseconds) when the job has been added to the queue
+     */
+    private void runJob(Job job, Request request, long queueDate)
+    {
+        if (!this.context.isInitialized()) {
+            try {
+                this.context.initialize();
+            } catch (ExecutionContextException e) {
+                failJob(job, request, e);
+
+                return;
+            }
+        }
+
+        this.currentJob = job;
+        this.latestJob.set(job);
+
+        long startDate = System.nanoTime();
+
+        this.runningJobs.add(job);
+        try {
+            job.start(request);
+        } finally {
+            this.runningJobs.remove(job);
+
+            this.statistics.jobExecuted(job.getType(), startDate - queueDate, System.nanoTime() - startDate);
+        }
+    }
+
+    /**
+     * Finish a job which could not be started.
+     * 
+     * @param job the job which could not be started
+     * @param request the request to use to control the job
+     * @param exception the reason why the job could not be started
+     */
+    private void failJob(Job job, Request request, ExecutionContextException exception)
+    {
+        String message = "Failed to initialize the execution context of job [{}] in group [{}]";
+        Object[] arguments = new Object[] {job.getType(), this.name, exception};
+
+        LOGGER.error(message, arguments);
+
+        if (job instanceof AbstractJob) {
+            // Release the threads waiting for the job
+            ((AbstractJob< ? >) job).fail(request, exception);
+        } else if (request != null && request.getId() != null) {
+            DefaultJobStatus<Request> status = new DefaultJobStatus<Request>(request, null, null);
+            status.getLog().error(message, arguments);
+            status.setState(JobStatus.State.FINISHED);
+
+            this.storage.store(status);
+        }
+    }
+
+    /**
+     * Stop the workers of the group, interrupting the running jobs.
+     */
+    public void shutdown()
+    {
+        this.executor.shutdownNow();
+    }
+
+    // ThreadFactory
+
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+        Thread thread =
+            new Thread(new Worker(runnable), "XWiki job group [" + this.name + "] worker "
+                + this.workerCount.incrementAndGet());
+        thread.setDaemon(true);
+
+        return thread;
+    }
+}
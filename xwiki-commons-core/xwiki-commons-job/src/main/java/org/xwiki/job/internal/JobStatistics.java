@@ -0,0 +1,80 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The time spent waiting in queue and running by the executed jobs, per job type. Used to tune the job groups and the
+ * priorities of the requests.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatistics
+{
+    /**
+     * The statistics indexed by job type.
+     */
+    private volatile ConcurrentMap<String, JobTypeStatistics> statistics =
+        new ConcurrentHashMap<String, JobTypeStatistics>();
+
+    /**
+     * @param jobType the type of the job
+     * @param queueTime the time (in nanoseconds) the job waited in queue
+     * @param runTime the time (in nanoseconds) the job ran
+     */
+    public void jobExecuted(String jobType, long queueTime, long runTime)
+    {
+        String type = jobType != null ? jobType : "";
+
+        ConcurrentMap<String, JobTypeStatistics> currentStatistics = this.statistics;
+
+        JobTypeStatistics typeStatistics = currentStatistics.get(type);
+        if (typeStatistics == null) {
+            typeStatistics = new JobTypeStatistics(type);
+            JobTypeStatistics previous = currentStatistics.putIfAbsent(type, typeStatistics);
+            if (previous != null) {
+                typeStatistics = previous;
+            }
+        }
+
+        typeStatistics.jobExecuted(queueTime, runTime);
+    }
+
+    /**
+     * @return the statistics of each job type which has been executed
+     */
+    public Collection<JobTypeStatistics> getJobTypeStatistics()
+    {
+        return new ArrayList<JobTypeStatistics>(this.statistics.values());
+    }
+
+    /**
+     * Forget all the statistics.
+     */
+    public void reset()
+    {
+        this.statistics = new ConcurrentHashMap<String, JobTypeStatistics>();
+    }
+}
@@ -0,0 +1,342 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * The saved state of a running job status. Each time the status is saved only the log events logged since the
+ * previous save are appended to the stored log and the saved log events are then removed from memory, except for the
+ * most recent ones. The whole log of the running job is read with {@link #getLog(long, int)}.
+ * <p>
+ * The checkpoint takes over the {@link LogQueue.OverflowPolicy#DROP_OLDEST} capacity of the log: the oldest log
+ * events are only removed from memory once they are saved so that the stored log has no gap.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusCheckpoint
+{
+    /**
+     * @see #getStatus()
+     */
+    private final JobStatus status;
+
+    /**
+     * @see #getFolder()
+     */
+    private final File folder;
+
+    /**
+     * Used to write the job status.
+     */
+    private final JobStatusSerializer serializer;
+
+    /**
+     * The maximum number of saved log events to keep in memory, -1 to keep them all.
+     */
+    private final int logTail;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * The offset of the first saved log event.
+     */
+    private long firstSavedOffset;
+
+    /**
+     * The offset of the next log event to save, -1 if the job status has never been saved.
+     */
+    private long savedOffset = -1;
+
+    /**
+     * The number of saved log events.
+     */
+    private int logSize;
+
+    /**
+     * The number of saved error log events.
+     */
+    private int errorCount;
+
+    /**
+     * The number of saved warning log events.
+     */
+    private int warningCount;
+
+    /**
+     * The time (in milliseconds) of the last save.
+     */
+    private long saveTime;
+
+    /**
+     * True when the job is finished and its status has been saved for the last time.
+     */
+    private boolean closed;
+
+    /**
+     * @param status the running job status
+     * @param folder the folder where to save the job status
+     * @param serializer used to write the job status
+     * @param logTail the maximum number of saved log events to keep in memory, -1 to keep them all
+     * @param logger the logger to log
+     */
+    public JobStatusCheckpoint(JobStatus status, File folder, JobStatusSerializer serializer, int logTail,
+        Logger logger)
+    {
+        this.status = status;
+        this.folder = folder;
+        this.serializer = serializer;
+        this.logTail = logTail;
+        this.logger = logger;
+
+        LogQueue log = status.getLog();
+        synchronized (log) {
+            if (log.getOverflowPolicy() == LogQueue.OverflowPolicy.DROP_OLDEST) {
+                log.setCapacity(0, LogQueue.OverflowPolicy.DROP_OLDEST);
+            }
+        }
+    }
+
+    /**
+     * @return the running job status
+     */
+    public JobStatus getStatus()
+    {
+        return this.status;
+    }
+
+    /**
+     * @return the folder where the job status is saved
+     */
+    public File getFolder()
+    {
+        return this.folder;
+    }
+
+    /**
+     * @param interval the time (in milliseconds) between two saves
+     * @param logThreshold the number of new log events after which the job status should be saved without waiting
+     * @return true if the job status should be saved
+     */
+    public synchronized boolean isDue(long interval, int logThreshold)
+    {
+        if (this.closed) {
+            return false;
+        }
+
+        return this.savedOffset < 0 || System.currentTimeMillis() - this.saveTime >= interval
+            || this.status.getLog().getNextOffset() - this.savedOffset >= logThreshold;
+    }
+
+    /**
+     * Write the job status and append the new log events to the stored log. Should be called from the thread of the
+     * job so that the status is not modified while it's written.
+     * 
+     * @throws IOException when failing to write the job status
+     */
+    public synchronized void save() throws IOException
+    {
+        saveLog();
+
+        // Written after the log so that the header never references log events which are not stored
+        writeHeader();
+
+        trimLog();
+    }
+
+    /**
+     * Save the job status from another thread than the thread of the job. The job keeps modifying its status while
+     * it's serialized so when the serialization fails the previously written header (which is replaced atomically) is
+     * kept until the next checkpoint.
+     * 
+     * @throws IOException when failing to write the job status
+     */
+    public synchronized void checkpoint() throws IOException
+    {
+        saveLog();
+
+        try {
+            writeHeader();
+        } catch (RuntimeException e) {
+            // The status has been modified while it was serialized, try again at the next checkpoint
+            this.saveTime = System.currentTimeMillis();
+        }
+
+        trimLog();
+    }
+
+    /**
+     * Save the job status for the last time.
+     * 
+     * @throws IOException when failing to write the job status
+     */
+    public synchronized void close() throws IOException
+    {
+        save();
+
+        this.closed = true;
+    }
+
+    /**
+     * Append the log events logged since the previous save to the stored log.
+     * 
+     * @throws IOException when failing to write the log
+     */
+    private void saveLog() throws IOException
+    {
+        LogQueue log = this.status.getLog();
+
+        long offset = Math.max(this.savedOffset, log.getFirstOffset());
+        List<LogEvent> events = log.getLogs(offset, -1);
+
+        LogSegment segment = getSegment();
+        if (this.savedOffset < 0) {
+            // Replace the job status of a previous execution
+            segment.write(events, this.serializer.isCompressed());
+            this.firstSavedOffset = offset;
+        } else {
+            if (offset > this.savedOffset) {
+                // Only possible if someone else removed log events from the running job status
+                this.logger.warn("[{}] log events of job status [{}] have been removed before being saved",
+                    offset - this.savedOffset, this.status);
+            }
+
+            if (!events.isEmpty()) {
+                segment.append(events, this.serializer.isCompressed());
+            }
+        }
+
+        count(events);
+        this.savedOffset = offset + events.size();
+    }
+
+    /**
+     * Remove from memory the oldest saved log events.
+     */
+    private void trimLog()
+    {
+        if (this.logTail >= 0) {
+            LogQueue log = this.status.getLog();
+
+            // Make sure no log event is added or removed in between
+            synchronized (log) {
+                while (log.getNextOffset() - log.getFirstOffset() > this.logTail
+                    && log.getFirstOffset() < this.savedOffset) {
+                    log.poll();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the stored log
+     */
+    private LogSegment getSegment()
+    {
+        return new LogSegment(new File(this.folder, JobStatusSerializer.FILENAME_LOG));
+    }
+
+    /**
+     * Get a page of the whole log of the running job: the log events removed from memory are read from the stored
+     * log.
+     * 
+     * @param offset the offset of the first log event to return
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @return the log events
+     * @throws IOException when failing to read the stored log
+     */
+    public synchronized List<LogEvent> getLog(long offset, int limit) throws IOException
+    {
+        LogQueue log = this.status.getLog();
+
+        long start = this.savedOffset >= 0 ? Math.max(offset, this.firstSavedOffset) : offset;
+        long firstOffset = log.getFirstOffset();
+
+        List<LogEvent> events = new ArrayList<LogEvent>();
+        if (this.savedOffset >= 0 && start < firstOffset) {
+            // The saved log events are only removed from memory while synchronized on this checkpoint
+            long removed = firstOffset - start;
+            int segmentLimit = limit >= 0 && limit < removed ? limit : (int) removed;
+            events.addAll(getSegment().read(start - this.firstSavedOffset, segmentLimit));
+        }
+
+        if (limit < 0) {
+            events.addAll(log.getLogs(start + events.size(), -1));
+        } else if (events.size() < limit) {
+            events.addAll(log.getLogs(start + events.size(), limit - events.size()));
+        }
+
+        return events;
+    }
+
+    /**
+     * Write the job status without its log.
+     * 
+     * @throws IOException when failing to write the header
+     */
+    private void writeHeader() throws IOException
+    {
+        this.serializer.writeHeader(this.status, new File(this.folder, JobStatusSerializer.FILENAME_HEADER));
+
+        // Replaced by the new format
+        FileUtils.deleteQuietly(new File(this.folder, JobStatusSerializer.FILENAME_XML));
+
+        this.saveTime = System.currentTimeMillis();
+    }
+
+    /**
+     * @param relativeFolder the location of the folder containing the job status, relative to the storage folder
+     * @return the summary of the saved job status
+     */
+    public synchronized JobStatusSummary getSummary(String relativeFolder)
+    {
+        return new JobStatusSummary(this.status, relativeFolder, this.logSize, this.errorCount, this.warningCount);
+    }
+
+    /**
+     * @param events the saved log events
+     */
+    private void count(List<LogEvent> events)
+    {
+        for (LogEvent event : events) {
+            if (event.getLevel() == LogLevel.ERROR) {
+                ++this.errorCount;
+            } else if (event.getLevel() == LogLevel.WARN) {
+                ++this.warningCount;
+            }
+        }
+
+        this.logSize += events.size();
+    }
+}
@@ -0,0 +1,170 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.xwiki.job.event.status.JobStatus;
+
+/**
+ * Regularly save the statuses of the running jobs (see {@link JobStatusCheckpoint}) from a dedicated thread, started
+ * with the first checkpointed job.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusCheckpointer implements Runnable, ThreadFactory
+{
+    /**
+     * The time (in milliseconds) between two verifications of the running job statuses.
+     */
+    private static final long PERIOD = 1000L;
+
+    /**
+     * The time (in milliseconds) between two saves of a running job status.
+     */
+    private final long interval;
+
+    /**
+     * The number of new log events after which a running job status is saved without waiting.
+     */
+    private final int logThreshold;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * The checkpoints of the running job statuses indexed by job id.
+     */
+    private final ConcurrentMap<List<String>, JobStatusCheckpoint> checkpoints =
+        new ConcurrentHashMap<List<String>, JobStatusCheckpoint>();
+
+    /**
+     * Execute the checkpoints. Only accessed while synchronized.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * @param interval the time (in milliseconds) between two saves of a running job status
+     * @param logThreshold the number of new log events after which a running job status is saved without waiting
+     * @param logger the logger to log
+     */
+    public JobStatusCheckpointer(long interval, int logThreshold, Logger logger)
+    {
+        this.interval = interval;
+        this.logThreshold = logThreshold;
+        this.logger = logger;
+    }
+
+    /**
+     * Start saving regularly a running job status.
+     * 
+     * @param id the id of the job
+     * @param checkpoint the checkpoint of the job status
+     */
+    public void start(List<String> id, JobStatusCheckpoint checkpoint)
+    {
+        this.checkpoints.put(id, checkpoint);
+
+        startExecutor();
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the checkpoint of the running job status, null if the job status is not checkpointed
+     */
+    public JobStatusCheckpoint get(List<String> id)
+    {
+        return this.checkpoints.get(id);
+    }
+
+    /**
+     * Stop saving regularly a job status.
+     * 
+     * @param id the id of the job
+     * @param status the job status
+     * @return the checkpoint of the job status, null if the job status was not checkpointed
+     */
+    public JobStatusCheckpoint stop(List<String> id, JobStatus status)
+    {
+        JobStatusCheckpoint checkpoint = this.checkpoints.get(id);
+
+        // Another job with the same id might have been started since then
+        if (checkpoint != null && checkpoint.getStatus() == status && this.checkpoints.remove(id, checkpoint)) {
+            return checkpoint;
+        }
+
+        return null;
+    }
+
+    /**
+     * Start the checkpoints thread if it's not already started.
+     */
+    private synchronized void startExecutor()
+    {
+        if (this.executor == null) {
+            this.executor = Executors.newSingleThreadScheduledExecutor(this);
+            this.executor.scheduleWithFixedDelay(this, PERIOD, PERIOD, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop the checkpoints thread.
+     */
+    public synchronized void dispose()
+    {
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+            this.executor = null;
+        }
+    }
+
+    @Override
+    public void run()
+    {
+        for (JobStatusCheckpoint checkpoint : this.checkpoints.values()) {
+            if (checkpoint.isDue(this.interval, this.logThreshold)) {
+                try {
+                    checkpoint.checkpoint();
+                } catch (Exception e) {
+                    this.logger.warn("Failed to save running job status [{}]", checkpoint.getStatus(), e);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "Job status checkpoint");
+        thread.setDaemon(true);
+
+        return thread;
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Helpers to replace the files of the job status storage so that a crash never leaves a partially written file: the
+ * new content is written in a temporary file which then replaces the existing file.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public final class JobStatusFiles
+{
+    /**
+     * The suffix of the temporary file in which the new content is written before replacing the existing file.
+     */
+    private static final String SUFFIX_TMP = ".tmp";
+
+    /**
+     * Utility class.
+     */
+    private JobStatusFiles()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param file the file to replace
+     * @return the temporary file in which to write the new content of the passed file
+     */
+    public static File getTemporaryFile(File file)
+    {
+        return new File(file.getPath() + SUFFIX_TMP);
+    }
+
+    /**
+     * Replace a file with the temporary file containing its new content.
+     * 
+     * @param tmpFile the temporary file containing the new content, should have been synchronized with the disk
+     * @param file the file to replace
+     * @throws IOException when failing to replace the file
+     */
+    public static void replace(File tmpFile, File file) throws IOException
+    {
+        // Renaming replaces the existing file atomically except on some file systems where it has to be deleted first
+        if (!tmpFile.renameTo(file) && !(file.delete() && tmpFile.renameTo(file))) {
+            throw new IOException("Failed to replace [" + file + "] with [" + tmpFile + "]");
+        }
+    }
+}
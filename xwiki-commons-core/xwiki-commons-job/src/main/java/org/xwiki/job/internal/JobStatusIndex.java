@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import com.thoughtworks.xstream.XStream;
+
+/**
+ * The summaries of the stored job statuses indexed by job id, saved in a file at the root of the storage folder so
+ * that the statuses don't have to be loaded when starting.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusIndex
+{
+    /**
+     * The name of the file where the index is saved.
+     */
+    public static final String FILENAME = "index.xml";
+
+    /**
+     * Encoding used for file content.
+     */
+    private static final String DEFAULT_ENCODING = "UTF-8";
+
+    /**
+     * The file where the index is saved.
+     */
+    private final File file;
+
+    /**
+     * Used to serialize and unserialize the index.
+     */
+    private final XStream xstream = new XStream();
+
+    /**
+     * The summaries of the stored job statuses indexed by job id.
+     */
+    private final Map<List<String>, JobStatusSummary> summaries =
+        new ConcurrentHashMap<List<String>, JobStatusSummary>();
+
+    /**
+     * @param folder the folder containing the job statuses
+     */
+    public JobStatusIndex(File folder)
+    {
+        this.file = new File(folder, FILENAME);
+    }
+
+    /**
+     * @param id the id of a job, can be null
+     * @return the key used to index the job
+     */
+    public static List<String> toKey(List<String> id)
+    {
+        return id != null ? id : Collections.<String> emptyList();
+    }
+
+    /**
+     * @return true if the index has been saved
+     */
+    public boolean exists()
+    {
+        return this.file.exists();
+    }
+
+    /**
+     * Load the saved index.
+     * 
+     * @throws IOException when failing to read the index file
+     */
+    @SuppressWarnings("unchecked")
+    public synchronized void load() throws IOException
+    {
+        this.summaries.clear();
+
+        List<JobStatusSummary> savedSummaries;
+        try {
+            savedSummaries = (List<JobStatusSummary>) this.xstream.fromXML(this.file);
+        } catch (Exception e) {
+            throw new IOException("Failed to parse job status index [" + this.file + "]", e);
+        }
+
+        for (JobStatusSummary summary : savedSummaries) {
+            this.summaries.put(toKey(summary.getId()), summary);
+        }
+    }
+
+    /**
+     * Save the index. The index is written in a temporary file which then replaces the saved index so that the saved
+     * index is never left half written.
+     * 
+     * @throws IOException when failing to write the index file
+     */
+    public synchronized void save() throws IOException
+    {
+        List<JobStatusSummary> savedSummaries = new ArrayList<JobStatusSummary>();
+        for (JobStatusSummary summary : this.summaries.values()) {
+            // Statuses which are not stored on the file system don't survive a restart
+            if (summary.getFolder() != null) {
+                savedSummaries.add(summary);
+            }
+        }
+
+        File tmpFile = JobStatusFiles.getTemporaryFile(this.file);
+
+        FileOutputStream stream = FileUtils.openOutputStream(tmpFile);
+
+        try {
+            OutputStreamWriter writer = new OutputStreamWriter(stream, DEFAULT_ENCODING);
+            writer.write("<?xml version=\"1.0\" encoding=\"" + DEFAULT_ENCODING + "\"?>\n");
+            this.xstream.toXML(savedSummaries, writer);
+            writer.flush();
+            stream.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(stream);
+        }
+
+        JobStatusFiles.replace(tmpFile, this.file);
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the summary of the job status, null if none is indexed
+     */
+    public JobStatusSummary get(List<String> id)
+    {
+        return this.summaries.get(toKey(id));
+    }
+
+    /**
+     * @return the summaries of all the indexed job statuses
+     */
+    public Collection<JobStatusSummary> getSummaries()
+    {
+        return new ArrayList<JobStatusSummary>(this.summaries.values());
+    }
+
+    /**
+     * @param summary the summary of the job status to index
+     */
+    public void put(JobStatusSummary summary)
+    {
+        this.summaries.put(toKey(summary.getId()), summary);
+    }
+
+    /**
+     * @param id the id of the job
+     * @return the summary of the removed job status, null if none was indexed
+     */
+    public JobStatusSummary remove(List<String> id)
+    {
+        return this.summaries.remove(toKey(id));
+    }
+}
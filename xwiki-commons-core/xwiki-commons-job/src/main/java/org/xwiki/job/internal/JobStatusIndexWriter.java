@@ -0,0 +1,138 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+
+/**
+ * Save the {@link JobStatusIndex} from a dedicated thread, at most once per second, so that storing or removing many
+ * job statuses in a row doesn't rewrite the whole index each time.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusIndexWriter implements Runnable, ThreadFactory
+{
+    /**
+     * The time (in milliseconds) to wait before saving the index once it has been modified.
+     */
+    private static final long DELAY = 1000L;
+
+    /**
+     * The index to save.
+     */
+    private final JobStatusIndex index;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * Execute the saves. Only accessed while synchronized.
+     */
+    private ScheduledExecutorService executor;
+
+    /**
+     * True if the index has been modified since it was last saved. Only accessed while synchronized.
+     */
+    private boolean modified;
+
+    /**
+     * @param index the index to save
+     * @param logger the logger to log
+     */
+    public JobStatusIndexWriter(JobStatusIndex index, Logger logger)
+    {
+        this.index = index;
+        this.logger = logger;
+    }
+
+    /**
+     * Save the index a bit later, along with the next modifications.
+     */
+    public synchronized void save()
+    {
+        if (!this.modified) {
+            this.modified = true;
+
+            if (this.executor == null) {
+                this.executor = Executors.newSingleThreadScheduledExecutor(this);
+            }
+            this.executor.schedule(this, DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Save the index right away if it has been modified.
+     */
+    public void flush()
+    {
+        synchronized (this) {
+            if (!this.modified) {
+                return;
+            }
+
+            this.modified = false;
+        }
+
+        try {
+            this.index.save();
+        } catch (IOException e) {
+            this.logger.warn("Failed to save the job status index", e);
+        }
+    }
+
+    /**
+     * Stop the saving thread and save the pending modifications.
+     */
+    public void dispose()
+    {
+        synchronized (this) {
+            if (this.executor != null) {
+                this.executor.shutdownNow();
+                this.executor = null;
+            }
+        }
+
+        flush();
+    }
+
+    @Override
+    public void run()
+    {
+        flush();
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable)
+    {
+        Thread thread = new Thread(runnable, "Job status index writer");
+        thread.setDaemon(true);
+
+        return thread;
+    }
+}
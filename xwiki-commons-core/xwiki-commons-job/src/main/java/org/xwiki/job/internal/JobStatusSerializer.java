@@ -0,0 +1,318 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.LogEvent;
+
+import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.converters.Converter;
+import com.thoughtworks.xstream.converters.MarshallingContext;
+import com.thoughtworks.xstream.converters.UnmarshallingContext;
+import com.thoughtworks.xstream.io.HierarchicalStreamReader;
+import com.thoughtworks.xstream.io.HierarchicalStreamWriter;
+import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
+
+/**
+ * Read and write the files of a stored job status.
+ * <p>
+ * A job status is written in two files: a header containing the status without its log, serialized with the XStream
+ * binary format (optionally compressed), and a {@link LogSegment} containing the log. The header can thus be read
+ * without the log and the log can be read page by page. Job statuses stored in the previous XML format are still
+ * read.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusSerializer
+{
+    /**
+     * The name of the file where the job status was stored in XML format.
+     */
+    public static final String FILENAME_XML = "status.xml";
+
+    /**
+     * The name of the file where the job status without its log is stored.
+     */
+    public static final String FILENAME_HEADER = "status.dat";
+
+    /**
+     * The name of the file where the log of the job is stored.
+     */
+    public static final String FILENAME_LOG = "log.dat";
+
+    /**
+     * The first bytes of the header file ("XJSH").
+     */
+    private static final int MAGIC = 0x584A5348;
+
+    /**
+     * The version of the header format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * Indicate that the content of the header is compressed.
+     */
+    private static final int FLAG_GZIP = 1;
+
+    /**
+     * The beginning of the message of the errors raised when failing to parse a file.
+     */
+    private static final String ERROR_PARSE = "Failed to parse job status file [";
+
+    /**
+     * Skip the log of the job status when writing the header and create an empty log when reading it.
+     * 
+     * @version $Id$
+     */
+    private static class EmptyLogQueueConverter implements Converter
+    {
+        @Override
+        public boolean canConvert(@SuppressWarnings("rawtypes") Class type)
+        {
+            return type == LogQueue.class;
+        }
+
+        @Override
+        public void marshal(Object source, HierarchicalStreamWriter writer, MarshallingContext context)
+        {
+            // The log is stored separately
+        }
+
+        @Override
+        public Object unmarshal(HierarchicalStreamReader reader, UnmarshallingContext context)
+        {
+            return new LogQueue();
+        }
+    }
+
+    /**
+     * Used to read job statuses stored in XML.
+     */
+    private final XStream xmlXStream = new XStream();
+
+    /**
+     * Used to read and write the headers.
+     */
+    private final XStream binaryXStream = new XStream(new BinaryStreamDriver());
+
+    /**
+     * True if the written files should be compressed.
+     */
+    private final boolean compressed;
+
+    /**
+     * @param compressed true if the written files should be compressed
+     */
+    public JobStatusSerializer(boolean compressed)
+    {
+        this.compressed = compressed;
+
+        this.binaryXStream.registerConverter(new EmptyLogQueueConverter(), XStream.PRIORITY_VERY_HIGH);
+    }
+
+    /**
+     * @return true if the written files are compressed
+     */
+    public boolean isCompressed()
+    {
+        return this.compressed;
+    }
+
+    /**
+     * @param folder a folder of the storage
+     * @return true if the folder contains a job status
+     */
+    public boolean exists(File folder)
+    {
+        return new File(folder, FILENAME_HEADER).exists() || new File(folder, FILENAME_XML).exists();
+    }
+
+    /**
+     * Write the job status. The log is written before the header so that a crash never leaves a header without its
+     * log: each file is fully written in a temporary file before replacing the previous one.
+     * 
+     * @param status the job status to write
+     * @param folder the folder where to write the job status
+     * @throws IOException when failing to write the job status
+     */
+    public void write(JobStatus status, File folder) throws IOException
+    {
+        new LogSegment(new File(folder, FILENAME_LOG)).write(status.getLog(), this.compressed);
+
+        writeHeader(status, new File(folder, FILENAME_HEADER));
+
+        // Replaced by the new format
+        FileUtils.deleteQuietly(new File(folder, FILENAME_XML));
+    }
+
+    /**
+     * Write the job status without its log in a temporary file and then replace the passed file with it so that the
+     * previous header remains valid if the write is interrupted.
+     * 
+     * @param status the job status to write
+     * @param file the file where to write the job status without its log
+     * @throws IOException when failing to write the file
+     */
+    public void writeHeader(JobStatus status, File file) throws IOException
+    {
+        File tmpFile = JobStatusFiles.getTemporaryFile(file);
+
+        FileOutputStream fileStream = FileUtils.openOutputStream(tmpFile);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileStream));
+        GZIPOutputStream gzipStream = null;
+
+        try {
+            output.writeInt(MAGIC);
+            output.writeByte(VERSION);
+            output.writeByte(this.compressed ? FLAG_GZIP : 0);
+
+            if (this.compressed) {
+                gzipStream = new GZIPOutputStream(output);
+                this.binaryXStream.toXML(status, gzipStream);
+                gzipStream.finish();
+            } else {
+                this.binaryXStream.toXML(status, output);
+            }
+
+            output.flush();
+            fileStream.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(gzipStream);
+            IOUtils.closeQuietly(output);
+        }
+
+        JobStatusFiles.replace(tmpFile, file);
+    }
+
+    /**
+     * @param folder the folder containing the job status
+     * @return the job status with its log
+     * @throws IOException when failing to read the job status
+     */
+    public JobStatus read(File folder) throws IOException
+    {
+        JobStatus status;
+
+        File headerFile = new File(folder, FILENAME_HEADER);
+        if (headerFile.exists()) {
+            status = readHeaderFile(headerFile);
+
+            status.getLog().addAll(new LogSegment(new File(folder, FILENAME_LOG)).read(0, -1));
+        } else {
+            status = readXML(new File(folder, FILENAME_XML));
+        }
+
+        return status;
+    }
+
+    /**
+     * @param folder the folder containing the job status
+     * @return the job status without its log (the log is empty) if it's stored in binary format, with its log
+     *         otherwise
+     * @throws IOException when failing to read the job status
+     */
+    public JobStatus readHeader(File folder) throws IOException
+    {
+        File headerFile = new File(folder, FILENAME_HEADER);
+
+        return headerFile.exists() ? readHeaderFile(headerFile) : readXML(new File(folder, FILENAME_XML));
+    }
+
+    /**
+     * @param folder the folder containing the job status
+     * @param offset the index of the first log event to return
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @return the log events
+     * @throws IOException when failing to read the log
+     */
+    public List<LogEvent> readLog(File folder, long offset, int limit) throws IOException
+    {
+        List<LogEvent> events;
+
+        if (new File(folder, FILENAME_HEADER).exists()) {
+            events = new LogSegment(new File(folder, FILENAME_LOG)).read(offset, limit);
+        } else {
+            events = readXML(new File(folder, FILENAME_XML)).getLog().getLogs(offset, limit);
+        }
+
+        return events;
+    }
+
+    /**
+     * @param file the file containing the job status without its log
+     * @return the job status with an empty log
+     * @throws IOException when failing to read the file
+     */
+    private JobStatus readHeaderFile(File file) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+
+        try {
+            if (input.readInt() != MAGIC) {
+                throw new IOException("File [" + file + "] is not a job status");
+            }
+
+            int version = input.readByte();
+            if (version != VERSION) {
+                throw new IOException("Unsupported job status version [" + version + "] in file [" + file + "]");
+            }
+
+            InputStream stream = (input.readByte() & FLAG_GZIP) != 0 ? new GZIPInputStream(input) : input;
+
+            return (JobStatus) this.binaryXStream.fromXML(stream);
+        } catch (RuntimeException e) {
+            throw new IOException(ERROR_PARSE + file + ']', e);
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * @param file the file containing the job status in XML format
+     * @return the job status
+     * @throws IOException when failing to read the file
+     */
+    private JobStatus readXML(File file) throws IOException
+    {
+        try {
+            return (JobStatus) this.xmlXStream.fromXML(file);
+        } catch (RuntimeException e) {
+            throw new IOException(ERROR_PARSE + file + ']', e);
+        }
+    }
+}
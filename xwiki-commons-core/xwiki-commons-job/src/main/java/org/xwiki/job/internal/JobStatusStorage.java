@@ -19,10 +19,12 @@
  */
 package org.xwiki.job.internal;
 
+import java.util.Collection;
 import java.util.List;
 
 import org.xwiki.component.annotation.Role;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.event.LogEvent;
 
 /**
  * Store and retrieve {@link JobStatus} instances.
@@ -40,12 +42,52 @@
     JobStatus getJobStatus(String id);
 
     /**
+     * The log of a status loaded from the file system is compact (see {@link org.xwiki.logging.LogQueue#compact()}):
+     * its log events don't contain the original arguments and throwables anymore.
+     * 
      * @param id the id of the job
      * @return the job status
      * @since 4.1M2
      */
     JobStatus getJobStatus(List<String> id);
 
+    /**
+     * Get the summary of a stored job status without loading it.
+     * 
+     * @param id the id of the job
+     * @return the summary of the job status, null if no status is stored with the passed id
+     * @since 4.2M2
+     */
+    JobStatusSummary getJobStatusSummary(List<String> id);
+
+    /**
+     * @return the summaries of all the stored job statuses
+     * @since 4.2M2
+     */
+    Collection<JobStatusSummary> getJobStatusSummaries();
+
+    /**
+     * Get a page of the log of a stored job status without loading the whole status when possible.
+     * 
+     * @param id the id of the job
+     * @param offset the index of the first log event to return
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @return the log events, empty if no status is stored with the passed id
+     * @since 4.2M2
+     */
+    List<LogEvent> getLog(List<String> id, long offset, int limit);
+
+    /**
+     * Regularly save the status of a running job (and append its new log events to the stored log) until it's stored
+     * with {@link #store(JobStatus)}, so that it's not lost if the job is interrupted. The saved log events are then
+     * removed from the log of the running job status, except for the most recent ones, and read from the stored log
+     * by {@link #getLog(List, long, int)}.
+     * 
+     * @param status the status of the running job
+     * @since 4.2M2
+     */
+    void startCheckpoints(JobStatus status);
+
     /**
      * @param status the job status
      */
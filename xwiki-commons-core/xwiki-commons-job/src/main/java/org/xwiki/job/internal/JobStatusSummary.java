@@ -0,0 +1,201 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.job.event.status.JobStatus.State;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+
+/**
+ * The main informations of a stored {@link JobStatus} and the location of the file containing it, kept in the index of
+ * the job status storage so that statuses are only loaded when needed.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobStatusSummary implements Serializable
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @see #getId()
+     */
+    private List<String> id;
+
+    /**
+     * @see #getFolder()
+     */
+    private String folder;
+
+    /**
+     * @see #getState()
+     */
+    private State state;
+
+    /**
+     * @see #getStartDate()
+     */
+    private Date startDate;
+
+    /**
+     * @see #getEndDate()
+     */
+    private Date endDate;
+
+    /**
+     * @see #getRequestType()
+     */
+    private String requestType;
+
+    /**
+     * @see #getLogSize()
+     */
+    private int logSize;
+
+    /**
+     * @see #getErrorCount()
+     */
+    private int errorCount;
+
+    /**
+     * @see #getWarningCount()
+     */
+    private int warningCount;
+
+    /**
+     * @param status the job status
+     * @param folder the location of the folder containing the job status, relative to the storage folder
+     */
+    public JobStatusSummary(JobStatus status, String folder)
+    {
+        List<String> statusId = status.getRequest() != null ? status.getRequest().getId() : null;
+        this.id = statusId != null ? new ArrayList<String>(statusId) : null;
+        this.folder = folder;
+        this.state = status.getState();
+        this.startDate = status.getStartDate();
+        this.endDate = status.getEndDate();
+        this.requestType = status.getRequest() != null ? status.getRequest().getClass().getName() : null;
+
+        LogQueue log = status.getLog();
+        if (log != null) {
+            this.logSize = log.size();
+            this.errorCount = log.size(LogLevel.ERROR);
+            this.warningCount = log.size(LogLevel.WARN);
+        }
+    }
+
+    /**
+     * @param status the job status
+     * @param folder the location of the folder containing the job status, relative to the storage folder
+     * @param logSize the number of log events of the job, including the ones not kept in memory anymore
+     * @param errorCount the number of error log events of the job
+     * @param warningCount the number of warning log events of the job
+     */
+    public JobStatusSummary(JobStatus status, String folder, int logSize, int errorCount, int warningCount)
+    {
+        this(status, folder);
+
+        this.logSize = logSize;
+        this.errorCount = errorCount;
+        this.warningCount = warningCount;
+    }
+
+    /**
+     * @return the id of the job
+     */
+    public List<String> getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * @return the location of the folder containing the job status, relative to the storage folder, null if the status
+     *         is not stored on the file system
+     */
+    public String getFolder()
+    {
+        return this.folder;
+    }
+
+    /**
+     * @return the state of the job when its status was stored
+     */
+    public State getState()
+    {
+        return this.state;
+    }
+
+    /**
+     * @return the date and time when the job was started
+     */
+    public Date getStartDate()
+    {
+        return this.startDate;
+    }
+
+    /**
+     * @return the date and time when the job finished
+     */
+    public Date getEndDate()
+    {
+        return this.endDate;
+    }
+
+    /**
+     * @return the class of the job request
+     */
+    public String getRequestType()
+    {
+        return this.requestType;
+    }
+
+    /**
+     * @return the number of log events of the job
+     */
+    public int getLogSize()
+    {
+        return this.logSize;
+    }
+
+    /**
+     * @return the number of error log events of the job
+     */
+    public int getErrorCount()
+    {
+        return this.errorCount;
+    }
+
+    /**
+     * @return the number of warning log events of the job
+     */
+    public int getWarningCount()
+    {
+        return this.warningCount;
+    }
+}
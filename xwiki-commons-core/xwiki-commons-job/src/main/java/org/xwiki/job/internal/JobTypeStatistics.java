@@ -0,0 +1,144 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The time spent waiting in queue and running by the jobs of a given type.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobTypeStatistics
+{
+    /**
+     * @see #getJobType()
+     */
+    private final String jobType;
+
+    /**
+     * @see #getCount()
+     */
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * @see #getQueueTime()
+     */
+    private final AtomicLong queueTime = new AtomicLong();
+
+    /**
+     * @see #getMaxQueueTime()
+     */
+    private final AtomicLong maxQueueTime = new AtomicLong();
+
+    /**
+     * @see #getRunTime()
+     */
+    private final AtomicLong runTime = new AtomicLong();
+
+    /**
+     * @see #getMaxRunTime()
+     */
+    private final AtomicLong maxRunTime = new AtomicLong();
+
+    /**
+     * @param jobType the type of the jobs
+     */
+    public JobTypeStatistics(String jobType)
+    {
+        this.jobType = jobType;
+    }
+
+    /**
+     * @param jobQueueTime the time (in nanoseconds) the job waited in queue
+     * @param jobRunTime the time (in nanoseconds) the job ran
+     */
+    void jobExecuted(long jobQueueTime, long jobRunTime)
+    {
+        this.count.incrementAndGet();
+
+        this.queueTime.addAndGet(jobQueueTime);
+        setMax(this.maxQueueTime, jobQueueTime);
+
+        this.runTime.addAndGet(jobRunTime);
+        setMax(this.maxRunTime, jobRunTime);
+    }
+
+    /**
+     * @param max the maximum to update
+     * @param value the new value
+     */
+    private void setMax(AtomicLong max, long value)
+    {
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * @return the type of the jobs
+     */
+    public String getJobType()
+    {
+        return this.jobType;
+    }
+
+    /**
+     * @return the number of executed jobs
+     */
+    public long getCount()
+    {
+        return this.count.get();
+    }
+
+    /**
+     * @return the total time (in nanoseconds) the jobs waited in queue
+     */
+    public long getQueueTime()
+    {
+        return this.queueTime.get();
+    }
+
+    /**
+     * @return the maximum time (in nanoseconds) a job waited in queue
+     */
+    public long getMaxQueueTime()
+    {
+        return this.maxQueueTime.get();
+    }
+
+    /**
+     * @return the total time (in nanoseconds) the jobs ran
+     */
+    public long getRunTime()
+    {
+        return this.runTime.get();
+    }
+
+    /**
+     * @return the maximum time (in nanoseconds) a job ran
+     */
+    public long getMaxRunTime()
+    {
+        return this.maxRunTime.get();
+    }
+}
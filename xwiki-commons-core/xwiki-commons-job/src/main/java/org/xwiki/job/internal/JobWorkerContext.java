@@ -0,0 +1,93 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+
+/**
+ * Manage the Execution Context of the threads executing the jobs.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JobWorkerContext
+{
+    /**
+     * Used to get the Execution Context.
+     */
+    private final Execution execution;
+
+    /**
+     * Used to create a new Execution Context from scratch.
+     */
+    private final ExecutionContextManager executionContextManager;
+
+    /**
+     * @param execution used to get the Execution Context
+     * @param executionContextManager used to create a new Execution Context from scratch
+     */
+    public JobWorkerContext(Execution execution, ExecutionContextManager executionContextManager)
+    {
+        this.execution = execution;
+        this.executionContextManager = executionContextManager;
+    }
+
+    /**
+     * @return true if the current thread has an Execution Context
+     */
+    public boolean isInitialized()
+    {
+        return this.execution.getContext() != null;
+    }
+
+    /**
+     * Create a clean Execution Context for the current thread.
+     * 
+     * @throws ExecutionContextException when failing to initialize the Execution Context
+     */
+    public void initialize() throws ExecutionContextException
+    {
+        ExecutionContext context = new ExecutionContext();
+
+        try {
+            this.executionContextManager.initialize(context);
+        } catch (ExecutionContextException e) {
+            // The Execution Context is set before being initialized, don't keep a partially initialized one
+            dispose();
+
+            throw e;
+        }
+
+        this.execution.pushContext(context);
+    }
+
+    /**
+     * Remove the Execution Context of the current thread, if any.
+     */
+    public void dispose()
+    {
+        if (isInitialized()) {
+            this.execution.removeContext();
+        }
+    }
+}
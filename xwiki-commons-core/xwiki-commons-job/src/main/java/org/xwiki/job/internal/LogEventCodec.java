@@ -0,0 +1,200 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.CompactThrowable;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Binary encoding of the log events stored in a {@link LogSegment}.
+ * <p>
+ * Log events are stored the way they are kept in memory once compacted (see {@link LogEvent#compact()}): the arguments
+ * are stored as their string representation and the throwables as {@link CompactThrowable}s.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public final class LogEventCodec
+{
+    /**
+     * The encoding of the strings.
+     */
+    private static final String ENCODING = "UTF-8";
+
+    /**
+     * Protect from throwables with an unreasonable number of causes.
+     */
+    private static final int MAX_CAUSES = 100;
+
+    /**
+     * Utility class.
+     */
+    private LogEventCodec()
+    {
+        // Utility class
+    }
+
+    /**
+     * @param event the log event to write
+     * @param output where to write the log event
+     * @throws IOException when failing to write the log event
+     */
+    public static void write(LogEvent event, DataOutput output) throws IOException
+    {
+        output.writeByte(event.getLevel() != null ? event.getLevel().ordinal() : -1);
+        writeString(event.getMessage(), output);
+
+        Object[] arguments = event.getArgumentArray();
+        if (arguments != null) {
+            output.writeInt(arguments.length);
+            for (Object argument : arguments) {
+                writeString(argument != null ? argument.toString() : null, output);
+            }
+        } else {
+            output.writeInt(-1);
+        }
+
+        writeThrowable(event.getThrowable(), output);
+    }
+
+    /**
+     * @param input where to read the log event
+     * @return the log event
+     * @throws IOException when failing to read the log event
+     */
+    public static LogEvent read(DataInput input) throws IOException
+    {
+        int level = input.readByte();
+        String message = readString(input);
+
+        Object[] arguments = null;
+        int argumentCount = input.readInt();
+        if (argumentCount >= 0) {
+            arguments = new Object[argumentCount];
+            for (int i = 0; i < argumentCount; ++i) {
+                arguments[i] = readString(input);
+            }
+        }
+
+        Throwable throwable = readThrowable(input);
+
+        return new LogEvent(level >= 0 ? LogLevel.values()[level] : null, message, arguments, throwable);
+    }
+
+    /**
+     * @param throwable the throwable to write, can be null
+     * @param output where to write the throwable
+     * @throws IOException when failing to write the throwable
+     */
+    private static void writeThrowable(Throwable throwable, DataOutput output) throws IOException
+    {
+        // The causes are written first so that they can be passed to the throwable when reading it
+        List<Throwable> throwables = new ArrayList<Throwable>();
+        for (Throwable cause = throwable; cause != null && throwables.size() < MAX_CAUSES
+            && !throwables.contains(cause); cause = cause.getCause()) {
+            throwables.add(0, cause);
+        }
+
+        output.writeInt(throwables.size());
+
+        for (Throwable cause : throwables) {
+            writeString(cause instanceof CompactThrowable ? ((CompactThrowable) cause).getClassName() : cause
+                .getClass().getName(), output);
+            writeString(cause.getMessage(), output);
+
+            StackTraceElement[] stackTrace = cause.getStackTrace();
+            output.writeInt(stackTrace.length);
+            for (StackTraceElement element : stackTrace) {
+                writeString(element.getClassName(), output);
+                writeString(element.getMethodName(), output);
+                writeString(element.getFileName(), output);
+                output.writeInt(element.getLineNumber());
+            }
+        }
+    }
+
+    /**
+     * @param input where to read the throwable
+     * @return the throwable, null if none was written
+     * @throws IOException when failing to read the throwable
+     */
+    private static CompactThrowable readThrowable(DataInput input) throws IOException
+    {
+        CompactThrowable throwable = null;
+
+        int count = input.readInt();
+        for (int i = 0; i < count; ++i) {
+            String className = readString(input);
+            String message = readString(input);
+
+            StackTraceElement[] stackTrace = new StackTraceElement[input.readInt()];
+            for (int j = 0; j < stackTrace.length; ++j) {
+                stackTrace[j] =
+                    new StackTraceElement(readString(input), readString(input), readString(input), input.readInt());
+            }
+
+            throwable = new CompactThrowable(className, message, stackTrace, throwable);
+        }
+
+        return throwable;
+    }
+
+    /**
+     * @param value the string to write, can be null
+     * @param output where to write the string
+     * @throws IOException when failing to write the string
+     */
+    private static void writeString(String value, DataOutput output) throws IOException
+    {
+        if (value != null) {
+            byte[] bytes = value.getBytes(ENCODING);
+            output.writeInt(bytes.length);
+            output.write(bytes);
+        } else {
+            output.writeInt(-1);
+        }
+    }
+
+    /**
+     * @param input where to read the string
+     * @return the string, null if a null string was written
+     * @throws IOException when failing to read the string
+     */
+    private static String readString(DataInput input) throws IOException
+    {
+        String value = null;
+
+        int length = input.readInt();
+        if (length >= 0) {
+            byte[] bytes = new byte[length];
+            input.readFully(bytes);
+            value = new String(bytes, ENCODING);
+        }
+
+        return value;
+    }
+}
@@ -0,0 +1,369 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * An append-only binary file containing the log events of a job.
+ * <p>
+ * The file starts with a magic number and a format version followed by blocks of log events. Each block starts with
+ * the number of events it contains, some flags (to indicate if the block is compressed) and the length of its content
+ * so that the events before a given offset can be skipped without reading them. A block which has not been fully
+ * written (for example because the process was killed) is ignored and removed before appending new blocks.
+ * <p>
+ * Log events are encoded with {@link LogEventCodec}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class LogSegment
+{
+    /**
+     * The maximum number of log events in a block.
+     */
+    public static final int BLOCK_SIZE = 100;
+
+    /**
+     * The first bytes of the file ("XJLS").
+     */
+    private static final int MAGIC = 0x584A4C53;
+
+    /**
+     * The version of the format.
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * The length of the file header: the magic number and the version.
+     */
+    private static final int HEADER_LENGTH = 5;
+
+    /**
+     * The length of a block header: the number of events, the flags and the length of the content.
+     */
+    private static final int BLOCK_HEADER_LENGTH = 9;
+
+    /**
+     * Indicate that the content of the block is compressed.
+     */
+    private static final int FLAG_DEFLATED = 1;
+
+    /**
+     * The file containing the log events.
+     */
+    private final File file;
+
+    /**
+     * @param file the file containing the log events
+     */
+    public LogSegment(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * @return the file containing the log events
+     */
+    public File getFile()
+    {
+        return this.file;
+    }
+
+    /**
+     * @return true if the file exists
+     */
+    public boolean exists()
+    {
+        return this.file.exists();
+    }
+
+    /**
+     * Replace the content of the file with the passed log events. The events are written in a temporary file which
+     * then replaces the file so that the previous content remains if the write is interrupted.
+     * 
+     * @param events the log events to write
+     * @param compressed true if the blocks should be compressed
+     * @throws IOException when failing to write the file
+     */
+    public void write(Collection<LogEvent> events, boolean compressed) throws IOException
+    {
+        File tmpFile = JobStatusFiles.getTemporaryFile(this.file);
+
+        write(events, compressed, tmpFile, false);
+
+        JobStatusFiles.replace(tmpFile, this.file);
+    }
+
+    /**
+     * Add log events at the end of the file, create it if it does not exist. A block which has not been fully written
+     * at the end of the file (for example because the disk was full) is removed first, otherwise it would be read as
+     * the beginning of the added blocks.
+     * 
+     * @param events the log events to add
+     * @param compressed true if the blocks should be compressed
+     * @throws IOException when failing to write the file
+     */
+    public void append(Collection<LogEvent> events, boolean compressed) throws IOException
+    {
+        write(events, compressed, this.file, this.file.exists());
+    }
+
+    /**
+     * @param events the log events to write
+     * @param compressed true if the blocks should be compressed
+     * @param target the file where to write the log events
+     * @param append true if the events should be added at the end of the existing file
+     * @throws IOException when failing to write the file
+     */
+    private void write(Collection<LogEvent> events, boolean compressed, File target, boolean append)
+        throws IOException
+    {
+        target.getParentFile().mkdirs();
+
+        long validLength = append ? getValidLength() : 0;
+
+        FileOutputStream fileStream = new FileOutputStream(target, append);
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(fileStream));
+
+        try {
+            if (append && fileStream.getChannel().size() > validLength) {
+                fileStream.getChannel().truncate(validLength);
+            }
+
+            if (!append) {
+                output.writeInt(MAGIC);
+                output.writeByte(VERSION);
+            }
+
+            List<LogEvent> block = new ArrayList<LogEvent>(BLOCK_SIZE);
+            for (Iterator<LogEvent> it = events.iterator(); it.hasNext();) {
+                block.add(it.next());
+                if (block.size() == BLOCK_SIZE || !it.hasNext()) {
+                    writeBlock(block, compressed, output);
+                    block.clear();
+                }
+            }
+
+            output.flush();
+            fileStream.getFD().sync();
+        } finally {
+            IOUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * @param block the log events of the block
+     * @param compressed true if the block should be compressed
+     * @param output where to write the block
+     * @throws IOException when failing to write the block
+     */
+    private void writeBlock(List<LogEvent> block, boolean compressed, DataOutputStream output) throws IOException
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        OutputStream stream = compressed ? new DeflaterOutputStream(bytes) : bytes;
+
+        DataOutputStream content = new DataOutputStream(stream);
+        for (LogEvent event : block) {
+            LogEventCodec.write(event, content);
+        }
+        content.close();
+
+        output.writeInt(block.size());
+        output.writeByte(compressed ? FLAG_DEFLATED : 0);
+        output.writeInt(bytes.size());
+        bytes.writeTo(output);
+    }
+
+    /**
+     * @param offset the index of the first log event to return
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @return the log events
+     * @throws IOException when failing to read the file
+     */
+    public List<LogEvent> read(long offset, int limit) throws IOException
+    {
+        List<LogEvent> events = new ArrayList<LogEvent>();
+
+        if (this.file.exists()) {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+            try {
+                readHeader(input);
+
+                long skip = offset;
+                while (limit < 0 || events.size() < limit) {
+                    skip = readBlock(input, skip, limit, events);
+                    if (skip < 0) {
+                        break;
+                    }
+                }
+            } finally {
+                IOUtils.closeQuietly(input);
+            }
+        }
+
+        return events;
+    }
+
+    /**
+     * @return the length of the file without the block which has not been fully written at its end, if any
+     * @throws IOException when failing to read the file
+     */
+    private long getValidLength() throws IOException
+    {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)));
+
+        try {
+            readHeader(input);
+
+            long length = HEADER_LENGTH;
+            for (long blockLength = skipBlock(input); blockLength > 0; blockLength = skipBlock(input)) {
+                length += blockLength;
+            }
+
+            return length;
+        } finally {
+            IOUtils.closeQuietly(input);
+        }
+    }
+
+    /**
+     * @param input the file content
+     * @return the length of the skipped block, -1 if the end of the file has been reached
+     * @throws IOException when failing to read the block
+     */
+    private long skipBlock(DataInputStream input) throws IOException
+    {
+        try {
+            int count = input.readInt();
+            input.readByte();
+            int size = input.readInt();
+
+            checkBlock(count, size);
+
+            IOUtils.skipFully(input, size);
+
+            return BLOCK_HEADER_LENGTH + size;
+        } catch (EOFException e) {
+            // End of the file or block not fully written
+            return -1;
+        }
+    }
+
+    /**
+     * @param input the file content
+     * @throws IOException when the file is not a log segment
+     */
+    private void readHeader(DataInputStream input) throws IOException
+    {
+        if (input.readInt() != MAGIC) {
+            throw new IOException("File [" + this.file + "] is not a job log");
+        }
+
+        int version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported job log version [" + version + "] in file [" + this.file + "]");
+        }
+    }
+
+    /**
+     * @param input the file content
+     * @param skip the number of log events to skip
+     * @param limit the maximum number of log events to return, -1 for no limit
+     * @param events where to add the read log events
+     * @return the number of log events which still need to be skipped, -1 if the end of the file has been reached
+     * @throws IOException when failing to read the block
+     */
+    private long readBlock(DataInputStream input, long skip, int limit, List<LogEvent> events) throws IOException
+    {
+        byte[] content;
+        int count;
+        int flags;
+        try {
+            count = input.readInt();
+            flags = input.readByte();
+            int size = input.readInt();
+
+            checkBlock(count, size);
+
+            if (skip >= count) {
+                IOUtils.skipFully(input, size);
+
+                return skip - count;
+            }
+
+            content = new byte[size];
+            input.readFully(content);
+        } catch (EOFException e) {
+            // End of the file or block not fully written
+            return -1;
+        }
+
+        InputStream stream = new ByteArrayInputStream(content);
+        if ((flags & FLAG_DEFLATED) != 0) {
+            stream = new InflaterInputStream(stream);
+        }
+        DataInputStream blockInput = new DataInputStream(stream);
+
+        for (int i = 0; i < count && (limit < 0 || events.size() < limit); ++i) {
+            LogEvent event = LogEventCodec.read(blockInput);
+            if (i >= skip) {
+                events.add(event);
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @param count the number of log events in the block
+     * @param size the length of the block content
+     * @throws IOException when the block header is corrupted
+     */
+    private void checkBlock(int count, int size) throws IOException
+    {
+        if (count < 0 || size < 0 || size > this.file.length()) {
+            throw new IOException("Invalid block of [" + count + "] log events and [" + size
+                + "] bytes in job log file [" + this.file + "]");
+        }
+    }
+}
@@ -21,15 +21,31 @@
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import junit.framework.Assert;
 
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Test;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.context.Execution;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextInitializer;
 import org.xwiki.context.ExecutionContextManager;
 import org.xwiki.context.internal.DefaultExecution;
 import org.xwiki.context.internal.DefaultExecutionContextManager;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
 import org.xwiki.test.AbstractMockingComponentTestCase;
 import org.xwiki.test.annotation.ComponentList;
 import org.xwiki.test.annotation.MockingRequirement;
@@ -45,12 +61,171 @@
 })
 public class DefaultJobManagerTest extends AbstractMockingComponentTestCase
 {
+    /**
+     * A job waiting to be released.
+     * 
+     * @version $Id$
+     */
+    private static class BlockingJob implements Job
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private volatile Request request;
+
+        @Override
+        public String getType()
+        {
+            return "blocking";
+        }
+
+        @Override
+        public JobStatus getStatus()
+        {
+            return null;
+        }
+
+        @Override
+        public Request getRequest()
+        {
+            return this.request;
+        }
+
+        @Override
+        public void start(Request request)
+        {
+            this.request = request;
+            this.started.countDown();
+
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                // Stopped
+            } finally {
+                this.finished.countDown();
+            }
+        }
+
+        @Override
+        public void join() throws InterruptedException
+        {
+            this.finished.await();
+        }
+
+        @Override
+        public boolean join(long time, TimeUnit unit) throws InterruptedException
+        {
+            return this.finished.await(time, unit);
+        }
+    }
+
+    /**
+     * A job which does nothing.
+     * 
+     * @version $Id$
+     */
+    private static class EmptyJob extends AbstractJob<Request>
+    {
+        @Override
+        public String getType()
+        {
+            return "empty";
+        }
+
+        @Override
+        protected void start() throws Exception
+        {
+            // Nothing to do
+        }
+    }
+
+    /**
+     * Fail the initialization of the execution contexts when asked.
+     * 
+     * @version $Id$
+     */
+    private static class FailingExecutionContextInitializer implements ExecutionContextInitializer
+    {
+        private volatile boolean failing;
+
+        @Override
+        public void initialize(ExecutionContext context) throws ExecutionContextException
+        {
+            if (this.failing) {
+                throw new ExecutionContextException("error");
+            }
+        }
+    }
+
     /**
      * The object being tested.
      */
     @MockingRequirement(exceptions = {ExecutionContextManager.class, Execution.class})
     private DefaultJobManager jobManager;
 
+    private ComponentManager componentManager;
+
+    private JobManagerConfiguration configuration;
+
+    private FailingExecutionContextInitializer contextInitializer = new FailingExecutionContextInitializer();
+
+    private volatile long priorityAgingTime = 10000L;
+
+    @Override
+    public void configure() throws Exception
+    {
+        DefaultComponentDescriptor<ExecutionContextInitializer> descriptor =
+            new DefaultComponentDescriptor<ExecutionContextInitializer>();
+        descriptor.setRoleType(ExecutionContextInitializer.class);
+        descriptor.setRoleHint("failing");
+        getComponentManager().registerComponent(descriptor, this.contextInitializer);
+
+        this.componentManager = getComponentManager().getInstance(ComponentManager.class);
+        this.configuration = getComponentManager().getInstance(JobManagerConfiguration.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(configuration).getPriorityAgingTime();
+                will(new CustomAction("return the priority aging time of the test")
+                {
+                    @Override
+                    public Object invoke(Invocation invocation) throws Throwable
+                    {
+                        return priorityAgingTime;
+                    }
+                });
+            }
+        });
+    }
+
+    private BlockingJob addJob(final String jobType, final String group, int priority) throws Exception
+    {
+        final BlockingJob job = new BlockingJob();
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(componentManager).getInstance(Job.class, jobType);
+                will(returnValue(job));
+                allowing(configuration).getJobGroup(jobType);
+                will(returnValue(group));
+                allowing(configuration).getGroupThreads(group);
+                will(returnValue(1));
+            }
+        });
+
+        DefaultRequest request = new DefaultRequest();
+        request.setPriority(priority);
+
+        this.jobManager.addJob(jobType, request);
+
+        return job;
+    }
+
     @Test
     public void testGetJobStatusForUnexistingJob() throws Exception
     {
@@ -67,4 +242,110 @@ public void testGetJobStatusForUnexistingJob() throws Exception
 
         Assert.assertNull(jobManager.getJobStatus(jobId));
     }
+
+    @Test
+    public void testJobGroupsAreExecutedIndependently() throws Exception
+    {
+        BlockingJob installJob = addJob("install", "extension", 0);
+        Assert.assertTrue(installJob.started.await(10, TimeUnit.SECONDS));
+
+        // The install job is still running but the plan job is in another group
+        BlockingJob planJob = addJob("plan", "plan", 0);
+        Assert.assertTrue(planJob.started.await(10, TimeUnit.SECONDS));
+
+        Assert.assertSame(installJob, this.jobManager.getCurrentJob("extension"));
+        Assert.assertSame(planJob, this.jobManager.getCurrentJob("plan"));
+        Assert.assertSame(planJob, this.jobManager.getCurrentJob());
+        Assert.assertNull(this.jobManager.getCurrentJob("unknown"));
+
+        planJob.released.countDown();
+        installJob.released.countDown();
+
+        Assert.assertTrue(planJob.join(10, TimeUnit.SECONDS));
+        Assert.assertTrue(installJob.join(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testJobsAreStartedByPriority() throws Exception
+    {
+        BlockingJob runningJob = addJob("running", "group", 0);
+        Assert.assertTrue(runningJob.started.await(10, TimeUnit.SECONDS));
+
+        BlockingJob lowJob = addJob("low", "group", 0);
+        BlockingJob highJob = addJob("high", "group", 10);
+
+        runningJob.released.countDown();
+
+        // The job with the highest priority is started first even if it has been added last
+        Assert.assertTrue(highJob.started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, lowJob.started.getCount());
+
+        highJob.released.countDown();
+        Assert.assertTrue(lowJob.started.await(10, TimeUnit.SECONDS));
+        lowJob.released.countDown();
+        Assert.assertTrue(lowJob.join(10, TimeUnit.SECONDS));
+
+        // The statistics are updated right after the job is finished
+        JobTypeStatistics statistics = null;
+        for (int i = 0; i < 100 && (statistics == null || statistics.getCount() < 3); ++i) {
+            Thread.sleep(100);
+            statistics = this.jobManager.getStatistics().getJobTypeStatistics().iterator().next();
+        }
+
+        Assert.assertEquals("blocking", statistics.getJobType());
+        Assert.assertEquals(3, statistics.getCount());
+        Assert.assertTrue(statistics.getMaxQueueTime() > 0);
+        Assert.assertTrue(statistics.getRunTime() >= statistics.getMaxRunTime());
+    }
+
+    @Test
+    public void testWaitingJobsGainPriority() throws Exception
+    {
+        this.priorityAgingTime = 100L;
+
+        BlockingJob runningJob = addJob("running", "group", 0);
+        Assert.assertTrue(runningJob.started.await(10, TimeUnit.SECONDS));
+
+        BlockingJob lowJob = addJob("low", "group", 0);
+
+        // Long enough for the low priority job to gain more priority levels than the high priority job has
+        Thread.sleep(500);
+
+        BlockingJob highJob = addJob("high", "group", 1);
+
+        runningJob.released.countDown();
+
+        // The low priority job has waited long enough to be started before the more recent high priority job
+        Assert.assertTrue(lowJob.started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, highJob.started.getCount());
+
+        lowJob.released.countDown();
+        Assert.assertTrue(highJob.started.await(10, TimeUnit.SECONDS));
+        highJob.released.countDown();
+        Assert.assertTrue(highJob.join(10, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void testExecuteJobWhenContextCannotBeInitialized() throws Exception
+    {
+        final EmptyJob job = new EmptyJob();
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(componentManager).getInstance(Job.class, "empty");
+                will(returnValue(job));
+                allowing(configuration).getJobGroup("empty");
+                will(returnValue("group"));
+                allowing(configuration).getGroupThreads("group");
+                will(returnValue(1));
+            }
+        });
+
+        this.contextInitializer.failing = true;
+
+        Assert.assertSame(job, this.jobManager.executeJob("empty", new DefaultRequest()));
+        Assert.assertEquals(JobStatus.State.FINISHED, job.getStatus().getState());
+        Assert.assertEquals(1, job.getStatus().getLog(LogLevel.ERROR).size());
+    }
 }
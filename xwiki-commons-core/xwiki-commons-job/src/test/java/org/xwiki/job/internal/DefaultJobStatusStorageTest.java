@@ -25,10 +25,17 @@
 
 import junit.framework.Assert;
 
+import org.apache.commons.io.FileUtils;
 import org.jmock.Expectations;
 import org.junit.Test;
+import org.slf4j.LoggerFactory;
+import org.xwiki.job.DefaultRequest;
 import org.xwiki.job.JobManagerConfiguration;
 import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.LogQueue;
+import org.xwiki.logging.event.CompactThrowable;
+import org.xwiki.logging.event.LogEvent;
 import org.xwiki.test.AbstractMockingComponentTestCase;
 import org.xwiki.test.annotation.MockingRequirement;
 
@@ -45,19 +52,37 @@ public class DefaultJobStatusStorageTest extends AbstractMockingComponentTestCas
     @MockingRequirement
     private DefaultJobStatusStorage storage;
 
+    /**
+     * A copy of the test storage folder since the storage index is written in it.
+     */
+    private File storageFolder = new File("target/test-jobs");
+
     @Override
     protected void setupDependencies() throws Exception
     {
         super.setupDependencies();
 
+        FileUtils.deleteDirectory(this.storageFolder);
+        FileUtils.copyDirectory(new File("src/test/resources/jobs"), this.storageFolder);
+
         final JobManagerConfiguration jobManagerConfiguration =
             getComponentManager().getInstance(JobManagerConfiguration.class);
 
         getMockery().checking(new Expectations()
         {
             {
-                oneOf(jobManagerConfiguration).getStorage();
-                will(returnValue(new File("src/test/resources/jobs")));
+                allowing(jobManagerConfiguration).getStorage();
+                will(returnValue(storageFolder));
+                allowing(jobManagerConfiguration).getStatusCacheSize();
+                will(returnValue(1));
+                allowing(jobManagerConfiguration).isStatusCompressed();
+                will(returnValue(true));
+                allowing(jobManagerConfiguration).getCheckpointInterval();
+                will(returnValue(60000L));
+                allowing(jobManagerConfiguration).getCheckpointLogThreshold();
+                will(returnValue(1000));
+                allowing(jobManagerConfiguration).getCheckpointLogTail();
+                will(returnValue(2));
             }
         });
     }
@@ -70,6 +95,9 @@ public void testGetJobStatusForUnexistingJob() throws Exception
         Assert.assertNotNull(jobStatus);
         Assert.assertNull(jobStatus.getRequest().getId());
         Assert.assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        Assert.assertEquals(3, jobStatus.getLog().size());
+        Assert.assertEquals(1, jobStatus.getLog().size(LogLevel.ERROR));
+        Assert.assertEquals("Some warning with parameter [{}]", jobStatus.getLog().getLogs(1, 1).get(0).getMessage());
 
         jobStatus = this.storage.getJobStatus(Arrays.asList("id1", "id2"));
 
@@ -83,4 +111,228 @@ public void testGetJobStatusForUnexistingJob() throws Exception
         Assert.assertEquals(Arrays.asList("id1", "id2", "id3"), jobStatus.getRequest().getId());
         Assert.assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
     }
+
+    @Test
+    public void testIndexIsBuiltFromExistingStorage() throws Exception
+    {
+        Assert.assertTrue(new File(this.storageFolder, JobStatusIndex.FILENAME).exists());
+        Assert.assertEquals(3, this.storage.getJobStatusSummaries().size());
+
+        JobStatusSummary summary = this.storage.getJobStatusSummary(null);
+
+        Assert.assertEquals(JobStatus.State.FINISHED, summary.getState());
+        Assert.assertEquals("status/", summary.getFolder());
+        Assert.assertEquals(3, summary.getLogSize());
+        Assert.assertEquals(1, summary.getErrorCount());
+
+        summary = this.storage.getJobStatusSummary(Arrays.asList("id1", "id2", "id3"));
+
+        Assert.assertEquals("status/id1/id2/id3/&status/", summary.getFolder());
+
+        // The index is loaded instead of being built again
+        JobStatusIndex index = new JobStatusIndex(this.storageFolder);
+        index.load();
+
+        Assert.assertEquals(3, index.getSummaries().size());
+        Assert.assertEquals(Arrays.asList("id1", "id2"), index.get(Arrays.asList("id1", "id2")).getId());
+    }
+
+    @Test
+    public void testStoreAndRemove() throws Exception
+    {
+        JobStatus jobStatus = this.storage.getJobStatus(Arrays.asList("id1", "id2"));
+
+        this.storage.remove(Arrays.asList("id1", "id2"));
+
+        Assert.assertNull(this.storage.getJobStatus(Arrays.asList("id1", "id2")));
+        Assert.assertNull(this.storage.getJobStatusSummary(Arrays.asList("id1", "id2")));
+
+        this.storage.store(jobStatus);
+
+        // The stored status is loaded again from the file system
+        Assert.assertNotSame(jobStatus, this.storage.getJobStatus(Arrays.asList("id1", "id2")));
+        Assert.assertEquals("id1/id2/", this.storage.getJobStatusSummary(Arrays.asList("id1", "id2")).getFolder());
+    }
+
+    @Test
+    public void testIndexIsSavedWhenDisposed() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("saved"));
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<DefaultRequest>(request, null, null);
+        jobStatus.setState(JobStatus.State.FINISHED);
+
+        this.storage.store(jobStatus);
+        this.storage.dispose();
+
+        JobStatusIndex index = new JobStatusIndex(this.storageFolder);
+        index.load();
+
+        Assert.assertEquals("saved/", index.get(request.getId()).getFolder());
+    }
+
+    @Test
+    public void testNotIndexedStatusIsLoaded() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("notindexed"));
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<DefaultRequest>(request, null, null);
+        jobStatus.setState(JobStatus.State.FINISHED);
+
+        // Stored before a crash, without saving the index
+        new JobStatusSerializer(true).write(jobStatus, new File(this.storageFolder, "notindexed"));
+
+        Assert.assertNull(this.storage.getJobStatusSummary(request.getId()));
+        Assert.assertEquals(JobStatus.State.FINISHED, this.storage.getJobStatus(request.getId()).getState());
+        Assert.assertEquals("notindexed/", this.storage.getJobStatusSummary(request.getId()).getFolder());
+    }
+
+    @Test
+    public void testStoredStatusIsNotCompacted() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("compact"));
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<DefaultRequest>(request, null, null);
+        jobStatus.getLog().error("message {}", new StringBuilder("param"), new Exception());
+
+        this.storage.store(jobStatus);
+
+        // The log of the stored status is left untouched
+        LogEvent logEvent = jobStatus.getLog().peek();
+        Assert.assertTrue(logEvent.getArgumentArray()[0] instanceof StringBuilder);
+        Assert.assertFalse(logEvent.getThrowable() instanceof CompactThrowable);
+
+        // A compact copy is loaded from the file system and kept in memory
+        JobStatus storedStatus = this.storage.getJobStatus(request.getId());
+        Assert.assertNotSame(jobStatus, storedStatus);
+        Assert.assertSame(storedStatus, this.storage.getJobStatus(request.getId()));
+        Assert.assertTrue(storedStatus.getLog().isCompact());
+        Assert.assertEquals("param", storedStatus.getLog().peek().getArgumentArray()[0]);
+        Assert.assertTrue(storedStatus.getLog().peek().getThrowable() instanceof CompactThrowable);
+    }
+
+    @Test
+    public void testStoreInBinaryFormat() throws Exception
+    {
+        JobStatus jobStatus = this.storage.getJobStatus((List<String>) null);
+
+        this.storage.store(jobStatus);
+
+        Assert.assertTrue(new File(this.storageFolder, JobStatusSerializer.FILENAME_HEADER).exists());
+        Assert.assertTrue(new File(this.storageFolder, JobStatusSerializer.FILENAME_LOG).exists());
+        Assert.assertEquals("", this.storage.getJobStatusSummary(null).getFolder());
+
+        // Make sure the status is not in the cache anymore
+        this.storage.getJobStatus(Arrays.asList("id1", "id2"));
+
+        List<LogEvent> log = this.storage.getLog(null, 1, 1);
+        Assert.assertEquals(1, log.size());
+        Assert.assertEquals("Some warning with parameter [{}]", log.get(0).getMessage());
+
+        jobStatus = this.storage.getJobStatus((List<String>) null);
+
+        Assert.assertEquals(JobStatus.State.FINISHED, jobStatus.getState());
+        Assert.assertEquals(3, jobStatus.getLog().size());
+        Assert.assertEquals(1, jobStatus.getLog().size(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testCheckpoints() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("checkpoint"));
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<DefaultRequest>(request, null, null);
+        jobStatus.setState(JobStatus.State.RUNNING);
+        jobStatus.getLog().error("error");
+        jobStatus.getLog().info("info1");
+
+        this.storage.startCheckpoints(jobStatus);
+
+        // The running job status can be loaded if the job is interrupted
+        File folder = new File(this.storageFolder, "checkpoint");
+        JobStatus savedStatus = new JobStatusSerializer(true).read(folder);
+
+        Assert.assertEquals(JobStatus.State.RUNNING, savedStatus.getState());
+        Assert.assertEquals(2, savedStatus.getLog().size());
+        Assert.assertEquals("checkpoint/", this.storage.getJobStatusSummary(request.getId()).getFolder());
+
+        jobStatus.getLog().warn("warn");
+        jobStatus.getLog().info("info2");
+
+        // The whole log of the running job, saved or not
+        List<LogEvent> runningLog = this.storage.getLog(request.getId(), 1, -1);
+        Assert.assertEquals(3, runningLog.size());
+        Assert.assertEquals("info1", runningLog.get(0).getMessage());
+        Assert.assertEquals("info2", runningLog.get(2).getMessage());
+
+        jobStatus.setState(JobStatus.State.FINISHED);
+
+        this.storage.store(jobStatus);
+
+        // Only the most recent log events are kept in memory
+        Assert.assertEquals(2, jobStatus.getLog().size());
+        Assert.assertEquals(2, jobStatus.getLog().getFirstOffset());
+
+        JobStatusSummary summary = this.storage.getJobStatusSummary(request.getId());
+
+        Assert.assertEquals(JobStatus.State.FINISHED, summary.getState());
+        Assert.assertEquals(4, summary.getLogSize());
+        Assert.assertEquals(1, summary.getErrorCount());
+        Assert.assertEquals(1, summary.getWarningCount());
+
+        List<LogEvent> log = this.storage.getLog(request.getId(), 0, -1);
+        Assert.assertEquals(4, log.size());
+        Assert.assertEquals("error", log.get(0).getMessage());
+        Assert.assertEquals("info2", log.get(3).getMessage());
+
+        JobStatus storedStatus = this.storage.getJobStatus(request.getId());
+
+        Assert.assertNotSame(jobStatus, storedStatus);
+        Assert.assertEquals(JobStatus.State.FINISHED, storedStatus.getState());
+        Assert.assertEquals(4, storedStatus.getLog().size());
+    }
+
+    @Test
+    public void testGetLogOfCheckpointedJob() throws Exception
+    {
+        DefaultRequest request = new DefaultRequest();
+        request.setId(Arrays.asList("running"));
+        DefaultJobStatus<DefaultRequest> jobStatus = new DefaultJobStatus<DefaultRequest>(request, null, null);
+        jobStatus.setState(JobStatus.State.RUNNING);
+        jobStatus.getLog().setCapacity(2, LogQueue.OverflowPolicy.DROP_OLDEST);
+
+        File folder = new File(this.storageFolder, "running");
+        JobStatusSerializer serializer = new JobStatusSerializer(false);
+        JobStatusCheckpoint checkpoint =
+            new JobStatusCheckpoint(jobStatus, folder, serializer, 1, LoggerFactory.getLogger(getClass()));
+
+        for (int i = 0; i < 5; ++i) {
+            jobStatus.getLog().info("info" + i);
+        }
+
+        // The capacity of the log doesn't drop log events which have not been saved yet
+        Assert.assertEquals(5, jobStatus.getLog().size());
+
+        checkpoint.save();
+
+        jobStatus.getLog().info("info5");
+
+        Assert.assertEquals(2, jobStatus.getLog().size());
+        Assert.assertEquals(5, serializer.readLog(folder, 0, -1).size());
+
+        List<LogEvent> log = checkpoint.getLog(0, -1);
+        Assert.assertEquals(6, log.size());
+        for (int i = 0; i < log.size(); ++i) {
+            Assert.assertEquals("info" + i, log.get(i).getMessage());
+        }
+
+        log = checkpoint.getLog(3, 2);
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals("info3", log.get(0).getMessage());
+        Assert.assertEquals("info4", log.get(1).getMessage());
+
+        log = checkpoint.getLog(4, 10);
+        Assert.assertEquals(2, log.size());
+        Assert.assertEquals("info5", log.get(1).getMessage());
+    }
 }
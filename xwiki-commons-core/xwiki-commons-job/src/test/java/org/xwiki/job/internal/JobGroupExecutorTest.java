@@ -0,0 +1,199 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.context.ExecutionContext;
+import org.xwiki.context.ExecutionContextException;
+import org.xwiki.context.ExecutionContextManager;
+import org.xwiki.context.internal.DefaultExecution;
+import org.xwiki.job.AbstractJob;
+import org.xwiki.job.DefaultRequest;
+import org.xwiki.job.Job;
+import org.xwiki.job.JobManagerConfiguration;
+import org.xwiki.job.Request;
+import org.xwiki.job.event.status.JobStatus;
+import org.xwiki.logging.LogLevel;
+
+/**
+ * Unit tests for {@link JobGroupExecutor}.
+ * 
+ * @version $Id$
+ */
+public class JobGroupExecutorTest
+{
+    /**
+     * A job which does nothing.
+     * 
+     * @version $Id$
+     */
+    private static class EmptyJob extends AbstractJob<Request>
+    {
+        @Override
+        public String getType()
+        {
+            return "empty";
+        }
+
+        @Override
+        protected void start() throws Exception
+        {
+            // Nothing to do
+        }
+    }
+
+    private Mockery mockery = new Mockery();
+
+    private ExecutionContextManager executionContextManager;
+
+    private JobStatusStorage storage;
+
+    private JobGroupExecutor executor;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        this.executionContextManager = this.mockery.mock(ExecutionContextManager.class);
+        this.storage = this.mockery.mock(JobStatusStorage.class);
+        final JobManagerConfiguration configuration = this.mockery.mock(JobManagerConfiguration.class);
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                allowing(configuration).getGroupThreads("group");
+                will(returnValue(1));
+                allowing(configuration).getPriorityAgingTime();
+                will(returnValue(10000L));
+            }
+        });
+
+        this.executor =
+            new JobGroupExecutor("group", configuration, new JobWorkerContext(new DefaultExecution(),
+                this.executionContextManager), this.storage, new AtomicReference<Job>(), new JobStatistics());
+    }
+
+    @After
+    public void tearDown()
+    {
+        this.executor.shutdown();
+    }
+
+    private CustomAction countDown(final CountDownLatch latch, final AtomicReference<Object> argument)
+    {
+        return new CustomAction("count down")
+        {
+            @Override
+            public Object invoke(Invocation invocation) throws Throwable
+            {
+                if (argument != null) {
+                    argument.set(invocation.getParameter(0));
+                }
+                latch.countDown();
+
+                return null;
+            }
+        };
+    }
+
+    @Test
+    public void testJobIsFailedWhenContextCannotBeInitialized() throws Exception
+    {
+        final Job failedJob = this.mockery.mock(Job.class, "failedJob");
+        final Job job = this.mockery.mock(Job.class, "job");
+        final DefaultRequest failedRequest = new DefaultRequest();
+        failedRequest.setId(Arrays.asList("failed"));
+        final Request request = new DefaultRequest();
+
+        final CountDownLatch stored = new CountDownLatch(1);
+        final AtomicReference<Object> storedStatus = new AtomicReference<Object>();
+        final CountDownLatch started = new CountDownLatch(1);
+
+        this.mockery.checking(new Expectations()
+        {
+            {
+                // When creating the worker and when starting the first job
+                exactly(2).of(executionContextManager).initialize(with(any(ExecutionContext.class)));
+                will(throwException(new ExecutionContextException("error")));
+                // When starting the second job
+                oneOf(executionContextManager).initialize(with(any(ExecutionContext.class)));
+
+                allowing(failedJob).getType();
+                will(returnValue("failed"));
+                never(failedJob).start(with(any(Request.class)));
+                oneOf(storage).store(with(any(JobStatus.class)));
+                will(countDown(stored, storedStatus));
+
+                allowing(job).getType();
+                will(returnValue("job"));
+                oneOf(job).start(request);
+                will(countDown(started, null));
+            }
+        });
+
+        this.executor.execute(failedJob, failedRequest);
+
+        Assert.assertTrue(stored.await(10, TimeUnit.SECONDS));
+
+        JobStatus status = (JobStatus) storedStatus.get();
+        Assert.assertSame(failedRequest, status.getRequest());
+        Assert.assertEquals(JobStatus.State.FINISHED, status.getState());
+        Assert.assertEquals(1, status.getLog(LogLevel.ERROR).size());
+
+        // The worker is still able to start the next jobs
+        this.executor.execute(job, request);
+
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        this.mockery.assertIsSatisfied();
+    }
+
+    @Test
+    public void testAbstractJobIsFinishedWhenContextCannotBeInitialized() throws Exception
+    {
+        this.mockery.checking(new Expectations()
+        {
+            {
+                allowing(executionContextManager).initialize(with(any(ExecutionContext.class)));
+                will(throwException(new ExecutionContextException("error")));
+            }
+        });
+
+        EmptyJob job = new EmptyJob();
+
+        this.executor.execute(job, new DefaultRequest());
+
+        // The threads waiting for the job are released
+        Assert.assertTrue(job.join(10, TimeUnit.SECONDS));
+        Assert.assertEquals(JobStatus.State.FINISHED, job.getStatus().getState());
+        Assert.assertEquals(1, job.getStatus().getLog(LogLevel.ERROR).size());
+    }
+}
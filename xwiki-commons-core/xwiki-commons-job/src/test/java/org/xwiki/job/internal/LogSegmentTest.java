@@ -0,0 +1,209 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.job.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Test;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.CompactThrowable;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Unit tests for {@link LogSegment}.
+ * 
+ * @version $Id$
+ */
+public class LogSegmentTest
+{
+    private File file = new File("target/test-logsegment/log.dat");
+
+    @Before
+    public void setUp() throws Exception
+    {
+        FileUtils.deleteQuietly(this.file);
+    }
+
+    private List<LogEvent> createEvents(int count)
+    {
+        List<LogEvent> events = new ArrayList<LogEvent>();
+        for (int i = 0; i < count; ++i) {
+            events.add(new LogEvent(LogLevel.INFO, "message {}", new Object[] {i}, null));
+        }
+
+        return events;
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        Exception exception = new Exception("error", new IllegalArgumentException("cause"));
+        List<LogEvent> events = createEvents(250);
+        events.add(new LogEvent(LogLevel.ERROR, "failed", null, exception));
+
+        segment.write(events, true);
+
+        Assert.assertEquals(251, segment.read(0, -1).size());
+
+        List<LogEvent> page = segment.read(150, 2);
+        Assert.assertEquals(2, page.size());
+        Assert.assertEquals("message 150", page.get(0).getFormattedMessage());
+        Assert.assertEquals("message 151", page.get(1).getFormattedMessage());
+
+        LogEvent error = segment.read(250, 10).get(0);
+        Assert.assertEquals(LogLevel.ERROR, error.getLevel());
+        Assert.assertNull(error.getArgumentArray());
+        Assert.assertEquals(Exception.class.getName(), ((CompactThrowable) error.getThrowable()).getClassName());
+        Assert.assertEquals("error", error.getThrowable().getMessage());
+        Assert.assertEquals(Arrays.asList(exception.getStackTrace()),
+            Arrays.asList(error.getThrowable().getStackTrace()));
+        Assert.assertEquals(IllegalArgumentException.class.getName(),
+            ((CompactThrowable) error.getThrowable().getCause()).getClassName());
+        Assert.assertNull(error.getThrowable().getCause().getCause());
+    }
+
+    @Test
+    public void testAppend() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.append(createEvents(10), false);
+        segment.append(createEvents(5), true);
+
+        List<LogEvent> events = segment.read(8, -1);
+        Assert.assertEquals(7, events.size());
+        Assert.assertEquals("message 8", events.get(0).getFormattedMessage());
+        Assert.assertEquals("message 0", events.get(2).getFormattedMessage());
+    }
+
+    @Test
+    public void testIncompleteBlockIsIgnored() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.append(createEvents(10), false);
+        long length = this.file.length();
+        segment.append(createEvents(10), false);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        randomAccessFile.setLength(length + 10);
+        randomAccessFile.close();
+
+        Assert.assertEquals(10, segment.read(0, -1).size());
+    }
+
+    @Test
+    public void testSkippedIncompleteBlockIsIgnored() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.append(createEvents(10), false);
+        long length = this.file.length();
+        segment.append(createEvents(10), false);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        randomAccessFile.setLength(length + 20);
+        randomAccessFile.close();
+
+        Assert.assertTrue(segment.read(15, -1).isEmpty());
+    }
+
+    @Test
+    public void testAppendAfterIncompleteBlock() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.append(createEvents(10), false);
+        long length = this.file.length();
+        segment.append(createEvents(10), false);
+
+        // The second append failed after writing only the beginning of its block
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        randomAccessFile.setLength(length + 20);
+        randomAccessFile.close();
+
+        segment.append(createEvents(5), true);
+        segment.append(createEvents(3), false);
+
+        List<LogEvent> events = segment.read(0, -1);
+        Assert.assertEquals(18, events.size());
+        Assert.assertEquals("message 9", events.get(9).getFormattedMessage());
+        Assert.assertEquals("message 0", events.get(10).getFormattedMessage());
+        Assert.assertEquals("message 2", events.get(17).getFormattedMessage());
+    }
+
+    @Test
+    public void testAppendAfterIncompleteBlockHeader() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.append(createEvents(10), false);
+        long length = this.file.length();
+        segment.append(createEvents(10), false);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        randomAccessFile.setLength(length + 3);
+        randomAccessFile.close();
+
+        segment.append(createEvents(5), false);
+
+        Assert.assertEquals(15, segment.read(0, -1).size());
+        Assert.assertEquals("message 4", segment.read(14, 1).get(0).getFormattedMessage());
+    }
+
+    @Test(expected = IOException.class)
+    public void testInvalidBlockSize() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.write(createEvents(10), false);
+
+        // Corrupt the size of the first block, just after the file header and the block count and flags
+        RandomAccessFile randomAccessFile = new RandomAccessFile(this.file, "rw");
+        randomAccessFile.seek(10);
+        randomAccessFile.writeInt(Integer.MAX_VALUE);
+        randomAccessFile.close();
+
+        segment.read(0, -1);
+    }
+
+    @Test
+    public void testWriteReplacesFile() throws Exception
+    {
+        LogSegment segment = new LogSegment(this.file);
+
+        segment.write(createEvents(10), false);
+        segment.write(createEvents(5), true);
+
+        Assert.assertEquals(5, segment.read(0, -1).size());
+        Assert.assertFalse(JobStatusFiles.getTemporaryFile(this.file).exists());
+    }
+}
@@ -19,8 +19,13 @@
  */
 package org.xwiki.logging;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.util.Arrays;
-import java.util.LinkedList;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -28,20 +33,466 @@
 import org.slf4j.Logger;
 import org.slf4j.Marker;
 import org.xwiki.logging.event.LogEvent;
+import org.xwiki.logging.internal.LogIndex;
 
 /**
  * A queue of {@link LogEvent}s.
+ * <p>
+ * The logs are indexed so that the number of logs (of each level) is known without iterating over the queue and a
+ * page of logs can be retrieved without iterating over the previous logs. Each log gets an offset when it's added: 0
+ * for the first log, 1 for the second, etc. Offsets don't change when the oldest logs are removed so they can be used
+ * to get only the logs added since a previous call (see {@link #getNextOffset()} and {@link #getLogs(long, int)}).
+ * <p>
+ * The number of logs can be limited, in which case adding a log to a full queue either drops the oldest log or the
+ * added log, depending on the {@link OverflowPolicy}.
+ * <p>
+ * In compact mode (see {@link #setCompact(boolean)}) the queue stores {@link LogEvent#compact() compact copies} of the
+ * added logs so that it doesn't retain the objects passed to the loggers.
+ * <p>
+ * All the methods are synchronized and the logs are only stored in the index: the {@link ConcurrentLinkedQueue}
+ * superclass is kept for compatibility but its storage is not used. The iterators work on a copy of the logs taken
+ * when they are created so that concurrent readers always see a consistent log, even while the queue is compacted.
+ * Only the logs are serialized: the limit, the mode and the offsets are not.
  * 
  * @version $Id$
  * @since 3.2M3
  */
 public class LogQueue extends ConcurrentLinkedQueue<LogEvent> implements Logger
 {
+    /**
+     * What to do when a log is added to a full queue.
+     * 
+     * @version $Id$
+     * @since 4.2M2
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Remove the oldest log to make room for the added log.
+         */
+        DROP_OLDEST,
+
+        /**
+         * Don't add the log.
+         */
+        DROP_NEWEST
+    }
+
     /**
      * Serialization identifier.
      */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * The name of the serialized field containing the logs.
+     */
+    private static final String LOGS_FIELD = "logs";
+
+    /**
+     * The serialized fields: the logs. The logs serialized by the previous versions, which were stored by the
+     * {@link ConcurrentLinkedQueue} superclass, are still read.
+     */
+    private static final ObjectStreamField[] serialPersistentFields = {new ObjectStreamField(LOGS_FIELD,
+        LogEvent[].class)};
+
+    /**
+     * The logs and their index. Created when null (i.e. after unserialization).
+     */
+    private transient LogIndex index = new LogIndex();
+
+    /**
+     * @see #getCapacity()
+     */
+    private transient int capacity;
+
+    /**
+     * @see #getOverflowPolicy()
+     */
+    private transient OverflowPolicy overflowPolicy;
+
+    /**
+     * @see #getDroppedCount()
+     */
+    private transient long droppedCount;
+
+    /**
+     * @see #isCompact()
+     */
+    private transient boolean compact;
+
+    /**
+     * Create an unlimited queue.
+     */
+    public LogQueue()
+    {
+    }
+
+    /**
+     * @param capacity the maximum number of logs in the queue, 0 for no limit
+     * @param overflowPolicy what to do when a log is added to a full queue
+     * @since 4.2M2
+     */
+    public LogQueue(int capacity, OverflowPolicy overflowPolicy)
+    {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @return the maximum number of logs in the queue, 0 for no limit
+     * @since 4.2M2
+     */
+    public synchronized int getCapacity()
+    {
+        return this.capacity;
+    }
+
+    /**
+     * @return what to do when a log is added to a full queue
+     * @since 4.2M2
+     */
+    public synchronized OverflowPolicy getOverflowPolicy()
+    {
+        return this.overflowPolicy != null ? this.overflowPolicy : OverflowPolicy.DROP_OLDEST;
+    }
+
+    /**
+     * Limit the number of logs of the queue. The logs already in the queue are kept, the limit applies to the logs
+     * added from now on.
+     * 
+     * @param capacity the maximum number of logs in the queue, 0 for no limit
+     * @param overflowPolicy what to do when a log is added to a full queue
+     * @since 4.2M2
+     */
+    public synchronized void setCapacity(int capacity, OverflowPolicy overflowPolicy)
+    {
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @return the number of logs which have been dropped because the queue was full
+     * @since 4.2M2
+     */
+    public synchronized long getDroppedCount()
+    {
+        return this.droppedCount;
+    }
+
+    /**
+     * @return true if the queue stores compact copies of the added logs
+     * @since 4.2M2
+     */
+    public synchronized boolean isCompact()
+    {
+        return this.compact;
+    }
+
+    /**
+     * @param compact true to store compact copies of the logs added from now on (see {@link #compact()} for the logs
+     *            already in the queue)
+     * @since 4.2M2
+     */
+    public synchronized void setCompact(boolean compact)
+    {
+        this.compact = compact;
+    }
+
+    /**
+     * Replace the logs of the queue by their {@link LogEvent#compact() compact copies} and store compact copies of the
+     * logs added from now on.
+     * <p>
+     * Since it changes what the logs return (the arguments become strings and the throwables
+     * {@link org.xwiki.logging.event.CompactThrowable}s), it should only be called by whoever owns the queue, for
+     * example before keeping it for a long time.
+     * 
+     * @since 4.2M2
+     */
+    public synchronized void compact()
+    {
+        this.compact = true;
+
+        LogIndex newIndex = new LogIndex(getIndex().getFirstOffset());
+        for (LogEvent logEvent : getIndex().getLogs(getIndex().getFirstOffset(), -1)) {
+            newIndex.add(logEvent.compact());
+        }
+
+        this.index = newIndex;
+    }
+
+    /**
+     * Must be called while synchronized.
+     * 
+     * @return the logs and their index
+     */
+    private LogIndex getIndex()
+    {
+        if (this.index == null) {
+            this.index = new LogIndex();
+        }
+
+        // The logs unserialized from the previous versions are stored by the superclass, which is not always going
+        // through offer() to add them
+        if (!super.isEmpty()) {
+            for (LogEvent logEvent = super.poll(); logEvent != null; logEvent = super.poll()) {
+                this.index.add(logEvent);
+            }
+        }
+
+        return this.index;
+    }
+
+    /**
+     * Replace the logs of the queue, keeping the current offset of the first log. Must be called while synchronized.
+     * 
+     * @param logEvents the new logs
+     */
+    private void setLogs(Collection<LogEvent> logEvents)
+    {
+        LogIndex newIndex = new LogIndex(getIndex().getFirstOffset());
+        for (LogEvent logEvent : logEvents) {
+            newIndex.add(logEvent);
+        }
+
+        this.index = newIndex;
+    }
+
+    /**
+     * Must be called while synchronized.
+     * 
+     * @return a copy of the logs of the queue
+     */
+    private List<LogEvent> getLogs()
+    {
+        return getIndex().getLogs(getIndex().getFirstOffset(), -1);
+    }
+
+    // Serialization
+
+    /**
+     * @param out the stream to write the logs to
+     * @throws IOException when failing to write the logs
+     */
+    private synchronized void writeObject(ObjectOutputStream out) throws IOException
+    {
+        List<LogEvent> logEvents = getLogs();
+
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put(LOGS_FIELD, logEvents.toArray(new LogEvent[logEvents.size()]));
+        out.writeFields();
+    }
+
+    /**
+     * @param in the stream to read the logs from
+     * @throws IOException when failing to read the logs
+     * @throws ClassNotFoundException when the class of a log cannot be found
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException
+    {
+        // Also take the logs serialized by the previous versions, which have been read by the superclass
+        LogIndex logIndex = getIndex();
+
+        LogEvent[] logEvents = (LogEvent[]) in.readFields().get(LOGS_FIELD, null);
+        if (logEvents != null) {
+            for (LogEvent logEvent : logEvents) {
+                logIndex.add(logEvent);
+            }
+        }
+    }
+
+    // Queue
+
+    @Override
+    public synchronized boolean offer(LogEvent logEvent)
+    {
+        if (logEvent == null) {
+            throw new NullPointerException();
+        }
+
+        LogEvent addedEvent = this.compact ? logEvent.compact() : logEvent;
+
+        if (this.capacity > 0 && getIndex().size() >= this.capacity) {
+            ++this.droppedCount;
+
+            if (getOverflowPolicy() == OverflowPolicy.DROP_NEWEST) {
+                return false;
+            }
+
+            getIndex().removeFirst();
+        }
+
+        getIndex().add(addedEvent);
+
+        return true;
+    }
+
+    @Override
+    public boolean add(LogEvent logEvent)
+    {
+        return offer(logEvent);
+    }
+
+    @Override
+    public boolean addAll(Collection< ? extends LogEvent> logEvents)
+    {
+        if (logEvents == this) {
+            throw new IllegalArgumentException();
+        }
+
+        boolean modified = false;
+        for (LogEvent logEvent : logEvents) {
+            modified |= offer(logEvent);
+        }
+
+        return modified;
+    }
+
+    @Override
+    public synchronized LogEvent poll()
+    {
+        return getIndex().removeFirst();
+    }
+
+    @Override
+    public synchronized LogEvent peek()
+    {
+        return getIndex().get(getIndex().getFirstOffset());
+    }
+
+    @Override
+    public synchronized boolean isEmpty()
+    {
+        return getIndex().size() == 0;
+    }
+
+    @Override
+    public synchronized boolean contains(Object o)
+    {
+        return o != null && getLogs().contains(o);
+    }
+
+    @Override
+    public synchronized boolean remove(Object o)
+    {
+        List<LogEvent> logEvents = getLogs();
+        boolean removed = o != null && logEvents.remove(o);
+
+        if (removed) {
+            setLogs(logEvents);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean removeAll(Collection< ? > c)
+    {
+        List<LogEvent> logEvents = getLogs();
+        boolean removed = logEvents.removeAll(c);
+
+        if (removed) {
+            setLogs(logEvents);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public synchronized boolean retainAll(Collection< ? > c)
+    {
+        List<LogEvent> logEvents = getLogs();
+        boolean removed = logEvents.retainAll(c);
+
+        if (removed) {
+            setLogs(logEvents);
+        }
+
+        return removed;
+    }
+
+    @Override
+    public synchronized void clear()
+    {
+        getIndex().clear();
+    }
+
+    @Override
+    public synchronized int size()
+    {
+        return getIndex().size();
+    }
+
+    @Override
+    public synchronized Object[] toArray()
+    {
+        return getLogs().toArray();
+    }
+
+    @Override
+    public synchronized <T> T[] toArray(T[] a)
+    {
+        return getLogs().toArray(a);
+    }
+
+    @Override
+    public synchronized Iterator<LogEvent> iterator()
+    {
+        return new LogIterator(getLogs());
+    }
+
+    /**
+     * Iterate over a copy of the logs taken when the iterator is created.
+     * 
+     * @version $Id$
+     */
+    private final class LogIterator implements Iterator<LogEvent>
+    {
+        /**
+         * The iterator of the copy of the logs.
+         */
+        private final Iterator<LogEvent> iterator;
+
+        /**
+         * The last returned log.
+         */
+        private LogEvent current;
+
+        /**
+         * @param logEvents the copy of the logs
+         */
+        private LogIterator(List<LogEvent> logEvents)
+        {
+            this.iterator = logEvents.iterator();
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            return this.iterator.hasNext();
+        }
+
+        @Override
+        public LogEvent next()
+        {
+            this.current = this.iterator.next();
+
+            return this.current;
+        }
+
+        @Override
+        public void remove()
+        {
+            if (this.current == null) {
+                throw new IllegalStateException();
+            }
+
+            LogQueue.this.remove(this.current);
+            this.current = null;
+        }
+    }
+
+    // Logs
+
     /**
      * @param level the log level
      * @param message the log message
@@ -89,15 +540,7 @@ public LogEvent addLogEvent(LogLevel level, String message, Object[] argumentArr
      */
     public List<LogEvent> getLogs(LogLevel level)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
-
-        for (LogEvent log : this) {
-            if (log.getLevel() == level) {
-                levelLogs.add(log);
-            }
-        }
-
-        return levelLogs;
+        return getLogs(level, 0, -1);
     }
 
     /**
@@ -109,15 +552,70 @@ public List<LogEvent> getLogs(LogLevel level)
      */
     public List<LogEvent> getLogsFrom(LogLevel level)
     {
-        List<LogEvent> levelLogs = new LinkedList<LogEvent>();
+        return getLogsFrom(level, 0, -1);
+    }
 
-        for (LogEvent log : this) {
-            if (log.getLevel().compareTo(level) <= 0) {
-                levelLogs.add(log);
-            }
-        }
+    /**
+     * @param level a log level
+     * @return the number of logs of the passed level in the queue
+     * @since 4.2M2
+     */
+    public synchronized int size(LogLevel level)
+    {
+        return getIndex().size(level);
+    }
+
+    /**
+     * @return the offset of the oldest log in the queue
+     * @since 4.2M2
+     */
+    public synchronized long getFirstOffset()
+    {
+        return getIndex().getFirstOffset();
+    }
 
-        return levelLogs;
+    /**
+     * @return the offset the next added log will get
+     * @since 4.2M2
+     */
+    public synchronized long getNextOffset()
+    {
+        return getIndex().getNextOffset();
+    }
+
+    /**
+     * @param offset the offset of the first log to return
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs starting at the passed offset
+     * @since 4.2M2
+     */
+    public synchronized List<LogEvent> getLogs(long offset, int limit)
+    {
+        return getIndex().getLogs(offset, limit);
+    }
+
+    /**
+     * @param level the level of the logs to return
+     * @param offset the offset from which to search the logs
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs of the passed level starting at the passed offset
+     * @since 4.2M2
+     */
+    public synchronized List<LogEvent> getLogs(LogLevel level, long offset, int limit)
+    {
+        return getIndex().getLogs(level, offset, limit);
+    }
+
+    /**
+     * @param level the lowest level of the logs to return
+     * @param offset the offset from which to search the logs
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs of the passed level and the more important levels starting at the passed offset
+     * @since 4.2M2
+     */
+    public synchronized List<LogEvent> getLogsFrom(LogLevel level, long offset, int limit)
+    {
+        return getIndex().getLogsFrom(level, offset, limit);
     }
 
     // Logger
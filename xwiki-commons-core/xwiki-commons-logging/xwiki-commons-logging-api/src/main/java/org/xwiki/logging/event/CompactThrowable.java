@@ -0,0 +1,115 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.event;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Lightweight copy of a {@link Throwable} keeping only what is needed to display it: the class name, the message, the
+ * stack trace and the cause (itself copied). Unlike the original throwable it doesn't retain any other object (fields
+ * of custom exceptions, class of the exception, etc.) so it can be kept for a long time.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class CompactThrowable extends Throwable
+{
+    /**
+     * Serialization identifier.
+     */
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * @see #getClassName()
+     */
+    private final String className;
+
+    /**
+     * @param throwable the throwable to copy
+     */
+    public CompactThrowable(Throwable throwable)
+    {
+        this(throwable, new IdentityHashMap<Throwable, CompactThrowable>());
+    }
+
+    /**
+     * Recreate a copy from its parts, for example when reading it from a storage.
+     * 
+     * @param className the name of the class of the copied throwable
+     * @param message the message of the copied throwable
+     * @param stackTrace the stack trace of the copied throwable
+     * @param cause the copy of the cause of the copied throwable, null if it had no cause
+     * @since 4.2M2
+     */
+    public CompactThrowable(String className, String message, StackTraceElement[] stackTrace, CompactThrowable cause)
+    {
+        super(message);
+
+        this.className = className;
+        setStackTrace(stackTrace);
+
+        if (cause != null) {
+            initCause(cause);
+        }
+    }
+
+    /**
+     * @param throwable the throwable to copy
+     * @param copies the already copied throwables, to protect from cycles in the causes
+     */
+    private CompactThrowable(Throwable throwable, Map<Throwable, CompactThrowable> copies)
+    {
+        super(throwable.getMessage());
+
+        this.className = throwable.getClass().getName();
+        setStackTrace(throwable.getStackTrace());
+
+        copies.put(throwable, this);
+
+        Throwable cause = throwable.getCause();
+        if (cause != null && !copies.containsKey(cause)) {
+            initCause(cause instanceof CompactThrowable ? cause : new CompactThrowable(cause, copies));
+        }
+    }
+
+    /**
+     * @return the name of the class of the copied throwable
+     */
+    public String getClassName()
+    {
+        return this.className;
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace()
+    {
+        // The stack trace is the one of the copied throwable
+        return this;
+    }
+
+    @Override
+    public String toString()
+    {
+        String message = getLocalizedMessage();
+
+        return message != null ? this.className + ": " + message : this.className;
+    }
+}
@@ -19,7 +19,10 @@
  */
 package org.xwiki.logging.event;
 
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import javax.inject.Singleton;
 
@@ -39,6 +42,18 @@
 @Singleton
 public class LogEvent implements Event
 {
+    /**
+     * The types of the arguments kept as is by {@link #compact()}: immutable and not retaining any other object.
+     */
+    private static final Set<Class< ? >> COMPACT_TYPES = new HashSet<Class< ? >>(Arrays.<Class< ? >>asList(
+        String.class, Boolean.class, Character.class, Byte.class, Short.class, Integer.class, Long.class, Float.class,
+        Double.class));
+
+    /**
+     * The pattern used to get the {@link String} representation of an argument.
+     */
+    private static final String ARGUMENT_PATTERN = "{}";
+
     /**
      * @see #getLevel()
      */
@@ -117,7 +132,8 @@ public Object[] getArgumentArray()
     }
 
     /**
-     * @return the throwable associated to the event
+     * @return the throwable associated to the event, a {@link CompactThrowable} copy of the original throwable if the
+     *         event is compact (see {@link #compact()})
      */
     public Throwable getThrowable()
     {
@@ -150,6 +166,75 @@ public List<String> getMessageElements()
         return ExtendedMessageFormatter.parseMessage(getMessage(), getArgumentArray());
     }
 
+    /**
+     * Create a copy of this event which doesn't retain the objects passed to the logger, to keep it for a long time
+     * without pinning them in memory: the arguments are replaced by their {@link String} representation (as it appears
+     * in the formatted message) and the throwable by a {@link CompactThrowable}. The formatted message and the message
+     * elements are the same.
+     * 
+     * @return the compact copy of this event, or this event if it's already compact
+     * @since 4.2M2
+     */
+    public LogEvent compact()
+    {
+        if (isCompact()) {
+            return this;
+        }
+
+        Object[] compactArguments = null;
+        if (this.argumentArray != null) {
+            compactArguments = new Object[this.argumentArray.length];
+            for (int i = 0; i < this.argumentArray.length; ++i) {
+                compactArguments[i] = compactArgument(this.argumentArray[i]);
+            }
+        }
+
+        Throwable compactThrowable = this.throwable;
+        if (compactThrowable != null && !(compactThrowable instanceof CompactThrowable)) {
+            compactThrowable = new CompactThrowable(compactThrowable);
+        }
+
+        return new LogEvent(this.level, this.message, compactArguments, compactThrowable);
+    }
+
+    /**
+     * @return true if this event doesn't retain any object passed to the logger
+     */
+    private boolean isCompact()
+    {
+        if (this.throwable != null && !(this.throwable instanceof CompactThrowable)) {
+            return false;
+        }
+
+        if (this.argumentArray != null) {
+            for (Object argument : this.argumentArray) {
+                if (argument != null && !COMPACT_TYPES.contains(argument.getClass())) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @param argument an argument of the message
+     * @return the argument itself if it can be kept as is, its {@link String} representation otherwise
+     */
+    private static Object compactArgument(Object argument)
+    {
+        if (argument == null || COMPACT_TYPES.contains(argument.getClass())) {
+            return argument;
+        }
+
+        if (argument instanceof Throwable) {
+            return argument.toString();
+        }
+
+        // Same representation as in the formatted message (arrays, failing toString(), etc.)
+        return MessageFormatter.format(ARGUMENT_PATTERN, argument).getMessage();
+    }
+
     @Override
     public String toString()
     {
@@ -0,0 +1,361 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.internal;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Index of the logs of a {@link org.xwiki.logging.LogQueue}: the logs in an array and the offsets of the logs of each
+ * level so that the number of logs, the number of logs of a level and any page of logs are found without iterating over
+ * all the logs.
+ * <p>
+ * Each log gets an offset when it's added: 0 for the first log, 1 for the second, etc. Offsets don't change when the
+ * oldest logs are removed so that they can be used to get the logs added since a previous call.
+ * <p>
+ * Not thread safe.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class LogIndex
+{
+    /**
+     * The initial size of the arrays.
+     */
+    private static final int INITIAL_CAPACITY = 16;
+
+    /**
+     * The logs, from {@link #start} (included) to {@link #end} (excluded).
+     */
+    private LogEvent[] logs = new LogEvent[INITIAL_CAPACITY];
+
+    /**
+     * The index of the oldest log in {@link #logs}.
+     */
+    private int start;
+
+    /**
+     * The index following the newest log in {@link #logs}.
+     */
+    private int end;
+
+    /**
+     * The offset of the oldest log.
+     */
+    private long firstOffset;
+
+    /**
+     * The offsets of the logs of each level, indexed by level ordinal.
+     */
+    private final OffsetList[] levelOffsets = new OffsetList[LogLevel.values().length];
+
+    /**
+     * Sorted list of offsets from which the smallest offsets are removed.
+     * 
+     * @version $Id$
+     */
+    private static final class OffsetList
+    {
+        /**
+         * The offsets, from {@link #start} (included) to {@link #end} (excluded).
+         */
+        private long[] offsets = new long[INITIAL_CAPACITY];
+
+        /**
+         * The index of the smallest offset in {@link #offsets}.
+         */
+        private int start;
+
+        /**
+         * The index following the biggest offset in {@link #offsets}.
+         */
+        private int end;
+
+        /**
+         * @param offset the offset to add, bigger than all the offsets of the list
+         */
+        void add(long offset)
+        {
+            if (this.end == this.offsets.length) {
+                long[] newOffsets = new long[newCapacity(this.start, this.end, this.offsets.length)];
+                System.arraycopy(this.offsets, this.start, newOffsets, 0, size());
+                this.offsets = newOffsets;
+                this.end -= this.start;
+                this.start = 0;
+            }
+
+            this.offsets[this.end++] = offset;
+        }
+
+        /**
+         * @param offset the offset to remove if it's the smallest offset of the list
+         */
+        void removeFirst(long offset)
+        {
+            if (this.start < this.end && this.offsets[this.start] == offset) {
+                ++this.start;
+            }
+        }
+
+        /**
+         * @return the number of offsets
+         */
+        int size()
+        {
+            return this.end - this.start;
+        }
+
+        /**
+         * @param index the index of the offset in the list
+         * @return the offset
+         */
+        long get(int index)
+        {
+            return this.offsets[this.start + index];
+        }
+
+        /**
+         * @param offset an offset
+         * @return the index in the list of the first offset greater or equal to the passed offset
+         */
+        int indexOf(long offset)
+        {
+            int index = Arrays.binarySearch(this.offsets, this.start, this.end, offset);
+
+            return (index >= 0 ? index : -index - 1) - this.start;
+        }
+    }
+
+    /**
+     * Create an empty index.
+     */
+    public LogIndex()
+    {
+        this(0);
+    }
+
+    /**
+     * @param firstOffset the offset of the first log added to the index
+     */
+    public LogIndex(long firstOffset)
+    {
+        this.firstOffset = firstOffset;
+
+        for (int i = 0; i < this.levelOffsets.length; ++i) {
+            this.levelOffsets[i] = new OffsetList();
+        }
+    }
+
+    /**
+     * @param start the index of the first element
+     * @param end the index following the last element
+     * @param capacity the current size of the array
+     * @return the size of the new array to use when adding an element to a full array
+     */
+    private static int newCapacity(int start, int end, int capacity)
+    {
+        // Only grow when more than half of the array is used, otherwise moving the elements is enough
+        return end - start < capacity / 2 ? capacity : capacity * 2;
+    }
+
+    /**
+     * @param log the log to add
+     */
+    public void add(LogEvent log)
+    {
+        if (this.end == this.logs.length) {
+            LogEvent[] newLogs = new LogEvent[newCapacity(this.start, this.end, this.logs.length)];
+            System.arraycopy(this.logs, this.start, newLogs, 0, size());
+            this.logs = newLogs;
+            this.end -= this.start;
+            this.start = 0;
+        }
+
+        if (log.getLevel() != null) {
+            this.levelOffsets[log.getLevel().ordinal()].add(getNextOffset());
+        }
+        this.logs[this.end++] = log;
+    }
+
+    /**
+     * Remove the oldest log.
+     * 
+     * @return the removed log or null if the index is empty
+     */
+    public LogEvent removeFirst()
+    {
+        if (this.start == this.end) {
+            return null;
+        }
+
+        LogEvent log = this.logs[this.start];
+        this.logs[this.start++] = null;
+        if (log.getLevel() != null) {
+            this.levelOffsets[log.getLevel().ordinal()].removeFirst(this.firstOffset);
+        }
+        ++this.firstOffset;
+
+        return log;
+    }
+
+    /**
+     * Remove all the logs. The offsets of the next logs continue after the removed ones.
+     */
+    public void clear()
+    {
+        while (removeFirst() != null) {
+            // Keep removing
+        }
+    }
+
+    /**
+     * @return the number of logs
+     */
+    public int size()
+    {
+        return this.end - this.start;
+    }
+
+    /**
+     * @param level a log level
+     * @return the number of logs of the passed level
+     */
+    public int size(LogLevel level)
+    {
+        return this.levelOffsets[level.ordinal()].size();
+    }
+
+    /**
+     * @return the offset of the oldest log
+     */
+    public long getFirstOffset()
+    {
+        return this.firstOffset;
+    }
+
+    /**
+     * @return the offset the next added log will get
+     */
+    public long getNextOffset()
+    {
+        return this.firstOffset + size();
+    }
+
+    /**
+     * @param offset the offset of the log
+     * @return the log or null if there is no log at this offset (anymore)
+     */
+    public LogEvent get(long offset)
+    {
+        if (offset < this.firstOffset || offset >= getNextOffset()) {
+            return null;
+        }
+
+        return this.logs[this.start + (int) (offset - this.firstOffset)];
+    }
+
+    /**
+     * @param offset the offset of the first log to return
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs starting at the passed offset
+     */
+    public List<LogEvent> getLogs(long offset, int limit)
+    {
+        long from = Math.max(offset, this.firstOffset);
+        long to = getNextOffset();
+        if (limit >= 0) {
+            to = Math.min(to, from + limit);
+        }
+
+        List<LogEvent> result = new ArrayList<LogEvent>((int) Math.max(0, to - from));
+        for (long i = from; i < to; ++i) {
+            result.add(get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param level the level of the logs to return
+     * @param offset the offset from which to search logs
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs of the passed level starting at the passed offset
+     */
+    public List<LogEvent> getLogs(LogLevel level, long offset, int limit)
+    {
+        OffsetList offsets = this.levelOffsets[level.ordinal()];
+
+        int from = offsets.indexOf(offset);
+        int to = offsets.size();
+        if (limit >= 0) {
+            to = Math.min(to, from + limit);
+        }
+
+        List<LogEvent> result = new ArrayList<LogEvent>(Math.max(0, to - from));
+        for (int i = from; i < to; ++i) {
+            result.add(get(offsets.get(i)));
+        }
+
+        return result;
+    }
+
+    /**
+     * @param level the lowest level of the logs to return
+     * @param offset the offset from which to search logs
+     * @param limit the maximum number of logs to return, -1 for no limit
+     * @return the logs of the passed level and the more important levels (e.g. {@link LogLevel#WARN} and
+     *         {@link LogLevel#ERROR} for {@link LogLevel#WARN}), starting at the passed offset
+     */
+    public List<LogEvent> getLogsFrom(LogLevel level, long offset, int limit)
+    {
+        int levels = level.ordinal() + 1;
+
+        // Merge the offsets of the requested levels
+        int[] positions = new int[levels];
+        int total = 0;
+        for (int i = 0; i < levels; ++i) {
+            positions[i] = this.levelOffsets[i].indexOf(offset);
+            total += this.levelOffsets[i].size() - positions[i];
+        }
+        if (limit >= 0) {
+            total = Math.min(total, limit);
+        }
+
+        List<LogEvent> result = new ArrayList<LogEvent>(total);
+        while (result.size() < total) {
+            int next = -1;
+            for (int i = 0; i < levels; ++i) {
+                OffsetList offsets = this.levelOffsets[i];
+                if (positions[i] < offsets.size()
+                    && (next == -1 || offsets.get(positions[i]) < this.levelOffsets[next].get(positions[next]))) {
+                    next = i;
+                }
+            }
+            result.add(get(this.levelOffsets[next].get(positions[next]++)));
+        }
+
+        return result;
+    }
+}
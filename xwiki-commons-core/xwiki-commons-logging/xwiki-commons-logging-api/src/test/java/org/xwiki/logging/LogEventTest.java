@@ -25,6 +25,7 @@
 
 import org.apache.commons.lang3.ArrayUtils;
 import org.junit.Test;
+import org.xwiki.logging.event.CompactThrowable;
 import org.xwiki.logging.event.LogEvent;
 
 /**
@@ -53,4 +54,37 @@ public void testGetMessageElements()
 
         Assert.assertEquals(logEvent.getMessageElements(), Arrays.asList("message ", ""));
     }
+
+    @Test
+    public void testCompact()
+    {
+        Exception exception = new IllegalStateException("error", new RuntimeException("cause"));
+        Object argument = new Object()
+        {
+            @Override
+            public String toString()
+            {
+                return "object";
+            }
+        };
+        LogEvent logEvent =
+            new LogEvent(LogLevel.ERROR, "message {} {} {} {}", new Object[] {argument, 42, new int[] {1, 2}, null},
+                exception);
+
+        LogEvent compactEvent = logEvent.compact();
+
+        Assert.assertEquals(Arrays.asList("object", 42, "[1, 2]", null), Arrays.asList(compactEvent
+            .getArgumentArray()));
+        Assert.assertEquals(logEvent.getFormattedMessage(), compactEvent.getFormattedMessage());
+        Assert.assertEquals(logEvent.getMessageElements(), compactEvent.getMessageElements());
+
+        CompactThrowable throwable = (CompactThrowable) compactEvent.getThrowable();
+        Assert.assertEquals(IllegalStateException.class.getName(), throwable.getClassName());
+        Assert.assertEquals(exception.toString(), throwable.toString());
+        Assert.assertTrue(Arrays.equals(exception.getStackTrace(), throwable.getStackTrace()));
+        Assert.assertEquals(exception.getCause().toString(), throwable.getCause().toString());
+
+        // Already compact
+        Assert.assertSame(compactEvent, compactEvent.compact());
+    }
 }
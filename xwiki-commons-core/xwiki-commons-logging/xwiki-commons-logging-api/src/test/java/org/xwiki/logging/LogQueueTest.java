@@ -19,9 +19,14 @@
  */
 package org.xwiki.logging;
 
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
 import junit.framework.Assert;
 
 import org.junit.Test;
+import org.xwiki.logging.event.CompactThrowable;
 import org.xwiki.logging.event.LogEvent;
 
 /**
@@ -56,4 +61,156 @@ public void testError()
         Assert.assertEquals(logEvent.getFormattedMessage(), "message param1");
         Assert.assertNotNull(logEvent.getThrowable());
     }
+
+    private String messages(List<LogEvent> logs)
+    {
+        StringBuilder builder = new StringBuilder();
+        for (LogEvent log : logs) {
+            builder.append(log.getMessage());
+        }
+
+        return builder.toString();
+    }
+
+    @Test
+    public void testIndex()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("1");
+        queue.info("2");
+        queue.warn("3");
+        queue.error("4");
+        queue.debug("5");
+
+        Assert.assertEquals(5, queue.size());
+        Assert.assertEquals(2, queue.size(LogLevel.ERROR));
+        Assert.assertEquals(0, queue.size(LogLevel.TRACE));
+        Assert.assertEquals(5, queue.getNextOffset());
+
+        Assert.assertEquals("14", messages(queue.getLogs(LogLevel.ERROR)));
+        Assert.assertEquals("134", messages(queue.getLogsFrom(LogLevel.WARN)));
+        Assert.assertEquals("234", messages(queue.getLogs(1, 3)));
+        Assert.assertEquals("4", messages(queue.getLogs(LogLevel.ERROR, 1, -1)));
+        Assert.assertEquals("34", messages(queue.getLogsFrom(LogLevel.WARN, 2, 10)));
+
+        // Offsets don't change when the oldest logs are removed
+        Assert.assertEquals("1", queue.poll().getMessage());
+        Assert.assertEquals(1, queue.getFirstOffset());
+        Assert.assertEquals(1, queue.size(LogLevel.ERROR));
+        Assert.assertEquals("23", messages(queue.getLogs(0, 2)));
+        Assert.assertEquals("45", messages(queue.getLogs(3, -1)));
+
+        queue.clear();
+
+        Assert.assertTrue(queue.isEmpty());
+        Assert.assertEquals(0, queue.size());
+        Assert.assertEquals(5, queue.getFirstOffset());
+        Assert.assertEquals(0, queue.size(LogLevel.ERROR));
+    }
+
+    @Test
+    public void testRemoveInTheMiddle()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.addAll(Arrays.asList(new LogEvent(LogLevel.ERROR, "1", null, null), new LogEvent(LogLevel.WARN, "2",
+            null, null), new LogEvent(LogLevel.ERROR, "3", null, null)));
+
+        Iterator<LogEvent> it = queue.iterator();
+        it.next();
+        it.next();
+        it.remove();
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(0, queue.size(LogLevel.WARN));
+        Assert.assertEquals("13", messages(queue.getLogsFrom(LogLevel.INFO)));
+    }
+
+    @Test
+    public void testDropOldest()
+    {
+        LogQueue queue = new LogQueue(2, LogQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.error("1");
+        queue.warn("2");
+        queue.info("3");
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getDroppedCount());
+        Assert.assertEquals(0, queue.size(LogLevel.ERROR));
+        Assert.assertEquals("23", messages(queue.getLogs(0, -1)));
+        Assert.assertEquals(1, queue.getFirstOffset());
+    }
+
+    @Test
+    public void testDropNewest()
+    {
+        LogQueue queue = new LogQueue(2, LogQueue.OverflowPolicy.DROP_NEWEST);
+
+        queue.error("1");
+        queue.warn("2");
+        queue.info("3");
+
+        Assert.assertEquals(2, queue.size());
+        Assert.assertEquals(1, queue.getDroppedCount());
+        Assert.assertEquals("12", messages(queue.getLogs(0, -1)));
+    }
+
+    @Test
+    public void testCompact()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("message {}", new StringBuilder("param"));
+        queue.compact();
+
+        Assert.assertTrue(queue.isCompact());
+        Assert.assertEquals(1, queue.size(LogLevel.ERROR));
+        Assert.assertEquals("param", queue.peek().getArgumentArray()[0]);
+
+        queue.warn("message {}", new StringBuilder("param"), new Exception());
+
+        LogEvent logEvent = queue.getLogs(LogLevel.WARN).get(0);
+        Assert.assertEquals("param", logEvent.getArgumentArray()[0]);
+        Assert.assertTrue(logEvent.getThrowable() instanceof CompactThrowable);
+    }
+
+    @Test
+    public void testIteratorIsASnapshot()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.error("1");
+        queue.warn("2");
+
+        Iterator<LogEvent> it = queue.iterator();
+
+        // Compacting or adding logs does not affect an iterator which is already started
+        queue.compact();
+        queue.info("3");
+
+        Assert.assertEquals("1", it.next().getMessage());
+        Assert.assertEquals("2", it.next().getMessage());
+        Assert.assertFalse(it.hasNext());
+
+        Assert.assertEquals(3, queue.size());
+        Assert.assertEquals("123", messages(queue.getLogs(0, -1)));
+    }
+
+    @Test
+    public void testSetCapacity()
+    {
+        LogQueue queue = new LogQueue();
+
+        queue.setCapacity(1, LogQueue.OverflowPolicy.DROP_OLDEST);
+
+        queue.error("1");
+        queue.warn("2");
+
+        Assert.assertEquals(1, queue.getCapacity());
+        Assert.assertEquals(LogQueue.OverflowPolicy.DROP_OLDEST, queue.getOverflowPolicy());
+        Assert.assertEquals(1, queue.getDroppedCount());
+        Assert.assertEquals("2", queue.peek().getMessage());
+    }
 }
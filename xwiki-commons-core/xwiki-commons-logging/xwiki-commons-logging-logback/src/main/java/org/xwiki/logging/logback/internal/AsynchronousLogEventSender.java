@@ -0,0 +1,164 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import org.slf4j.Logger;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * Send {@link LogEvent}s to the Observation Manager in a background thread so that the log observers don't slow down
+ * the threads producing the logs.
+ * <p>
+ * The events are handed off through a {@link LogEventRingBuffer}. The logs produced while sending an event (i.e. by
+ * the sending thread itself) are not buffered since the sending thread could be the one supposed to make room in the
+ * buffer.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class AsynchronousLogEventSender
+{
+    /**
+     * The maximum number of events taken from the buffer at once.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * The Observation Manager to send the events to.
+     */
+    private final ObservationManager observation;
+
+    /**
+     * The events waiting to be sent.
+     */
+    private final LogEventRingBuffer buffer;
+
+    /**
+     * The thread sending the events.
+     */
+    private final Thread thread;
+
+    /**
+     * Take the events from the buffer and send them.
+     * 
+     * @version $Id$
+     */
+    private final class Sender implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            LogEvent[] events = new LogEvent[BATCH_SIZE];
+            String[] loggerNames = new String[BATCH_SIZE];
+
+            try {
+                int count = buffer.take(events, loggerNames);
+                while (count != -1) {
+                    for (int i = 0; i < count; ++i) {
+                        sendEvent(events[i], loggerNames[i]);
+                        events[i] = null;
+                        loggerNames[i] = null;
+                    }
+
+                    count = buffer.take(events, loggerNames);
+                }
+            } catch (InterruptedException e) {
+                // Stop sending
+            }
+        }
+    }
+
+    /**
+     * @param logger the logger to log
+     * @param observation the Observation Manager to send the events to
+     * @param bufferSize the maximum number of events waiting to be sent
+     * @param overflowPolicy what to do when an event is sent while the buffer is full
+     */
+    public AsynchronousLogEventSender(Logger logger, ObservationManager observation, int bufferSize,
+        LogEventRingBuffer.OverflowPolicy overflowPolicy)
+    {
+        this.logger = logger;
+        this.observation = observation;
+        this.buffer = new LogEventRingBuffer(bufferSize, overflowPolicy);
+
+        this.thread = new Thread(new Sender(), "XWiki log event sender");
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Queue an event to be sent in the background thread.
+     * 
+     * @param event the event to send
+     * @param loggerName the name of the logger which produced the event
+     * @return true if the event has been queued (or dropped), false if the caller should send it itself
+     */
+    public boolean send(LogEvent event, String loggerName)
+    {
+        if (Thread.currentThread() == this.thread) {
+            return false;
+        }
+
+        try {
+            return this.buffer.put(event, loggerName);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+
+            return false;
+        }
+    }
+
+    /**
+     * @return the number of events which have been dropped because the buffer was full
+     */
+    public long getDroppedCount()
+    {
+        return this.buffer.getDroppedCount();
+    }
+
+    /**
+     * Stop accepting events. The events already queued are still sent.
+     */
+    public void dispose()
+    {
+        this.buffer.close();
+    }
+
+    /**
+     * Send an event, protecting the sending thread from bad listeners.
+     * 
+     * @param event the event to send
+     * @param loggerName the name of the logger which produced the event
+     */
+    private void sendEvent(LogEvent event, String loggerName)
+    {
+        try {
+            this.observation.notify(event, loggerName, null);
+        } catch (Exception e) {
+            this.logger.error("Failed to send log event [{}]", event, e);
+        }
+    }
+}
@@ -33,7 +33,6 @@
 import org.xwiki.logging.LoggerManager;
 import org.xwiki.observation.EventListener;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.WrappedThreadEventListener;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.core.Appender;
@@ -48,11 +47,16 @@
 public class DefaultLoggerManager implements LoggerManager, Initializable
 {
     /**
-     * Used to register/unregister {@link org.xwiki.logging.event.LogEvent} listeners.
+     * Make sure the Observation Manager, and thus {@link LogbackEventGenerator}, is initialized before this component.
      */
     @Inject
     private ObservationManager observation;
 
+    /**
+     * Send the logs of each thread to the listener on top of the thread stack.
+     */
+    private volatile LogbackEventGenerator eventGenerator;
+
     /**
      * The stack of listeners for the current thread.
      */
@@ -74,7 +78,9 @@ public void initialize() throws InitializationException
         while (iterator.hasNext()) {
             Appender<ILoggingEvent> appender = iterator.next();
 
-            if (!(appender instanceof LogbackEventGenerator)) {
+            if (appender instanceof LogbackEventGenerator) {
+                this.eventGenerator = (LogbackEventGenerator) appender;
+            } else {
                 appender.addFilter(this.forbiddenThreads);
             }
         }
@@ -90,13 +96,7 @@ public void pushLogListener(EventListener listener)
             this.listeners.set(listenerStack);
         }
 
-        if (!listenerStack.isEmpty()) {
-            this.observation.removeListener(listenerStack.peek().getName());
-        }
-
-        if (listener != null) {
-            this.observation.addListener(new WrappedThreadEventListener(listener, Thread.currentThread()));
-        }
+        setThreadListener(listener);
         if (listenerStack.isEmpty()) {
             grabLog(Thread.currentThread());
         }
@@ -111,16 +111,11 @@ public EventListener popLogListener()
         EventListener listener;
         if (listenerStack != null && !listenerStack.isEmpty()) {
             listener = listenerStack.pop();
-            if (listener != null) {
-                this.observation.removeListener(listener.getName());
-            }
             if (listenerStack.isEmpty()) {
+                setThreadListener(null);
                 ungrabLog(Thread.currentThread());
             } else {
-                EventListener topListener = listenerStack.peek();
-                if (topListener != null) {
-                    this.observation.addListener(new WrappedThreadEventListener(topListener, Thread.currentThread()));
-                }
+                setThreadListener(listenerStack.peek());
             }
         } else {
             listener = null;
@@ -129,6 +124,34 @@ public EventListener popLogListener()
         return listener;
     }
 
+    /**
+     * @param listener the listener receiving the logs of the current thread
+     */
+    private void setThreadListener(EventListener listener)
+    {
+        LogbackEventGenerator generator = getEventGenerator();
+
+        if (generator != null) {
+            generator.setThreadListener(listener);
+        }
+    }
+
+    /**
+     * @return the {@link LogbackEventGenerator} registered as appender or null if none is registered
+     */
+    private LogbackEventGenerator getEventGenerator()
+    {
+        if (this.eventGenerator == null) {
+            Appender<ILoggingEvent> appender = LogbackUtils.getRootLogger().getAppender(LogbackEventGenerator.NAME);
+
+            if (appender instanceof LogbackEventGenerator) {
+                this.eventGenerator = (LogbackEventGenerator) appender;
+            }
+        }
+
+        return this.eventGenerator;
+    }
+
     /**
      * Isolate all appender from provided thread except the event generator one.
      * 
@@ -0,0 +1,234 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Bounded buffer of {@link LogEvent}s waiting to be sent to the Observation Manager by a background thread.
+ * <p>
+ * The events are stored in an {@link ArrayBlockingQueue} allocated once. What happens when a log is produced while the
+ * buffer is full depends on the {@link OverflowPolicy}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class LogEventRingBuffer
+{
+    /**
+     * What to do when an event is added while the buffer is full.
+     * 
+     * @version $Id$
+     */
+    public enum OverflowPolicy
+    {
+        /**
+         * Wait until there is room in the buffer.
+         */
+        BLOCK,
+
+        /**
+         * Drop the added event.
+         */
+        DROP_NEWEST,
+
+        /**
+         * Drop the oldest event of the buffer to make room for the added event.
+         */
+        DROP_OLDEST
+    }
+
+    /**
+     * The time (in milliseconds) after which a producer waiting for room checks if the buffer has been closed.
+     */
+    private static final long CLOSED_CHECK_INTERVAL = 100;
+
+    /**
+     * Added to the queue when the buffer is closed to wake up the consumer waiting for events.
+     */
+    private static final Entry CLOSED = new Entry(null, null);
+
+    /**
+     * An event and the name of the logger which produced it.
+     * 
+     * @version $Id$
+     */
+    private static final class Entry
+    {
+        /**
+         * The event.
+         */
+        private final LogEvent event;
+
+        /**
+         * The name of the logger which produced the event.
+         */
+        private final String loggerName;
+
+        /**
+         * @param event the event
+         * @param loggerName the name of the logger which produced the event
+         */
+        Entry(LogEvent event, String loggerName)
+        {
+            this.event = event;
+            this.loggerName = loggerName;
+        }
+    }
+
+    /**
+     * The events.
+     */
+    private final BlockingQueue<Entry> queue;
+
+    /**
+     * What to do when the buffer is full.
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * @see #getDroppedCount()
+     */
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    /**
+     * True when no events can be added anymore.
+     */
+    private volatile boolean closed;
+
+    /**
+     * @param capacity the maximum number of events in the buffer
+     * @param overflowPolicy what to do when an event is added while the buffer is full
+     */
+    public LogEventRingBuffer(int capacity, OverflowPolicy overflowPolicy)
+    {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("The capacity must be positive");
+        }
+
+        this.queue = new ArrayBlockingQueue<Entry>(capacity);
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * @param event the event to add
+     * @param loggerName the name of the logger which produced the event
+     * @return false if the buffer is closed, true otherwise (even if an event has been dropped)
+     * @throws InterruptedException when interrupted while waiting for room in the buffer
+     */
+    public boolean put(LogEvent event, String loggerName) throws InterruptedException
+    {
+        if (this.closed) {
+            return false;
+        }
+
+        Entry entry = new Entry(event, loggerName);
+
+        if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+            while (!this.queue.offer(entry, CLOSED_CHECK_INTERVAL, TimeUnit.MILLISECONDS)) {
+                if (this.closed) {
+                    return false;
+                }
+            }
+        } else if (this.overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+            if (!this.queue.offer(entry)) {
+                this.droppedCount.incrementAndGet();
+            }
+        } else {
+            // Forget the oldest events until there is room
+            while (!this.queue.offer(entry)) {
+                if (this.queue.poll() != null) {
+                    this.droppedCount.incrementAndGet();
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Remove the oldest events of the buffer, waiting for at least one if the buffer is empty. Only one thread should
+     * take the events.
+     * 
+     * @param eventsOut where to put the removed events
+     * @param loggerNamesOut where to put the names of the loggers which produced the removed events
+     * @return the number of removed events, -1 if the buffer is closed and empty
+     * @throws InterruptedException when interrupted while waiting for events
+     */
+    public int take(LogEvent[] eventsOut, String[] loggerNamesOut) throws InterruptedException
+    {
+        int count = 0;
+
+        while (count == 0) {
+            if (this.closed && this.queue.isEmpty()) {
+                return -1;
+            }
+
+            // Only take the events which are already in the buffer, or wait for the next one
+            int remaining = Math.min(this.queue.size(), eventsOut.length) - 1;
+            Entry entry = remaining >= 0 ? this.queue.poll() : this.queue.take();
+            while (entry != null) {
+                if (entry != CLOSED) {
+                    eventsOut[count] = entry.event;
+                    loggerNamesOut[count] = entry.loggerName;
+                    ++count;
+                }
+
+                entry = remaining-- > 0 ? this.queue.poll() : null;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Refuse any new event. The events already in the buffer can still be taken.
+     */
+    public void close()
+    {
+        this.closed = true;
+
+        // Wake up the consumer if it waits for events (if the queue is full the consumer doesn't wait)
+        this.queue.offer(CLOSED);
+    }
+
+    /**
+     * @return the number of events waiting in the buffer
+     */
+    public int size()
+    {
+        int size = this.queue.size();
+
+        return this.closed && this.queue.contains(CLOSED) ? size - 1 : size;
+    }
+
+    /**
+     * @return the number of events which have been dropped because the buffer was full
+     */
+    public long getDroppedCount()
+    {
+        return this.droppedCount.get();
+    }
+}
@@ -30,18 +30,20 @@
 import org.xwiki.component.annotation.Component;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.event.LogEvent;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ListenedEvents;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 
 import ch.qos.logback.classic.spi.ILoggingEvent;
 import ch.qos.logback.classic.spi.IThrowableProxy;
 import ch.qos.logback.classic.spi.ThrowableProxy;
-import ch.qos.logback.core.AppenderBase;
+import ch.qos.logback.core.UnsynchronizedAppenderBase;
 
 /**
  * Bridge converting log to Observation Events.
@@ -55,15 +57,47 @@
  * possibility that some logs will not be seen if some Event Listeners do logging in their initialization and it
  * happens that they're initialized before this component...).
  * </p>
+ * <p>
+ * The logs of a thread grabbed by {@link DefaultLoggerManager} are also sent directly to the listener currently
+ * registered in the thread capture slot (see {@link #setThreadListener(EventListener)}) so that capturing logs doesn't
+ * register anything in the Observation Manager and doesn't cost anything to the other threads.
+ * </p>
+ * <p>
+ * The appender is not synchronized: the logs of different threads are handled concurrently. No {@link LogEvent} is
+ * created when nobody listens to it (the infrastructure listeners registered for all the events but not acting on the
+ * log events don't count, see {@link ListenedEvents}). The events are sent to the Observation Manager by the thread
+ * producing the log unless the {@value #BUFFERSIZE_PROPERTY} system property is set to a positive value, in which case
+ * they are handed off to a background thread through a buffer of that size (see {@link AsynchronousLogEventSender}).
+ * The {@value #OVERFLOW_PROPERTY} system property indicates what to do when the buffer is full: {@code BLOCK} (the
+ * default), {@code DROP_NEWEST} or {@code DROP_OLDEST}. Note that the logs of the threads grabbed by
+ * {@link DefaultLoggerManager} are always sent synchronously to the thread listener.
+ * </p>
  *
  * @version $Id$
  * @since 3.2M1
  */
 @Component
 @Singleton
-@Named("LogbackEventGenerator")
-public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implements EventListener, Initializable
+@Named(LogbackEventGenerator.NAME)
+public class LogbackEventGenerator extends UnsynchronizedAppenderBase<ILoggingEvent> implements EventListener,
+    Initializable, Disposable
 {
+    /**
+     * The system property containing the size of the buffer used to send the events in a background thread.
+     */
+    public static final String BUFFERSIZE_PROPERTY = "xwiki.logging.asynchronous.bufferSize";
+
+    /**
+     * The system property indicating what to do when the buffer used to send the events in a background thread is
+     * full.
+     */
+    public static final String OVERFLOW_PROPERTY = "xwiki.logging.asynchronous.overflow";
+
+    /**
+     * The name of this component and appender.
+     */
+    static final String NAME = "LogbackEventGenerator";
+
     /**
      * The logger to log.
      */
@@ -76,10 +110,36 @@ public class LogbackEventGenerator extends AppenderBase<ILoggingEvent> implement
     @Inject
     private ComponentManager componentManager;
 
+    /**
+     * The listener receiving the logs of the current thread, if any.
+     */
+    private final ThreadLocal<EventListener> threadListener = new ThreadLocal<EventListener>();
+
+    /**
+     * The Observation Manager to send the events to. Resolved the first time a log is produced since the Observation
+     * Manager is the one initializing this component.
+     */
+    private volatile ObservationManager observation;
+
+    /**
+     * Send the events in a background thread. Null when the events are sent synchronously.
+     */
+    private volatile AsynchronousLogEventSender sender;
+
+    /**
+     * The maximum number of events waiting to be sent in the background thread, 0 to send them synchronously.
+     */
+    private int bufferSize;
+
+    /**
+     * What to do when the buffer is full.
+     */
+    private LogEventRingBuffer.OverflowPolicy overflowPolicy = LogEventRingBuffer.OverflowPolicy.BLOCK;
+
     @Override
     public String getName()
     {
-        return "LogbackEventGenerator";
+        return NAME;
     }
 
     @Override
@@ -93,6 +153,17 @@ public List<Event> getEvents()
     @Override
     public void initialize() throws InitializationException
     {
+        this.bufferSize = Integer.getInteger(BUFFERSIZE_PROPERTY, 0);
+        String overflow = System.getProperty(OVERFLOW_PROPERTY);
+        if (overflow != null) {
+            try {
+                this.overflowPolicy = LogEventRingBuffer.OverflowPolicy.valueOf(overflow.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                this.logger.warn("Unsupported value [{}] for [{}], using [{}]",
+                    new Object[] {overflow, OVERFLOW_PROPERTY, this.overflowPolicy});
+            }
+        }
+
         // Register appender (see the class documentation above).
         ch.qos.logback.classic.Logger rootLogger = LogbackUtils.getRootLogger();
         setContext(rootLogger.getLoggerContext());
@@ -100,6 +171,28 @@ public void initialize() throws InitializationException
         start();
     }
 
+    @Override
+    public void dispose()
+    {
+        stop();
+
+        AsynchronousLogEventSender currentSender = this.sender;
+        if (currentSender != null) {
+            currentSender.dispose();
+        }
+    }
+
+    /**
+     * @return the number of events which have been dropped because the buffer used to send them in a background
+     *         thread was full
+     */
+    public long getDroppedEventCount()
+    {
+        AsynchronousLogEventSender currentSender = this.sender;
+
+        return currentSender != null ? currentSender.getDroppedCount() : 0;
+    }
+
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
@@ -108,16 +201,80 @@ public void onEvent(Event event, Object source, Object data)
     }
 
     /**
-     * @return the ObservationManager implementation
-     * @throws ComponentLookupException failed to get ObservationManager implementation
+     * @param listener the listener receiving the logs of the current thread, null to stop sending them to a thread
+     *            listener
+     */
+    void setThreadListener(EventListener listener)
+    {
+        if (listener != null) {
+            this.threadListener.set(listener);
+        } else {
+            this.threadListener.remove();
+        }
+    }
+
+    /**
+     * @return the ObservationManager implementation or null if none could be found
+     */
+    private ObservationManager getObservationManager()
+    {
+        ObservationManager observationManager = this.observation;
+
+        if (observationManager == null) {
+            try {
+                observationManager = this.componentManager.getInstance(ObservationManager.class);
+                this.observation = observationManager;
+            } catch (ComponentLookupException e) {
+                this.logger.error("Can't find any implementation of [{}]", ObservationManager.class.getName(), e);
+            }
+        }
+
+        return observationManager;
+    }
+
+    /**
+     * @param observationManager the Observation Manager
+     * @return true if the passed Observation Manager can send {@link LogEvent}s to a listener
      */
-    private ObservationManager getObservationManager() throws ComponentLookupException
+    private boolean isListened(ObservationManager observationManager)
     {
-        return this.componentManager.getInstance(ObservationManager.class);
+        if (observationManager instanceof ListenedEvents) {
+            return ((ListenedEvents) observationManager).isListened(LogEvent.class);
+        }
+
+        return observationManager != null;
     }
 
     @Override
     protected void append(ILoggingEvent event)
+    {
+        EventListener listener = this.threadListener.get();
+        ObservationManager observationManager = getObservationManager();
+        boolean listened = isListened(observationManager);
+
+        // Don't create an event nobody will receive
+        if (listener == null && !listened) {
+            return;
+        }
+
+        LogEvent logEvent = toLogEvent(event);
+
+        if (logEvent != null) {
+            if (listener != null) {
+                sendToThreadListener(listener, logEvent, event.getLoggerName());
+            }
+
+            if (listened) {
+                sendToObservationManager(observationManager, logEvent, event.getLoggerName());
+            }
+        }
+    }
+
+    /**
+     * @param event the logback event
+     * @return the corresponding log event or null if the log level is not supported
+     */
+    private LogEvent toLogEvent(ILoggingEvent event)
     {
         Throwable throwable = null;
         IThrowableProxy throwableProxy = event.getThrowableProxy();
@@ -128,13 +285,69 @@ protected void append(ILoggingEvent event)
         try {
             LogLevel logLevel = LogbackUtils.toLogLevel(event.getLevel());
 
-            LogEvent logevent = new LogEvent(logLevel, event.getMessage(), event.getArgumentArray(), throwable);
-
-            getObservationManager().notify(logevent, event.getLoggerName(), null);
+            return new LogEvent(logLevel, event.getMessage(), event.getArgumentArray(), throwable);
         } catch (IllegalArgumentException e) {
             this.logger.debug("Unsupported log level [{}]", event.getLevel());
-        } catch (ComponentLookupException e) {
-            this.logger.error("Can't find any implementation of [{}]", ObservationManager.class.getName(), e);
+
+            return null;
+        }
+    }
+
+    /**
+     * @param observationManager the Observation Manager
+     * @param logEvent the log event
+     * @param loggerName the name of the logger which produced the log
+     */
+    private void sendToObservationManager(ObservationManager observationManager, LogEvent logEvent,
+        String loggerName)
+    {
+        AsynchronousLogEventSender currentSender = getSender(observationManager);
+
+        if (currentSender == null || !currentSender.send(logEvent, loggerName)) {
+            observationManager.notify(logEvent, loggerName, null);
+        }
+    }
+
+    /**
+     * @param observationManager the Observation Manager
+     * @return the background sender or null if the events are sent synchronously
+     */
+    private AsynchronousLogEventSender getSender(ObservationManager observationManager)
+    {
+        AsynchronousLogEventSender currentSender = this.sender;
+
+        if (currentSender == null && this.bufferSize > 0 && isStarted()) {
+            currentSender = createSender(observationManager);
+        }
+
+        return currentSender;
+    }
+
+    /**
+     * @param observationManager the Observation Manager
+     * @return the background sender
+     */
+    private synchronized AsynchronousLogEventSender createSender(ObservationManager observationManager)
+    {
+        if (this.sender == null) {
+            this.sender =
+                new AsynchronousLogEventSender(this.logger, observationManager, this.bufferSize, this.overflowPolicy);
+        }
+
+        return this.sender;
+    }
+
+    /**
+     * @param listener the listener receiving the logs of the current thread
+     * @param logEvent the log event
+     * @param loggerName the name of the logger which produced the log
+     */
+    private void sendToThreadListener(EventListener listener, LogEvent logEvent, String loggerName)
+    {
+        try {
+            listener.onEvent(logEvent, loggerName, null);
+        } catch (Exception e) {
+            this.logger.error("Failed to send log event to listener [{}]", listener.getName(), e);
         }
     }
 }
@@ -0,0 +1,81 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+import org.xwiki.observation.ObservationManager;
+
+/**
+ * Unit tests for {@link AsynchronousLogEventSender}.
+ * 
+ * @version $Id$
+ */
+public class AsynchronousLogEventSenderTest
+{
+    private Mockery context = new Mockery();
+
+    @Test
+    public void testSendInBackgroundThread() throws Exception
+    {
+        final Logger logger = this.context.mock(Logger.class);
+        final ObservationManager observation = this.context.mock(ObservationManager.class);
+        final LogEvent event = new LogEvent(LogLevel.INFO, "message", null, null);
+        final CountDownLatch sent = new CountDownLatch(1);
+        final Thread[] sendingThread = new Thread[1];
+
+        this.context.checking(new Expectations() {{
+            oneOf(observation).notify(event, "logger", null);
+            will(new CustomAction("count down") {
+                @Override
+                public Object invoke(Invocation invocation)
+                {
+                    sendingThread[0] = Thread.currentThread();
+                    sent.countDown();
+                    return null;
+                }
+            });
+        }});
+
+        AsynchronousLogEventSender sender =
+            new AsynchronousLogEventSender(logger, observation, 10, LogEventRingBuffer.OverflowPolicy.BLOCK);
+
+        Assert.assertTrue(sender.send(event, "logger"));
+        Assert.assertTrue(sent.await(10, TimeUnit.SECONDS));
+        Assert.assertNotSame(Thread.currentThread(), sendingThread[0]);
+
+        sender.dispose();
+
+        // The caller has to send the event itself once the sender is disposed
+        Assert.assertFalse(sender.send(event, "logger"));
+
+        this.context.assertIsSatisfied();
+    }
+}
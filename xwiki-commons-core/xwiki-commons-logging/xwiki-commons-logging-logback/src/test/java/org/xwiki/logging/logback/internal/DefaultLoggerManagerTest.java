@@ -167,6 +167,27 @@ public void testStackedListeners()
         this.loggerManager.popLogListener();
     }
 
+    @Test
+    public void testPushLogListenerDoesNotRegisterObservationListener() throws Exception
+    {
+        ObservationManager observationManager = getComponentManager().getInstance(ObservationManager.class);
+
+        LogQueue queue = new LogQueue();
+
+        this.loggerManager.pushLogListener(new LogQueueListener("loglistenerid", queue));
+
+        // The listener receives the logs of the current thread without being registered globally
+        Assert.assertNull(observationManager.getListener("loglistenerid"));
+
+        this.logger.error("[test] log queue");
+
+        Assert.assertEquals("[test] log queue", queue.poll().getMessage());
+
+        this.loggerManager.popLogListener();
+
+        Assert.assertNull(observationManager.getListener("loglistenerid"));
+    }
+
     @Test
     public void testNullListeners()
     {
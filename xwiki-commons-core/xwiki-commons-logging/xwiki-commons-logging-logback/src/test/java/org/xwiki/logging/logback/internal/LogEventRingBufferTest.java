@@ -0,0 +1,145 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.logging.logback.internal;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.logging.LogLevel;
+import org.xwiki.logging.event.LogEvent;
+
+/**
+ * Unit tests for {@link LogEventRingBuffer}.
+ * 
+ * @version $Id$
+ */
+public class LogEventRingBufferTest
+{
+    private LogEvent[] events = new LogEvent[10];
+
+    private String[] loggerNames = new String[10];
+
+    private LogEvent event(String message)
+    {
+        return new LogEvent(LogLevel.INFO, message, null, null);
+    }
+
+    @Test
+    public void testPutTake() throws Exception
+    {
+        LogEventRingBuffer buffer = new LogEventRingBuffer(3, LogEventRingBuffer.OverflowPolicy.BLOCK);
+
+        buffer.put(event("1"), "logger1");
+        buffer.put(event("2"), "logger2");
+
+        Assert.assertEquals(2, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals("1", this.events[0].getMessage());
+        Assert.assertEquals("logger2", this.loggerNames[1]);
+
+        // Wrap around the end of the array
+        buffer.put(event("3"), "logger3");
+        buffer.put(event("4"), "logger4");
+        buffer.put(event("5"), "logger5");
+
+        Assert.assertEquals(3, buffer.size());
+        Assert.assertEquals(3, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals("3", this.events[0].getMessage());
+        Assert.assertEquals("5", this.events[2].getMessage());
+        Assert.assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testDropNewest() throws Exception
+    {
+        LogEventRingBuffer buffer = new LogEventRingBuffer(2, LogEventRingBuffer.OverflowPolicy.DROP_NEWEST);
+
+        buffer.put(event("1"), null);
+        buffer.put(event("2"), null);
+        buffer.put(event("3"), null);
+
+        Assert.assertEquals(1, buffer.getDroppedCount());
+        Assert.assertEquals(2, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals("1", this.events[0].getMessage());
+        Assert.assertEquals("2", this.events[1].getMessage());
+    }
+
+    @Test
+    public void testDropOldest() throws Exception
+    {
+        LogEventRingBuffer buffer = new LogEventRingBuffer(2, LogEventRingBuffer.OverflowPolicy.DROP_OLDEST);
+
+        buffer.put(event("1"), null);
+        buffer.put(event("2"), null);
+        buffer.put(event("3"), null);
+
+        Assert.assertEquals(1, buffer.getDroppedCount());
+        Assert.assertEquals(2, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals("2", this.events[0].getMessage());
+        Assert.assertEquals("3", this.events[1].getMessage());
+    }
+
+    @Test
+    public void testBlockUntilTaken() throws Exception
+    {
+        final LogEventRingBuffer buffer = new LogEventRingBuffer(1, LogEventRingBuffer.OverflowPolicy.BLOCK);
+
+        buffer.put(event("1"), null);
+
+        Thread producer = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try {
+                    buffer.put(event("2"), null);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        producer.start();
+
+        // The producer waits until there is room in the buffer
+        producer.join(100);
+        Assert.assertTrue(producer.isAlive());
+
+        Assert.assertEquals(1, buffer.take(this.events, this.loggerNames));
+        producer.join(10000);
+        Assert.assertFalse(producer.isAlive());
+
+        Assert.assertEquals(1, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals("2", this.events[0].getMessage());
+        Assert.assertEquals(0, buffer.getDroppedCount());
+    }
+
+    @Test
+    public void testClose() throws Exception
+    {
+        LogEventRingBuffer buffer = new LogEventRingBuffer(2, LogEventRingBuffer.OverflowPolicy.BLOCK);
+
+        buffer.put(event("1"), null);
+        buffer.close();
+
+        Assert.assertFalse(buffer.put(event("2"), null));
+
+        // The events already in the buffer can still be taken
+        Assert.assertEquals(1, buffer.take(this.events, this.loggerNames));
+        Assert.assertEquals(-1, buffer.take(this.events, this.loggerNames));
+    }
+}
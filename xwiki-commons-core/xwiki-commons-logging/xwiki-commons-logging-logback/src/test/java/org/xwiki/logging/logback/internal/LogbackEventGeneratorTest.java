@@ -22,12 +22,15 @@
 import java.util.Arrays;
 
 import org.jmock.Expectations;
+import org.junit.Assert;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xwiki.logging.LogLevel;
 import org.xwiki.logging.event.LogEvent;
+import org.xwiki.component.util.ReflectionUtils;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ListenedEvents;
 import org.xwiki.observation.ObservationManager;
 import org.xwiki.observation.event.Event;
 import org.xwiki.test.AbstractComponentTestCase;
@@ -40,6 +43,13 @@
  */
 public class LogbackEventGeneratorTest extends AbstractComponentTestCase
 {
+    /**
+     * An Observation Manager able to tell if events are listened.
+     */
+    public interface ListenedObservationManager extends ObservationManager, ListenedEvents
+    {
+    }
+
     private Logger logger;
 
     private ObservationManager observationManager;
@@ -78,4 +88,41 @@ public void test()
 
         this.logger.error("error message");
     }
+
+    /**
+     * Verify that the default listeners, which listen to all events, don't make the log events look listened.
+     */
+    @Test
+    public void testLogEventsAreNotListenedByDefault()
+    {
+        Assert.assertFalse(((ListenedEvents) this.observationManager).isListened(LogEvent.class));
+    }
+
+    /**
+     * Verify that no Log Event is sent when nobody listens to them.
+     */
+    @Test
+    public void testNotListened() throws Exception
+    {
+        final ListenedObservationManager listenedObservationManager =
+            getMockery().mock(ListenedObservationManager.class);
+
+        getMockery().checking(new Expectations()
+        {
+            {
+                allowing(listenedObservationManager).isListened(LogEvent.class);
+                will(returnValue(false));
+                never(listenedObservationManager).notify(with(any(Event.class)), with(anything()), with(anything()));
+            }
+        });
+
+        EventListener generator = getComponentManager().getInstance(EventListener.class, LogbackEventGenerator.NAME);
+        ReflectionUtils.setFieldValue(generator, "observation", listenedObservationManager);
+
+        try {
+            this.logger.error("error message");
+        } finally {
+            ReflectionUtils.setFieldValue(generator, "observation", this.observationManager);
+        }
+    }
 }
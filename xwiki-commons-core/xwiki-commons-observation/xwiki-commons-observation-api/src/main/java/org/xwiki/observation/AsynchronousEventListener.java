@@ -0,0 +1,37 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+/**
+ * Marker interface for listeners which don't need to be called in the thread notifying the event. The
+ * {@link ObservationManager} delivers the events to such listeners in background threads so that a slow listener
+ * doesn't delay the code sending the events.
+ * <p>
+ * The events are delivered to a given listener in the order in which they have been notified, one at a time. Note
+ * that the listener is called outside of the execution context of the notifying thread and after the notification
+ * returned, so it should not rely on the state of the event source or data being unchanged. Synchronous delivery (i.e.
+ * implementing {@link EventListener} only) remains the default.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface AsynchronousEventListener extends EventListener
+{
+}
@@ -0,0 +1,40 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Optional interface of {@link ObservationManager} implementations able to tell cheaply if events of a given type
+ * would be sent to any listener. Code producing a lot of events can use it to avoid creating events nobody listens to.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface ListenedEvents
+{
+    /**
+     * @param eventClass the class of the event
+     * @return false if no listener acts on the events of the passed class, true if at least one listener is
+     *         registered for it (the event could still be filtered out by the listener events); infrastructure
+     *         listeners registered for all the events but only acting on some of them can be ignored
+     */
+    boolean isListened(Class< ? extends Event> eventClass);
+}
@@ -0,0 +1,426 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Deliver events to {@link org.xwiki.observation.AsynchronousEventListener}s in background threads.
+ * <p>
+ * Each listener has its own bounded queue of pending events which is drained by at most one thread at a time so that a
+ * listener receives the events in the order in which they have been notified. The queues are drained by a fixed number
+ * of threads shared by all the listeners. When the queue of a listener is full the event is dropped for this listener
+ * or, if configured so, the notifying thread waits until there is room in the queue (back-pressure). Waiting is not the
+ * default since a notifying thread holding a lock needed by the listener would never be released.
+ * <p>
+ * The queue of a listener is kept until all its pending events have been delivered, even if the listener is
+ * unregistered in the meantime, so that a listener registered again never receives events from two threads at the
+ * same time.
+ * <p>
+ * The dispatcher can be configured with the following system properties:
+ * <ul>
+ * <li>{@value #THREADS_PROPERTY}: the number of delivery threads (defaults to the number of processors)</li>
+ * <li>{@value #QUEUESIZE_PROPERTY}: the maximum number of pending events for each listener (defaults to
+ * {@value #DEFAULT_QUEUESIZE})</li>
+ * <li>{@value #DROP_PROPERTY}: {@code false} to wait instead of dropping the events when a queue is full</li>
+ * </ul>
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class AsynchronousEventDispatcher
+{
+    /**
+     * The system property containing the number of delivery threads.
+     */
+    public static final String THREADS_PROPERTY = "xwiki.observation.asynchronous.threads";
+
+    /**
+     * The system property containing the maximum number of pending events for each listener.
+     */
+    public static final String QUEUESIZE_PROPERTY = "xwiki.observation.asynchronous.queueSize";
+
+    /**
+     * The system property indicating if events should be dropped when the queue of a listener is full.
+     */
+    public static final String DROP_PROPERTY = "xwiki.observation.asynchronous.drop";
+
+    /**
+     * The default maximum number of pending events for each listener.
+     */
+    private static final int DEFAULT_QUEUESIZE = 1000;
+
+    /**
+     * The maximum number of events delivered to a listener before giving the thread to the other listeners.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    /**
+     * The logger to log.
+     */
+    private final Logger logger;
+
+    /**
+     * The maximum number of pending events for each listener.
+     */
+    private final int queueSize;
+
+    /**
+     * True if the events should be dropped when the queue of a listener is full.
+     */
+    private final boolean drop;
+
+    /**
+     * The threads delivering the events.
+     */
+    private final ExecutorService executor;
+
+    /**
+     * The pending events of each listener.
+     */
+    private final ConcurrentMap<EventListener, ListenerQueue> queues =
+        new ConcurrentHashMap<EventListener, ListenerQueue>();
+
+    /**
+     * Used to know if the current thread is one of the delivery threads.
+     */
+    private final ThreadLocal<Boolean> deliveryThread = new ThreadLocal<Boolean>();
+
+    /**
+     * True when the dispatcher has been disposed.
+     */
+    private volatile boolean disposed;
+
+    /**
+     * @see #getDroppedEventCount()
+     */
+    private final AtomicLong droppedEventCount = new AtomicLong();
+
+    /**
+     * The pending events of a listener.
+     * 
+     * @version $Id$
+     */
+    private final class ListenerQueue implements Runnable
+    {
+        /**
+         * The listener to call.
+         */
+        private final EventListener listener;
+
+        /**
+         * The events waiting to be delivered.
+         */
+        private final BlockingQueue<Object[]> events = new LinkedBlockingQueue<Object[]>(queueSize);
+
+        /**
+         * True when a task draining the queue has been submitted and is not finished yet.
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * True when the listener has been unregistered: the queue is removed as soon as it's not drained anymore.
+         * Guarded by this.
+         */
+        private boolean forgotten;
+
+        /**
+         * True when the queue has been removed from {@link AsynchronousEventDispatcher#queues} and should not be used
+         * anymore. Guarded by this.
+         */
+        private boolean removed;
+
+        /**
+         * @param listener the listener to call
+         */
+        ListenerQueue(EventListener listener)
+        {
+            this.listener = listener;
+        }
+
+        /**
+         * @param event the event to queue
+         * @return true if the event has been queued, false if it has been dropped
+         * @throws InterruptedException when interrupted while waiting for room in the queue
+         */
+        boolean offer(Object[] event) throws InterruptedException
+        {
+            // Never wait in a delivery thread since it could be the one supposed to make room in the queue
+            if (drop || deliveryThread.get() != null) {
+                if (!this.events.offer(event)) {
+                    return false;
+                }
+            } else {
+                this.events.put(event);
+            }
+
+            schedule();
+
+            return true;
+        }
+
+        /**
+         * Make sure a task draining the queue is submitted.
+         */
+        private void schedule()
+        {
+            if (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // The dispatcher has been disposed in the meantime
+                    this.events.clear();
+                    this.scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * @return true if the queue can receive events, false if it has been removed
+         */
+        synchronized boolean use()
+        {
+            this.forgotten = false;
+
+            return !this.removed;
+        }
+
+        /**
+         * Drop the pending events and remove the queue if it's not being drained.
+         */
+        synchronized void forget()
+        {
+            this.forgotten = true;
+            this.events.clear();
+            removeIfUnused();
+        }
+
+        /**
+         * Remove the queue if the listener has been unregistered and nothing is left to deliver.
+         */
+        private void removeIfUnused()
+        {
+            if (this.forgotten && !this.scheduled.get() && this.events.isEmpty()) {
+                this.removed = true;
+                queues.remove(this.listener, this);
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try {
+                for (int i = 0; i < BATCH_SIZE && !isRemoved(); ++i) {
+                    Object[] event = this.events.poll();
+                    if (event == null) {
+                        break;
+                    }
+                    deliver(this.listener, (Event) event[0], event[1], event[2]);
+                }
+            } finally {
+                synchronized (this) {
+                    this.scheduled.set(false);
+                    removeIfUnused();
+                }
+                // Events may have been added after the last poll
+                if (!this.events.isEmpty()) {
+                    schedule();
+                }
+            }
+        }
+
+        /**
+         * @return true if the queue has been removed, in which case its events are not delivered anymore
+         */
+        private synchronized boolean isRemoved()
+        {
+            if (this.removed) {
+                this.events.clear();
+            }
+
+            return this.removed;
+        }
+    }
+
+    /**
+     * Create a dispatcher configured with the system properties.
+     * 
+     * @param logger the logger to log
+     */
+    public AsynchronousEventDispatcher(Logger logger)
+    {
+        this(logger, Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()),
+            Integer.getInteger(QUEUESIZE_PROPERTY, DEFAULT_QUEUESIZE),
+            Boolean.valueOf(System.getProperty(DROP_PROPERTY, Boolean.TRUE.toString())));
+    }
+
+    /**
+     * @param logger the logger to log
+     * @param threads the number of delivery threads
+     * @param queueSize the maximum number of pending events for each listener
+     * @param drop true if the events should be dropped when the queue of a listener is full, false to wait for room in
+     *            the queue
+     */
+    public AsynchronousEventDispatcher(Logger logger, int threads, int queueSize, boolean drop)
+    {
+        this.logger = logger;
+        this.queueSize = queueSize;
+        this.drop = drop;
+
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+        {
+            @Override
+            public Thread newThread(final Runnable runnable)
+            {
+                Thread thread = new Thread(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        deliveryThread.set(Boolean.TRUE);
+                        runnable.run();
+                    }
+                }, "XWiki asynchronous event delivery " + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Queue an event to be delivered to the passed listener.
+     * 
+     * @param listener the listener to call
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    public void dispatch(EventListener listener, Event event, Object source, Object data)
+    {
+        if (this.disposed) {
+            this.logger.debug("Event [{}] has been dropped for listener [{}] because the dispatcher is disposed",
+                event, listener.getName());
+
+            return;
+        }
+
+        ListenerQueue queue = getQueue(listener);
+
+        boolean queued;
+        try {
+            queued = queue.offer(new Object[] {event, source, data});
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            queued = false;
+        }
+
+        if (!queued) {
+            this.droppedEventCount.incrementAndGet();
+            this.logger.warn("Event [{}] has been dropped for listener [{}] because too many events are waiting",
+                event, listener.getName());
+        }
+    }
+
+    /**
+     * @param listener the listener to call
+     * @return the queue of the listener, created if needed
+     */
+    private ListenerQueue getQueue(EventListener listener)
+    {
+        ListenerQueue queue;
+        do {
+            queue = this.queues.get(listener);
+            if (queue == null) {
+                queue = new ListenerQueue(listener);
+                ListenerQueue existingQueue = this.queues.putIfAbsent(listener, queue);
+                if (existingQueue != null) {
+                    queue = existingQueue;
+                }
+            }
+            // Try again if the queue has been removed in the meantime
+        } while (!queue.use());
+
+        return queue;
+    }
+
+    /**
+     * Forget the pending events of a listener. The event being delivered, if any, is not interrupted.
+     * 
+     * @param listener the listener which has been unregistered
+     */
+    public void forget(EventListener listener)
+    {
+        ListenerQueue queue = this.queues.get(listener);
+        if (queue != null) {
+            queue.forget();
+        }
+    }
+
+    /**
+     * @return the number of events which have been dropped because the queue of the listener was full
+     */
+    public long getDroppedEventCount()
+    {
+        return this.droppedEventCount.get();
+    }
+
+    /**
+     * Stop the delivery threads. The pending events are not delivered and the events notified afterward are dropped.
+     */
+    public void dispose()
+    {
+        this.disposed = true;
+        this.executor.shutdownNow();
+    }
+
+    /**
+     * Call the listener, protecting the delivery thread from bad listeners.
+     * 
+     * @param listener the listener to call
+     * @param event the event to pass to the listener
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    private void deliver(EventListener listener, Event event, Object source, Object data)
+    {
+        try {
+            listener.onEvent(event, source, data);
+        } catch (Exception e) {
+            // protect from bad listeners
+            this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event, listener, e});
+        }
+    }
+}
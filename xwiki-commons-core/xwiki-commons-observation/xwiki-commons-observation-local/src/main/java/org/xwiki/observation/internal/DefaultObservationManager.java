@@ -19,11 +19,8 @@
  */
 package org.xwiki.observation.internal;
 
-import java.util.ArrayList;
 import java.util.Collection;
-import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.inject.Inject;
 import javax.inject.Singleton;
@@ -34,42 +31,36 @@
 import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.event.ComponentDescriptorEvent;
 import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.component.event.ComponentDescriptorsAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorsEvent;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.phase.Disposable;
 import org.xwiki.component.phase.Initializable;
 import org.xwiki.component.phase.InitializationException;
 import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ListenedEvents;
 import org.xwiki.observation.ObservationManager;
-import org.xwiki.observation.event.AllEvent;
 import org.xwiki.observation.event.Event;
 
 /**
  * Default implementation of the {@link ObservationManager}.
  * <p>
- * This component use synchronized for concurrent protection instead of having
- * {@link java.util.concurrent.ConcurrentHashMap} everywhere because it's more efficient since most of methods access to
- * several maps and generally do enumerations.
+ * Notifying an event is lock-free and doesn't allocate anything, see {@link ListenerRegistry}. Events are delivered
+ * to {@link org.xwiki.observation.AsynchronousEventListener}s in background threads, see
+ * {@link AsynchronousEventDispatcher}. The time spent by the synchronous listeners can be recorded, see
+ * {@link ObservationStatistics}.
  * 
  * @version $Id$
  */
 @Component
 @Singleton
-public class DefaultObservationManager implements ObservationManager, Initializable
+public class DefaultObservationManager implements ObservationManager, ListenedEvents, Initializable, Disposable
 {
     /**
-     * Registered listeners indexed on Event classes so that it's fast to find all the listeners registered for a given
-     * event, so that {@link #notify} calls execute fast and in a fixed amount a time.
-     * 
-     * @todo Should we allow event inheritance?
-     */
-    private Map<Class< ? extends Event>, Map<String, RegisteredListener>> listenersByEvent =
-        new ConcurrentHashMap<Class< ? extends Event>, Map<String, RegisteredListener>>();
-
-    /**
-     * Registered listeners index by listener name. It makes it fast to perform operations on already registered
-     * listeners.
+     * The registered listeners.
      */
-    private Map<String, EventListener> listenersByName = new ConcurrentHashMap<String, EventListener>();
+    private final ListenerRegistry registry = new ListenerRegistry();
 
     /**
      * Used to find all components implementing {@link EventListener} to register them automatically.
@@ -84,49 +75,15 @@ public class DefaultObservationManager implements ObservationManager, Initializa
     private Logger logger;
 
     /**
-     * Helper class to store the list of events of a given type associated with a given listener. We need this for
-     * performance reasons and also in order to be able to add events after a listener has been registered.
+     * Deliver the events to the asynchronous listeners. Created the first time an asynchronous listener is notified.
      */
-    private static class RegisteredListener
-    {
-        /**
-         * Events of a given type associated with a given listener.
-         */
-        private List<Event> events = new ArrayList<Event>();
-
-        /**
-         * Listener associated with the events.
-         */
-        private EventListener listener;
-
-        /**
-         * @param listener the listener associated with the events.
-         * @param event the first event to associate with the passed listener. More events are added by calling
-         *            {@link #addEvent(Event)}
-         */
-        RegisteredListener(EventListener listener, Event event)
-        {
-            addEvent(event);
-
-            this.listener = listener;
-        }
-
-        /**
-         * @param event the event to add
-         */
-        void addEvent(Event event)
-        {
-            this.events.add(event);
-        }
+    private volatile AsynchronousEventDispatcher asynchronousDispatcher;
 
-        /**
-         * @param event the event to remove
-         */
-        void removeEvent(Event event)
-        {
-            this.events.remove(event);
-        }
-    }
+    /**
+     * @see #getStatistics()
+     */
+    private volatile ObservationStatistics statistics =
+        Boolean.getBoolean(ObservationStatistics.ENABLED_PROPERTY) ? new ObservationStatistics() : null;
 
     @Override
     public void initialize() throws InitializationException
@@ -140,11 +97,27 @@ public void initialize() throws InitializationException
         }
     }
 
+    /**
+     * @return the statistics on the listeners or null if they are not collected
+     */
+    public ObservationStatistics getStatistics()
+    {
+        return this.statistics;
+    }
+
+    /**
+     * @param statistics the object in which to record the statistics on the listeners, null to stop collecting them
+     */
+    public void setStatistics(ObservationStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
     @Override
     public void addListener(EventListener eventListener)
     {
         // Register the listener by name. If already registered, override it.
-        EventListener previousListener = this.listenersByName.put(eventListener.getName(), eventListener);
+        EventListener previousListener = this.registry.addListener(eventListener);
 
         // If the passed event listener name is already registered, log a warning
         if (previousListener != null) {
@@ -155,38 +128,21 @@ public void addListener(EventListener eventListener)
                 new Object[] {eventListener.getClass().getName(), previousListener.getClass().getName(),
                         eventListener.getName()});
         }
-
-        // For each event defined for this listener, add it to the Event Map.
-        for (Event event : eventListener.getEvents()) {
-            // Check if this is a new Event type not already registered
-            Map<String, RegisteredListener> eventListeners = this.listenersByEvent.get(event.getClass());
-            if (eventListeners == null) {
-                // No listener registered for this event yet. Create a map to store listeners for this event.
-                eventListeners = new ConcurrentHashMap<String, RegisteredListener>();
-                this.listenersByEvent.put(event.getClass(), eventListeners);
-                // There is no RegisteredListener yet, create one
-                eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-            } else {
-                // Add an event to existing RegisteredListener object
-                RegisteredListener registeredListener = eventListeners.get(eventListener.getName());
-                if (registeredListener == null) {
-                    eventListeners.put(eventListener.getName(), new RegisteredListener(eventListener, event));
-                } else {
-                    registeredListener.addEvent(event);
-                }
-            }
-        }
     }
 
     @Override
     public void removeListener(String listenerName)
     {
-        this.listenersByName.remove(listenerName);
-        for (Map.Entry<Class< ? extends Event>, Map<String, RegisteredListener>> entry : this.listenersByEvent
-            .entrySet()) {
-            entry.getValue().remove(listenerName);
-            if (entry.getValue().isEmpty()) {
-                this.listenersByEvent.remove(entry.getKey());
+        EventListener listener = this.registry.removeListener(listenerName);
+
+        if (listener != null) {
+            if (this.asynchronousDispatcher != null) {
+                this.asynchronousDispatcher.forget(listener);
+            }
+
+            ObservationStatistics currentStatistics = this.statistics;
+            if (currentStatistics != null) {
+                currentStatistics.forget(listenerName);
             }
         }
     }
@@ -194,43 +150,31 @@ public void removeListener(String listenerName)
     @Override
     public void addEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.addEvent(event);
-        }
+        this.registry.addEvent(listenerName, event);
     }
 
     @Override
     public void removeEvent(String listenerName, Event event)
     {
-        Map<String, RegisteredListener> listeners = this.listenersByEvent.get(event.getClass());
-        RegisteredListener listener = listeners.get(listenerName);
-        if (listener != null) {
-            listener.removeEvent(event);
-        }
+        this.registry.removeEvent(listenerName, event);
     }
 
     @Override
     public EventListener getListener(String listenerName)
     {
-        return this.listenersByName.get(listenerName);
+        return this.registry.getListener(listenerName);
     }
 
     @Override
-    public void notify(Event event, Object source, Object data)
+    public boolean isListened(Class< ? extends Event> eventClass)
     {
-        // Find all listeners for this event
-        Map<String, RegisteredListener> regListeners = this.listenersByEvent.get(event.getClass());
-        if (regListeners != null) {
-            notify(regListeners.values(), event, source, data);
-        }
+        return this.registry.getDispatchTable(eventClass).isListened();
+    }
 
-        // Find listener listening all events
-        Map<String, RegisteredListener> allEventRegListeners = this.listenersByEvent.get(AllEvent.class);
-        if (allEventRegListeners != null) {
-            notify(allEventRegListeners.values(), event, source, data);
-        }
+    @Override
+    public void notify(Event event, Object source, Object data)
+    {
+        notifyListeners(event, source, data);
 
         // We want this Observation Manager to be able to handle new Event Listener components being added or removed
         // at runtime. Thus ideally we should make this Manager an Event Listener itself. However in order to avoid
@@ -239,45 +183,129 @@ public void notify(Event event, Object source, Object data)
         if (event instanceof ComponentDescriptorEvent) {
             onComponentEvent((ComponentDescriptorEvent) event, (ComponentManager) source,
                 (ComponentDescriptor<EventListener>) data);
+        } else if (event instanceof ComponentDescriptorsEvent) {
+            onComponentsEvent((ComponentDescriptorsEvent) event, (ComponentManager) source,
+                (Collection<ComponentDescriptor< ? >>) data);
         }
     }
 
     /**
-     * Call the provided listeners matching the passed Event. The definition of <em>source</em> and <em>data</em> is
-     * purely up to the communicating classes.
+     * Call the listeners registered for the passed Event and the listeners registered for all events.
      * 
-     * @param listeners the listeners to notify
      * @param event the event to pass to the registered listeners
      * @param source the source of the event (or <code>null</code>)
      * @param data the additional data related to the event (or <code>null</code>)
      */
-    private void notify(Collection<RegisteredListener> listeners, Event event, Object source, Object data)
+    private void notifyListeners(Event event, Object source, Object data)
     {
-        for (RegisteredListener listener : listeners) {
-            // Verify that one of the events matches and send the first matching event
-            for (Event listenerEvent : listener.events) {
-                if (listenerEvent.matches(event)) {
-                    try {
-                        listener.listener.onEvent(event, source, data);
-                    } catch (Exception e) {
-                        // protect from bad listeners
-                        this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event,
-                            listener.listener, e});
-                    }
+        DispatchTable table = this.registry.getDispatchTable(event.getClass());
+
+        // Only the listeners indexed under the name of the event and the ones which can't be indexed can match. Merge
+        // them to call the listeners in the registration order.
+        RegisteredListener[] namedListeners = table.getNamedListeners(event);
+        RegisteredListener[] otherListeners = table.getOtherListeners();
+        int namedIndex = 0;
+        int otherIndex = 0;
+        while (namedIndex < namedListeners.length || otherIndex < otherListeners.length) {
+            RegisteredListener listener;
+            if (otherIndex == otherListeners.length
+                || (namedIndex < namedListeners.length
+                && namedListeners[namedIndex].getPosition() < otherListeners[otherIndex].getPosition())) {
+                listener = namedListeners[namedIndex++];
+            } else {
+                listener = otherListeners[otherIndex++];
+            }
+
+            notify(listener, event, source, data);
+        }
+    }
 
-                    // Only send the first matching event since the listener should only be called once per event.
-                    break;
+    /**
+     * Call the provided listener if one of its events matches the passed Event. The definition of <em>source</em> and
+     * <em>data</em> is purely up to the communicating classes.
+     * 
+     * @param listener the listener to notify
+     * @param event the event to pass to the registered listeners
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    private void notify(RegisteredListener listener, Event event, Object source, Object data)
+    {
+        // Only send the first matching event since the listener should only be called once per event.
+        if (listener.match(event) != null) {
+            if (listener.isAsynchronous()) {
+                getAsynchronousDispatcher().dispatch(listener.getListener(), event, source, data);
+            } else {
+                ObservationStatistics currentStatistics = this.statistics;
+                long start = currentStatistics != null ? System.nanoTime() : 0;
+
+                try {
+                    listener.getListener().onEvent(event, source, data);
+                } catch (Exception e) {
+                    // protect from bad listeners
+                    this.logger.error("Failed to send event [{}] to listener [{}]", new Object[] {event,
+                        listener.getListener(), e});
+                }
+
+                if (currentStatistics != null) {
+                    record(currentStatistics, listener.getListener(), event, System.nanoTime() - start);
                 }
             }
         }
     }
 
+    /**
+     * Record the time spent by a listener and warn if it has been slow.
+     * 
+     * @param currentStatistics the statistics to update
+     * @param listener the listener which has been called
+     * @param event the event passed to the listener
+     * @param time the time spent by the listener in nanoseconds
+     */
+    private void record(ObservationStatistics currentStatistics, EventListener listener, Event event, long time)
+    {
+        if (currentStatistics.record(listener.getName(), event.getClass(), time)) {
+            this.logger.warn("Listener [{}] took [{}] ms to handle event [{}]", new Object[] {listener.getName(),
+                TimeUnit.NANOSECONDS.toMillis(time), event});
+        }
+    }
+
     @Override
     public void notify(Event event, Object source)
     {
         notify(event, source, null);
     }
 
+    /**
+     * @return the dispatcher delivering the events to the asynchronous listeners, created if needed
+     */
+    private AsynchronousEventDispatcher getAsynchronousDispatcher()
+    {
+        AsynchronousEventDispatcher dispatcher = this.asynchronousDispatcher;
+
+        return dispatcher != null ? dispatcher : createAsynchronousDispatcher();
+    }
+
+    /**
+     * @return the dispatcher delivering the events to the asynchronous listeners
+     */
+    private synchronized AsynchronousEventDispatcher createAsynchronousDispatcher()
+    {
+        if (this.asynchronousDispatcher == null) {
+            this.asynchronousDispatcher = new AsynchronousEventDispatcher(this.logger);
+        }
+
+        return this.asynchronousDispatcher;
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.asynchronousDispatcher != null) {
+            this.asynchronousDispatcher.dispose();
+        }
+    }
+
     /**
      * A Component has been modified (added or removed) and we update our cache of Event Listeners if that Component is
      * an Event Listener.
@@ -302,6 +330,69 @@ private void onComponentEvent(ComponentDescriptorEvent componentEvent, Component
         }
     }
 
+    /**
+     * Several Components have been modified (added or removed) at once.
+     * <p>
+     * Listeners explicitly registered for {@link ComponentDescriptorAddedEvent} or
+     * {@link ComponentDescriptorRemovedEvent} are still notified for each descriptor (but not the listeners registered
+     * for {@link AllEvent} since they already received the batch event) and then the cache of Event Listeners is
+     * updated in one pass.
+     * 
+     * @param componentsEvent the event about the Components being added or removed
+     * @param componentManager the {@link ComponentManager} where the descriptors are registered
+     * @param descriptors the descriptors of the modified components
+     */
+    private void onComponentsEvent(ComponentDescriptorsEvent componentsEvent,
+        ComponentManager componentManager, Collection<ComponentDescriptor< ? >> descriptors)
+    {
+        boolean added = componentsEvent instanceof ComponentDescriptorsAddedEvent;
+
+        Class< ? extends Event> eventClass =
+            added ? ComponentDescriptorAddedEvent.class : ComponentDescriptorRemovedEvent.class;
+        RegisteredListener[] listeners = this.registry.getDispatchTable(eventClass).getListeners();
+
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            Event event = null;
+            for (RegisteredListener listener : listeners) {
+                // Listeners registered for all events already received the batch event
+                if (!listener.isAllEvent()) {
+                    if (event == null) {
+                        event =
+                            added ? new ComponentDescriptorAddedEvent(descriptor.getRole(), descriptor.getRoleHint())
+                                : new ComponentDescriptorRemovedEvent(descriptor.getRole(), descriptor.getRoleHint());
+                    }
+                    notify(listener, event, componentManager, descriptor);
+                }
+            }
+        }
+
+        // Register/unregister the listeners once all the other listeners have been notified
+        for (ComponentDescriptor< ? > descriptor : descriptors) {
+            if (descriptor.getRole() == EventListener.class) {
+                onEventListenerComponentEvent(added, componentManager, (ComponentDescriptor<EventListener>) descriptor);
+            }
+        }
+    }
+
+    /**
+     * An Event Listener Component has been added or removed as part of several Components.
+     * 
+     * @param added true if the component has been added, false if it has been removed
+     * @param componentManager the {@link ComponentManager} where the descriptor is registered
+     * @param descriptor the descriptor of the listener component
+     */
+    private void onEventListenerComponentEvent(boolean added, ComponentManager componentManager,
+        ComponentDescriptor<EventListener> descriptor)
+    {
+        if (added) {
+            onEventListenerComponentAdded(new ComponentDescriptorAddedEvent(EventListener.class,
+                descriptor.getRoleHint()), componentManager, descriptor);
+        } else {
+            onEventListenerComponentRemoved(new ComponentDescriptorRemovedEvent(EventListener.class,
+                descriptor.getRoleHint()), componentManager, descriptor);
+        }
+    }
+
     /**
      * An Event Listener Component has been dynamically registered in the system, add it to our cache.
      * 
@@ -338,12 +429,7 @@ private void onEventListenerComponentAdded(ComponentDescriptorAddedEvent event,
     private void onEventListenerComponentRemoved(ComponentDescriptorRemovedEvent event,
         ComponentManager componentManager, ComponentDescriptor< ? > descriptor)
     {
-        EventListener removedEventListener = null;
-        for (EventListener eventListener : this.listenersByName.values()) {
-            if (eventListener.getClass() == descriptor.getImplementation()) {
-                removedEventListener = eventListener;
-            }
-        }
+        EventListener removedEventListener = this.registry.getListener(descriptor.getImplementation());
 
         if (removedEventListener != null) {
             removeListener(removedEventListener.getName());
@@ -0,0 +1,186 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.FilterableEvent;
+import org.xwiki.observation.event.filter.EventFilter;
+
+/**
+ * The listeners to call for a given event class, as built by {@link ListenerRegistry}. Immutable.
+ * <p>
+ * The listeners only interested in events with given names (i.e. using {@link
+ * org.xwiki.observation.event.filter.FixedNameEventFilter}s) are indexed by name so that finding the listeners
+ * matching a notified event doesn't require to evaluate the filters of all the listeners registered for its class. The
+ * other listeners (using other filters, not filterable events or {@link org.xwiki.observation.event.AllEvent}) are
+ * always candidates.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+final class DispatchTable
+{
+    /**
+     * An empty list of listeners.
+     */
+    static final RegisteredListener[] NO_LISTENERS = new RegisteredListener[0];
+
+    /**
+     * The dispatch table of event classes without any listener.
+     */
+    static final DispatchTable EMPTY = new DispatchTable(Event.class, Collections.<RegisteredListener>emptyList());
+
+    /**
+     * @see #getListeners()
+     */
+    private final RegisteredListener[] listeners;
+
+    /**
+     * The listeners only listening to events with fixed names, indexed by name.
+     */
+    private final Map<String, RegisteredListener[]> namedListeners;
+
+    /**
+     * @see #getOtherListeners()
+     */
+    private final RegisteredListener[] otherListeners;
+
+    /**
+     * @see #isListened()
+     */
+    private final boolean listened;
+
+    /**
+     * @param eventClass the event class of the table
+     * @param listeners the listeners to call, in the order in which they should be called
+     */
+    DispatchTable(Class< ? > eventClass, List<RegisteredListener> listeners)
+    {
+        this.listeners = toArray(listeners);
+        this.listened = isListened(eventClass, listeners);
+
+        Map<String, List<RegisteredListener>> named = new HashMap<String, List<RegisteredListener>>();
+        List<RegisteredListener> others = new ArrayList<RegisteredListener>();
+        for (RegisteredListener listener : listeners) {
+            String[] names = listener.getFixedNames();
+            if (names != null) {
+                for (String name : names) {
+                    List<RegisteredListener> nameListeners = named.get(name);
+                    if (nameListeners == null) {
+                        nameListeners = new ArrayList<RegisteredListener>();
+                        named.put(name, nameListeners);
+                    }
+                    nameListeners.add(listener);
+                }
+            } else {
+                others.add(listener);
+            }
+        }
+
+        if (named.isEmpty()) {
+            this.namedListeners = Collections.emptyMap();
+        } else {
+            this.namedListeners = new HashMap<String, RegisteredListener[]>(named.size() * 2);
+            for (Map.Entry<String, List<RegisteredListener>> entry : named.entrySet()) {
+                this.namedListeners.put(entry.getKey(), toArray(entry.getValue()));
+            }
+        }
+        this.otherListeners = toArray(others);
+    }
+
+    /**
+     * @param listeners a list of listeners
+     * @return the same listeners as an array
+     */
+    private static RegisteredListener[] toArray(List<RegisteredListener> listeners)
+    {
+        return listeners.isEmpty() ? NO_LISTENERS : listeners.toArray(new RegisteredListener[listeners.size()]);
+    }
+
+    /**
+     * @param eventClass the event class of the table
+     * @param listeners the listeners of the table
+     * @return true if at least one listener acts on the events of the passed class
+     */
+    private static boolean isListened(Class< ? > eventClass, List<RegisteredListener> listeners)
+    {
+        for (RegisteredListener listener : listeners) {
+            if (listener.isHandled(eventClass)) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @return all the listeners, in the order in which they should be called
+     */
+    RegisteredListener[] getListeners()
+    {
+        return this.listeners;
+    }
+
+    /**
+     * @return true if at least one listener acts on the events of the table, ignoring the {@link
+     *         PartialAllEventListener}s not handling them
+     */
+    boolean isListened()
+    {
+        return this.listened;
+    }
+
+    /**
+     * @param event the notified event
+     * @return the listeners only interested in events with the name of the passed event, in the order in which they
+     *         should be called
+     */
+    RegisteredListener[] getNamedListeners(Event event)
+    {
+        RegisteredListener[] result = NO_LISTENERS;
+
+        if (!this.namedListeners.isEmpty() && event instanceof FilterableEvent) {
+            EventFilter filter = ((FilterableEvent) event).getEventFilter();
+            if (filter != null) {
+                RegisteredListener[] nameListeners = this.namedListeners.get(filter.getFilter());
+                if (nameListeners != null) {
+                    result = nameListeners;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return the listeners which have to be checked for every notified event, in the order in which they should be
+     *         called
+     */
+    RegisteredListener[] getOtherListeners()
+    {
+        return this.otherListeners;
+    }
+}
@@ -0,0 +1,340 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * The listeners registered in {@link DefaultObservationManager}.
+ * <p>
+ * Registrations are modified under synchronization but finding the listeners to call for an event is lock-free and
+ * doesn't allocate anything: it uses immutable dispatch tables (one per event class, containing the listeners
+ * registered for that event class followed by the listeners registered for {@link AllEvent}) which are lazily built
+ * the first time an event class is notified and thrown away (copy-on-write) when the registrations of that event class
+ * change.
+ * <p>
+ * The event classes of each listener and the listeners of each implementation class are indexed so that adding or
+ * removing a listener only costs in proportion to its own events.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+class ListenerRegistry
+{
+    /**
+     * Registered events indexed on Event classes and then on listener names. Only accessed while synchronized.
+     * 
+     * @todo Should we allow event inheritance?
+     */
+    private final Map<Class< ? extends Event>, Map<String, List<Event>>> listenersByEvent =
+        new HashMap<Class< ? extends Event>, Map<String, List<Event>>>();
+
+    /**
+     * The classes of the events registered for each listener name (reverse index of {@link #listenersByEvent}). Only
+     * accessed while synchronized.
+     */
+    private final Map<String, Set<Class< ? extends Event>>> eventClassesByListener =
+        new HashMap<String, Set<Class< ? extends Event>>>();
+
+    /**
+     * The names of the registered listeners indexed by listener implementation class. Only accessed while
+     * synchronized.
+     */
+    private final Map<Class< ? >, Set<String>> listenerNamesByClass = new HashMap<Class< ? >, Set<String>>();
+
+    /**
+     * Registered listeners index by listener name. It makes it fast to perform operations on already registered
+     * listeners.
+     */
+    private final Map<String, EventListener> listenersByName = new ConcurrentHashMap<String, EventListener>();
+
+    /**
+     * The listeners to call for each notified event class, built from {@link #listenersByEvent}. The tables of the
+     * modified event classes are removed when the registrations change and the whole map is replaced when the
+     * listeners of {@link AllEvent} change.
+     */
+    private volatile ConcurrentMap<Class< ? >, DispatchTable> dispatchTables =
+        new ConcurrentHashMap<Class< ? >, DispatchTable>();
+
+    /**
+     * Register the listener for all its events, replacing any listener registered with the same name.
+     * 
+     * @param eventListener the listener to register
+     * @return the listener previously registered with the same name or null if none was registered
+     */
+    synchronized EventListener addListener(EventListener eventListener)
+    {
+        String listenerName = eventListener.getName();
+
+        EventListener previousListener = this.listenersByName.put(listenerName, eventListener);
+
+        if (previousListener != null) {
+            // Forget the events of the previous listener
+            forgetListener(listenerName, previousListener);
+        }
+
+        Set<Class< ? extends Event>> eventClasses = new LinkedHashSet<Class< ? extends Event>>();
+        for (Event event : eventListener.getEvents()) {
+            Map<String, List<Event>> eventListeners = this.listenersByEvent.get(event.getClass());
+            if (eventListeners == null) {
+                // No listener registered for this event yet. Create a map to store listeners for this event.
+                eventListeners = new LinkedHashMap<String, List<Event>>();
+                this.listenersByEvent.put(event.getClass(), eventListeners);
+            }
+
+            List<Event> events = eventListeners.get(listenerName);
+            if (events == null) {
+                events = new ArrayList<Event>();
+                eventListeners.put(listenerName, events);
+            }
+            events.add(event);
+
+            eventClasses.add(event.getClass());
+        }
+        this.eventClassesByListener.put(listenerName, eventClasses);
+
+        Set<String> names = this.listenerNamesByClass.get(eventListener.getClass());
+        if (names == null) {
+            names = new LinkedHashSet<String>();
+            this.listenerNamesByClass.put(eventListener.getClass(), names);
+        }
+        names.add(listenerName);
+
+        invalidateDispatchTables(eventClasses);
+
+        return previousListener;
+    }
+
+    /**
+     * @param listenerName the name of the listener to unregister
+     * @return the unregistered listener or null if no listener was registered with the passed name
+     */
+    synchronized EventListener removeListener(String listenerName)
+    {
+        EventListener listener = this.listenersByName.remove(listenerName);
+
+        if (listener != null) {
+            forgetListener(listenerName, listener);
+        }
+
+        return listener;
+    }
+
+    /**
+     * Forget the events and the implementation class of a listener.
+     * 
+     * @param listenerName the name of the listener
+     * @param listener the listener registered with the passed name
+     */
+    private void forgetListener(String listenerName, EventListener listener)
+    {
+        Set<String> names = this.listenerNamesByClass.get(listener.getClass());
+        if (names != null) {
+            names.remove(listenerName);
+            if (names.isEmpty()) {
+                this.listenerNamesByClass.remove(listener.getClass());
+            }
+        }
+
+        Set<Class< ? extends Event>> eventClasses = this.eventClassesByListener.remove(listenerName);
+        if (eventClasses != null) {
+            for (Class< ? extends Event> eventClass : eventClasses) {
+                Map<String, List<Event>> eventListeners = this.listenersByEvent.get(eventClass);
+                if (eventListeners != null) {
+                    eventListeners.remove(listenerName);
+                    if (eventListeners.isEmpty()) {
+                        this.listenersByEvent.remove(eventClass);
+                    }
+                }
+            }
+
+            invalidateDispatchTables(eventClasses);
+        }
+    }
+
+    /**
+     * Add an event to a listener already registered for events of the same type.
+     * 
+     * @param listenerName the name of the listener
+     * @param event the event to add
+     */
+    synchronized void addEvent(String listenerName, Event event)
+    {
+        List<Event> events = getEvents(listenerName, event);
+        if (events != null) {
+            events.add(event);
+
+            invalidateDispatchTables(event.getClass());
+        }
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param event the event to remove
+     */
+    synchronized void removeEvent(String listenerName, Event event)
+    {
+        List<Event> events = getEvents(listenerName, event);
+        if (events != null) {
+            events.remove(event);
+
+            invalidateDispatchTables(event.getClass());
+        }
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param event the event indicating the type of the events to return
+     * @return the events of the same type as the passed event registered for the listener
+     */
+    private List<Event> getEvents(String listenerName, Event event)
+    {
+        Map<String, List<Event>> eventListeners = this.listenersByEvent.get(event.getClass());
+
+        return eventListeners != null ? eventListeners.get(listenerName) : null;
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @return the registered listener or null if none is registered with the passed name
+     */
+    EventListener getListener(String listenerName)
+    {
+        return this.listenersByName.get(listenerName);
+    }
+
+    /**
+     * @param listenerClass the implementation class of the listener
+     * @return the last registered listener with the passed implementation class or null if there is none
+     */
+    synchronized EventListener getListener(Class< ? > listenerClass)
+    {
+        EventListener listener = null;
+
+        Set<String> names = this.listenerNamesByClass.get(listenerClass);
+        if (names != null) {
+            for (String name : names) {
+                listener = this.listenersByName.get(name);
+            }
+        }
+
+        return listener;
+    }
+
+    /**
+     * @param eventClass the class of the notified event
+     * @return the listeners to call for the events of the passed class
+     */
+    DispatchTable getDispatchTable(Class< ? > eventClass)
+    {
+        DispatchTable listeners = this.dispatchTables.get(eventClass);
+        if (listeners == null) {
+            listeners = buildDispatchTable(eventClass);
+        }
+
+        return listeners;
+    }
+
+    /**
+     * Forget the dispatch tables affected by a modification of the registrations of the passed event classes so that
+     * they are rebuilt from the current registrations. Must be called while synchronized.
+     * 
+     * @param eventClasses the event classes for which the registrations changed
+     */
+    private void invalidateDispatchTables(Collection<Class< ? extends Event>> eventClasses)
+    {
+        if (eventClasses.contains(AllEvent.class)) {
+            // The listeners of AllEvent are part of all the dispatch tables
+            this.dispatchTables = new ConcurrentHashMap<Class< ? >, DispatchTable>();
+        } else {
+            for (Class< ? extends Event> eventClass : eventClasses) {
+                this.dispatchTables.remove(eventClass);
+            }
+        }
+    }
+
+    /**
+     * Forget the dispatch tables affected by a modification of the registrations of the passed event class. Must be
+     * called while synchronized.
+     * 
+     * @param eventClass the event class for which the registrations changed
+     */
+    private void invalidateDispatchTables(Class< ? extends Event> eventClass)
+    {
+        if (eventClass == AllEvent.class) {
+            this.dispatchTables = new ConcurrentHashMap<Class< ? >, DispatchTable>();
+        } else {
+            this.dispatchTables.remove(eventClass);
+        }
+    }
+
+    /**
+     * Build the dispatch table of the passed event class from the current registrations and cache it.
+     * 
+     * @param eventClass the class of the notified event
+     * @return the listeners to call for the events of the passed class
+     */
+    private synchronized DispatchTable buildDispatchTable(Class< ? > eventClass)
+    {
+        List<RegisteredListener> listeners = new ArrayList<RegisteredListener>();
+
+        addRegisteredListeners(this.listenersByEvent.get(eventClass), false, listeners);
+        // Listeners listening to all events
+        addRegisteredListeners(this.listenersByEvent.get(AllEvent.class), true, listeners);
+
+        DispatchTable table = listeners.isEmpty() ? DispatchTable.EMPTY : new DispatchTable(eventClass, listeners);
+
+        // Safe since any registration change invalidates the affected tables while synchronized
+        this.dispatchTables.put(eventClass, table);
+
+        return table;
+    }
+
+    /**
+     * @param eventListeners the events registered by each listener name
+     * @param allEvent true if the events are {@link AllEvent}s
+     * @param listeners where to add the dispatch entries
+     */
+    private void addRegisteredListeners(Map<String, List<Event>> eventListeners, boolean allEvent,
+        List<RegisteredListener> listeners)
+    {
+        if (eventListeners != null) {
+            for (Map.Entry<String, List<Event>> entry : eventListeners.entrySet()) {
+                EventListener listener = this.listenersByName.get(entry.getKey());
+                if (listener != null && !entry.getValue().isEmpty()) {
+                    listeners.add(new RegisteredListener(listener, entry.getValue(), allEvent, listeners.size()));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Statistics on the time spent by a listener handling a type of events. All times are in nanoseconds.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ * @see ObservationStatistics
+ */
+public class ListenerStatistics
+{
+    /**
+     * @see #getListenerName()
+     */
+    private final String listenerName;
+
+    /**
+     * @see #getEventClass()
+     */
+    private final Class< ? > eventClass;
+
+    /**
+     * @see #getInvocationCount()
+     */
+    private final AtomicLong invocationCount = new AtomicLong();
+
+    /**
+     * @see #getTime()
+     */
+    private final AtomicLong time = new AtomicLong();
+
+    /**
+     * @see #getMaxTime()
+     */
+    private final AtomicLong maxTime = new AtomicLong();
+
+    /**
+     * @param listenerName the name of the listener
+     * @param eventClass the class of the events
+     */
+    ListenerStatistics(String listenerName, Class< ? > eventClass)
+    {
+        this.listenerName = listenerName;
+        this.eventClass = eventClass;
+    }
+
+    /**
+     * @return the name of the listener
+     */
+    public String getListenerName()
+    {
+        return this.listenerName;
+    }
+
+    /**
+     * @return the class of the events
+     */
+    public Class< ? > getEventClass()
+    {
+        return this.eventClass;
+    }
+
+    /**
+     * @return the number of times the listener has been called
+     */
+    public long getInvocationCount()
+    {
+        return this.invocationCount.get();
+    }
+
+    /**
+     * @return the total time spent by the listener handling the events
+     */
+    public long getTime()
+    {
+        return this.time.get();
+    }
+
+    /**
+     * @return the maximum time spent by the listener handling an event
+     */
+    public long getMaxTime()
+    {
+        return this.maxTime.get();
+    }
+
+    /**
+     * The listener has been called.
+     * 
+     * @param invocationTime the time spent by the listener handling the event
+     */
+    void invoke(long invocationTime)
+    {
+        this.invocationCount.incrementAndGet();
+        this.time.addAndGet(invocationTime);
+
+        long currentMax = this.maxTime.get();
+        while (invocationTime > currentMax && !this.maxTime.compareAndSet(currentMax, invocationTime)) {
+            currentMax = this.maxTime.get();
+        }
+    }
+}
@@ -38,7 +38,8 @@
 import org.xwiki.observation.event.Event;
 
 /**
- * Listen to all events and stack {@link BeginEvent}.
+ * Listen to all events and stack {@link BeginEvent}. Since only the {@link BeginEvent}s and {@link EndEvent}s are used,
+ * the other events are not considered listened because of this listener.
  * 
  * @version $Id$
  * @since 3.2M1
@@ -46,7 +47,7 @@
 @Component
 @Singleton
 @Named("ObservationContextListener")
-public class ObservationContextListener implements EventListener
+public class ObservationContextListener implements EventListener, PartialAllEventListener
 {
     /**
      * The events to match.
@@ -112,6 +113,12 @@ public List<Event> getEvents()
         return EVENTS;
     }
 
+    @Override
+    public boolean isHandled(Class< ? > eventClass)
+    {
+        return BeginEvent.class.isAssignableFrom(eventClass) || EndEvent.class.isAssignableFrom(eventClass);
+    }
+
     @Override
     public void onEvent(Event event, Object source, Object data)
     {
@@ -0,0 +1,165 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import org.xwiki.observation.event.Event;
+
+/**
+ * Statistics on the time spent by each listener handling each type of event in {@link DefaultObservationManager}.
+ * All times are in nanoseconds.
+ * <p>
+ * Collecting statistics has a cost so it's disabled by default. It can be enabled by setting the
+ * {@value #ENABLED_PROPERTY} system property to {@code true} or with
+ * {@link DefaultObservationManager#setStatistics(ObservationStatistics)}. A warning is logged each time a listener
+ * takes more than {@link #getSlowThreshold()} to handle an event.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class ObservationStatistics
+{
+    /**
+     * The system property used to enable statistics in {@link DefaultObservationManager}.
+     */
+    public static final String ENABLED_PROPERTY = "xwiki.observation.statistics";
+
+    /**
+     * The system property containing the time (in milliseconds) above which a listener is considered slow, 0 to never
+     * warn about slow listeners.
+     */
+    public static final String SLOWTHRESHOLD_PROPERTY = "xwiki.observation.statistics.slowThreshold";
+
+    /**
+     * The default time (in milliseconds) above which a listener is considered slow.
+     */
+    private static final long DEFAULT_SLOWTHRESHOLD = 1000;
+
+    /**
+     * The statistics indexed by listener name and then by event class.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<Class< ? >, ListenerStatistics>> listeners =
+        new ConcurrentHashMap<String, ConcurrentMap<Class< ? >, ListenerStatistics>>();
+
+    /**
+     * @see #getSlowThreshold()
+     */
+    private volatile long slowThreshold =
+        TimeUnit.MILLISECONDS.toNanos(Long.getLong(SLOWTHRESHOLD_PROPERTY, DEFAULT_SLOWTHRESHOLD));
+
+    /**
+     * @return the statistics of all the listeners which have been called
+     */
+    public Collection<ListenerStatistics> getListenerStatistics()
+    {
+        Collection<ListenerStatistics> statistics = new ArrayList<ListenerStatistics>();
+        for (ConcurrentMap<Class< ? >, ListenerStatistics> events : this.listeners.values()) {
+            statistics.addAll(events.values());
+        }
+
+        return statistics;
+    }
+
+    /**
+     * @param listenerName the name of the listener
+     * @param eventClass the class of the events
+     * @return the statistics of the listener for the passed event class or null if it has never been called for such
+     *         event
+     */
+    public ListenerStatistics getListenerStatistics(String listenerName, Class< ? extends Event> eventClass)
+    {
+        ConcurrentMap<Class< ? >, ListenerStatistics> events = this.listeners.get(listenerName);
+
+        return events != null ? events.get(eventClass) : null;
+    }
+
+    /**
+     * @return the time above which a listener is considered slow, 0 if slow listeners are not reported
+     */
+    public long getSlowThreshold()
+    {
+        return this.slowThreshold;
+    }
+
+    /**
+     * @param slowThreshold the time above which a listener is considered slow, 0 to not report slow listeners
+     */
+    public void setSlowThreshold(long slowThreshold)
+    {
+        this.slowThreshold = slowThreshold;
+    }
+
+    /**
+     * Forget all the listeners statistics.
+     */
+    public void reset()
+    {
+        this.listeners.clear();
+    }
+
+    /**
+     * Forget the statistics of a listener which has been removed.
+     * 
+     * @param listenerName the name of the removed listener
+     */
+    void forget(String listenerName)
+    {
+        this.listeners.remove(listenerName);
+    }
+
+    /**
+     * A listener has been called.
+     * 
+     * @param listenerName the name of the listener
+     * @param eventClass the class of the event passed to the listener
+     * @param time the time spent by the listener handling the event
+     * @return true if the listener has been slow
+     */
+    boolean record(String listenerName, Class< ? > eventClass, long time)
+    {
+        ConcurrentMap<Class< ? >, ListenerStatistics> events = this.listeners.get(listenerName);
+        if (events == null) {
+            events = new ConcurrentHashMap<Class< ? >, ListenerStatistics>();
+            ConcurrentMap<Class< ? >, ListenerStatistics> existingEvents =
+                this.listeners.putIfAbsent(listenerName, events);
+            if (existingEvents != null) {
+                events = existingEvents;
+            }
+        }
+
+        ListenerStatistics statistics = events.get(eventClass);
+        if (statistics == null) {
+            statistics = new ListenerStatistics(listenerName, eventClass);
+            ListenerStatistics existingStatistics = events.putIfAbsent(eventClass, statistics);
+            if (existingStatistics != null) {
+                statistics = existingStatistics;
+            }
+        }
+
+        statistics.invoke(time);
+
+        return this.slowThreshold > 0 && time > this.slowThreshold;
+    }
+}
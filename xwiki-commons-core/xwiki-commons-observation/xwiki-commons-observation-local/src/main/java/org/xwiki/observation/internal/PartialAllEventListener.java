@@ -0,0 +1,37 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+/**
+ * Implemented by the infrastructure listeners registered for {@link org.xwiki.observation.event.AllEvent} which only
+ * act on some types of events. They still receive all the events but {@link DefaultObservationManager#isListened(Class)}
+ * ignores them for the other types, so that registering them doesn't make every event look listened to.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+interface PartialAllEventListener
+{
+    /**
+     * @param eventClass the class of an event
+     * @return true if the listener acts on the events of the passed class
+     */
+    boolean isHandled(Class< ? > eventClass);
+}
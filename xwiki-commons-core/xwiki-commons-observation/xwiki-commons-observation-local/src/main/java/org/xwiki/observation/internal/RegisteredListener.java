@@ -0,0 +1,205 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.xwiki.observation.AsynchronousEventListener;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.FixedNameEventFilter;
+
+/**
+ * Immutable association of a listener and the events of a given type it listens to, as found in the dispatch tables
+ * of {@link ListenerRegistry}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+final class RegisteredListener
+{
+    /**
+     * Events of a given type associated with the listener.
+     */
+    private final Event[] events;
+
+    /**
+     * Listener associated with the events.
+     */
+    private final EventListener listener;
+
+    /**
+     * True if the listener is registered for {@link org.xwiki.observation.event.AllEvent}.
+     */
+    private final boolean allEvent;
+
+    /**
+     * True if the listener should be called outside of the notifying thread.
+     */
+    private final boolean asynchronous;
+
+    /**
+     * @see #getPosition()
+     */
+    private final int position;
+
+    /**
+     * @see #getFixedNames()
+     */
+    private final String[] fixedNames;
+
+    /**
+     * @param listener the listener associated with the events
+     * @param events the events of a given type associated with the passed listener
+     * @param allEvent true if the events are {@link org.xwiki.observation.event.AllEvent}s
+     * @param position the position of the listener in the dispatch table
+     */
+    RegisteredListener(EventListener listener, List<Event> events, boolean allEvent, int position)
+    {
+        this.listener = listener;
+        this.events = events.toArray(new Event[events.size()]);
+        this.allEvent = allEvent;
+        this.asynchronous = listener instanceof AsynchronousEventListener;
+        this.position = position;
+        this.fixedNames = allEvent ? null : getFixedNames(this.events);
+    }
+
+    /**
+     * @param events the events of the listener
+     * @return the names matched by the events or null if at least one event doesn't only match a fixed name
+     */
+    private static String[] getFixedNames(Event[] events)
+    {
+        Set<String> names = new LinkedHashSet<String>();
+        for (Event event : events) {
+            String name = getFixedName(event);
+            if (name == null) {
+                return null;
+            }
+            names.add(name);
+        }
+
+        return names.toArray(new String[names.size()]);
+    }
+
+    /**
+     * @param event an event of the listener
+     * @return the only filter matched by the event or null if the event can match other filters or uses a custom
+     *         matching algorithm
+     */
+    private static String getFixedName(Event event)
+    {
+        if (event instanceof AbstractFilterableEvent) {
+            EventFilter filter = ((AbstractFilterableEvent) event).getEventFilter();
+            if (filter != null && filter.getClass() == FixedNameEventFilter.class && filter.getFilter() != null
+                && !overridesMatches(event)) {
+                return filter.getFilter();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * @param event the event
+     * @return true if the event class provides its own {@link Event#matches(Object)} implementation
+     */
+    private static boolean overridesMatches(Event event)
+    {
+        try {
+            return event.getClass().getMethod("matches", Object.class).getDeclaringClass()
+                != AbstractFilterableEvent.class;
+        } catch (NoSuchMethodException e) {
+            return true;
+        }
+    }
+
+    /**
+     * @return the listener associated with the events
+     */
+    EventListener getListener()
+    {
+        return this.listener;
+    }
+
+    /**
+     * @return true if the listener is registered for {@link org.xwiki.observation.event.AllEvent}
+     */
+    boolean isAllEvent()
+    {
+        return this.allEvent;
+    }
+
+    /**
+     * @param eventClass the class of an event
+     * @return false if the listener is registered for {@link org.xwiki.observation.event.AllEvent} but doesn't act on
+     *         the events of the passed class (see {@link PartialAllEventListener}), true otherwise
+     */
+    boolean isHandled(Class< ? > eventClass)
+    {
+        return !this.allEvent || !(this.listener instanceof PartialAllEventListener)
+            || ((PartialAllEventListener) this.listener).isHandled(eventClass);
+    }
+
+    /**
+     * @return true if the listener should be called outside of the notifying thread, see
+     *         {@link AsynchronousEventListener}
+     */
+    boolean isAsynchronous()
+    {
+        return this.asynchronous;
+    }
+
+    /**
+     * @return the position of the listener in the dispatch table, used to call the listeners in the registration order
+     */
+    int getPosition()
+    {
+        return this.position;
+    }
+
+    /**
+     * @return the filters matched by the events of the listener when they are all {@link FixedNameEventFilter}s, null
+     *         otherwise
+     */
+    String[] getFixedNames()
+    {
+        return this.fixedNames;
+    }
+
+    /**
+     * @param event the notified event
+     * @return the first event of the listener matching the passed event or null if none matches
+     */
+    Event match(Event event)
+    {
+        for (Event listenerEvent : this.events) {
+            if (listenerEvent.matches(event)) {
+                return listenerEvent;
+            }
+        }
+
+        return null;
+    }
+}
@@ -20,6 +20,8 @@
 package org.xwiki.observation;
 
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 import junit.framework.Assert;
 
@@ -27,6 +29,7 @@
 import org.junit.Before;
 import org.junit.Test;
 import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
 import org.xwiki.component.internal.StackingComponentEventManager;
 import org.xwiki.observation.event.Event;
 import org.xwiki.test.AbstractComponentTestCase;
@@ -46,6 +49,26 @@ public class ObservationManagerEventListenerTest extends AbstractComponentTestCa
     
     private DefaultComponentDescriptor<EventListener> componentDescriptor;
 
+    public static class BatchEventListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return "batchlistener";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+        }
+    }
+
     @Override
     @Before
     public void setUp() throws Exception
@@ -89,4 +112,47 @@ public void testRemovedListenerComponent() throws Exception
         
         Assert.assertNull(this.manager.getListener("mylistener"));
     }
+
+    @Test
+    public void testNewListenerComponents() throws Exception
+    {
+        final EventListener descriptorListener = getMockery().mock(EventListener.class, "descriptorListener");
+        final ComponentDescriptorAddedEvent descriptorEvent = new ComponentDescriptorAddedEvent(EventListener.class);
+
+        getMockery().checking(new Expectations() {{
+            allowing(descriptorListener).getName(); will(returnValue("descriptorlistener"));
+            allowing(descriptorListener).getEvents(); will(returnValue(Arrays.<Event>asList(descriptorEvent)));
+        }});
+        this.manager.addListener(descriptorListener);
+
+        DefaultComponentDescriptor<EventListener> batchDescriptor = new DefaultComponentDescriptor<EventListener>();
+        batchDescriptor.setImplementation(BatchEventListener.class);
+        batchDescriptor.setRole(EventListener.class);
+        batchDescriptor.setRoleHint("batchlistener");
+
+        // Listeners registered on the single descriptor events are still notified for each descriptor
+        getMockery().checking(new Expectations() {{
+            oneOf(descriptorListener).onEvent(with(any(ComponentDescriptorAddedEvent.class)),
+                with(same(getComponentManager())), with(any(Object.class)));
+        }});
+
+        getComponentManager().registerComponents(Arrays.asList(batchDescriptor));
+
+        Assert.assertSame(BatchEventListener.class, this.manager.getListener("batchlistener").getClass());
+    }
+
+    @Test
+    public void testRemovedListenerComponents() throws Exception
+    {
+        DefaultComponentDescriptor<EventListener> batchDescriptor = new DefaultComponentDescriptor<EventListener>();
+        batchDescriptor.setImplementation(BatchEventListener.class);
+        batchDescriptor.setRole(EventListener.class);
+        batchDescriptor.setRoleHint("batchlistener");
+
+        getComponentManager().registerComponents(Arrays.asList(batchDescriptor));
+        Assert.assertNotNull(this.manager.getListener("batchlistener"));
+
+        getComponentManager().unregisterComponents(Arrays.asList(batchDescriptor));
+        Assert.assertNull(this.manager.getListener("batchlistener"));
+    }
 }
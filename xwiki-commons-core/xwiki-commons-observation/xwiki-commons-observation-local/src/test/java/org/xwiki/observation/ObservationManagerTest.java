@@ -19,7 +19,12 @@
  */
 package org.xwiki.observation;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.Matchers.*;
 import org.jmock.Expectations;
@@ -29,10 +34,17 @@
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.event.AbstractFilterableEvent;
 import org.xwiki.observation.event.ActionExecutionEvent;
 import org.xwiki.observation.event.AllEvent;
+import org.xwiki.observation.event.BeginEvent;
 import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+import org.xwiki.observation.event.filter.RegexEventFilter;
 import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.ListenerStatistics;
+import org.xwiki.observation.internal.ObservationContextListener;
+import org.xwiki.observation.internal.ObservationStatistics;
 
 /**
  * Unit tests for {@link ObservationManager}.
@@ -45,6 +57,67 @@
 
     private Mockery context = new Mockery();
 
+    /**
+     * A filterable event.
+     */
+    public static class NamedEvent extends AbstractFilterableEvent
+    {
+        public NamedEvent()
+        {
+        }
+
+        public NamedEvent(String name)
+        {
+            super(name);
+        }
+
+        public NamedEvent(EventFilter filter)
+        {
+            super(filter);
+        }
+    }
+
+    /**
+     * A listener recording the name of the events it receives.
+     */
+    public static class NamedBeginEvent extends NamedEvent implements BeginEvent
+    {
+    }
+
+    private static class RecordingListener implements EventListener
+    {
+        private final String name;
+
+        private final List<Event> events;
+
+        private final List<String> calls;
+
+        public RecordingListener(String name, List<String> calls, Event... events)
+        {
+            this.name = name;
+            this.calls = calls;
+            this.events = Arrays.asList(events);
+        }
+
+        @Override
+        public String getName()
+        {
+            return this.name;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return this.events;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.calls.add(this.name + ':' + ((NamedEvent) event).getEventFilter().getFilter());
+        }
+    }
+
     @Before
     public void setUp()
     {
@@ -86,6 +159,48 @@ public void testRemoveListener()
         this.manager.notify(event, null);
     }
 
+    @Test
+    public void testIsListened()
+    {
+        ListenedEvents listenedEvents = (ListenedEvents) this.manager;
+
+        Assert.assertFalse(listenedEvents.isListened(NamedEvent.class));
+
+        List<String> calls = new ArrayList<String>();
+        this.manager.addListener(new RecordingListener("named", calls, new NamedEvent("name")));
+
+        Assert.assertTrue(listenedEvents.isListened(NamedEvent.class));
+        Assert.assertFalse(listenedEvents.isListened(ActionExecutionEvent.class));
+
+        this.manager.addListener(new RecordingListener("all", calls, AllEvent.ALLEVENT));
+
+        Assert.assertTrue(listenedEvents.isListened(ActionExecutionEvent.class));
+
+        this.manager.removeListener("named");
+        this.manager.removeListener("all");
+
+        Assert.assertFalse(listenedEvents.isListened(NamedEvent.class));
+    }
+
+    /**
+     * Verify that the infrastructure listeners registered for all events don't make the events they don't act on look
+     * listened.
+     */
+    @Test
+    public void testIsListenedIgnoresPartialAllEventListeners()
+    {
+        ListenedEvents listenedEvents = (ListenedEvents) this.manager;
+
+        this.manager.addListener(new ObservationContextListener());
+
+        Assert.assertFalse(listenedEvents.isListened(NamedEvent.class));
+        Assert.assertTrue(listenedEvents.isListened(NamedBeginEvent.class));
+
+        this.manager.addListener(new RecordingListener("all", new ArrayList<String>(), AllEvent.ALLEVENT));
+
+        Assert.assertTrue(listenedEvents.isListened(NamedEvent.class));
+    }
+
     @Test
     public void testAddEvent() throws Exception
     {
@@ -235,4 +350,231 @@ public void testRegisterListenerForTwoEventsOfSameType()
         this.manager.notify(eventMatcher1, "some source", "some data");
         this.manager.notify(eventMatcher2, "some source", "some data");
     }
+
+    /**
+     * Verify that the listeners registered after an event has already been notified receive the next events.
+     */
+    @Test
+    public void testNotifyWhenListenerAddedAfterFirstNotification()
+    {
+        final EventListener listener = this.context.mock(EventListener.class);
+        final EventListener allListener = this.context.mock(EventListener.class, "allListener");
+        final Event event = new ActionExecutionEvent("action");
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("mylistener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event)));
+            allowing(allListener).getName(); will(returnValue("allListener"));
+            allowing(allListener).getEvents(); will(returnValue(Arrays.asList(AllEvent.ALLEVENT)));
+
+            oneOf(listener).onEvent(event, "source2", null);
+            oneOf(allListener).onEvent(event, "source3", null);
+        }});
+
+        this.manager.notify(event, "source1");
+
+        this.manager.addListener(listener);
+        this.manager.notify(event, "source2");
+        this.manager.removeListener("mylistener");
+
+        this.manager.addListener(allListener);
+        this.manager.notify(event, "source3");
+        this.manager.removeListener("allListener");
+
+        this.manager.notify(event, "source4");
+
+        this.context.assertIsSatisfied();
+    }
+
+    /**
+     * Verify that asynchronous listeners receive the events in order, outside of the notifying thread.
+     */
+    @Test
+    public void testNotifyAsynchronousListener() throws Exception
+    {
+        final Event event = new ActionExecutionEvent("action");
+        final List<Object> sources = Collections.synchronizedList(new ArrayList<Object>());
+        final List<Thread> threads = Collections.synchronizedList(new ArrayList<Thread>());
+        final CountDownLatch received = new CountDownLatch(10);
+
+        this.manager.addListener(new AsynchronousEventListener()
+        {
+            @Override
+            public String getName()
+            {
+                return "asynchronous";
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return Arrays.asList(event);
+            }
+
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                sources.add(source);
+                threads.add(Thread.currentThread());
+                received.countDown();
+            }
+        });
+
+        for (int i = 0; i < 10; ++i) {
+            this.manager.notify(event, i);
+        }
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.<Object>asList(0, 1, 2, 3, 4, 5, 6, 7, 8, 9), sources);
+        Assert.assertThat(threads, not(hasItem(Thread.currentThread())));
+
+        ((DefaultObservationManager) this.manager).dispose();
+    }
+
+    /**
+     * Verify that the time spent by each listener is recorded and that slow listeners are reported.
+     */
+    @Test
+    public void testStatistics()
+    {
+        final EventListener listener = this.context.mock(EventListener.class);
+        final Logger logger = this.context.mock(Logger.class);
+        final Event event = new ActionExecutionEvent("action");
+
+        ReflectionUtils.setFieldValue(this.manager, "logger", logger);
+
+        ObservationStatistics statistics = new ObservationStatistics();
+        statistics.setSlowThreshold(0);
+        ((DefaultObservationManager) this.manager).setStatistics(statistics);
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("mylistener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event)));
+            exactly(2).of(listener).onEvent(event, null, null);
+        }});
+
+        this.manager.addListener(listener);
+        this.manager.notify(event, null);
+
+        ListenerStatistics listenerStatistics =
+            statistics.getListenerStatistics("mylistener", ActionExecutionEvent.class);
+        Assert.assertEquals(1, listenerStatistics.getInvocationCount());
+        Assert.assertTrue(listenerStatistics.getTime() >= listenerStatistics.getMaxTime());
+
+        // Every listener is slow with a 1 nanosecond threshold
+        statistics.setSlowThreshold(1);
+
+        this.context.checking(new Expectations() {{
+            oneOf(logger).warn(with(startsWith("Listener [{}] took")), with(any(Object[].class)));
+        }});
+
+        this.manager.notify(event, null);
+
+        Assert.assertEquals(2, listenerStatistics.getInvocationCount());
+        Assert.assertEquals(1, statistics.getListenerStatistics().size());
+
+        this.context.assertIsSatisfied();
+    }
+
+    /**
+     * Verify that the statistics of a listener are forgotten when it is removed.
+     */
+    @Test
+    public void testStatisticsAreForgottenWhenListenerIsRemoved()
+    {
+        final EventListener listener = this.context.mock(EventListener.class);
+        final Event event = new ActionExecutionEvent("action");
+
+        ObservationStatistics statistics = new ObservationStatistics();
+        statistics.setSlowThreshold(0);
+        ((DefaultObservationManager) this.manager).setStatistics(statistics);
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("mylistener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event)));
+            oneOf(listener).onEvent(event, null, null);
+        }});
+
+        this.manager.addListener(listener);
+        this.manager.notify(event, null);
+
+        Assert.assertEquals(1, statistics.getListenerStatistics().size());
+
+        this.manager.removeListener("mylistener");
+
+        Assert.assertTrue(statistics.getListenerStatistics().isEmpty());
+        Assert.assertNull(statistics.getListenerStatistics("mylistener", ActionExecutionEvent.class));
+    }
+
+    /**
+     * Verify that listeners using fixed name, regex and always matching filters on the same event class receive the
+     * matching events in the registration order.
+     */
+    @Test
+    public void testNotifyFilterableEvents()
+    {
+        List<String> calls = new ArrayList<String>();
+
+        this.manager.addListener(new RecordingListener("a", calls, new NamedEvent("doc1")));
+        this.manager.addListener(new RecordingListener("regex", calls, new NamedEvent(new RegexEventFilter("doc.*"))));
+        this.manager.addListener(new RecordingListener("b", calls, new NamedEvent("doc2"), new NamedEvent("doc1")));
+        this.manager.addListener(new RecordingListener("all", calls, new NamedEvent()));
+        this.manager.addListener(new RecordingListener("c", calls, new NamedEvent("doc3")));
+        this.manager.addListener(new RecordingListener("allEvents", calls, AllEvent.ALLEVENT));
+
+        this.manager.notify(new NamedEvent("doc1"), null);
+        Assert.assertEquals(Arrays.asList("a:doc1", "regex:doc1", "b:doc1", "all:doc1", "allEvents:doc1"), calls);
+
+        calls.clear();
+        this.manager.notify(new NamedEvent("doc3"), null);
+        Assert.assertEquals(Arrays.asList("regex:doc3", "all:doc3", "c:doc3", "allEvents:doc3"), calls);
+
+        calls.clear();
+        this.manager.notify(new NamedEvent("other"), null);
+        Assert.assertEquals(Arrays.asList("all:other", "allEvents:other"), calls);
+
+        calls.clear();
+        this.manager.removeListener("a");
+        this.manager.notify(new NamedEvent("doc1"), null);
+        Assert.assertEquals(Arrays.asList("regex:doc1", "b:doc1", "all:doc1", "allEvents:doc1"), calls);
+    }
+
+    /**
+     * Verify that removing or replacing a listener registered on several event classes only affects that listener.
+     */
+    @Test
+    public void testRemoveListenerRegisteredOnSeveralEventClasses()
+    {
+        final EventListener listener = this.context.mock(EventListener.class);
+        final Logger logger = this.context.mock(Logger.class);
+        final Event event = new ActionExecutionEvent("action");
+        List<String> calls = new ArrayList<String>();
+
+        ReflectionUtils.setFieldValue(this.manager, "logger", logger);
+
+        this.context.checking(new Expectations() {{
+            allowing(listener).getName(); will(returnValue("mylistener"));
+            allowing(listener).getEvents(); will(returnValue(Arrays.asList(event, new NamedEvent("doc"))));
+            oneOf(listener).onEvent(event, null, null);
+            // The listener is replaced
+            oneOf(logger).warn(with(any(String.class)), with(any(Object[].class)));
+        }});
+
+        this.manager.addListener(new RecordingListener("other", calls, new NamedEvent("doc")));
+        this.manager.addListener(listener);
+        this.manager.notify(event, null);
+
+        this.manager.addListener(new RecordingListener("mylistener", calls, new NamedEvent("doc")));
+        this.manager.notify(event, null);
+        this.manager.notify(new NamedEvent("doc"), null);
+        Assert.assertEquals(Arrays.asList("other:doc", "mylistener:doc"), calls);
+
+        calls.clear();
+        this.manager.removeListener("mylistener");
+        Assert.assertNull(this.manager.getListener("mylistener"));
+        this.manager.notify(new NamedEvent("doc"), null);
+        Assert.assertEquals(Arrays.asList("other:doc"), calls);
+
+        this.context.assertIsSatisfied();
+    }
 }
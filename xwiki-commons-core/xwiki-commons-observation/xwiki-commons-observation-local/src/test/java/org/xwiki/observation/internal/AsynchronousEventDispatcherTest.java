@@ -0,0 +1,207 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.jmock.Expectations;
+import org.jmock.Mockery;
+import org.jmock.api.Invocation;
+import org.jmock.lib.action.CustomAction;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.Event;
+
+/**
+ * Unit tests for {@link AsynchronousEventDispatcher}.
+ * 
+ * @version $Id$
+ */
+public class AsynchronousEventDispatcherTest
+{
+    private Mockery context = new Mockery();
+
+    private AsynchronousEventDispatcher dispatcher;
+
+    @After
+    public void tearDown()
+    {
+        this.dispatcher.dispose();
+    }
+
+    /**
+     * A listener blocking the delivery thread until released.
+     */
+    private static class BlockingListener implements EventListener
+    {
+        private final CountDownLatch started = new CountDownLatch(1);
+
+        private final CountDownLatch released = new CountDownLatch(1);
+
+        private final AtomicInteger active = new AtomicInteger();
+
+        private volatile int maxActive;
+
+        private volatile int count;
+
+        @Override
+        public String getName()
+        {
+            return "blocking";
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            this.maxActive = Math.max(this.maxActive, this.active.incrementAndGet());
+            this.started.countDown();
+            try {
+                this.released.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ++this.count;
+            this.active.decrementAndGet();
+        }
+    }
+
+    @Test
+    public void testDropWhenQueueIsFull() throws Exception
+    {
+        final Logger logger = this.context.mock(Logger.class);
+        final Event event = new ActionExecutionEvent("action");
+
+        this.dispatcher = new AsynchronousEventDispatcher(logger, 1, 2, true);
+
+        BlockingListener listener = new BlockingListener();
+
+        this.context.checking(new Expectations() {{
+            oneOf(logger).warn(with(any(String.class)), with(same(event)), with(equal("blocking")));
+        }});
+
+        // The first event is being delivered while the next two are waiting
+        this.dispatcher.dispatch(listener, event, null, null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+        this.dispatcher.dispatch(listener, event, null, null);
+        this.dispatcher.dispatch(listener, event, null, null);
+        this.dispatcher.dispatch(listener, event, null, null);
+
+        Assert.assertEquals(1, this.dispatcher.getDroppedEventCount());
+
+        listener.released.countDown();
+
+        this.context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testProtectFromBadListeners() throws Exception
+    {
+        final Logger logger = this.context.mock(Logger.class);
+        final Event event = new ActionExecutionEvent("action");
+        final EventListener badListener = this.context.mock(EventListener.class, "bad");
+        final CountDownLatch logged = new CountDownLatch(1);
+        final RuntimeException exception = new RuntimeException();
+
+        this.dispatcher = new AsynchronousEventDispatcher(logger, 1, 10, false);
+
+        this.context.checking(new Expectations() {{
+            oneOf(badListener).onEvent(event, null, null); will(throwException(exception));
+            oneOf(logger).error(with(any(String.class)), with(any(Object[].class)));
+            will(new CustomAction("count down") {
+                @Override
+                public Object invoke(Invocation invocation)
+                {
+                    logged.countDown();
+                    return null;
+                }
+            });
+        }});
+
+        this.dispatcher.dispatch(badListener, event, null, null);
+
+        Assert.assertTrue(logged.await(10, TimeUnit.SECONDS));
+        this.context.assertIsSatisfied();
+    }
+
+    @Test
+    public void testRegisterAgainWhileDelivering() throws Exception
+    {
+        final Event event = new ActionExecutionEvent("action");
+
+        this.dispatcher = new AsynchronousEventDispatcher(this.context.mock(Logger.class), 2, 10, true);
+
+        BlockingListener listener = new BlockingListener();
+
+        this.dispatcher.dispatch(listener, event, null, null);
+        Assert.assertTrue(listener.started.await(10, TimeUnit.SECONDS));
+
+        // Unregister and register the listener again while the first event is being delivered
+        this.dispatcher.forget(listener);
+        this.dispatcher.dispatch(listener, event, null, null);
+
+        // Give a chance to a second delivery thread to (wrongly) start
+        Thread.sleep(100);
+
+        listener.released.countDown();
+
+        for (int i = 0; i < 1000 && listener.count < 2; ++i) {
+            Thread.sleep(10);
+        }
+
+        Assert.assertEquals(2, listener.count);
+        Assert.assertEquals(1, listener.maxActive);
+    }
+
+    @Test
+    public void testDispatchAfterDispose() throws Exception
+    {
+        final Logger logger = this.context.mock(Logger.class);
+        final Event event = new ActionExecutionEvent("action");
+
+        this.dispatcher = new AsynchronousEventDispatcher(logger, 1, 10, true);
+        this.dispatcher.dispose();
+
+        BlockingListener listener = new BlockingListener();
+
+        this.context.checking(new Expectations() {{
+            oneOf(logger).debug(with(any(String.class)), with(same(event)), with(equal("blocking")));
+        }});
+
+        // Dropped without disturbing the notifying thread
+        this.dispatcher.dispatch(listener, event, null, null);
+
+        Assert.assertEquals(0, listener.count);
+        this.context.assertIsSatisfied();
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.CompositeDataSupport;
+import javax.management.openmbean.CompositeType;
+import javax.management.openmbean.OpenType;
+import javax.management.openmbean.SimpleType;
+import javax.management.openmbean.TabularData;
+import javax.management.openmbean.TabularDataSupport;
+import javax.management.openmbean.TabularType;
+
+import org.xwiki.observation.internal.ListenerStatistics;
+import org.xwiki.observation.internal.ObservationStatistics;
+
+/**
+ * Expose the {@link ObservationStatistics} of the Observation Manager as JMX management data.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXObservationManager implements JMXObservationManagerMBean
+{
+    /**
+     * The name of the column containing the listener name.
+     */
+    private static final String LISTENER = "listener";
+
+    /**
+     * The name of the column containing the event class.
+     */
+    private static final String EVENT = "event";
+
+    /**
+     * The names of the columns of the listeners table.
+     */
+    private static final String[] COLUMN_NAMES = new String[] {LISTENER, EVENT, "invocations", "time", "maxTime"};
+
+    /**
+     * The descriptions of the columns of the listeners table.
+     */
+    private static final String[] COLUMN_DESCRIPTIONS = new String[] {"The listener name", "The event class",
+        "The number of events handled by the listener",
+        "The total time spent handling the events (in microseconds)",
+        "The maximum time spent handling an event (in microseconds)"};
+
+    /**
+     * The statistics to expose.
+     */
+    private ObservationStatistics statistics;
+
+    /**
+     * @param statistics the statistics to expose
+     */
+    public JMXObservationManager(ObservationStatistics statistics)
+    {
+        this.statistics = statistics;
+    }
+
+    @Override
+    public TabularData getListeners()
+    {
+        TabularData data;
+
+        try {
+            OpenType< ? >[] columnTypes =
+                new OpenType< ? >[] {SimpleType.STRING, SimpleType.STRING, SimpleType.LONG, SimpleType.LONG,
+                    SimpleType.LONG};
+
+            // Represents one row (listener statistics) in the returned table data
+            CompositeType rowType =
+                new CompositeType(LISTENER, "Listener statistics for a row", COLUMN_NAMES, COLUMN_DESCRIPTIONS,
+                    columnTypes);
+
+            TabularType type =
+                new TabularType("listeners", "Listener statistics", rowType, new String[] {LISTENER, EVENT});
+            data = new TabularDataSupport(type);
+
+            for (ListenerStatistics listener : this.statistics.getListenerStatistics()) {
+                Object[] values =
+                    new Object[] {listener.getListenerName(), listener.getEventClass().getName(),
+                        listener.getInvocationCount(), toMicroseconds(listener.getTime()),
+                        toMicroseconds(listener.getMaxTime())};
+
+                CompositeData rowData = new CompositeDataSupport(rowType, COLUMN_NAMES, values);
+                data.put(rowData);
+            }
+        } catch (Exception e) {
+            throw new RuntimeException("Failed to gather information on listeners", e);
+        }
+
+        return data;
+    }
+
+    @Override
+    public long getSlowThreshold()
+    {
+        return TimeUnit.NANOSECONDS.toMillis(this.statistics.getSlowThreshold());
+    }
+
+    @Override
+    public void setSlowThreshold(long slowThreshold)
+    {
+        this.statistics.setSlowThreshold(TimeUnit.MILLISECONDS.toNanos(slowThreshold));
+    }
+
+    @Override
+    public void resetStatistics()
+    {
+        this.statistics.reset();
+    }
+
+    /**
+     * @param nanoseconds a duration in nanoseconds
+     * @return the same duration in microseconds
+     */
+    private long toMicroseconds(long nanoseconds)
+    {
+        return TimeUnit.NANOSECONDS.toMicros(nanoseconds);
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.management.JMXBeanRegistration;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.ObservationStatistics;
+
+/**
+ * Register a JMX MBean exposing the listeners statistics of the Observation Manager when they are collected (see
+ * {@link ObservationStatistics#ENABLED_PROPERTY}).
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("observation.jmx")
+@Singleton
+public class JMXObservationManagerInitializer implements ComponentManagerInitializer
+{
+    /**
+     * The Observation Manager collecting the statistics. Lazily resolved to not create it too early.
+     */
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    /**
+     * In order to register the Observation Manager MBean for management. Lazily resolved to not require it when the
+     * statistics are not collected.
+     */
+    @Inject
+    private Provider<JMXBeanRegistration> jmxRegistrationProvider;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        if (Boolean.getBoolean(ObservationStatistics.ENABLED_PROPERTY)) {
+            ObservationManager observationManager = this.observationManagerProvider.get();
+
+            if (observationManager instanceof DefaultObservationManager) {
+                ObservationStatistics statistics = ((DefaultObservationManager) observationManager).getStatistics();
+
+                if (statistics != null) {
+                    JMXObservationManagerMBean mbean = new JMXObservationManager(statistics);
+                    this.jmxRegistrationProvider.get().registerMBean(mbean, "type=ObservationManager");
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import javax.management.openmbean.TabularData;
+
+/**
+ * MBean API related to the Observation Manager. Supports the following features:
+ * <ul>
+ * <li>Retrieve the statistics of each listener for each type of event (invocations, time spent, maximum time)</li>
+ * <li>Get and set the time above which a listener is reported as slow</li>
+ * <li>Reset the statistics</li>
+ * </ul>
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public interface JMXObservationManagerMBean
+{
+    /**
+     * @return the statistics of each listener which has been called
+     */
+    TabularData getListeners();
+
+    /**
+     * @return the time (in milliseconds) above which a listener is reported as slow, 0 if slow listeners are not
+     *         reported
+     */
+    long getSlowThreshold();
+
+    /**
+     * @param slowThreshold the time (in milliseconds) above which a listener is reported as slow, 0 to not report slow
+     *            listeners
+     */
+    void setSlowThreshold(long slowThreshold);
+
+    /**
+     * Forget all the listeners statistics.
+     */
+    void resetStatistics();
+}
@@ -0,0 +1,91 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.internal.jmx;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.management.openmbean.CompositeData;
+import javax.management.openmbean.TabularData;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.ActionExecutionEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.DefaultObservationManager;
+import org.xwiki.observation.internal.ObservationStatistics;
+
+/**
+ * Unit tests for {@link JMXObservationManager}.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class JMXObservationManagerTest
+{
+    @Test
+    public void testGetListeners() throws Exception
+    {
+        DefaultObservationManager manager = new DefaultObservationManager();
+        ObservationStatistics statistics = new ObservationStatistics();
+        manager.setStatistics(statistics);
+
+        JMXObservationManager jmxBean = new JMXObservationManager(statistics);
+
+        Assert.assertTrue(jmxBean.getListeners().isEmpty());
+
+        manager.addListener(new EventListener()
+        {
+            @Override
+            public String getName()
+            {
+                return "mylistener";
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return Arrays.<Event>asList(new ActionExecutionEvent("action"));
+            }
+
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                // Nothing to do
+            }
+        });
+        manager.notify(new ActionExecutionEvent("action"), null);
+        manager.notify(new ActionExecutionEvent("action"), null);
+
+        TabularData data = jmxBean.getListeners();
+
+        Assert.assertEquals(1, data.size());
+        CompositeData cd = data.get(new Object[] {"mylistener", ActionExecutionEvent.class.getName()});
+        Assert.assertEquals(2L, cd.get("invocations"));
+
+        jmxBean.setSlowThreshold(50);
+        Assert.assertEquals(50, jmxBean.getSlowThreshold());
+
+        jmxBean.resetStatistics();
+
+        Assert.assertTrue(jmxBean.getListeners().isEmpty());
+    }
+}
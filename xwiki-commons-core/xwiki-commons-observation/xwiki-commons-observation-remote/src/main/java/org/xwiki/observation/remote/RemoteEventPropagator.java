@@ -0,0 +1,447 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.internal.RemoteEventData;
+import org.xwiki.observation.remote.internal.RemoteEventMessage;
+import org.xwiki.observation.remote.internal.RemoteEventSerializer;
+
+/**
+ * Propagate the {@link RemoteEvent}s notified in the local {@link ObservationManager} to the other nodes of the
+ * cluster and notify locally the events received from them.
+ * <p>
+ * The events to send are queued and sent in batches by a background thread: a batch is sent when it contains
+ * {@link #getBatchSize()} events or when no new event has been notified during {@link #getBatchDelay()}
+ * milliseconds. When more than {@value #MAX_PENDING} events are waiting to be sent, the new ones are dropped instead of
+ * blocking the notifying thread. The events received from the other nodes are notified in the thread of the transport
+ * and are not sent back (see {@link #isReceiving()}); the messages coming from the local node itself are ignored.
+ * <p>
+ * Only the events matching the events given to the constructor are listened to, and among them only the ones
+ * implementing {@link RemoteEvent} are sent. The propagator does not listen to all the events, so that it does not
+ * make every event (e.g. the log events) look listened to.
+ * <p>
+ * Propagation is disabled by default. It's enabled by setting the {@value #TRANSPORT_PROPERTY} system property to the
+ * hint of the {@link RemoteEventTransport} component to use and the {@value #EVENTS_PROPERTY} system property to the
+ * events to propagate.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class RemoteEventPropagator
+{
+    /**
+     * The system property containing the hint of the {@link RemoteEventTransport} to use.
+     */
+    public static final String TRANSPORT_PROPERTY = "xwiki.observation.remote.transport";
+
+    /**
+     * The system property containing the comma separated list of the classes of the events to propagate. The classes
+     * must implement {@link RemoteEvent} and have a public constructor without parameters creating an event matching
+     * all the events of the class.
+     */
+    public static final String EVENTS_PROPERTY = "xwiki.observation.remote.events";
+
+    /**
+     * The system property containing the maximum number of events in a message.
+     */
+    public static final String BATCHSIZE_PROPERTY = "xwiki.observation.remote.batchSize";
+
+    /**
+     * The system property containing the time (in milliseconds) to wait for more events before sending an incomplete
+     * batch.
+     */
+    public static final String BATCHDELAY_PROPERTY = "xwiki.observation.remote.batchDelay";
+
+    /**
+     * The default maximum number of events in a message.
+     */
+    public static final int DEFAULT_BATCHSIZE = 100;
+
+    /**
+     * The default time (in milliseconds) to wait for more events before sending an incomplete batch.
+     */
+    public static final long DEFAULT_BATCHDELAY = 10;
+
+    /**
+     * The name of the listener registered in the local Observation Manager.
+     */
+    private static final String LISTENER_NAME = "RemoteEventPropagator";
+
+    /**
+     * The maximum number of events waiting to be sent after which the new events are dropped.
+     */
+    private static final int MAX_PENDING = 10000;
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteEventPropagator.class);
+
+    /**
+     * The Observation Manager where local events are listened to and remote events are notified.
+     */
+    private final ObservationManager observationManager;
+
+    /**
+     * The transport used to communicate with the other nodes.
+     */
+    private final RemoteEventTransport transport;
+
+    /**
+     * The events listened to in the local Observation Manager.
+     */
+    private final List<Event> events;
+
+    /**
+     * @see #getBatchSize()
+     */
+    private final int batchSize;
+
+    /**
+     * @see #getBatchDelay()
+     */
+    private final long batchDelay;
+
+    /**
+     * @see #getNodeId()
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * Convert the events to messages and back.
+     */
+    private final RemoteEventSerializer serializer = new RemoteEventSerializer();
+
+    /**
+     * The events waiting to be sent.
+     */
+    private final BlockingQueue<RemoteEventData> pendingEvents = new LinkedBlockingQueue<RemoteEventData>(MAX_PENDING);
+
+    /**
+     * Indicate if the current thread is notifying an event received from another node.
+     */
+    private final ThreadLocal<Boolean> receiving = new ThreadLocal<Boolean>();
+
+    /**
+     * @see #getSentEventCount()
+     */
+    private final AtomicLong sentEventCount = new AtomicLong();
+
+    /**
+     * @see #getSentMessageCount()
+     */
+    private final AtomicLong sentMessageCount = new AtomicLong();
+
+    /**
+     * @see #getReceivedEventCount()
+     */
+    private final AtomicLong receivedEventCount = new AtomicLong();
+
+    /**
+     * @see #getDroppedEventCount()
+     */
+    private final AtomicLong droppedEventCount = new AtomicLong();
+
+    /**
+     * Listen to the local events.
+     */
+    private final EventListener listener = new LocalEventListener();
+
+    /**
+     * Receive the events of the other nodes.
+     */
+    private final RemoteEventReceiver receiver = new RemoteEventReceiver()
+    {
+        @Override
+        public void receive(byte[] message)
+        {
+            RemoteEventPropagator.this.receive(message);
+        }
+    };
+
+    /**
+     * The thread sending the events.
+     */
+    private Thread sender;
+
+    /**
+     * Send the local {@link RemoteEvent}s to the other nodes.
+     * 
+     * @version $Id$
+     */
+    private final class LocalEventListener implements EventListener
+    {
+        @Override
+        public String getName()
+        {
+            return LISTENER_NAME;
+        }
+
+        @Override
+        public List<Event> getEvents()
+        {
+            return events;
+        }
+
+        @Override
+        public void onEvent(Event event, Object source, Object data)
+        {
+            if (event instanceof RemoteEvent) {
+                send(event, source, data);
+            }
+        }
+    }
+
+    /**
+     * @param observationManager the Observation Manager where local events are listened to and remote events are
+     *            notified
+     * @param transport the transport used to communicate with the other nodes
+     * @param events the events to propagate, only the ones implementing {@link RemoteEvent} are sent
+     * @param batchSize the maximum number of events in a message
+     * @param batchDelay the time (in milliseconds) to wait for more events before sending an incomplete batch
+     */
+    public RemoteEventPropagator(ObservationManager observationManager, RemoteEventTransport transport,
+        List<Event> events, int batchSize, long batchDelay)
+    {
+        this.observationManager = observationManager;
+        this.transport = transport;
+        this.events = Collections.unmodifiableList(new ArrayList<Event>(events));
+        this.batchSize = batchSize;
+        this.batchDelay = batchDelay;
+    }
+
+    /**
+     * @return the identifier of the local node
+     */
+    public String getNodeId()
+    {
+        return this.nodeId;
+    }
+
+    /**
+     * @return the maximum number of events in a message
+     */
+    public int getBatchSize()
+    {
+        return this.batchSize;
+    }
+
+    /**
+     * @return the time (in milliseconds) to wait for more events before sending an incomplete batch
+     */
+    public long getBatchDelay()
+    {
+        return this.batchDelay;
+    }
+
+    /**
+     * @return the number of events sent to the other nodes
+     */
+    public long getSentEventCount()
+    {
+        return this.sentEventCount.get();
+    }
+
+    /**
+     * @return the number of messages sent to the other nodes
+     */
+    public long getSentMessageCount()
+    {
+        return this.sentMessageCount.get();
+    }
+
+    /**
+     * @return the number of events received from the other nodes
+     */
+    public long getReceivedEventCount()
+    {
+        return this.receivedEventCount.get();
+    }
+
+    /**
+     * @return the number of events which have not been sent because too many events were waiting to be sent
+     */
+    public long getDroppedEventCount()
+    {
+        return this.droppedEventCount.get();
+    }
+
+    /**
+     * @return true if the current thread is notifying an event received from another node
+     */
+    public boolean isReceiving()
+    {
+        return this.receiving.get() != null;
+    }
+
+    /**
+     * Start propagating the events.
+     * 
+     * @throws IOException when failing to start the transport
+     */
+    public synchronized void start() throws IOException
+    {
+        this.transport.start(this.receiver);
+
+        this.sender = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                sendEvents();
+            }
+        }, "XWiki remote event sender");
+        this.sender.setDaemon(true);
+        this.sender.start();
+
+        this.observationManager.addListener(this.listener);
+    }
+
+    /**
+     * Stop propagating the events. The events which have not been sent yet are lost.
+     */
+    public synchronized void stop()
+    {
+        this.observationManager.removeListener(LISTENER_NAME);
+
+        if (this.sender != null) {
+            this.sender.interrupt();
+            this.sender = null;
+        }
+
+        this.transport.stop();
+    }
+
+    /**
+     * Queue an event to send to the other nodes, unless it's been received from another node. The event is dropped
+     * when too many events are already waiting to be sent.
+     * 
+     * @param event the event to send
+     * @param source the source of the event (or <code>null</code>)
+     * @param data the additional data related to the event (or <code>null</code>)
+     */
+    public void send(Event event, Object source, Object data)
+    {
+        if (!isReceiving() && !this.pendingEvents.offer(new RemoteEventData(event, source, data))) {
+            this.droppedEventCount.incrementAndGet();
+            LOGGER.warn("Remote event [{}] has been dropped because too many events are waiting to be sent", event);
+        }
+    }
+
+    /**
+     * Send the queued events until stopped.
+     */
+    private void sendEvents()
+    {
+        List<RemoteEventData> batch = new ArrayList<RemoteEventData>(this.batchSize);
+        try {
+            while (true) {
+                batch.add(this.pendingEvents.take());
+                fillBatch(batch);
+
+                sendBatch(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Add the pending events to the batch until it is full or no event is notified during the batch delay.
+     * 
+     * @param batch the batch to fill
+     * @throws InterruptedException when stopped
+     */
+    private void fillBatch(List<RemoteEventData> batch) throws InterruptedException
+    {
+        boolean waiting = true;
+        while (waiting && batch.size() < this.batchSize) {
+            if (this.pendingEvents.drainTo(batch, this.batchSize - batch.size()) == 0) {
+                RemoteEventData event = this.pendingEvents.poll(this.batchDelay, TimeUnit.MILLISECONDS);
+                if (event != null) {
+                    batch.add(event);
+                } else {
+                    waiting = false;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param batch the events to send in a single message
+     */
+    private void sendBatch(List<RemoteEventData> batch)
+    {
+        try {
+            this.transport.send(this.serializer.serialize(this.nodeId, batch));
+
+            this.sentEventCount.addAndGet(batch.size());
+            this.sentMessageCount.incrementAndGet();
+        } catch (Exception e) {
+            LOGGER.error("Failed to send [{}] remote events", new Object[] {batch.size(), e});
+        }
+    }
+
+    /**
+     * Notify locally the events received from another node.
+     * 
+     * @param message the message received from another node
+     */
+    private void receive(byte[] message)
+    {
+        RemoteEventMessage remoteMessage;
+        try {
+            remoteMessage = this.serializer.deserialize(message);
+        } catch (IOException e) {
+            LOGGER.error("Failed to read remote events", e);
+
+            return;
+        }
+
+        // Ignore the messages sent by the local node
+        if (!this.nodeId.equals(remoteMessage.getOrigin())) {
+            this.receiving.set(Boolean.TRUE);
+            try {
+                for (RemoteEventData event : remoteMessage.getEvents()) {
+                    this.receivedEventCount.incrementAndGet();
+                    this.observationManager.notify(event.getEvent(), event.getSource(), event.getData());
+                }
+            } finally {
+                this.receiving.remove();
+            }
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.io.IOException;
+
+import org.xwiki.component.annotation.Role;
+
+/**
+ * Send the messages containing the remote events to the other nodes of the cluster and receive theirs. The component
+ * hint is the value of the {@value RemoteEventPropagator#TRANSPORT_PROPERTY} system property selecting the transport.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Role
+public interface RemoteEventTransport
+{
+    /**
+     * Start sending and receiving messages.
+     * 
+     * @param receiver called with the messages sent by the other nodes
+     * @throws IOException when failing to start listening to the other nodes
+     */
+    void start(RemoteEventReceiver receiver) throws IOException;
+
+    /**
+     * Send a message to all the other nodes.
+     * 
+     * @param message the message to send
+     * @throws IOException when failing to send the message
+     */
+    void send(byte[] message) throws IOException;
+
+    /**
+     * Stop sending and receiving messages.
+     */
+    void stop();
+}
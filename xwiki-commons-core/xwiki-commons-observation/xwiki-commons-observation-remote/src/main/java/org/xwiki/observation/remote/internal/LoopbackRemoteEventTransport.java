@@ -0,0 +1,120 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.remote.RemoteEventReceiver;
+import org.xwiki.observation.remote.RemoteEventTransport;
+
+/**
+ * Transport exchanging the messages between the transports started in the same JVM on the same channel. Mostly useful
+ * to test the propagation of events without network.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("loopback")
+@Singleton
+public class LoopbackRemoteEventTransport implements RemoteEventTransport
+{
+    /**
+     * The system property containing the name of the channel to join.
+     */
+    public static final String CHANNEL_PROPERTY = "xwiki.observation.remote.loopback.channel";
+
+    /**
+     * The started transports indexed by channel.
+     */
+    private static final ConcurrentMap<String, List<LoopbackRemoteEventTransport>> CHANNELS =
+        new ConcurrentHashMap<String, List<LoopbackRemoteEventTransport>>();
+
+    /**
+     * The name of the channel to join.
+     */
+    private final String channel;
+
+    /**
+     * Called with the messages of the other transports.
+     */
+    private volatile RemoteEventReceiver receiver;
+
+    /**
+     * Join the channel indicated by the {@value #CHANNEL_PROPERTY} system property.
+     */
+    public LoopbackRemoteEventTransport()
+    {
+        this(System.getProperty(CHANNEL_PROPERTY, "default"));
+    }
+
+    /**
+     * @param channel the name of the channel to join
+     */
+    public LoopbackRemoteEventTransport(String channel)
+    {
+        this.channel = channel;
+    }
+
+    @Override
+    public void start(RemoteEventReceiver messageReceiver)
+    {
+        this.receiver = messageReceiver;
+
+        List<LoopbackRemoteEventTransport> transports = CHANNELS.get(this.channel);
+        if (transports == null) {
+            transports = new CopyOnWriteArrayList<LoopbackRemoteEventTransport>();
+            List<LoopbackRemoteEventTransport> existingTransports = CHANNELS.putIfAbsent(this.channel, transports);
+            if (existingTransports != null) {
+                transports = existingTransports;
+            }
+        }
+        transports.add(this);
+    }
+
+    @Override
+    public void send(byte[] message)
+    {
+        List<LoopbackRemoteEventTransport> transports = CHANNELS.get(this.channel);
+        if (transports != null) {
+            for (LoopbackRemoteEventTransport transport : transports) {
+                if (transport != this) {
+                    transport.receiver.receive(message);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void stop()
+    {
+        List<LoopbackRemoteEventTransport> transports = CHANNELS.get(this.channel);
+        if (transports != null) {
+            transports.remove(this);
+        }
+    }
+}
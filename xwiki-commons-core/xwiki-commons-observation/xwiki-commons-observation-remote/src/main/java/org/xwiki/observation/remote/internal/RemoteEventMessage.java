@@ -0,0 +1,67 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.util.List;
+
+/**
+ * A batch of events sent by a node.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class RemoteEventMessage
+{
+    /**
+     * @see #getOrigin()
+     */
+    private final String origin;
+
+    /**
+     * @see #getEvents()
+     */
+    private final List<RemoteEventData> events;
+
+    /**
+     * @param origin the identifier of the node which sent the events
+     * @param events the events
+     */
+    public RemoteEventMessage(String origin, List<RemoteEventData> events)
+    {
+        this.origin = origin;
+        this.events = events;
+    }
+
+    /**
+     * @return the identifier of the node which sent the events
+     */
+    public String getOrigin()
+    {
+        return this.origin;
+    }
+
+    /**
+     * @return the events, in the order in which they have been notified on the sending node
+     */
+    public List<RemoteEventData> getEvents()
+    {
+        return this.events;
+    }
+}
@@ -0,0 +1,139 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.manager.ComponentManager;
+import org.xwiki.component.manager.ComponentManagerInitializer;
+import org.xwiki.component.phase.Disposable;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.RemoteEvent;
+import org.xwiki.observation.remote.RemoteEventPropagator;
+import org.xwiki.observation.remote.RemoteEventTransport;
+
+/**
+ * Start propagating the remote events when the {@value RemoteEventPropagator#TRANSPORT_PROPERTY} system property is
+ * set. The events to propagate are listed in the {@value RemoteEventPropagator#EVENTS_PROPERTY} system property.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("remote")
+@Singleton
+public class RemoteEventPropagatorInitializer implements ComponentManagerInitializer, Disposable
+{
+    /**
+     * The Observation Manager where local events are listened to and remote events are notified. Lazily resolved to
+     * not create it when the propagation is disabled.
+     */
+    @Inject
+    private Provider<ObservationManager> observationManagerProvider;
+
+    /**
+     * The logger to log.
+     */
+    @Inject
+    private Logger logger;
+
+    /**
+     * The started propagator, null if the propagation is disabled.
+     */
+    private RemoteEventPropagator propagator;
+
+    @Override
+    public void initialize(ComponentManager componentManager)
+    {
+        String transportHint = System.getProperty(RemoteEventPropagator.TRANSPORT_PROPERTY);
+
+        if (transportHint != null) {
+            try {
+                List<Event> events = getEvents(System.getProperty(RemoteEventPropagator.EVENTS_PROPERTY));
+                RemoteEventTransport transport =
+                    componentManager.getInstance(RemoteEventTransport.class, transportHint);
+
+                this.propagator =
+                    new RemoteEventPropagator(this.observationManagerProvider.get(), transport, events,
+                        Integer.getInteger(RemoteEventPropagator.BATCHSIZE_PROPERTY,
+                            RemoteEventPropagator.DEFAULT_BATCHSIZE),
+                        Long.getLong(RemoteEventPropagator.BATCHDELAY_PROPERTY,
+                            RemoteEventPropagator.DEFAULT_BATCHDELAY));
+                this.propagator.start();
+            } catch (Exception e) {
+                this.logger.error("Failed to start the propagation of remote events with transport [{}]",
+                    new Object[] {transportHint, e});
+                this.propagator = null;
+            }
+        }
+    }
+
+    /**
+     * @param classNames the comma separated list of the classes of the events to propagate
+     * @return an event matching all the events of each class
+     * @throws Exception when a class cannot be loaded, is not a {@link RemoteEvent} or cannot be instantiated
+     */
+    private List<Event> getEvents(String classNames) throws Exception
+    {
+        List<Event> events = new ArrayList<Event>();
+
+        if (classNames != null) {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = getClass().getClassLoader();
+            }
+
+            for (String className : classNames.split(",")) {
+                String trimmedClassName = className.trim();
+                if (trimmedClassName.length() > 0) {
+                    Class< ? > eventClass = Class.forName(trimmedClassName, true, classLoader);
+                    if (!RemoteEvent.class.isAssignableFrom(eventClass) || !Event.class.isAssignableFrom(eventClass)) {
+                        throw new IllegalArgumentException("[" + trimmedClassName + "] is not a remote event");
+                    }
+                    events.add((Event) eventClass.newInstance());
+                }
+            }
+        }
+
+        if (events.isEmpty()) {
+            throw new IllegalArgumentException("No event to propagate, see the ["
+                + RemoteEventPropagator.EVENTS_PROPERTY + "] system property");
+        }
+
+        return events;
+    }
+
+    @Override
+    public void dispose()
+    {
+        if (this.propagator != null) {
+            this.propagator.stop();
+        }
+    }
+}
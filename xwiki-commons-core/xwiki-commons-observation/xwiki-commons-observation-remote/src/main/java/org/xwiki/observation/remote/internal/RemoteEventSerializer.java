@@ -0,0 +1,374 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.event.filter.EventFilter;
+
+/**
+ * Convert batches of remote events to messages and back.
+ * <p>
+ * A message contains a format version, the identifier of the sending node, the number of events and then, for each
+ * event, the event, its source and its data. Each of them is serialized on its own (preceded by its length) so that
+ * one object which can't be written or read only affects its own event: an event which can't be serialized is not
+ * sent and an event which can't be read is skipped, while a source or a data which can't be serialized or read is
+ * replaced by <code>null</code>.
+ * <p>
+ * Since the messages come from the network, only a limited set of classes can be read back: the events and their
+ * filters, the strings, the boxed primitives, the enums, the arrays of those and the classes (or the subclasses of the
+ * classes) listed in the {@value #ALLOWEDCLASSES_PROPERTY} system property. Any other class is rejected before it is
+ * instantiated.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+public class RemoteEventSerializer
+{
+    /**
+     * The system property containing the comma separated list of the additional classes which can be read, with their
+     * subclasses, typically the classes of the sources and data of the propagated events.
+     */
+    public static final String ALLOWEDCLASSES_PROPERTY = "xwiki.observation.remote.allowedClasses";
+
+    /**
+     * The version of the message format.
+     */
+    private static final byte VERSION = 2;
+
+    /**
+     * The length of an object which is <code>null</code> or which could not be serialized.
+     */
+    private static final int NULL_LENGTH = -1;
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(RemoteEventSerializer.class);
+
+    /**
+     * The types which can always be read, with their subtypes.
+     */
+    private static final List<Class< ? >> ALLOWED_TYPES = Arrays.<Class< ? >>asList(Event.class, EventFilter.class,
+        String.class, Number.class, Boolean.class, Character.class, Enum.class);
+
+    /**
+     * The names of the additional classes which can be read, with their subclasses.
+     */
+    private final Set<String> allowedClassNames;
+
+    /**
+     * Resolve the classes with the context class loader, which knows the classes of installed extensions.
+     * 
+     * @version $Id$
+     */
+    private class ContextObjectInputStream extends ObjectInputStream
+    {
+        /**
+         * @param input the stream to read
+         * @throws IOException when failing to read the stream header
+         */
+        ContextObjectInputStream(InputStream input) throws IOException
+        {
+            super(input);
+        }
+
+        @Override
+        protected Class< ? > resolveClass(ObjectStreamClass description) throws IOException, ClassNotFoundException
+        {
+            Class< ? > resolvedClass = null;
+
+            // The classes are not initialized so that no code of a class is executed before it is checked
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader != null) {
+                try {
+                    resolvedClass = Class.forName(description.getName(), false, classLoader);
+                } catch (ClassNotFoundException e) {
+                    // Try the default resolution
+                }
+            }
+            if (resolvedClass == null) {
+                resolvedClass = super.resolveClass(description);
+            }
+
+            if (!isAllowed(resolvedClass)) {
+                throw new InvalidClassException(description.getName(), "Class not allowed in remote events");
+            }
+
+            return resolvedClass;
+        }
+
+        @Override
+        protected Class< ? > resolveProxyClass(String[] interfaces) throws IOException
+        {
+            throw new InvalidClassException("Proxy classes are not allowed in remote events");
+        }
+    }
+
+    /**
+     * Use the additional allowed classes listed in the {@value #ALLOWEDCLASSES_PROPERTY} system property.
+     */
+    public RemoteEventSerializer()
+    {
+        this(parseClassNames(System.getProperty(ALLOWEDCLASSES_PROPERTY)));
+    }
+
+    /**
+     * @param allowedClassNames the names of the additional classes which can be read, with their subclasses
+     */
+    public RemoteEventSerializer(Collection<String> allowedClassNames)
+    {
+        this.allowedClassNames = Collections.unmodifiableSet(new HashSet<String>(allowedClassNames));
+    }
+
+    /**
+     * @param classNames the comma separated list of class names
+     * @return the class names
+     */
+    private static List<String> parseClassNames(String classNames)
+    {
+        List<String> names = new ArrayList<String>();
+
+        if (classNames != null) {
+            for (String className : classNames.split(",")) {
+                String trimmedClassName = className.trim();
+                if (trimmedClassName.length() > 0) {
+                    names.add(trimmedClassName);
+                }
+            }
+        }
+
+        return names;
+    }
+
+    /**
+     * @param type a class found in a message
+     * @return true if the class can be read
+     */
+    private boolean isAllowed(Class< ? > type)
+    {
+        if (type.isArray()) {
+            return type.getComponentType().isPrimitive() || isAllowed(type.getComponentType());
+        }
+
+        for (Class< ? > allowedType : ALLOWED_TYPES) {
+            if (allowedType.isAssignableFrom(type)) {
+                return true;
+            }
+        }
+
+        for (Class< ? > superclass = type; superclass != null; superclass = superclass.getSuperclass()) {
+            if (this.allowedClassNames.contains(superclass.getName())) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * @param origin the identifier of the sending node
+     * @param events the events to send
+     * @return the message, containing the events which could be serialized
+     * @throws IOException when failing to write the message
+     */
+    public byte[] serialize(String origin, List<RemoteEventData> events) throws IOException
+    {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream contentOutput = new DataOutputStream(content);
+
+        int count = 0;
+        for (RemoteEventData event : events) {
+            byte[] eventBytes = serializeObject(event.getEvent());
+            if (eventBytes != null) {
+                writeObject(eventBytes, contentOutput);
+                writeObject(serializeObject(event.getSource()), contentOutput);
+                writeObject(serializeObject(event.getData()), contentOutput);
+                ++count;
+            }
+        }
+        contentOutput.flush();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+        DataOutputStream header = new DataOutputStream(bytes);
+        header.writeByte(VERSION);
+        header.writeUTF(origin);
+        header.writeInt(count);
+        header.flush();
+
+        content.writeTo(bytes);
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param object the object to serialize
+     * @return the serialized object, null if it's null or can't be serialized
+     */
+    private byte[] serializeObject(Object object)
+    {
+        if (object == null) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            ObjectOutputStream output = new ObjectOutputStream(bytes);
+            output.writeObject(object);
+            output.close();
+        } catch (IOException e) {
+            // The event is not sent, its source or data is replaced by null
+            LOGGER.warn("Failed to serialize [{}] to send a remote event", object, e);
+
+            return null;
+        }
+
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param object the serialized object, null for a null object
+     * @param output where to write the object
+     * @throws IOException when failing to write the object
+     */
+    private void writeObject(byte[] object, DataOutputStream output) throws IOException
+    {
+        if (object != null) {
+            output.writeInt(object.length);
+            output.write(object);
+        } else {
+            output.writeInt(NULL_LENGTH);
+        }
+    }
+
+    /**
+     * @param message the message
+     * @return the events contained in the message which could be read
+     * @throws IOException when the message is invalid
+     */
+    public RemoteEventMessage deserialize(byte[] message) throws IOException
+    {
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(message));
+
+        byte version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported remote event message version [" + version + "]");
+        }
+        String origin = input.readUTF();
+        int size = input.readInt();
+        // Each event takes at least one byte
+        if (size < 0 || size > message.length) {
+            throw new IOException("Invalid number of remote events [" + size + "]");
+        }
+
+        List<RemoteEventData> events = new ArrayList<RemoteEventData>(size);
+        for (int i = 0; i < size; ++i) {
+            Object event = deserializeObject(readObject(input, message.length));
+            Object source = deserializeObject(readObject(input, message.length));
+            Object data = deserializeObject(readObject(input, message.length));
+
+            if (event instanceof Event) {
+                events.add(new RemoteEventData((Event) event, source, data));
+            } else {
+                LOGGER.warn("Skipped remote event [{}] from node [{}] which could not be read", i, origin);
+            }
+        }
+
+        return new RemoteEventMessage(origin, events);
+    }
+
+    /**
+     * @param input the message
+     * @param maxLength the length of the message
+     * @return the serialized object, null for a null object
+     * @throws IOException when the message is invalid
+     */
+    private byte[] readObject(DataInputStream input, int maxLength) throws IOException
+    {
+        int length = input.readInt();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        if (length < 0 || length > maxLength) {
+            throw new IOException("Invalid remote event object length [" + length + "]");
+        }
+
+        byte[] object = new byte[length];
+        input.readFully(object);
+
+        return object;
+    }
+
+    /**
+     * @param object the serialized object
+     * @return the object, null if it's null or can't be read (for example because its class is not allowed)
+     */
+    private Object deserializeObject(byte[] object)
+    {
+        if (object == null) {
+            return null;
+        }
+
+        Object result = null;
+        try {
+            ObjectInputStream input = new ContextObjectInputStream(new ByteArrayInputStream(object));
+            try {
+                result = input.readObject();
+            } finally {
+                input.close();
+            }
+        } catch (IOException e) {
+            logReadError(e);
+        } catch (ClassNotFoundException e) {
+            logReadError(e);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param e the reason why an object of a remote event could not be read
+     */
+    private void logReadError(Exception e)
+    {
+        // The event is skipped, its source or data is replaced by null
+        LOGGER.warn("Failed to read an object of a remote event: {}", e.getMessage());
+    }
+}
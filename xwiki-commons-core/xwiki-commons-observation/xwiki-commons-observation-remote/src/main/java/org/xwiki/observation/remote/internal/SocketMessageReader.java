@@ -0,0 +1,154 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.MessageDigest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.observation.remote.RemoteEventReceiver;
+
+/**
+ * Read the messages sent by another node on a connection accepted by {@link SocketRemoteEventTransport}, after
+ * checking that the other node knows the shared secret. The connection is closed when the secret is wrong, when a
+ * message is too big or when the other node closes it.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+class SocketMessageReader implements Runnable
+{
+    /**
+     * The time (in milliseconds) given to the other node to send the shared secret once connected.
+     */
+    private static final int HANDSHAKE_TIMEOUT = 10000;
+
+    /**
+     * The encoding of the shared secret when comparing it.
+     */
+    private static final String SECRET_ENCODING = "UTF-8";
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketMessageReader.class);
+
+    /**
+     * The connection opened by the other node.
+     */
+    private final Socket socket;
+
+    /**
+     * The secret shared by all the nodes.
+     */
+    private final String secret;
+
+    /**
+     * The maximum size of a message in bytes.
+     */
+    private final int maxMessageSize;
+
+    /**
+     * Called with the messages of the other node.
+     */
+    private final RemoteEventReceiver receiver;
+
+    /**
+     * @param socket the connection opened by the other node
+     * @param secret the secret shared by all the nodes
+     * @param maxMessageSize the maximum size of a message in bytes
+     * @param receiver called with the messages of the other node
+     */
+    SocketMessageReader(Socket socket, String secret, int maxMessageSize, RemoteEventReceiver receiver)
+    {
+        this.socket = socket;
+        this.secret = secret;
+        this.maxMessageSize = maxMessageSize;
+        this.receiver = receiver;
+    }
+
+    @Override
+    public void run()
+    {
+        try {
+            DataInputStream input = new DataInputStream(new BufferedInputStream(this.socket.getInputStream()));
+
+            this.socket.setSoTimeout(HANDSHAKE_TIMEOUT);
+            if (!checkSecret(input)) {
+                LOGGER.warn("Rejected connection from [{}] because of an invalid secret",
+                    this.socket.getRemoteSocketAddress());
+
+                return;
+            }
+            this.socket.setSoTimeout(0);
+
+            readMessages(input);
+        } catch (EOFException e) {
+            // Connection closed by the other node
+        } catch (IOException e) {
+            LOGGER.debug("Connection with [{}] lost", new Object[] {this.socket.getRemoteSocketAddress(), e});
+        } finally {
+            try {
+                this.socket.close();
+            } catch (IOException e) {
+                // Nothing more to do
+            }
+        }
+    }
+
+    /**
+     * @param input the connection opened by the other node
+     * @return true if the other node sent the shared secret
+     * @throws IOException when failing to read the secret
+     */
+    private boolean checkSecret(DataInputStream input) throws IOException
+    {
+        return MessageDigest.isEqual(this.secret.getBytes(SECRET_ENCODING), input.readUTF().getBytes(SECRET_ENCODING));
+    }
+
+    /**
+     * Read the messages until the connection is closed or a message size is invalid.
+     * 
+     * @param input the connection opened by the other node
+     * @throws IOException when failing to read a message
+     */
+    private void readMessages(DataInputStream input) throws IOException
+    {
+        while (true) {
+            int length = input.readInt();
+            if (length < 0 || length > this.maxMessageSize) {
+                LOGGER.warn("Closing connection from [{}] because of an invalid message size [{}]",
+                    this.socket.getRemoteSocketAddress(), length);
+
+                return;
+            }
+
+            byte[] message = new byte[length];
+            input.readFully(message);
+
+            this.receiver.receive(message);
+        }
+    }
+}
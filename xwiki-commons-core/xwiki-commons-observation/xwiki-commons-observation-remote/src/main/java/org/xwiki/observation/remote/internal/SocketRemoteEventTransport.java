@@ -0,0 +1,472 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.annotation.Component;
+import org.xwiki.observation.remote.RemoteEventReceiver;
+import org.xwiki.observation.remote.RemoteEventTransport;
+
+/**
+ * Transport exchanging the messages over TCP connections with the other nodes. The transport listens on the loopback
+ * interface, which is enough to run several nodes on the same host without external services.
+ * <p>
+ * The transport can be configured with the following system properties:
+ * <ul>
+ * <li>{@value #PORT_PROPERTY}: the port to listen to (defaults to {@value #DEFAULT_PORT}, 0 for any free port)</li>
+ * <li>{@value #PEERS_PROPERTY}: the comma separated list of the <code>host:port</code> of the other nodes</li>
+ * <li>{@value #SECRET_PROPERTY}: the secret shared by all the nodes, required to start the transport</li>
+ * <li>{@value #MAXMESSAGESIZE_PROPERTY}: the maximum size of a message in bytes (defaults to
+ * {@value #DEFAULT_MAXMESSAGESIZE})</li>
+ * <li>{@value #MAXCONNECTIONS_PROPERTY}: the maximum number of connections accepted at the same time (defaults to
+ * {@value #DEFAULT_MAXCONNECTIONS})</li>
+ * </ul>
+ * A connection starts with the shared secret, the connections sending another secret are closed without reading any
+ * message. Then each message is sent as its length followed by its content; the connection is closed when a length is
+ * negative or bigger than the maximum size of a message.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Named("socket")
+@Singleton
+public class SocketRemoteEventTransport implements RemoteEventTransport
+{
+    /**
+     * The system property containing the port to listen to.
+     */
+    public static final String PORT_PROPERTY = "xwiki.observation.remote.socket.port";
+
+    /**
+     * The system property containing the addresses of the other nodes.
+     */
+    public static final String PEERS_PROPERTY = "xwiki.observation.remote.socket.peers";
+
+    /**
+     * The system property containing the secret shared by all the nodes.
+     */
+    public static final String SECRET_PROPERTY = "xwiki.observation.remote.socket.secret";
+
+    /**
+     * The system property containing the maximum size of a message in bytes.
+     */
+    public static final String MAXMESSAGESIZE_PROPERTY = "xwiki.observation.remote.socket.maxMessageSize";
+
+    /**
+     * The system property containing the maximum number of connections accepted at the same time.
+     */
+    public static final String MAXCONNECTIONS_PROPERTY = "xwiki.observation.remote.socket.maxConnections";
+
+    /**
+     * The default port to listen to.
+     */
+    public static final int DEFAULT_PORT = 7878;
+
+    /**
+     * The default maximum size of a message in bytes.
+     */
+    public static final int DEFAULT_MAXMESSAGESIZE = 16 * 1024 * 1024;
+
+    /**
+     * The default maximum number of connections accepted at the same time.
+     */
+    public static final int DEFAULT_MAXCONNECTIONS = 32;
+
+    /**
+     * The logger to log.
+     */
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketRemoteEventTransport.class);
+
+    /**
+     * The separator between the host and the port in the peers system property.
+     */
+    private static final char PORT_SEPARATOR = ':';
+
+    /**
+     * The port to listen to.
+     */
+    private final int port;
+
+    /**
+     * The addresses of the other nodes.
+     */
+    private final List<InetSocketAddress> peers = new CopyOnWriteArrayList<InetSocketAddress>();
+
+    /**
+     * The secret shared by all the nodes.
+     */
+    private final String secret;
+
+    /**
+     * The maximum size of a message in bytes.
+     */
+    private final int maxMessageSize = Integer.getInteger(MAXMESSAGESIZE_PROPERTY, DEFAULT_MAXMESSAGESIZE);
+
+    /**
+     * The maximum number of connections accepted at the same time.
+     */
+    private final int maxConnections = Integer.getInteger(MAXCONNECTIONS_PROPERTY, DEFAULT_MAXCONNECTIONS);
+
+    /**
+     * The connections opened to the other nodes, indexed by address.
+     */
+    private final Map<InetSocketAddress, Connection> connections =
+        new ConcurrentHashMap<InetSocketAddress, Connection>();
+
+    /**
+     * The connections opened by the other nodes.
+     */
+    private final List<Socket> acceptedSockets = new CopyOnWriteArrayList<Socket>();
+
+    /**
+     * Called with the messages of the other nodes.
+     */
+    private RemoteEventReceiver receiver;
+
+    /**
+     * Accept the connections of the other nodes.
+     */
+    private volatile ServerSocket serverSocket;
+
+    /**
+     * Read the messages of the accepted connections, one thread per connection.
+     */
+    private ExecutorService receivers;
+
+    /**
+     * A connection to another node.
+     * 
+     * @version $Id$
+     */
+    private static final class Connection
+    {
+        /**
+         * The connected socket.
+         */
+        private final Socket socket;
+
+        /**
+         * Where to write the messages.
+         */
+        private final DataOutputStream output;
+
+        /**
+         * @param address the address of the node
+         * @param secret the secret shared by all the nodes
+         * @throws IOException when failing to connect
+         */
+        Connection(InetSocketAddress address, String secret) throws IOException
+        {
+            this.socket = new Socket(address.getAddress(), address.getPort());
+            this.socket.setTcpNoDelay(true);
+            this.output = new DataOutputStream(new BufferedOutputStream(this.socket.getOutputStream()));
+            this.output.writeUTF(secret);
+            this.output.flush();
+        }
+
+        /**
+         * @param message the message to send
+         * @throws IOException when failing to send the message
+         */
+        synchronized void send(byte[] message) throws IOException
+        {
+            this.output.writeInt(message.length);
+            this.output.write(message);
+            this.output.flush();
+        }
+
+        /**
+         * Close the connection.
+         */
+        void close()
+        {
+            closeQuietly(this.socket);
+        }
+    }
+
+    /**
+     * Use the configuration found in the system properties.
+     */
+    public SocketRemoteEventTransport()
+    {
+        this(Integer.getInteger(PORT_PROPERTY, DEFAULT_PORT), parsePeers(System.getProperty(PEERS_PROPERTY)), System
+            .getProperty(SECRET_PROPERTY));
+    }
+
+    /**
+     * @param port the port to listen to, 0 for any free port
+     * @param peers the addresses of the other nodes
+     * @param secret the secret shared by all the nodes
+     */
+    public SocketRemoteEventTransport(int port, List<InetSocketAddress> peers, String secret)
+    {
+        this.port = port;
+        this.peers.addAll(peers);
+        this.secret = secret;
+    }
+
+    /**
+     * @param peers the comma separated list of <code>host:port</code>
+     * @return the addresses
+     */
+    private static List<InetSocketAddress> parsePeers(String peers)
+    {
+        List<InetSocketAddress> addresses = new ArrayList<InetSocketAddress>();
+
+        if (peers != null) {
+            for (String peer : peers.split(",")) {
+                String trimmedPeer = peer.trim();
+                int index = trimmedPeer.lastIndexOf(PORT_SEPARATOR);
+                if (index > 0) {
+                    addresses.add(new InetSocketAddress(trimmedPeer.substring(0, index), Integer
+                        .parseInt(trimmedPeer.substring(index + 1))));
+                } else if (trimmedPeer.length() > 0) {
+                    addresses.add(new InetSocketAddress(trimmedPeer, DEFAULT_PORT));
+                }
+            }
+        }
+
+        return addresses;
+    }
+
+    /**
+     * @param socket the socket to close
+     */
+    private static void closeQuietly(Socket socket)
+    {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // Nothing more to do
+        }
+    }
+
+    /**
+     * @param peer the address of another node to which the messages should be sent
+     */
+    public void addPeer(InetSocketAddress peer)
+    {
+        this.peers.add(peer);
+    }
+
+    /**
+     * @return the port on which the transport listens to the other nodes, -1 if not started
+     */
+    public int getLocalPort()
+    {
+        ServerSocket currentServerSocket = this.serverSocket;
+
+        return currentServerSocket != null ? currentServerSocket.getLocalPort() : -1;
+    }
+
+    @Override
+    public synchronized void start(RemoteEventReceiver messageReceiver) throws IOException
+    {
+        if (this.secret == null || this.secret.length() == 0) {
+            throw new IOException("The socket transport requires a shared secret, see [" + SECRET_PROPERTY + "]");
+        }
+
+        this.receiver = messageReceiver;
+        this.serverSocket = new ServerSocket(this.port, 0, InetAddress.getByName(null));
+        this.receivers =
+            new ThreadPoolExecutor(0, this.maxConnections, 60, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "XWiki remote event socket receiver");
+                        thread.setDaemon(true);
+
+                        return thread;
+                    }
+                });
+
+        startThread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                acceptConnections();
+            }
+        }, "XWiki remote event socket acceptor");
+    }
+
+    @Override
+    public void send(byte[] message) throws IOException
+    {
+        if (message.length > this.maxMessageSize) {
+            throw new IOException("Message of [" + message.length + "] bytes exceeds the maximum size of ["
+                + this.maxMessageSize + "] bytes");
+        }
+
+        IOException exception = null;
+
+        for (InetSocketAddress peer : this.peers) {
+            try {
+                send(peer, message);
+            } catch (IOException e) {
+                // Try the other nodes anyway
+                exception = e;
+            }
+        }
+
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    /**
+     * Send a message to a node, reconnecting once if the connection has been lost.
+     * 
+     * @param peer the address of the node
+     * @param message the message to send
+     * @throws IOException when failing to send the message
+     */
+    private void send(InetSocketAddress peer, byte[] message) throws IOException
+    {
+        Connection connection = this.connections.get(peer);
+        if (connection != null) {
+            try {
+                connection.send(message);
+
+                return;
+            } catch (IOException e) {
+                LOGGER.debug("Lost connection to [{}], reconnecting", peer);
+                connection.close();
+            }
+        }
+
+        connection = new Connection(peer, this.secret);
+        this.connections.put(peer, connection);
+        connection.send(message);
+    }
+
+    @Override
+    public synchronized void stop()
+    {
+        if (this.serverSocket != null) {
+            try {
+                this.serverSocket.close();
+            } catch (IOException e) {
+                LOGGER.debug("Failed to close the server socket", e);
+            }
+            this.serverSocket = null;
+        }
+
+        for (Connection connection : this.connections.values()) {
+            connection.close();
+        }
+        this.connections.clear();
+
+        for (Socket socket : this.acceptedSockets) {
+            closeQuietly(socket);
+        }
+        this.acceptedSockets.clear();
+
+        if (this.receivers != null) {
+            this.receivers.shutdownNow();
+            this.receivers = null;
+        }
+    }
+
+    /**
+     * @param runnable what to run
+     * @param name the name of the thread
+     */
+    private void startThread(Runnable runnable, String name)
+    {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Accept the connections of the other nodes until stopped.
+     */
+    private void acceptConnections()
+    {
+        ServerSocket currentServerSocket = this.serverSocket;
+        ExecutorService currentReceivers = this.receivers;
+
+        try {
+            while (true) {
+                final Socket socket = currentServerSocket.accept();
+                this.acceptedSockets.add(socket);
+
+                try {
+                    currentReceivers.execute(new Runnable()
+                    {
+                        @Override
+                        public void run()
+                        {
+                            receiveMessages(socket);
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    LOGGER.warn("Rejected connection from [{}] because [{}] connections are already open",
+                        socket.getRemoteSocketAddress(), this.maxConnections);
+                    this.acceptedSockets.remove(socket);
+                    closeQuietly(socket);
+                }
+            }
+        } catch (IOException e) {
+            // Stopped
+        }
+    }
+
+    /**
+     * Read the messages sent by another node until the connection is closed.
+     * 
+     * @param socket the connection opened by the other node
+     */
+    private void receiveMessages(Socket socket)
+    {
+        try {
+            new SocketMessageReader(socket, this.secret, this.maxMessageSize, this.receiver).run();
+        } finally {
+            this.acceptedSockets.remove(socket);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.remote.TestNode.TestLocalEvent;
+import org.xwiki.observation.remote.TestNode.TestRemoteEvent;
+import org.xwiki.observation.remote.internal.LoopbackRemoteEventTransport;
+import org.xwiki.observation.remote.internal.SocketRemoteEventTransport;
+
+/**
+ * Unit tests for {@link RemoteEventPropagator}.
+ * 
+ * @version $Id$
+ */
+public class RemoteEventPropagatorTest
+{
+    private static final String SECRET = "secret";
+
+    private TestNode node1;
+
+    private TestNode node2;
+
+    @After
+    public void tearDown()
+    {
+        this.node1.getPropagator().stop();
+        this.node2.getPropagator().stop();
+    }
+
+    private void startLoopbackNodes(String channel, int batchSize, long batchDelay) throws Exception
+    {
+        this.node1 = new TestNode(new LoopbackRemoteEventTransport(channel), batchSize, batchDelay);
+        this.node2 = new TestNode(new LoopbackRemoteEventTransport(channel), batchSize, batchDelay);
+
+        this.node1.getPropagator().start();
+        this.node2.getPropagator().start();
+    }
+
+    private void assertPropagation() throws Exception
+    {
+        CountDownLatch received = this.node2.expect(2);
+
+        this.node1.getObservationManager().notify(new TestRemoteEvent("doc"), "source1", "data");
+        this.node1.getObservationManager().notify(new TestLocalEvent(), "local");
+        this.node1.getObservationManager().notify(new TestRemoteEvent("doc"), "source2");
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+
+        Assert.assertEquals(Arrays.asList("source1", "local", "source2"), this.node1.getSources());
+        Assert.assertEquals(Arrays.asList(false, false, false), this.node1.getRemote());
+        Assert.assertEquals(Arrays.asList("source1", "source2"), this.node2.getSources());
+        Assert.assertEquals(Arrays.asList(true, true), this.node2.getRemote());
+
+        // The received events are not sent back
+        Thread.sleep(100);
+        Assert.assertEquals(2, this.node1.getPropagator().getSentEventCount());
+        Assert.assertEquals(0, this.node2.getPropagator().getSentEventCount());
+        Assert.assertEquals(2, this.node2.getPropagator().getReceivedEventCount());
+        Assert.assertEquals(0, this.node1.getPropagator().getReceivedEventCount());
+        Assert.assertEquals(3, this.node1.getSources().size());
+    }
+
+    @Test
+    public void testPropagationWithLoopback() throws Exception
+    {
+        startLoopbackNodes("loopback", 10, 10);
+
+        assertPropagation();
+    }
+
+    /**
+     * @return the transport of the second node
+     */
+    private SocketRemoteEventTransport startSocketNodes(int batchSize, long batchDelay) throws Exception
+    {
+        SocketRemoteEventTransport transport1 =
+            new SocketRemoteEventTransport(0, Collections.<InetSocketAddress>emptyList(), SECRET);
+        SocketRemoteEventTransport transport2 =
+            new SocketRemoteEventTransport(0, Collections.<InetSocketAddress>emptyList(), SECRET);
+
+        this.node1 = new TestNode(transport1, batchSize, batchDelay);
+        this.node2 = new TestNode(transport2, batchSize, batchDelay);
+
+        this.node1.getPropagator().start();
+        this.node2.getPropagator().start();
+
+        // The ports are only known once the transports are started
+        transport1.addPeer(new InetSocketAddress("localhost", transport2.getLocalPort()));
+        transport2.addPeer(new InetSocketAddress("localhost", transport1.getLocalPort()));
+
+        return transport2;
+    }
+
+    @Test
+    public void testPropagationWithSocket() throws Exception
+    {
+        startSocketNodes(10, 10);
+
+        assertPropagation();
+    }
+
+    @Test
+    public void testBatchingWithSocket() throws Exception
+    {
+        startSocketNodes(100, 1000);
+
+        CountDownLatch received = this.node2.expect(1000);
+        for (int i = 0; i < 1000; ++i) {
+            this.node1.getObservationManager().notify(new TestRemoteEvent(), i);
+        }
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1000, this.node1.getPropagator().getSentEventCount());
+        Assert.assertEquals(10, this.node1.getPropagator().getSentMessageCount());
+    }
+
+    @Test
+    public void testSocketRejectsInvalidSecret() throws Exception
+    {
+        SocketRemoteEventTransport transport2 = startSocketNodes(10, 10);
+
+        Socket socket = new Socket("localhost", transport2.getLocalPort());
+        try {
+            DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+            output.writeUTF("wrong");
+            output.writeInt(1);
+            output.write(0);
+            output.flush();
+
+            // The connection is closed without reading the message
+            Assert.assertEquals(-1, socket.getInputStream().read());
+        } finally {
+            socket.close();
+        }
+
+        Assert.assertEquals(0, this.node2.getPropagator().getReceivedEventCount());
+    }
+
+    @Test
+    public void testSocketRejectsInvalidMessageSize() throws Exception
+    {
+        SocketRemoteEventTransport transport2 = startSocketNodes(10, 10);
+
+        for (int size : new int[] {-1, Integer.MAX_VALUE}) {
+            Socket socket = new Socket("localhost", transport2.getLocalPort());
+            try {
+                DataOutputStream output = new DataOutputStream(socket.getOutputStream());
+                output.writeUTF(SECRET);
+                output.writeInt(size);
+                output.flush();
+
+                Assert.assertEquals(-1, new DataInputStream(socket.getInputStream()).read());
+            } finally {
+                socket.close();
+            }
+        }
+
+        // The other connections still work
+        assertPropagation();
+    }
+
+    @Test(expected = IOException.class)
+    public void testSocketRequiresSecret() throws Exception
+    {
+        this.node1 = new TestNode(new LoopbackRemoteEventTransport("nosecret"), 10, 10);
+        this.node2 = new TestNode(new SocketRemoteEventTransport(0, Collections.<InetSocketAddress>emptyList(), null),
+            10, 10);
+
+        this.node2.getPropagator().start();
+    }
+
+    @Test
+    public void testOnlyConfiguredEventsAreListened() throws Exception
+    {
+        startLoopbackNodes("listened", 10, 10);
+
+        // The propagator does not listen to all the events
+        List<Event> events = this.node1.getObservationManager().getListener("RemoteEventPropagator").getEvents();
+        Assert.assertEquals(1, events.size());
+        Assert.assertSame(TestRemoteEvent.class, events.get(0).getClass());
+    }
+
+    @Test
+    public void testBatching() throws Exception
+    {
+        startLoopbackNodes("batching", 100, 1000);
+
+        CountDownLatch received = this.node2.expect(250);
+
+        List<Object> expectedSources = new ArrayList<Object>();
+        for (int i = 0; i < 250; ++i) {
+            this.node1.getObservationManager().notify(new TestRemoteEvent(), i);
+            expectedSources.add(i);
+        }
+
+        Assert.assertTrue(received.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(expectedSources, this.node2.getSources());
+        Assert.assertTrue(this.node1.getPropagator().getSentMessageCount() < 250);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.observation.remote.TestNode.TestRemoteEvent;
+import org.xwiki.observation.remote.internal.SocketRemoteEventTransport;
+
+/**
+ * Measure the number of events per second propagated over the socket transport, with and without batching.
+ * <p>
+ * Not executed with the unit tests, run it with the {@code benchmark} profile.
+ * 
+ * @version $Id$
+ */
+public class RemoteEventThroughputBenchmark
+{
+    private static final String SECRET = "secret";
+
+    private static final int EVENTS = 5000;
+
+    @Test
+    public void testThroughput() throws Exception
+    {
+        // Warm up
+        benchmark(1);
+        benchmark(100);
+
+        long unbatched = benchmark(1);
+        long batched = benchmark(100);
+
+        System.out.println(String.format("Remote events over socket: %d events/s unbatched, %d events/s batched",
+            unbatched, batched));
+    }
+
+    /**
+     * @param batchSize the maximum number of events sent in a single message
+     * @return the number of events propagated per second
+     */
+    private long benchmark(int batchSize) throws Exception
+    {
+        SocketRemoteEventTransport transport1 =
+            new SocketRemoteEventTransport(0, Collections.<InetSocketAddress>emptyList(), SECRET);
+        SocketRemoteEventTransport transport2 =
+            new SocketRemoteEventTransport(0, Collections.<InetSocketAddress>emptyList(), SECRET);
+
+        TestNode node1 = new TestNode(transport1, batchSize, 0);
+        TestNode node2 = new TestNode(transport2, batchSize, 0);
+
+        node1.getPropagator().start();
+        node2.getPropagator().start();
+        transport1.addPeer(new InetSocketAddress("localhost", transport2.getLocalPort()));
+
+        try {
+            CountDownLatch received = node2.expect(EVENTS);
+
+            long start = System.nanoTime();
+            for (int i = 0; i < EVENTS; ++i) {
+                node1.getObservationManager().notify(new TestRemoteEvent("doc"), i);
+            }
+            Assert.assertTrue(received.await(60, TimeUnit.SECONDS));
+            long time = System.nanoTime() - start;
+
+            Assert.assertEquals(EVENTS, node2.getSources().size());
+            Assert.assertEquals(0, node1.getPropagator().getDroppedEventCount());
+
+            return EVENTS * TimeUnit.SECONDS.toNanos(1) / time;
+        } finally {
+            node1.getPropagator().stop();
+            node2.getPropagator().stop();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.slf4j.LoggerFactory;
+import org.xwiki.component.util.ReflectionUtils;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.ObservationManager;
+import org.xwiki.observation.event.AbstractFilterableEvent;
+import org.xwiki.observation.event.Event;
+import org.xwiki.observation.internal.DefaultObservationManager;
+
+/**
+ * A cluster node for the tests: an Observation Manager, a propagator and a listener recording the received events.
+ * 
+ * @version $Id$
+ */
+public class TestNode
+{
+    /**
+     * An event to propagate.
+     */
+    public static class TestRemoteEvent extends AbstractFilterableEvent implements RemoteEvent
+    {
+        private static final long serialVersionUID = 1L;
+
+        public TestRemoteEvent()
+        {
+        }
+
+        public TestRemoteEvent(String name)
+        {
+            super(name);
+        }
+    }
+
+    /**
+     * An event which is not propagated.
+     */
+    public static class TestLocalEvent extends AbstractFilterableEvent
+    {
+        private static final long serialVersionUID = 1L;
+    }
+
+    private final ObservationManager observationManager = new DefaultObservationManager();
+
+    private final RemoteEventPropagator propagator;
+
+    private final List<Object> sources = Collections.synchronizedList(new ArrayList<Object>());
+
+    private final List<Boolean> remote = Collections.synchronizedList(new ArrayList<Boolean>());
+
+    private volatile CountDownLatch expected = new CountDownLatch(0);
+
+    public TestNode(RemoteEventTransport transport, int batchSize, long batchDelay)
+    {
+        ReflectionUtils.setFieldValue(this.observationManager, "logger",
+            LoggerFactory.getLogger(DefaultObservationManager.class));
+
+        this.propagator =
+            new RemoteEventPropagator(this.observationManager, transport, Arrays.<Event>asList(new TestRemoteEvent()),
+                batchSize, batchDelay);
+
+        this.observationManager.addListener(new EventListener()
+        {
+            @Override
+            public String getName()
+            {
+                return "recorder";
+            }
+
+            @Override
+            public List<Event> getEvents()
+            {
+                return Arrays.<Event>asList(new TestRemoteEvent(), new TestLocalEvent());
+            }
+
+            @Override
+            public void onEvent(Event event, Object source, Object data)
+            {
+                sources.add(source);
+                remote.add(propagator.isReceiving());
+                expected.countDown();
+            }
+        });
+    }
+
+    public ObservationManager getObservationManager()
+    {
+        return this.observationManager;
+    }
+
+    public RemoteEventPropagator getPropagator()
+    {
+        return this.propagator;
+    }
+
+    /**
+     * @return the sources of the events received by the listener, local or remote
+     */
+    public List<Object> getSources()
+    {
+        return this.sources;
+    }
+
+    /**
+     * @return for each event received by the listener, true if it came from another node
+     */
+    public List<Boolean> getRemote()
+    {
+        return this.remote;
+    }
+
+    /**
+     * @param count the number of events the listener should receive from now on
+     * @return the latch released when the events have been received
+     */
+    public CountDownLatch expect(int count)
+    {
+        this.expected = new CountDownLatch(count);
+
+        return this.expected;
+    }
+}
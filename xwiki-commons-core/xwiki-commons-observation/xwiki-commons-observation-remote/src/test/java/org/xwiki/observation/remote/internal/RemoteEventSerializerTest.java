@@ -0,0 +1,119 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.observation.remote.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.observation.remote.TestNode.TestRemoteEvent;
+
+/**
+ * Unit tests for {@link RemoteEventSerializer}.
+ * 
+ * @version $Id$
+ */
+public class RemoteEventSerializerTest
+{
+    private byte[] serialize(Object source, Object data) throws IOException
+    {
+        return new RemoteEventSerializer(Collections.<String>emptyList()).serialize("origin",
+            Arrays.asList(new RemoteEventData(new TestRemoteEvent("doc"), source, data)));
+    }
+
+    @Test
+    public void testSerializeAllowedClasses() throws Exception
+    {
+        RemoteEventMessage message =
+            new RemoteEventSerializer(Collections.<String>emptyList()).deserialize(serialize(42, "data"));
+
+        Assert.assertEquals("origin", message.getOrigin());
+        Assert.assertEquals(1, message.getEvents().size());
+        Assert.assertEquals(new TestRemoteEvent("doc"), message.getEvents().get(0).getEvent());
+        Assert.assertEquals(42, message.getEvents().get(0).getSource());
+        Assert.assertEquals("data", message.getEvents().get(0).getData());
+    }
+
+    @Test
+    public void testRejectClassNotAllowed() throws Exception
+    {
+        RemoteEventMessage message =
+            new RemoteEventSerializer(Collections.<String>emptyList()).deserialize(serialize(new ArrayList<String>(),
+                "data"));
+
+        // Only the object which is not allowed is lost
+        Assert.assertEquals(1, message.getEvents().size());
+        Assert.assertNull(message.getEvents().get(0).getSource());
+        Assert.assertEquals("data", message.getEvents().get(0).getData());
+    }
+
+    @Test
+    public void testInvalidObjectsOnlyAffectTheirEvent() throws Exception
+    {
+        // Serializable but containing an object which is not
+        List<Object> notSerializable = new ArrayList<Object>(Arrays.asList(new Object()));
+        List<String> notAllowed = new ArrayList<String>(Arrays.asList("value"));
+
+        RemoteEventSerializer serializer = new RemoteEventSerializer(Collections.<String>emptyList());
+
+        byte[] bytes = serializer.serialize("origin", Arrays.asList(
+            new RemoteEventData(new TestRemoteEvent("doc1"), "source1", notSerializable),
+            new RemoteEventData(new TestRemoteEvent("doc2"), notAllowed, "data2"),
+            new RemoteEventData(new TestRemoteEvent("doc3"), "source3", "data3")));
+
+        List<RemoteEventData> events = serializer.deserialize(bytes).getEvents();
+
+        Assert.assertEquals(3, events.size());
+        Assert.assertEquals(new TestRemoteEvent("doc1"), events.get(0).getEvent());
+        Assert.assertEquals("source1", events.get(0).getSource());
+        Assert.assertNull(events.get(0).getData());
+        Assert.assertEquals(new TestRemoteEvent("doc2"), events.get(1).getEvent());
+        Assert.assertNull(events.get(1).getSource());
+        Assert.assertEquals("data2", events.get(1).getData());
+        Assert.assertEquals(new TestRemoteEvent("doc3"), events.get(2).getEvent());
+        Assert.assertEquals("source3", events.get(2).getSource());
+        Assert.assertEquals("data3", events.get(2).getData());
+    }
+
+    @Test
+    public void testConfiguredAllowedClass() throws Exception
+    {
+        List<String> source = new ArrayList<String>(Arrays.asList("value"));
+
+        RemoteEventMessage message =
+            new RemoteEventSerializer(Arrays.asList(ArrayList.class.getName())).deserialize(serialize(source, null));
+
+        Assert.assertEquals(source, message.getEvents().get(0).getSource());
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectInvalidEventCount() throws Exception
+    {
+        byte[] message = serialize(null, null);
+        // The event count follows the version and the origin
+        message[1 + 2 + "origin".length()] = (byte) 0xFF;
+
+        new RemoteEventSerializer(Collections.<String>emptyList()).deserialize(message);
+    }
+}
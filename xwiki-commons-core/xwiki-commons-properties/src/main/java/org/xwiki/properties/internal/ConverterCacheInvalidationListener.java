@@ -0,0 +1,87 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.properties.internal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.inject.Inject;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+import org.xwiki.component.annotation.Component;
+import org.xwiki.component.event.ComponentDescriptorAddedEvent;
+import org.xwiki.component.event.ComponentDescriptorRemovedEvent;
+import org.xwiki.observation.EventListener;
+import org.xwiki.observation.event.Event;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.properties.converter.Converter;
+
+/**
+ * Invalidate the cache of {@link DefaultConverterManager} when a {@link Converter} component is registered or
+ * unregistered.
+ * 
+ * @version $Id$
+ * @since 4.2M2
+ */
+@Component
+@Singleton
+@Named(ConverterCacheInvalidationListener.NAME)
+public class ConverterCacheInvalidationListener implements EventListener
+{
+    /**
+     * The name of the listener.
+     */
+    public static final String NAME = "ConverterCacheInvalidationListener";
+
+    /**
+     * The list of events observed.
+     */
+    private static final List<Event> EVENTS = Arrays.<Event> asList(new ComponentDescriptorAddedEvent(
+        Converter.class), new ComponentDescriptorRemovedEvent(Converter.class));
+
+    /**
+     * Lazily resolved to not create the {@link ConverterManager} when registering the listener.
+     */
+    @Inject
+    private Provider<ConverterManager> converterManagerProvider;
+
+    @Override
+    public String getName()
+    {
+        return NAME;
+    }
+
+    @Override
+    public List<Event> getEvents()
+    {
+        return EVENTS;
+    }
+
+    @Override
+    public void onEvent(Event event, Object source, Object data)
+    {
+        ConverterManager converterManager = this.converterManagerProvider.get();
+        if (converterManager instanceof DefaultConverterManager) {
+            ((DefaultConverterManager) converterManager).invalidateConverters();
+        }
+    }
+}
@@ -21,6 +21,8 @@
 
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import javax.inject.Inject;
 import javax.inject.Named;
@@ -28,6 +30,8 @@
 
 import org.slf4j.Logger;
 import org.xwiki.component.annotation.Component;
+import org.xwiki.component.descriptor.ComponentDescriptor;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
 import org.xwiki.component.manager.ComponentLookupException;
 import org.xwiki.component.manager.ComponentManager;
 import org.xwiki.properties.ConverterManager;
@@ -43,6 +47,10 @@
  * <li>then it use the default {@link Converter} (which is based on {@link org.apache.commons.beanutils.ConvertUtils} by
  * default)</li>
  * </ul>
+ * <p>
+ * The {@link Converter} found for each target type is cached (unless it's not a singleton) so that conversions on hot
+ * paths don't have to resolve it again. The cache is invalidated when a {@link Converter} component is registered or
+ * unregistered (see {@link ConverterCacheInvalidationListener}).
  * 
  * @version $Id$
  * @since 2.0M2
@@ -77,11 +85,17 @@ public class DefaultConverterManager implements ConverterManager
     @Inject
     private Logger logger;
 
+    /**
+     * The {@link Converter} to use for each target type. Replaced instead of cleared when invalidated so that a
+     * resolution which started before the invalidation can't store an outdated {@link Converter} in the new cache.
+     */
+    private volatile ConcurrentMap<Type, Converter> converters = new ConcurrentHashMap<Type, Converter>();
+
     @Override
     public <T> T convert(Type targetType, Object value)
     {
         // Convert
-        Converter converter = lookupConverter(targetType);
+        Converter converter = getConverter(targetType);
 
         if (converter != null) {
             return (T) converter.convert(targetType, value);
@@ -91,13 +105,55 @@ public <T> T convert(Type targetType, Object value)
         }
     }
 
+    /**
+     * Forget the {@link Converter}s found for each target type.
+     */
+    void invalidateConverters()
+    {
+        this.converters = new ConcurrentHashMap<Type, Converter>();
+    }
+
+    /**
+     * Find the right {@link Converter} for the provided {@link Type}, from the cache if possible.
+     * 
+     * @param targetType the type to convert to
+     * @return the {@link Converter} corresponding to the type
+     */
+    private Converter getConverter(Type targetType)
+    {
+        ConcurrentMap<Type, Converter> currentConverters = this.converters;
+
+        Converter converter = currentConverters.get(targetType);
+        if (converter == null) {
+            CachedConverter cachedConverter = new CachedConverter();
+            converter = lookupConverter(targetType, cachedConverter);
+            if (cachedConverter.cacheable) {
+                currentConverters.put(targetType, converter);
+            }
+        }
+
+        return converter;
+    }
+
+    /**
+     * Indicate if the found {@link Converter} can be cached.
+     */
+    private static class CachedConverter
+    {
+        /**
+         * False if the found {@link Converter} is not a singleton component and thus should be looked up each time.
+         */
+        private boolean cacheable = true;
+    }
+
     /**
      * Find the right {@link Converter} for the provided {@link Class}.
      * 
      * @param targetType the type to convert to
+     * @param cachedConverter indicate if the returned {@link Converter} can be cached
      * @return the {@link Converter} corresponding to the class
      */
-    private Converter lookupConverter(Type targetType)
+    private Converter lookupConverter(Type targetType, CachedConverter cachedConverter)
     {
         Converter converter = null;
 
@@ -106,8 +162,10 @@ private Converter lookupConverter(Type targetType)
         if (this.componentManager.hasComponent(Converter.class, typeGenericName)) {
             try {
                 converter = this.componentManager.getInstance(Converter.class, typeGenericName);
+                cachedConverter.cacheable = isSingleton(typeGenericName);
             } catch (ComponentLookupException e) {
                 this.logger.error("Failed to find a specific Converter for type [" + typeGenericName + "]", e);
+                cachedConverter.cacheable = false;
             }
         }
 
@@ -116,8 +174,10 @@ private Converter lookupConverter(Type targetType)
             if (this.componentManager.hasComponent(Converter.class, typeName)) {
                 try {
                     converter = this.componentManager.getInstance(Converter.class, typeName);
+                    cachedConverter.cacheable = isSingleton(typeName);
                 } catch (ComponentLookupException e) {
                     this.logger.error("Failed to find a specific Converter for class [" + typeName + "]", e);
+                    cachedConverter.cacheable = false;
                 }
             }
         }
@@ -135,6 +195,19 @@ private Converter lookupConverter(Type targetType)
         return converter;
     }
 
+    /**
+     * @param hint the role hint of the {@link Converter} component
+     * @return true if the {@link Converter} component is a singleton and can thus be cached
+     */
+    private boolean isSingleton(String hint)
+    {
+        ComponentDescriptor<Converter> descriptor =
+            this.componentManager.getComponentDescriptor(Converter.class, hint);
+
+        return descriptor == null
+            || descriptor.getInstantiationStrategy() == ComponentInstantiationStrategy.SINGLETON;
+    }
+
     /**
      * Get class name without generics.
      * 
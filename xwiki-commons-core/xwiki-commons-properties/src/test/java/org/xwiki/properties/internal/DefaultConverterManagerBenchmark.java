@@ -0,0 +1,88 @@
+/*
+ * See the NOTICE file distributed with this work for additional
+ * information regarding copyright ownership.
+ *
+ * This is free software; you can redistribute it and/or modify it
+ * under the terms of the GNU Lesser General Public License as
+ * published by the Free Software Foundation; either version 2.1 of
+ * the License, or (at your option) any later version.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this software; if not, write to the Free
+ * Software Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA
+ * 02110-1301 USA, or see the FSF site: http://www.fsf.org.
+ */
+package org.xwiki.properties.internal;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xwiki.component.util.DefaultParameterizedType;
+import org.xwiki.properties.ConverterManager;
+import org.xwiki.test.AbstractComponentTestCase;
+
+/**
+ * Measure the time spent by {@link DefaultConverterManager} for each conversion, with and without the cache of
+ * resolved {@link org.xwiki.properties.converter.Converter}s.
+ * <p>
+ * Not executed with the unit tests, run it with the {@code benchmark} profile.
+ * 
+ * @version $Id$
+ */
+public class DefaultConverterManagerBenchmark extends AbstractComponentTestCase
+{
+    private static final int ITERATIONS = 20000;
+
+    private DefaultConverterManager converterManager;
+
+    @Override
+    protected void registerComponents() throws Exception
+    {
+        this.converterManager = (DefaultConverterManager) getComponentManager().getInstance(ConverterManager.class);
+    }
+
+    @Test
+    public void testConversionOverhead()
+    {
+        DefaultParameterizedType listType = new DefaultParameterizedType(null, List.class, Integer.class);
+
+        // Warm up
+        benchmark(Integer.class, "42", false);
+        benchmark(listType, "1, 2", false);
+
+        long uncached = benchmark(Integer.class, "42", false);
+        long cached = benchmark(Integer.class, "42", true);
+        long uncachedList = benchmark(listType, "1, 2", false);
+        long cachedList = benchmark(listType, "1, 2", true);
+
+        System.out.println(String.format("Integer conversion: %d ns without cache, %d ns with cache", uncached,
+            cached));
+        System.out.println(String.format("List<Integer> conversion: %d ns without cache, %d ns with cache",
+            uncachedList, cachedList));
+
+        Assert.assertEquals(Integer.valueOf(42), this.converterManager.convert(Integer.class, "42"));
+    }
+
+    /**
+     * @return the average time of a conversion in nanoseconds
+     */
+    private long benchmark(Type type, String value, boolean cached)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; ++i) {
+            if (!cached) {
+                this.converterManager.invalidateConverters();
+            }
+            this.converterManager.convert(type, value);
+        }
+
+        return (System.nanoTime() - start) / ITERATIONS;
+    }
+}
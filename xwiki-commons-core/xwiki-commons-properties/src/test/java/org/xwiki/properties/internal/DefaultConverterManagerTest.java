@@ -20,10 +20,16 @@
 package org.xwiki.properties.internal;
 
 import java.awt.Color;
+import java.lang.reflect.Type;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.xwiki.component.descriptor.ComponentInstantiationStrategy;
+import org.xwiki.component.descriptor.DefaultComponentDescriptor;
+import org.xwiki.component.internal.StackingComponentEventManager;
+import org.xwiki.observation.ObservationManager;
 import org.xwiki.properties.ConverterManager;
+import org.xwiki.properties.converter.Converter;
 import org.xwiki.test.AbstractComponentTestCase;
 
 /**
@@ -43,6 +49,13 @@ public class DefaultConverterManagerTest extends AbstractComponentTestCase
     @Override
     protected void registerComponents() throws Exception
     {
+        // Send the component registration events to the observation manager, as the application does
+        StackingComponentEventManager componentEventManager = new StackingComponentEventManager();
+        componentEventManager.shouldStack(false);
+        componentEventManager.setObservationManager(getComponentManager().<ObservationManager> getInstance(
+            ObservationManager.class));
+        getComponentManager().setComponentEventManager(componentEventManager);
+
         this.defaultConverterManager = getComponentManager().getInstance(ConverterManager.class);
     }
 
@@ -63,4 +76,86 @@ public void testConvertColor()
     {
         Assert.assertEquals(Color.WHITE, this.defaultConverterManager.convert(Color.class, "#ffffff"));
     }
+
+    @Test
+    public void testConvertWhenConverterRegistered() throws Exception
+    {
+        Assert.assertEquals(Integer.valueOf(42), this.defaultConverterManager.convert(Integer.class, "42"));
+
+        DefaultComponentDescriptor<Converter> descriptor = new DefaultComponentDescriptor<Converter>();
+        descriptor.setRoleType(Converter.class);
+        descriptor.setRoleHint(Integer.class.getName());
+        descriptor.setImplementation(ConstantIntegerConverter.class);
+        getComponentManager().registerComponent(descriptor);
+
+        // The cache is invalidated when a converter is registered
+        Assert.assertEquals(Integer.valueOf(0), this.defaultConverterManager.convert(Integer.class, "42"));
+    }
+
+    @Test
+    public void testConverterIsCached() throws Exception
+    {
+        DefaultComponentDescriptor<Converter> descriptor = registerCountingConverter();
+
+        Assert.assertEquals(Integer.valueOf(1), this.defaultConverterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(Integer.valueOf(2), this.defaultConverterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(1, CountingConverter.instances);
+
+        // The cache is invalidated when a converter is unregistered
+        getComponentManager().unregisterComponent(descriptor);
+
+        Assert.assertEquals(Integer.valueOf(42), this.defaultConverterManager.convert(Integer.class, "42"));
+    }
+
+    @Test
+    public void testPerLookupConverterIsNotCached() throws Exception
+    {
+        DefaultComponentDescriptor<Converter> descriptor = registerCountingConverter();
+        descriptor.setInstantiationStrategy(ComponentInstantiationStrategy.PER_LOOKUP);
+        getComponentManager().registerComponent(descriptor);
+
+        Assert.assertEquals(Integer.valueOf(1), this.defaultConverterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(Integer.valueOf(1), this.defaultConverterManager.convert(Integer.class, "42"));
+        Assert.assertEquals(2, CountingConverter.instances);
+    }
+
+    private DefaultComponentDescriptor<Converter> registerCountingConverter() throws Exception
+    {
+        CountingConverter.instances = 0;
+
+        DefaultComponentDescriptor<Converter> descriptor = new DefaultComponentDescriptor<Converter>();
+        descriptor.setRoleType(Converter.class);
+        descriptor.setRoleHint(Integer.class.getName());
+        descriptor.setImplementation(CountingConverter.class);
+        getComponentManager().registerComponent(descriptor);
+
+        return descriptor;
+    }
+
+    public static class CountingConverter implements Converter
+    {
+        private static int instances;
+
+        private int conversions;
+
+        public CountingConverter()
+        {
+            ++instances;
+        }
+
+        @Override
+        public <T> T convert(Type targetType, Object sourceValue)
+        {
+            return (T) Integer.valueOf(++this.conversions);
+        }
+    }
+
+    public static class ConstantIntegerConverter implements Converter
+    {
+        @Override
+        public <T> T convert(Type targetType, Object sourceValue)
+        {
+            return (T) Integer.valueOf(0);
+        }
+    }
 }